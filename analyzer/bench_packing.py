@@ -0,0 +1,169 @@
+"""Agreement vs. throughput of packed prompts, against the mock backend.
+
+Classifies a dataset through the analyzer's real packed path with the mock backend
+(mock_backend.py) as the model: packed prompts (packing.py), the mock's packed answers,
+parse_packed_response, and single-prompt fallback for the items a packed answer misses, as
+classify_pack in main.py does. For K=1 (one prompt per payload) and larger pack sizes it reports:
+
+  calls      generations issued, including single-prompt fallbacks
+  fallback   items the packed answer missed and that were re-asked one by one
+  agree      final verdicts equal to the single-prompt mock verdict of the same payload
+  sim p/s    payloads per second under the cost model below
+  speedup    sim p/s relative to the first pack size
+  cpu us/p   real time spent building prompts and parsing answers, per payload
+
+The mock answers well-formed lines in item order. Models do not, so the answer of a packed
+prompt is put through the format faults a model makes, at rates that grow with K: lines go
+missing, come back out of order, or use another line format (some of which the parser
+accepts, some not). "agree" therefore measures how the parsing and fallback cope with them;
+anything below 100% is a verdict that differs from classifying the payload on its own. It
+says nothing about how well a real model labels packed requests: check that against a real
+model before choosing ANALYZER_PACK_SIZE.
+
+Each generation costs a fixed overhead plus per-token prompt and output costs. The defaults
+are rough CPU-Ollama ballparks, so use sim p/s to compare pack sizes, not as a prediction.
+
+Usage:
+  python bench_packing.py [--dataset payloads.txt] [--count 2000] [--packs 1,4,8,16,32]
+"""
+import argparse
+import random
+import time
+from typing import List, Optional, Tuple
+
+import mock_backend
+from packing import build_single_prompt, build_packed_prompt, parse_packed_response, packs, escape_payload
+
+# Answer lines as models write them instead of "<n>:<LABEL>"; the last two are not parseable
+LINE_VARIANTS = (
+    lambda n, label: f"[{n}] {label}",
+    lambda n, label: f"{n}) {label.lower()}",
+    lambda n, label: f"{n} - {label.replace('_', ' ')}",
+    lambda n, label: f"{n}. {label}.",
+    lambda n, label: f"Request {n}: {label}",
+    lambda n, label: f"{n}: {label} because it looks {'benign' if label == 'SAFE' else 'malicious'}",
+)
+
+
+def tokens(text: str) -> int:
+    # ~4 characters per token is close enough for relative costs
+    return max(1, len(text) // 4)
+
+
+class MockGenerator:
+    """The mock backend as a model: charges simulated costs and garbles packed answers."""
+
+    def __init__(self, seed: int, overhead_ms: float, prompt_ms_per_token: float, output_ms_per_token: float,
+                 drop_per_item: float, reorder_per_item: float, variant_per_item: float):
+        self.rng = random.Random(seed)
+        self.overhead_ms = overhead_ms
+        self.prompt_ms_per_token = prompt_ms_per_token
+        self.output_ms_per_token = output_ms_per_token
+        self.drop_per_item = drop_per_item
+        self.reorder_per_item = reorder_per_item
+        self.variant_per_item = variant_per_item
+        self.calls = 0
+        self.simulated_ms = 0.0
+
+    def _garble(self, answer: str, k: int) -> str:
+        lines = []
+        for line in answer.splitlines():
+            if self.rng.random() < self.drop_per_item * (k - 1):
+                continue
+            if self.rng.random() < self.variant_per_item * (k - 1):
+                n, label = line.split(":", 1)
+                line = self.rng.choice(LINE_VARIANTS)(int(n), label)
+            lines.append(line)
+        if self.rng.random() < self.reorder_per_item * (k - 1):
+            self.rng.shuffle(lines)
+        return "\n".join(lines)
+
+    def generate(self, prompt: str) -> str:
+        self.calls += 1
+        answer = mock_backend.answer(prompt)
+        if "\nRequests:\n" in prompt:
+            answer = self._garble(answer, len(mock_backend.packed_items(prompt)))
+        self.simulated_ms += (self.overhead_ms
+                              + tokens(prompt) * self.prompt_ms_per_token
+                              + tokens(answer) * self.output_ms_per_token)
+        return answer
+
+
+def run(payloads: List[str], k: int, gen: MockGenerator) -> Tuple[int, int, float, float]:
+    """Returns (calls, fallbacks, agreement, cpu seconds)."""
+    agreed = 0
+    fallbacks = 0
+    cpu = 0.0
+    for _, pack in packs(payloads, k):
+        labels: List[Optional[str]] = [None] * len(pack)
+        if len(pack) > 1:
+            t0 = time.perf_counter()
+            prompt = build_packed_prompt(pack)
+            cpu += time.perf_counter() - t0
+            answer = gen.generate(prompt)
+            t0 = time.perf_counter()
+            parsed = parse_packed_response(answer, len(pack))
+            cpu += time.perf_counter() - t0
+            labels = [v[1] if v else None for v in parsed]
+        for i, label in enumerate(labels):
+            if label is None:
+                if len(pack) > 1:
+                    fallbacks += 1
+                t0 = time.perf_counter()
+                prompt = build_single_prompt(pack[i])
+                cpu += time.perf_counter() - t0
+                gen.generate(prompt)
+                # classify_pack falls back to classify(), which for the mock is the token rules
+                labels[i] = mock_backend.label(pack[i])
+        agreed += sum(1 for p, label in zip(pack, labels) if label == mock_backend.label(p))
+    return gen.calls, fallbacks, agreed / max(1, len(payloads)), cpu
+
+
+def synthetic_payloads(count: int, seed: int) -> List[str]:
+    rng = random.Random(seed)
+    benign = ["GET /products?id={n}&sort=price", "POST /login user=alice{n}&remember=1",
+              "GET /search?q=blue+shoes+size+{n}", "GET /static/img/{n}.png",
+              "POST /api/cart item={n}&qty=2", "GET /news/2024/{n}/comments?page=3"]
+    attacks = ["GET /products?id={n}' OR '1'='1", "GET /items?id={n} UNION SELECT user,pass FROM users",
+               "POST /comment body=<script>alert({n})</script>", "GET /download?file=../../../etc/passwd{n}",
+               "GET /redirect?to=javascript:alert({n})", "POST /q id={n}; DROP TABLE users-- x"]
+    return [rng.choice(attacks if rng.random() < 0.4 else benign).format(n=rng.randint(1, 99999))
+            for _ in range(count)]
+
+
+def main():
+    ap = argparse.ArgumentParser(description=__doc__.split("\n\n")[0])
+    ap.add_argument("--dataset", help="file with one payload per line (default: synthetic payloads)")
+    ap.add_argument("--count", type=int, default=2000)
+    ap.add_argument("--packs", default="1,4,8,16,32", help="comma-separated pack sizes")
+    ap.add_argument("--seed", type=int, default=42)
+    ap.add_argument("--overhead-ms", type=float, default=120.0, help="fixed cost per generation")
+    ap.add_argument("--prompt-ms-per-token", type=float, default=0.8, help="prompt evaluation cost")
+    ap.add_argument("--output-ms-per-token", type=float, default=25.0, help="generation cost")
+    ap.add_argument("--drop-per-item", type=float, default=0.002, help="probability per packed item that an answer line is missing")
+    ap.add_argument("--reorder-per-item", type=float, default=0.01, help="probability per packed item that the answer lines are shuffled")
+    ap.add_argument("--variant-per-item", type=float, default=0.005, help="probability per packed item that an answer line has another format")
+    args = ap.parse_args()
+
+    if args.dataset:
+        with open(args.dataset, encoding="utf-8") as f:
+            payloads = [escape_payload(line.rstrip("\n")) for line in f if line.strip()][:args.count]
+    else:
+        payloads = synthetic_payloads(args.count, args.seed)
+
+    print(f"{len(payloads)} payloads, simulated model: overhead={args.overhead_ms}ms, "
+          f"prompt={args.prompt_ms_per_token}ms/token, output={args.output_ms_per_token}ms/token")
+    print(f"{'K':>4} {'calls':>7} {'fallback':>9} {'agree':>8} {'sim p/s':>9} {'speedup':>8} {'cpu us/p':>9}")
+    baseline = None
+    for k in [int(x) for x in args.packs.split(",") if x.strip()]:
+        gen = MockGenerator(args.seed, args.overhead_ms, args.prompt_ms_per_token, args.output_ms_per_token,
+                            args.drop_per_item, args.reorder_per_item, args.variant_per_item)
+        calls, fallbacks, agreement, cpu = run(payloads, k, gen)
+        rate = len(payloads) / (gen.simulated_ms / 1000.0)
+        baseline = baseline or rate
+        print(f"{k:>4} {calls:>7} {fallbacks:>9} {agreement:>8.2%} {rate:>9.1f} {rate / baseline:>7.1f}x "
+              f"{cpu / max(1, len(payloads)) * 1e6:>9.1f}")
+
+
+if __name__ == "__main__":
+    main()
@@ -0,0 +1,119 @@
+"""Size and serialization cost of the batch wire formats (wire.py).
+
+Encodes one large batch request and its verdicts in every supported format, decodes them
+again, and reports per format:
+
+  bytes      body size on the wire
+  vs base    size relative to the original format (JSON request, /analyze/batch response
+             echoing every payload, uncompressed)
+  enc ms     time to encode the whole body (including compression)
+  dec ms     time to decode it back (including decompression)
+
+Verdicts are produced with the mock backend's token rules and reasons, so the numbers reflect
+a mock run; Ollama reasons are of similar length. Times are for this Python process: the
+Java side uses the same framing, so relative costs carry over, absolute ones do not.
+
+Usage:
+  python bench_wire.py [--dataset payloads.txt] [--count 100000]
+"""
+import argparse
+import gzip
+import json
+import time
+import zlib
+from typing import Any, Callable, Dict, List, Tuple
+
+from bench_packing import synthetic_payloads
+from mock_backend import REASONS, label as mock_label
+from wire import VerdictEncoder, decode_batch, decode_verdicts, encode_batch
+
+OPTIONS = {"provider": "ollama", "model": "tinyllama", "gpu_enabled": False}
+
+
+def verdict_lines(payloads: List[str]) -> List[Dict[str, Any]]:
+    lines = []
+    for i, p in enumerate(payloads):
+        label = mock_label(p)
+        lines.append({"index": i, "is_malicious": label != "SAFE", "category": label, "reason": REASONS[label]})
+    return lines
+
+
+def stats(lines: List[Dict[str, Any]]) -> Dict[str, Any]:
+    malicious = sum(1 for line in lines if line["is_malicious"])
+    return {"total": len(lines), "malicious": malicious, "safe": len(lines) - malicious, "byCategory": {}}
+
+
+def gunzip_stream(body: bytes) -> bytes:
+    return zlib.decompressobj(31).decompress(body)
+
+
+def stream_body(lines: List[Dict[str, Any]], binary: bool, compress: bool, chunk: int) -> bytes:
+    # Encoded in chunks, as the stream endpoint does when packs complete
+    encoder = VerdictEncoder(binary, compress)
+    parts = [encoder.encode(lines[i:i + chunk]) for i in range(0, len(lines), chunk)]
+    parts.append(encoder.finish())
+    return b"".join(parts)
+
+
+def measure(encode: Callable[[], bytes], decode: Callable[[bytes], Any]) -> Tuple[int, float, float]:
+    t0 = time.perf_counter()
+    body = encode()
+    t1 = time.perf_counter()
+    decode(body)
+    t2 = time.perf_counter()
+    return len(body), (t1 - t0) * 1000, (t2 - t1) * 1000
+
+
+def main():
+    ap = argparse.ArgumentParser(description=__doc__.split("\n\n")[0])
+    ap.add_argument("--dataset", help="file with one payload per line (default: synthetic payloads)")
+    ap.add_argument("--count", type=int, default=100000)
+    ap.add_argument("--chunk", type=int, default=8, help="verdicts per streamed chunk (pack completion)")
+    ap.add_argument("--seed", type=int, default=42)
+    args = ap.parse_args()
+
+    if args.dataset:
+        with open(args.dataset, encoding="utf-8") as f:
+            payloads = [line.rstrip("\n") for line in f if line.strip()][:args.count]
+    else:
+        payloads = synthetic_payloads(args.count, args.seed)
+    lines = verdict_lines(payloads)
+    echoed = [{"payload": p, **{k: v for k, v in line.items() if k != "index"}} for p, line in zip(payloads, lines)]
+    request_json = {"payloads": payloads, **OPTIONS}
+
+    def json_bytes(obj: Any) -> bytes:
+        return json.dumps(obj).encode("utf-8")
+
+    requests = [
+        ("JSON", lambda: json_bytes(request_json), lambda b: json.loads(b)),
+        ("JSON + gzip", lambda: gzip.compress(json_bytes(request_json), 6), lambda b: json.loads(gzip.decompress(b))),
+        ("binary", lambda: encode_batch(payloads, OPTIONS), decode_batch),
+        ("binary + gzip", lambda: gzip.compress(encode_batch(payloads, OPTIONS), 6),
+         lambda b: decode_batch(gzip.decompress(b))),
+    ]
+    responses = [
+        ("JSON, payload echoed", lambda: json_bytes({"results": echoed, "stats": stats(lines)}), json.loads),
+        ("JSON, by index", lambda: json_bytes({"results": lines, "stats": stats(lines)}), json.loads),
+        ("JSON, by index + gzip", lambda: gzip.compress(json_bytes({"results": lines, "stats": stats(lines)}), 6),
+         lambda b: json.loads(gzip.decompress(b))),
+        ("NDJSON stream", lambda: stream_body(lines, False, False, args.chunk),
+         lambda b: [json.loads(line) for line in b.splitlines()]),
+        ("NDJSON stream + gzip", lambda: stream_body(lines, False, True, args.chunk),
+         lambda b: [json.loads(line) for line in gunzip_stream(b).splitlines()]),
+        ("binary stream", lambda: stream_body(lines, True, False, args.chunk), decode_verdicts),
+        ("binary stream + gzip", lambda: stream_body(lines, True, True, args.chunk),
+         lambda b: decode_verdicts(gunzip_stream(b))),
+    ]
+
+    print(f"{len(payloads)} payloads, avg {sum(len(p) for p in payloads) / max(1, len(payloads)):.0f} chars")
+    for title, cases in (("Request", requests), ("Response", responses)):
+        print(f"\n{title:<24} {'bytes':>12} {'vs base':>8} {'enc ms':>8} {'dec ms':>8}")
+        base = None
+        for name, encode, decode in cases:
+            size, enc_ms, dec_ms = measure(encode, decode)
+            base = base or size
+            print(f"{name:<24} {size:>12,} {size / base:>7.0%} {enc_ms:>8.1f} {dec_ms:>8.1f}")
+
+
+if __name__ == "__main__":
+    main()
@@ -1,11 +1,19 @@
-from fastapi import FastAPI
+from fastapi import FastAPI, HTTPException, Request
+from fastapi.responses import JSONResponse, Response, StreamingResponse
 from pydantic import BaseModel, Field
 import uvicorn
 import os
 import httpx
 import asyncio
+import gzip
 import json
-from typing import List, Optional, Dict, Any
+from typing import List, Optional, Dict, Any, Set, Union
+
+import mock_backend
+from packing import build_single_prompt, build_packed_prompt, parse_packed_response, packs
+from scheduling import PrioritySemaphore, current_priority, priority_of
+from wire import (BATCH_CONTENT_TYPE, VerdictEncoder, WireError, accepts, decode_batch, decode_body,
+                  VERDICTS_CONTENT_TYPE)
 
 app = FastAPI()
 
@@ -15,6 +23,12 @@ OLLAMA_HOST = os.getenv("OLLAMA_HOST", "http://host.docker.internal:11434")
 DEFAULT_MODEL = os.getenv("OLLAMA_MODEL", "tinyllama")
 BATCH_SIZE = int(os.getenv("ANALYZER_BATCH_SIZE", "20"))
 REQUEST_TIMEOUT = float(os.getenv("ANALYZER_TIMEOUT_SECONDS", "25"))
+# Payloads classified at once; match Ollama's OLLAMA_NUM_PARALLEL so requests don't just queue there
+CONCURRENCY = int(os.getenv("ANALYZER_CONCURRENCY", os.getenv("OLLAMA_NUM_PARALLEL", "4")))
+# Payloads classified per Ollama generation in batch endpoints; 1 disables packed prompts
+PACK_SIZE = int(os.getenv("ANALYZER_PACK_SIZE", "1"))
+# How often a running /analyze call checks whether its client has disconnected
+DISCONNECT_POLL_SECONDS = 0.05
 
 SUPPORTED_MODELS = [
     "tinyllama",
@@ -35,28 +49,18 @@ class AnalysisResponse(BaseModel):
     is_malicious: bool
     category: str
     reason: str
+    # The model gave no usable answer and this verdict stands in for it (heuristic or default SAFE)
+    degraded: bool = False
 
 class BatchRequest(BaseModel):
     payloads: List[str]
     provider: Optional[str] = None
     model: Optional[str] = None
     gpu_enabled: Optional[bool] = None
-
-class SingleResult(BaseModel):
-    payload: str
-    is_malicious: bool
-    category: str
-    reason: str
-
-class BatchStats(BaseModel):
-    total: int
-    malicious: int
-    safe: int
-    byCategory: Dict[str, int]
-
-class BatchResponse(BaseModel):
-    results: List[SingleResult]
-    stats: BatchStats
+    # Return results by index instead of echoing every payload
+    compact: Optional[bool] = False
+    # live | interactive | bulk; decides the order in which queued payloads get Ollama
+    priority: Optional[str] = None
 
 class PullModelRequest(BaseModel):
     model: str
@@ -96,10 +100,40 @@ async def _track_pull_progress(model: str):
         # Mark as completed if stream ends cleanly
         PULL_STATE[model]["status"] = "completed"
         PULL_STATE[model]["percent"] = 100
+        READY_MODELS.add(model)
     except Exception as e:
         PULL_STATE[model]["status"] = "error"
         PULL_STATE[model]["message"] = str(e)
 
+# Shared, pooled HTTP client and concurrency limit; created lazily inside the running event loop
+_client: Optional[httpx.AsyncClient] = None
+_semaphore: Optional[PrioritySemaphore] = None
+
+# Models known to be present in Ollama, and per-model locks so concurrent misses pull only once
+READY_MODELS: Set[str] = set()
+_model_locks: Dict[str, asyncio.Lock] = {}
+
+def _get_client() -> httpx.AsyncClient:
+    global _client
+    if _client is None:
+        _client = httpx.AsyncClient(
+            timeout=REQUEST_TIMEOUT,
+            limits=httpx.Limits(max_connections=max(1, CONCURRENCY) * 2, max_keepalive_connections=max(1, CONCURRENCY)),
+        )
+    return _client
+
+def _get_semaphore() -> PrioritySemaphore:
+    global _semaphore
+    if _semaphore is None:
+        # Live payloads get the next free slot ahead of queued dataset payloads (scheduling.py)
+        _semaphore = PrioritySemaphore(max(1, CONCURRENCY))
+    return _semaphore
+
+@app.on_event("shutdown")
+async def _close_client():
+    if _client is not None:
+        await _client.aclose()
+
 async def _ollama_generate(prompt: str, model: str, gpu_enabled: Optional[bool] = None) -> str:
     url = f"{OLLAMA_HOST}/api/generate"
     options: Dict[str, Any] = {"temperature": 0}
@@ -117,62 +151,55 @@ async def _ollama_generate(prompt: str, model: str, gpu_enabled: Optional[bool]
         "stream": False,
         "options": options
     }
-    async with httpx.AsyncClient(timeout=REQUEST_TIMEOUT) as client:
-        r = await client.post(url, json=body)
+    r = await _get_client().post(url, json=body)
+    r.raise_for_status()
+    data = r.json()
+    return (data.get("response") or "").strip()
+
+async def _ensure_model(model: str) -> None:
+    """Make sure the model is present in Ollama, pulling it only if it is missing."""
+    if model in READY_MODELS:
+        return
+    lock = _model_locks.setdefault(model, asyncio.Lock())
+    async with lock:
+        if model in READY_MODELS:
+            return
+        client = _get_client()
+        try:
+            r = await client.get(f"{OLLAMA_HOST}/api/tags")
+            r.raise_for_status()
+            names = {m.get("name") or m.get("model") for m in (r.json() or {}).get("models") or []}
+            # Ollama reports untagged models as "<name>:latest"
+            if model in names or f"{model}:latest" in names:
+                READY_MODELS.add(model)
+                return
+        except Exception:
+            pass  # fall through to a pull attempt
+        r = await client.post(f"{OLLAMA_HOST}/api/pull", json={"name": model, "stream": False}, timeout=None)
         r.raise_for_status()
-        data = r.json()
-        return (data.get("response") or "").strip()
-
-async def _ollama_pull_if_needed(model: str) -> Optional[str]:
-    # Try a quick pull; if Ollama supports streaming progress, we don't consume it here; best-effort
-    try:
-        url = f"{OLLAMA_HOST}/api/pull"
-        async with httpx.AsyncClient(timeout=REQUEST_TIMEOUT) as client:
-            await client.post(url, json={"name": model})
-        return None
-    except Exception as e:
-        return str(e)
+        READY_MODELS.add(model)
 
 CATEGORIES = [
     "SQL_INJECTION","XSS","PATH_TRAVERSAL","OTHER","SAFE"
 ]
 
-def _build_prompt(payload: str) -> str:
-    return (
-        "You are a precise web security classifier for HTTP request summaries.\n"
-        "Decide a VERDICT and a CATEGORY.\n\n"
-        "Rules:\n"
-        "- VERDICT must be exactly SAFE or MALICIOUS.\n"
-        "- CATEGORY must be one of:\n"
-        "  - SQL_INJECTION\n  - XSS\n  - PATH_TRAVERSAL\n  - OTHER\n"
-        "- If VERDICT is SAFE, do NOT provide a CATEGORY (leave it blank or omit it).\n"
-        "- If VERDICT is MALICIOUS, CATEGORY should be SQL_INJECTION, XSS, or PATH_TRAVERSAL if it matches; otherwise OTHER.\n"
-        "- Output format MUST be exactly two lines:\n"
-        "  VERDICT:<SAFE|MALICIOUS>\n"
-        "  CATEGORY:<ONE_OF_THE_ABOVE_OR_BLANK_IF_SAFE>\n\n"
-        f"Request:\n{payload}\n"
-    )
+async def _generate(prompt: str, model: str, gpu_enabled: Optional[bool] = None) -> str:
+    """Generate with a ready model, bounded by the shared concurrency limit."""
+    await _ensure_model(model)
+    async with _get_semaphore():
+        try:
+            return await _ollama_generate(prompt, model, gpu_enabled)
+        except httpx.HTTPStatusError as he:
+            if he.response is None or he.response.status_code != 404:
+                raise
+            # Model went missing (e.g. removed or Ollama restarted): forget it, pull again and retry once
+            READY_MODELS.discard(model)
+            await _ensure_model(model)
+            return await _ollama_generate(prompt, model, gpu_enabled)
 
 async def _classify_with_ollama(payload: str, model: str, gpu_enabled: Optional[bool] = None) -> AnalysisResponse:
-    prompt = _build_prompt(payload)
-    # Best-effort auto-pull before generation
-    try:
-        await _ollama_pull_if_needed(model)
-    except Exception:
-        pass
-    try:
-        text = await _ollama_generate(prompt, model, gpu_enabled)
-    except httpx.HTTPStatusError as he:
-        if he.response is not None and he.response.status_code in (400, 404, 500):
-            _ = await _ollama_pull_if_needed(model)
-            try:
-                text = await _ollama_generate(prompt, model)
-            except Exception as e2:
-                return AnalysisResponse(is_malicious=False, category="SAFE", reason=f"Ollama error after pull attempt: {e2}")
-        else:
-            return AnalysisResponse(is_malicious=False, category="SAFE", reason=f"Ollama HTTP error: {he}")
-    except Exception as e:
-        return AnalysisResponse(is_malicious=False, category="SAFE", reason=f"Ollama error: {e}")
+    """Classify with Ollama; transport and HTTP errors are raised to the caller."""
+    text = await _generate(build_single_prompt(payload), model, gpu_enabled)
 
     # Parse strict two-line output
     verdict = None
@@ -222,72 +249,233 @@ async def _classify_with_ollama(payload: str, model: str, gpu_enabled: Optional[
     # Fallback heuristic if parsing failed badly
     pl = payload.lower()
     if any(k in pl for k in ["<script", "javascript:"]):
-        return AnalysisResponse(is_malicious=True, category="XSS", reason="Heuristic: XSS tokens present")
+        return AnalysisResponse(is_malicious=True, category="XSS", reason="Heuristic: XSS tokens present", degraded=True)
     if any(k in pl for k in ["union select", " or 1=1", "' or '1'='1", "-- ", " drop "]):
-        return AnalysisResponse(is_malicious=True, category="SQL_INJECTION", reason="Heuristic: SQLi tokens present")
+        return AnalysisResponse(is_malicious=True, category="SQL_INJECTION", reason="Heuristic: SQLi tokens present", degraded=True)
     if "../" in pl:
-        return AnalysisResponse(is_malicious=True, category="PATH_TRAVERSAL", reason="Heuristic: path traversal")
-    return AnalysisResponse(is_malicious=False, category="SAFE", reason=f"Unclear model response '{text[:40]}', defaulting SAFE")
+        return AnalysisResponse(is_malicious=True, category="PATH_TRAVERSAL", reason="Heuristic: path traversal", degraded=True)
+    return AnalysisResponse(is_malicious=False, category="SAFE", reason=f"Unclear model response '{text[:40]}', defaulting SAFE",
+                            degraded=True)
 
-async def analyze_with_backend(payload: str, provider: Optional[str], model: Optional[str], gpu_enabled: Optional[bool] = None) -> AnalysisResponse:
+def _ollama_model(provider: Optional[str], model: Optional[str]) -> Optional[str]:
+    """The Ollama model to use, or None when the request is served by the mock backend."""
     provider = (provider or ("ollama" if ANALYZER_BACKEND == "ollama" else "mock")).lower()
+    if provider != "ollama" or ANALYZER_BACKEND != "ollama":
+        return None
     model = model or DEFAULT_MODEL
+    # Clamp to supported models if provided
+    return model if model in SUPPORTED_MODELS else DEFAULT_MODEL
 
-    if provider == "ollama" and ANALYZER_BACKEND == "ollama":
-        # Clamp to supported models if provided
-        chosen_model = model if model in SUPPORTED_MODELS else DEFAULT_MODEL
+async def classify(payload: str, provider: Optional[str], model: Optional[str], gpu_enabled: Optional[bool] = None) -> AnalysisResponse:
+    """Classify a payload with the configured backend. Backend errors are raised."""
+    chosen_model = _ollama_model(provider, model)
+    if chosen_model is not None:
         return await _classify_with_ollama(payload, chosen_model, gpu_enabled)
     else:
         # mock backend: simple heuristic with categories
-        pl = payload.lower()
-        if any(k in pl for k in ["<script", "javascript:"]):
-            return AnalysisResponse(is_malicious=True, category="XSS", reason="Mock heuristic: XSS tokens")
-        if any(k in pl for k in ["union select", " or 1=1", "' or '1'='1", "-- ", " drop "]):
-            return AnalysisResponse(is_malicious=True, category="SQL_INJECTION", reason="Mock heuristic: SQLi tokens")
-        if "../" in pl:
-            return AnalysisResponse(is_malicious=True, category="PATH_TRAVERSAL", reason="Mock heuristic: path traversal")
-        return AnalysisResponse(is_malicious=False, category="SAFE", reason="Mock: appears safe")
+        category = mock_backend.label(payload)
+        return AnalysisResponse(is_malicious=category != "SAFE", category=category, reason=mock_backend.REASONS[category])
+
+async def classify_pack(payloads: List[str], provider: Optional[str], model: Optional[str], gpu_enabled: Optional[bool] = None) -> List[Union[AnalysisResponse, Exception]]:
+    """Classify several payloads, with one packed generation where possible.
+
+    Items the packed answer does not cover (or the whole pack, if its generation fails) fall
+    back to single-payload prompts. Each item's result is a verdict or the exception it raised.
+    The mock backend answers packed prompts as well, so the packed path runs without Ollama.
+    """
+    results: List[Optional[Union[AnalysisResponse, Exception]]] = [None] * len(payloads)
+    chosen_model = _ollama_model(provider, model)
+    if len(payloads) > 1:
+        try:
+            prompt = build_packed_prompt(payloads)
+            if chosen_model is not None:
+                text = await _generate(prompt, chosen_model, gpu_enabled)
+            else:
+                text = mock_backend.answer(prompt)
+            for i, verdict in enumerate(parse_packed_response(text, len(payloads))):
+                if verdict is not None:
+                    is_malicious, category = verdict
+                    reason = (f"LLM classified as {category}" if chosen_model is not None
+                              else mock_backend.REASONS.get(category, f"Mock classified as {category}"))
+                    results[i] = AnalysisResponse(is_malicious=is_malicious, category=category,
+                                                  reason=f"{reason} (packed x{len(payloads)})")
+        except Exception as e:
+            print(f"Packed generation for {len(payloads)} payloads failed, falling back to single prompts: {e}")
+
+    missing = [i for i, r in enumerate(results) if r is None]
+    if missing and len(payloads) > 1:
+        print(f"Packed answer missed {len(missing)}/{len(payloads)} items, classifying them one by one")
+    singles = await asyncio.gather(*(classify(payloads[i], provider, model, gpu_enabled) for i in missing),
+                                   return_exceptions=True)
+    for i, res in zip(missing, singles):
+        results[i] = res
+    return results
+
+def backend_error(e: BaseException) -> str:
+    """Describe a backend failure for the "error" field of a response."""
+    if isinstance(e, httpx.HTTPStatusError):
+        return f"Ollama HTTP error: {e}"
+    return f"Ollama error: {e}"
 
 @app.post("/analyze", response_model=AnalysisResponse)
-async def analyze_payload(request: RequestPayload):
-    return await analyze_with_backend(request.payload, request.provider, request.model, request.gpu_enabled)
-
-@app.post("/analyze/batch", response_model=BatchResponse)
-async def analyze_batch(request: BatchRequest):
+async def analyze_payload(request: RequestPayload, http_request: Request):
+    """Classify one payload. If the backend fails, answers 502 with {"error"} instead of a verdict,
+    so the client can fall back or fail open itself."""
+    # Stop classifying if the client gives up, e.g. the losing copy of a hedged request
+    task = asyncio.ensure_future(classify(request.payload, request.provider, request.model, request.gpu_enabled))
+    try:
+        while True:
+            done, _ = await asyncio.wait({task}, timeout=DISCONNECT_POLL_SECONDS)
+            if done:
+                if task.exception() is not None:
+                    return JSONResponse(status_code=502, content={"error": backend_error(task.exception())})
+                return task.result()
+            if await http_request.is_disconnected():
+                task.cancel()
+                # Nobody reads this; 499 is the conventional "client closed request" status
+                return Response(status_code=499)
+    finally:
+        if not task.done():
+            task.cancel()
+
+async def _read_batch(http_request: Request) -> BatchRequest:
+    """Parse a batch request body: JSON or the binary framing (wire.py), optionally gzip-compressed."""
+    try:
+        body = decode_body(await http_request.body(), http_request.headers.get("content-encoding"))
+        content_type = (http_request.headers.get("content-type") or "").split(";", 1)[0].strip().lower()
+        if content_type == BATCH_CONTENT_TYPE:
+            options, payloads = decode_batch(body)
+            return BatchRequest(payloads=payloads, **{k: v for k, v in options.items() if k in ("provider", "model", "gpu_enabled", "priority")})
+        return BatchRequest(**json.loads(body))
+    except WireError as e:
+        raise HTTPException(status_code=400, detail=str(e))
+    except (ValueError, TypeError) as e:
+        # Invalid JSON or fields (pydantic's ValidationError is a ValueError)
+        raise HTTPException(status_code=422, detail=str(e))
+
+def _json_response(content: Dict[str, Any], http_request: Request) -> Response:
+    body = json.dumps(content).encode("utf-8")
+    headers = {"Vary": "Accept-Encoding"}
+    if accepts(http_request.headers.get("accept-encoding"), "gzip"):
+        body = gzip.compress(body, compresslevel=6)
+        headers["Content-Encoding"] = "gzip"
+    return Response(content=body, media_type="application/json", headers=headers)
+
+@app.post("/analyze/batch")
+async def analyze_batch(http_request: Request):
+    """Classify a batch and return all results at once: {"results": [...], "stats": {...}}.
+
+    Each result is {"payload", "is_malicious", "category", "reason", "degraded"}, or {"index", ...} without the
+    payload if the request sets "compact". A payload the backend failed on has {"error"} instead of
+    a verdict, and is counted in stats.errors only. The body may be gzip-compressed or binary (wire.py).
+    """
+    request = await _read_batch(http_request)
     payloads = request.payloads or []
     provider = request.provider
     model = request.model
     gpu_enabled = request.gpu_enabled
+    current_priority.set(priority_of(request.priority))
 
-    all_results: List[SingleResult] = []
+    all_results: List[Dict[str, Any]] = []
     total = len(payloads)
     malicious = 0
     safe = 0
+    errors = 0
     by_cat: Dict[str, int] = {c: 0 for c in CATEGORIES}
 
-    # process in chunks
-    for i in range(0, total, max(1, BATCH_SIZE)):
-        chunk = payloads[i:i + BATCH_SIZE]
-        # Log progress
-        print(f"Processed {min(i + len(chunk), total)}/{total} dataset payloads via LLM... provider={provider or ANALYZER_BACKEND}, model={model or DEFAULT_MODEL}")
-        for p in chunk:
-            res = await analyze_with_backend(p, provider, model, gpu_enabled)
-            all_results.append(SingleResult(payload=p, is_malicious=res.is_malicious, category=res.category, reason=res.reason))
-            if res.is_malicious:
-                malicious += 1
-            else:
-                safe += 1
-            # Count by category
-            cat = (res.category or "OTHER").upper()
-            if cat not in by_cat:
-                by_cat["OTHER"] = by_cat.get("OTHER", 0) + 1
+    # Classify concurrently; the semaphore in the backend bounds the load on Ollama
+    pack_results = await asyncio.gather(*(classify_pack(pack, provider, model, gpu_enabled)
+                                          for _, pack in packs(payloads, PACK_SIZE)))
+    responses = [res for pack in pack_results for res in pack]
+    print(f"Processed {total}/{total} dataset payloads via LLM... provider={provider or ANALYZER_BACKEND}, model={model or DEFAULT_MODEL}")
+    for i, (p, res) in enumerate(zip(payloads, responses)):
+        result: Dict[str, Any] = {"index": i} if request.compact else {"payload": p}
+        all_results.append(result)
+        if not isinstance(res, AnalysisResponse):
+            # Reported, not counted as SAFE, so the client can retry or fall back
+            result["error"] = backend_error(res)
+            errors += 1
+            continue
+        result.update(is_malicious=res.is_malicious, category=res.category, reason=res.reason, degraded=res.degraded)
+        if res.is_malicious:
+            malicious += 1
+        else:
+            safe += 1
+        # Count by category
+        cat = (res.category or "OTHER").upper()
+        if cat not in by_cat:
+            by_cat["OTHER"] = by_cat.get("OTHER", 0) + 1
+        else:
+            by_cat[cat] = by_cat.get(cat, 0) + 1
+
+    return _json_response({
+        "results": all_results,
+        "stats": {"total": total, "malicious": malicious, "safe": safe, "errors": errors, "byCategory": by_cat},
+    }, http_request)
+
+@app.post("/analyze/batch/stream")
+async def analyze_batch_stream(http_request: Request):
+    """Stream one verdict per payload as soon as it is classified.
+
+    By default each verdict is an NDJSON line {"index", "is_malicious", "category", "reason", "degraded"},
+    where index is the payload's position in the request. A payload that fails is reported as
+    {"index", "error"} so the client can retry just that payload instead of counting it as safe.
+    Clients may instead ask for binary verdict frames and/or gzip (see wire.py).
+    """
+    request = await _read_batch(http_request)
+    payloads = request.payloads or []
+    provider = request.provider
+    model = request.model
+    gpu_enabled = request.gpu_enabled
+    encoder = VerdictEncoder(binary=accepts(http_request.headers.get("accept"), VERDICTS_CONTENT_TYPE),
+                             compress=accepts(http_request.headers.get("accept-encoding"), "gzip"))
+
+    async def classify_indexed(offset: int, pack: List[str]) -> List[Dict[str, Any]]:
+        lines = []
+        for i, res in enumerate(await classify_pack(pack, provider, model, gpu_enabled), offset):
+            if isinstance(res, AnalysisResponse):
+                lines.append({"index": i, "is_malicious": res.is_malicious, "category": res.category, "reason": res.reason,
+                              "degraded": res.degraded})
             else:
-                by_cat[cat] = by_cat.get(cat, 0) + 1
-
-    return BatchResponse(
-        results=all_results,
-        stats=BatchStats(total=total, malicious=malicious, safe=safe, byCategory=by_cat)
-    )
+                lines.append({"index": i, "error": backend_error(res)})
+        return lines
+
+    async def verdict_chunks():
+        total = len(payloads)
+        # Set here, since the tasks below are created while the response streams
+        current_priority.set(priority_of(request.priority))
+        tasks = [asyncio.ensure_future(classify_indexed(offset, pack)) for offset, pack in packs(payloads, PACK_SIZE)]
+        try:
+            done = 0
+            # Emit verdicts in completion order; the index tells the client which payload it belongs to
+            for next_done in asyncio.as_completed(tasks):
+                lines = await next_done
+                yield encoder.encode(lines)
+                before = done
+                done += len(lines)
+                if done // max(1, BATCH_SIZE) != before // max(1, BATCH_SIZE) or done == total:
+                    print(f"Streamed {done}/{total} dataset verdicts... provider={provider or ANALYZER_BACKEND}, model={model or DEFAULT_MODEL}")
+            yield encoder.finish()
+        finally:
+            # Client disconnected or stream finished: don't leave classifications running
+            for t in tasks:
+                t.cancel()
+
+    headers = {"Vary": "Accept, Accept-Encoding"}
+    if encoder.content_encoding:
+        headers["Content-Encoding"] = encoder.content_encoding
+    return StreamingResponse(verdict_chunks(), media_type=encoder.media_type, headers=headers)
+
+@app.get("/health")
+async def health():
+    """Health check for load balancing: 200 if this instance can serve requests, 503 if its Ollama is unreachable."""
+    if ANALYZER_BACKEND == "ollama":
+        try:
+            r = await _get_client().get(f"{OLLAMA_HOST}/api/tags", timeout=1.5)
+            r.raise_for_status()
+        except Exception as e:
+            return JSONResponse(status_code=503, content={"status": "unavailable", "backend": ANALYZER_BACKEND, "error": str(e)})
+    return {"status": "ok", "backend": ANALYZER_BACKEND}
 
 @app.get("/models")
 async def get_models():
@@ -296,15 +484,14 @@ async def get_models():
     if ANALYZER_BACKEND != "ollama":
         return {"available": available, "recommended": recommended}
     try:
-        async with httpx.AsyncClient(timeout=REQUEST_TIMEOUT) as client:
-            r = await client.get(f"{OLLAMA_HOST}/api/tags")
-            r.raise_for_status()
-            data = r.json() or {}
-            models = data.get("models") or []
-            for m in models:
-                name = m.get("name") or m.get("model")
-                if isinstance(name, str):
-                    available.append(name)
+        r = await _get_client().get(f"{OLLAMA_HOST}/api/tags")
+        r.raise_for_status()
+        data = r.json() or {}
+        models = data.get("models") or []
+        for m in models:
+            name = m.get("name") or m.get("model")
+            if isinstance(name, str):
+                available.append(name)
     except Exception:
         # Non-fatal; just return what we have
         pass
@@ -0,0 +1,53 @@
+"""The mock backend: token rules standing in for a model when ANALYZER_BACKEND is mock.
+
+It answers the same prompts as the model (packing.py builds them) in the formats the model is
+asked for, so packed prompts, their parsing and the single-prompt fallback run end to end
+without Ollama. Like packing.py it has no dependencies, so the benchmark uses it as-is.
+"""
+import re
+from typing import List
+
+# "[3] <escaped payload>" item lines of a packed prompt
+_ITEM_LINE = re.compile(r"^\[(\d+)\] (.*)$")
+
+REASONS = {
+    "SAFE": "Mock: appears safe",
+    "XSS": "Mock heuristic: XSS tokens",
+    "SQL_INJECTION": "Mock heuristic: SQLi tokens",
+    "PATH_TRAVERSAL": "Mock heuristic: path traversal",
+}
+
+
+def label(payload: str) -> str:
+    """SAFE, or the category the token rules match."""
+    pl = payload.lower()
+    if any(k in pl for k in ["<script", "javascript:"]):
+        return "XSS"
+    if any(k in pl for k in ["union select", " or 1=1", "' or '1'='1", "-- ", " drop "]):
+        return "SQL_INJECTION"
+    if "../" in pl:
+        return "PATH_TRAVERSAL"
+    return "SAFE"
+
+
+def packed_items(prompt: str) -> List[str]:
+    """The (escaped) payloads of a packed prompt, in item order."""
+    items = []
+    for line in prompt.split("\nRequests:\n", 1)[1].splitlines():
+        m = _ITEM_LINE.match(line)
+        if m:
+            items.append(m.group(2))
+    return items
+
+
+def answer(prompt: str) -> str:
+    """Answer a single or packed prompt the way the model is asked to.
+
+    Packed items are labeled as the model sees them, escaped onto one line.
+    """
+    if "\nRequests:\n" in prompt:
+        return "\n".join(f"{n}:{label(item)}" for n, item in enumerate(packed_items(prompt), 1))
+    category = label(prompt.split("\nRequest:\n", 1)[1].rstrip("\n"))
+    if category == "SAFE":
+        return "VERDICT:SAFE\nCATEGORY:"
+    return f"VERDICT:MALICIOUS\nCATEGORY:{category}"
@@ -0,0 +1,104 @@
+"""Packed prompts: classify several payloads with a single LLM generation.
+
+The instruction preamble is the same for every payload, so sending K numbered payloads per
+prompt evaluates it once instead of K times. The model must answer with one "<n>:<LABEL>"
+line per item; anything that cannot be matched to exactly one valid label is returned as
+None so the caller can fall back to a single-payload prompt for that item.
+
+Both prompt formats live here, with no dependencies, so the analyzer and the benchmark
+build exactly the same prompts.
+
+SafeGate stores the verdicts of earlier runs under safegate.llm.prompt-version; bump it whenever
+a prompt here changes, or verdicts of the old prompt keep being served.
+"""
+import re
+from typing import List, Optional, Tuple
+
+MALICIOUS_CATEGORIES = ("SQL_INJECTION", "XSS", "PATH_TRAVERSAL", "OTHER")
+
+# (is_malicious, category)
+Verdict = Tuple[bool, str]
+
+# "3:XSS", "[3] : xss", "3) SAFE", "3 - PATH TRAVERSAL"
+_ANSWER_LINE = re.compile(r"^\s*\[?(\d+)\]?\s*[:.)\-]\s*([A-Z_ ]+?)\s*\.?\s*$")
+
+
+def escape_payload(payload: str) -> str:
+    """Render a payload on one line so item boundaries stay unambiguous."""
+    return payload.replace("\\", "\\\\").replace("\r", "\\r").replace("\n", "\\n")
+
+
+def build_single_prompt(payload: str) -> str:
+    """The original one-payload prompt; its answer is parsed by the analyzer itself."""
+    return (
+        "You are a precise web security classifier for HTTP request summaries.\n"
+        "Decide a VERDICT and a CATEGORY.\n\n"
+        "Rules:\n"
+        "- VERDICT must be exactly SAFE or MALICIOUS.\n"
+        "- CATEGORY must be one of:\n"
+        "  - SQL_INJECTION\n  - XSS\n  - PATH_TRAVERSAL\n  - OTHER\n"
+        "- If VERDICT is SAFE, do NOT provide a CATEGORY (leave it blank or omit it).\n"
+        "- If VERDICT is MALICIOUS, CATEGORY should be SQL_INJECTION, XSS, or PATH_TRAVERSAL if it matches; otherwise OTHER.\n"
+        "- Output format MUST be exactly two lines:\n"
+        "  VERDICT:<SAFE|MALICIOUS>\n"
+        "  CATEGORY:<ONE_OF_THE_ABOVE_OR_BLANK_IF_SAFE>\n\n"
+        f"Request:\n{payload}\n"
+    )
+
+
+def build_packed_prompt(payloads: List[str]) -> str:
+    items = "\n".join(f"[{i}] {escape_payload(p)}" for i, p in enumerate(payloads, 1))
+    return (
+        "You are a precise web security classifier for HTTP request summaries.\n"
+        f"Classify each of the {len(payloads)} numbered requests below.\n\n"
+        "Rules:\n"
+        "- Answer with exactly one line per request, in the same order, and nothing else.\n"
+        "- Each line MUST be exactly: <number>:<LABEL>\n"
+        "- LABEL must be one of: SAFE, SQL_INJECTION, XSS, PATH_TRAVERSAL, OTHER\n"
+        "- Use SAFE for benign requests; use OTHER for malicious requests that match no other label.\n"
+        "- Newlines inside a request are written as \\n.\n\n"
+        f"Requests:\n{items}\n"
+    )
+
+
+def _label_to_verdict(label: str) -> Optional[Verdict]:
+    label = label.strip().replace(" ", "_")
+    if label == "SAFE":
+        return (False, "SAFE")
+    if label in MALICIOUS_CATEGORIES:
+        return (True, label)
+    if label == "MALICIOUS":
+        return (True, "OTHER")
+    return None
+
+
+def parse_packed_response(text: str, count: int) -> List[Optional[Verdict]]:
+    """Parse a packed answer into one verdict per item.
+
+    Items that are missing, out of range, carry an unknown label, or are answered twice with
+    different labels come back as None.
+    """
+    results: List[Optional[Verdict]] = [None] * count
+    conflicting = set()
+    for line in (text or "").splitlines():
+        m = _ANSWER_LINE.match(line.upper())
+        if not m:
+            continue
+        idx = int(m.group(1)) - 1
+        if not 0 <= idx < count:
+            continue
+        verdict = _label_to_verdict(m.group(2))
+        if verdict is None:
+            continue
+        if results[idx] is not None and results[idx] != verdict:
+            conflicting.add(idx)
+        results[idx] = verdict
+    for idx in conflicting:
+        results[idx] = None
+    return results
+
+
+def packs(items: List[str], size: int) -> List[Tuple[int, List[str]]]:
+    """Split items into (offset, pack) pairs of at most size items."""
+    size = max(1, size)
+    return [(i, items[i:i + size]) for i in range(0, len(items), size)]
@@ -0,0 +1,63 @@
+"""Priority scheduling of Ollama generations.
+
+Live /analyze calls and dataset batches share the analyzer's generation slots. A batch queues one
+waiter per payload, so with a FIFO semaphore a live request would wait behind a whole chunk.
+PrioritySemaphore hands each freed slot to the highest priority waiter instead; the priority of
+the current request is carried in a context variable, which tasks created for it inherit.
+"""
+import asyncio
+import contextvars
+import heapq
+import itertools
+from typing import List, Optional, Tuple
+
+# Lower runs first; matches the priority names the SafeGate backend sends
+PRIORITIES = {"live": 0, "interactive": 1, "bulk": 2}
+
+current_priority: contextvars.ContextVar = contextvars.ContextVar("current_priority", default=PRIORITIES["live"])
+
+
+def priority_of(name: Optional[str], default: str = "interactive") -> int:
+    """Map a priority name to its rank; unknown or missing names get the default."""
+    return PRIORITIES.get((name or "").strip().lower(), PRIORITIES[default])
+
+
+class PrioritySemaphore:
+    """Semaphore that wakes waiters by priority, then in arrival order."""
+
+    def __init__(self, value: int):
+        self._value = value
+        self._waiters: List[Tuple[int, int, asyncio.Future]] = []
+        self._sequence = itertools.count()
+
+    async def acquire(self, priority: Optional[int] = None) -> None:
+        if priority is None:
+            priority = current_priority.get()
+        # Freed slots go straight to waiters, so a free slot means nobody is waiting
+        if self._value > 0:
+            self._value -= 1
+            return
+        fut = asyncio.get_running_loop().create_future()
+        heapq.heappush(self._waiters, (priority, next(self._sequence), fut))
+        try:
+            await fut
+        except asyncio.CancelledError:
+            # Granted just before the cancellation: pass the slot on
+            if fut.done() and not fut.cancelled():
+                self.release()
+            raise
+
+    def release(self) -> None:
+        while self._waiters:
+            _, _, fut = heapq.heappop(self._waiters)
+            # Cancelled waiters are skipped rather than removed when they give up
+            if not fut.done():
+                fut.set_result(None)
+                return
+        self._value += 1
+
+    async def __aenter__(self) -> None:
+        await self.acquire()
+
+    async def __aexit__(self, exc_type, exc, tb) -> None:
+        self.release()
@@ -0,0 +1,183 @@
+"""Compact wire formats for batch analysis.
+
+Besides JSON, the batch endpoints accept and produce a length-prefixed binary framing, and
+gzip-compressed bodies. Both are negotiated with standard headers, so JSON clients keep working:
+
+  request   Content-Type: application/x-safegate-batch   binary batch request (below)
+            Content-Encoding: gzip                       gzip-compressed request body
+  response  Accept: application/x-safegate-verdicts      binary verdict frames (below)
+            Accept-Encoding: gzip                        gzip-compressed response body
+
+All integers are unsigned big-endian and all strings UTF-8.
+
+Batch request:
+  "SGB1"
+  u32 options length, options JSON ({"provider", "model", "gpu_enabled"})
+  u32 payload count
+  per payload: u32 byte length, payload bytes
+
+Verdict stream:
+  "SGV1"
+  per verdict: u32 index, u8 flags (1 = malicious, 2 = error, 4 = degraded), u8 category code,
+               u16 text length, text (the reason, or the error message if flag 2 is set)
+
+Category codes are positions in CATEGORY_CODES; unknown categories are sent as OTHER.
+"""
+import gzip
+import json
+import struct
+import zlib
+from typing import Any, Dict, Iterable, List, Optional, Tuple
+
+BATCH_CONTENT_TYPE = "application/x-safegate-batch"
+VERDICTS_CONTENT_TYPE = "application/x-safegate-verdicts"
+NDJSON_CONTENT_TYPE = "application/x-ndjson"
+
+BATCH_MAGIC = b"SGB1"
+VERDICTS_MAGIC = b"SGV1"
+
+CATEGORY_CODES = ["SAFE", "SQL_INJECTION", "XSS", "PATH_TRAVERSAL", "OTHER"]
+_CODE_OF = {c: i for i, c in enumerate(CATEGORY_CODES)}
+
+FLAG_MALICIOUS = 1
+FLAG_ERROR = 2
+FLAG_DEGRADED = 4
+
+_U32 = struct.Struct(">I")
+_FRAME = struct.Struct(">IBBH")
+_MAX_TEXT = 0xFFFF
+
+
+class WireError(ValueError):
+    """A request body that does not follow the declared format."""
+
+
+def accepts(header: Optional[str], token: str) -> bool:
+    """Whether a comma-separated Accept/Accept-Encoding header lists the token (q-values ignored)."""
+    if not header:
+        return False
+    return any(part.split(";", 1)[0].strip().lower() == token for part in header.split(","))
+
+
+def decode_body(body: bytes, content_encoding: Optional[str]) -> bytes:
+    encoding = (content_encoding or "").strip().lower()
+    if encoding in ("", "identity"):
+        return body
+    if encoding == "gzip":
+        try:
+            return gzip.decompress(body)
+        except (OSError, EOFError, zlib.error) as e:
+            raise WireError(f"invalid gzip body: {e}")
+    raise WireError(f"unsupported content encoding: {content_encoding}")
+
+
+def encode_batch(payloads: List[str], options: Dict[str, Any]) -> bytes:
+    opts = json.dumps(options).encode("utf-8")
+    parts = [BATCH_MAGIC, _U32.pack(len(opts)), opts, _U32.pack(len(payloads))]
+    for p in payloads:
+        data = p.encode("utf-8", errors="replace")
+        parts.append(_U32.pack(len(data)))
+        parts.append(data)
+    return b"".join(parts)
+
+
+def decode_batch(body: bytes) -> Tuple[Dict[str, Any], List[str]]:
+    """Returns (options, payloads) of a binary batch request."""
+    if body[:4] != BATCH_MAGIC:
+        raise WireError("not a binary batch request")
+    try:
+        off = 4
+        (n,) = _U32.unpack_from(body, off)
+        off += 4
+        options = json.loads(body[off:off + n].decode("utf-8")) if n else {}
+        off += n
+        (count,) = _U32.unpack_from(body, off)
+        off += 4
+        payloads = []
+        for _ in range(count):
+            (n,) = _U32.unpack_from(body, off)
+            off += 4
+            if off + n > len(body):
+                raise WireError("truncated payload")
+            payloads.append(body[off:off + n].decode("utf-8", errors="replace"))
+            off += n
+    except (struct.error, ValueError) as e:
+        if isinstance(e, WireError):
+            raise
+        raise WireError(f"malformed binary batch request: {e}")
+    if not isinstance(options, dict):
+        raise WireError("batch options must be a JSON object")
+    return options, payloads
+
+
+def _text(value: Optional[str]) -> bytes:
+    data = (value or "").encode("utf-8", errors="replace")
+    if len(data) > _MAX_TEXT:
+        # Cut on a character boundary
+        data = data[:_MAX_TEXT].decode("utf-8", errors="ignore").encode("utf-8")
+    return data
+
+
+def encode_verdict(line: Dict[str, Any]) -> bytes:
+    """One binary frame for a verdict line as produced for NDJSON ({"index", ...})."""
+    if "error" in line:
+        text = _text(str(line["error"]))
+        return _FRAME.pack(line["index"], FLAG_ERROR, _CODE_OF["OTHER"], len(text)) + text
+    flags = (FLAG_MALICIOUS if line.get("is_malicious") else 0) | (FLAG_DEGRADED if line.get("degraded") else 0)
+    code = _CODE_OF.get(str(line.get("category") or "OTHER").upper(), _CODE_OF["OTHER"])
+    text = _text(line.get("reason"))
+    return _FRAME.pack(line["index"], flags, code, len(text)) + text
+
+
+def decode_verdicts(body: bytes) -> List[Dict[str, Any]]:
+    """Parses a complete binary verdict stream back into verdict lines (used by the benchmark)."""
+    if body[:4] != VERDICTS_MAGIC:
+        raise WireError("not a binary verdict stream")
+    off = 4
+    lines = []
+    while off < len(body):
+        index, flags, code, n = _FRAME.unpack_from(body, off)
+        off += _FRAME.size
+        text = body[off:off + n].decode("utf-8")
+        off += n
+        if flags & FLAG_ERROR:
+            lines.append({"index": index, "error": text})
+        else:
+            lines.append({"index": index, "is_malicious": bool(flags & FLAG_MALICIOUS),
+                          "category": CATEGORY_CODES[code] if code < len(CATEGORY_CODES) else "OTHER",
+                          "reason": text, "degraded": bool(flags & FLAG_DEGRADED)})
+    return lines
+
+
+class VerdictEncoder:
+    """Encodes verdict lines for a streamed response in the negotiated format and encoding.
+
+    Each call to encode() returns the bytes to send now; with gzip, the compressor is flushed
+    with Z_SYNC_FLUSH so the client can decode every chunk as soon as it arrives.
+    """
+
+    def __init__(self, binary: bool, compress: bool):
+        self.binary = binary
+        self.media_type = VERDICTS_CONTENT_TYPE if binary else NDJSON_CONTENT_TYPE
+        self.content_encoding = "gzip" if compress else None
+        self._compressor = zlib.compressobj(6, zlib.DEFLATED, 31) if compress else None
+        self._started = False
+
+    def encode(self, lines: Iterable[Dict[str, Any]]) -> bytes:
+        if self.binary:
+            data = b"".join(encode_verdict(line) for line in lines)
+            if not self._started:
+                data = VERDICTS_MAGIC + data
+        else:
+            data = "".join(json.dumps(line) + "\n" for line in lines).encode("utf-8")
+        self._started = True
+        if self._compressor is None:
+            return data
+        return self._compressor.compress(data) + self._compressor.flush(zlib.Z_SYNC_FLUSH)
+
+    def finish(self) -> bytes:
+        if self._compressor is None:
+            return VERDICTS_MAGIC if self.binary and not self._started else b""
+        data = VERDICTS_MAGIC if self.binary and not self._started else b""
+        self._started = True
+        return self._compressor.compress(data) + self._compressor.flush()
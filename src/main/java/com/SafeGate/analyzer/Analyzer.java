@@ -0,0 +1,77 @@
+package com.SafeGate.analyzer;
+
+import com.SafeGate.model.AnalysisVerdict;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Classifies payloads as malicious or safe.
+ * <p>
+ * Implementations throw on failure instead of returning a safe verdict; callers decide whether
+ * to fail open (the WAF filter) or to retry (dataset runs). Verdict indexes refer to the
+ * payload's position in the request.
+ */
+public interface Analyzer {
+
+    /**
+     * @return The provider name this analyzer was selected by, e.g. "ollama" or "heuristic".
+     */
+    String name();
+
+    /**
+     * Classifies a single payload.
+     *
+     * @param payload The normalized request payload.
+     * @return The verdict, with index 0.
+     */
+    AnalysisVerdict analyze(String payload);
+
+    /**
+     * Classifies a batch of payloads, handing each verdict to the consumer as soon as it is
+     * available. Verdicts may arrive in any order; a verdict with an error marks a payload that
+     * could not be classified.
+     *
+     * @param payloads The payloads to classify.
+     * @param consumer Receives each verdict on the calling thread.
+     * @return The number of verdicts delivered.
+     */
+    default int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+        for (int i = 0; i < payloads.size(); i++) {
+            AnalysisVerdict verdict;
+            try {
+                verdict = analyze(payloads.get(i));
+            } catch (RuntimeException e) {
+                verdict = new AnalysisVerdict();
+                verdict.setError(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+            }
+            verdict.setIndex(i);
+            consumer.accept(verdict);
+        }
+        return payloads.size();
+    }
+
+    /**
+     * Classifies a batch of payloads.
+     *
+     * @param payloads The payloads to classify.
+     * @return One verdict per payload, in request order.
+     * @throws IllegalStateException if any payload could not be classified.
+     */
+    default List<AnalysisVerdict> analyzeBatch(List<String> payloads) {
+        AnalysisVerdict[] verdicts = new AnalysisVerdict[payloads.size()];
+        analyzeBatchStream(payloads, verdict -> {
+            if (verdict.getError() == null && verdict.getIndex() >= 0 && verdict.getIndex() < verdicts.length) {
+                verdicts[verdict.getIndex()] = verdict;
+            }
+        });
+        for (int i = 0; i < verdicts.length; i++) {
+            if (verdicts[i] == null) {
+                throw new IllegalStateException(name() + " analyzer returned no verdict for payload " + i);
+            }
+        }
+        return new ArrayList<>(Arrays.asList(verdicts));
+    }
+}
@@ -0,0 +1,194 @@
+package com.SafeGate.analyzer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One analyzer service instance of an {@link EndpointPool}, with the load and health state used
+ * to route requests to it.
+ * <p>
+ * Latency is tracked per payload as an exponentially weighted moving average, so single-payload
+ * calls and large batches can be compared. An average above the pool's mean fades towards the
+ * mean while no new samples arrive, so an endpoint that was slow once is tried again after a
+ * while instead of being starved, without ever looking faster than the others.
+ * <p>
+ * An endpoint is ejected after consecutive failures, for a period that doubles with each
+ * ejection, until a health check or the end of the period readmits it.
+ */
+public class AnalyzerEndpoint {
+
+    // Weight of the newest latency sample
+    private static final double EWMA_ALPHA = 0.3;
+
+    // Time for a latency sample to fade to 1/e without newer ones
+    private static final double DECAY_NANOS = 10_000_000_000.0;
+
+    private static final long MIN_EJECTION_MS = 5_000;
+    private static final long MAX_EJECTION_MS = 60_000;
+
+    private final String analyzeUrl;
+    private final String baseUrl;
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    // Milliseconds per payload; 0 until the first successful call
+    private volatile double ewmaMillis;
+    private volatile long lastSampleNanos;
+    private volatile long ejectedUntil;
+
+    private int consecutiveFailures;
+    private int ejections;
+    private long requests;
+    private long failures;
+
+    /**
+     * @param url The analyzer's /analyze endpoint, or its base URL.
+     */
+    public AnalyzerEndpoint(String url) {
+        String trimmed = url.trim().replaceAll("/+$", "");
+        this.baseUrl = trimmed.endsWith("/analyze") ? trimmed.substring(0, trimmed.length() - "/analyze".length()) : trimmed;
+        this.analyzeUrl = baseUrl + "/analyze";
+    }
+
+    public String getAnalyzeUrl() {
+        return analyzeUrl;
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    public double getEwmaMillis() {
+        return ewmaMillis;
+    }
+
+    /**
+     * @return Whether the endpoint may receive requests at the given time (not ejected).
+     */
+    public boolean isAvailable(long nowMillis) {
+        return nowMillis >= ejectedUntil;
+    }
+
+    public long getEjectedUntil() {
+        return ejectedUntil;
+    }
+
+    /**
+     * Expected cost of sending one more request: the requests already outstanding plus this one,
+     * times the latency per payload. Endpoints without a latency sample yet (new or readmitted)
+     * are assumed to be as fast as the pool's mean, so they get their share of requests rather
+     * than every request until their first call returns.
+     *
+     * @param meanMillis The mean latency per payload of the pool's endpoints that have a sample,
+     *                   or 0 if none has.
+     */
+    double score(double meanMillis) {
+        double latency = ewmaMillis;
+        if (latency == 0) {
+            latency = meanMillis;
+        } else if (latency > meanMillis) {
+            double decayed = latency * Math.exp(-(System.nanoTime() - lastSampleNanos) / DECAY_NANOS);
+            latency = Math.max(decayed, meanMillis);
+        }
+        return (outstanding.get() + 1) * latency;
+    }
+
+    void started() {
+        outstanding.incrementAndGet();
+        synchronized (this) {
+            requests++;
+        }
+    }
+
+    /**
+     * Records a successful call.
+     *
+     * @param millis   The call duration.
+     * @param payloads The number of payloads the call classified.
+     */
+    void succeeded(long millis, int payloads) {
+        outstanding.decrementAndGet();
+        double sample = (double) Math.max(1, millis) / Math.max(1, payloads);
+        synchronized (this) {
+            ewmaMillis = ewmaMillis == 0 ? sample : EWMA_ALPHA * sample + (1 - EWMA_ALPHA) * ewmaMillis;
+            lastSampleNanos = System.nanoTime();
+            consecutiveFailures = 0;
+        }
+    }
+
+    /**
+     * Records a call that neither succeeded nor points at a problem with the endpoint (e.g. a
+     * rejected request).
+     */
+    void released() {
+        outstanding.decrementAndGet();
+    }
+
+    /**
+     * Records a failed call.
+     *
+     * @return Whether the failure ejected the endpoint.
+     */
+    boolean failed(int failureThreshold) {
+        outstanding.decrementAndGet();
+        synchronized (this) {
+            failures++;
+            if (++consecutiveFailures < failureThreshold || !isAvailable(System.currentTimeMillis())) {
+                return false;
+            }
+            eject();
+            return true;
+        }
+    }
+
+    /**
+     * Records a health check: a healthy endpoint is readmitted, an unhealthy one ejected.
+     *
+     * @return Whether the endpoint's availability changed.
+     */
+    boolean checked(boolean healthy) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            boolean wasAvailable = isAvailable(now);
+            if (healthy) {
+                consecutiveFailures = 0;
+                ejections = 0;
+                ejectedUntil = 0;
+                return !wasAvailable;
+            }
+            if (wasAvailable) {
+                eject();
+                return true;
+            }
+            return false;
+        }
+    }
+
+    private void eject() {
+        long period = Math.min(MAX_EJECTION_MS, MIN_EJECTION_MS << Math.min(ejections, 10));
+        ejections++;
+        consecutiveFailures = 0;
+        // A readmitted endpoint starts over with no latency sample
+        ewmaMillis = 0;
+        ejectedUntil = System.currentTimeMillis() + period;
+    }
+
+    /**
+     * @return The endpoint's state for the status API.
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("url", analyzeUrl);
+        state.put("available", isAvailable(System.currentTimeMillis()));
+        state.put("outstanding", outstanding.get());
+        state.put("ewmaMillisPerPayload", Math.round(ewmaMillis * 100) / 100.0);
+        state.put("requests", requests);
+        state.put("failures", failures);
+        state.put("ejectedUntil", ejectedUntil > System.currentTimeMillis() ? ejectedUntil : null);
+        return state;
+    }
+}
@@ -0,0 +1,207 @@
+package com.SafeGate.analyzer;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admits analyzer calls into the slots of a {@link ConcurrencyLimiter} by priority.
+ * <ul>
+ *     <li>Live calls may use every slot; interactive and bulk calls leave a reserved share of the
+ *     limit free for them, so a dataset run can never take all of the analyzer.</li>
+ *     <li>Waiting calls are admitted highest priority first. Bulk work keeps the slots it holds
+ *     until its chunk completes, and the freed slots then go to higher priority work first, so
+ *     bulk work is preempted at chunk boundaries.</li>
+ *     <li>Waiting calls of the same priority are admitted by weighted fair queuing between their
+ *     flows (jobs): each call is tagged with a virtual finish time of its flow's previous tag plus
+ *     its payloads divided by the flow's weight, and the lowest tag goes first.</li>
+ * </ul>
+ */
+public class AnalyzerScheduler {
+
+    private static final class Waiter {
+        final AnalyzerWork.Priority priority;
+        final double start;
+        final double finish;
+        final long sequence;
+        boolean granted;
+
+        Waiter(AnalyzerWork.Priority priority, double start, double finish, long sequence) {
+            this.priority = priority;
+            this.start = start;
+            this.finish = finish;
+            this.sequence = sequence;
+        }
+    }
+
+    private final ConcurrencyLimiter limiter;
+    private final double liveReserve;
+
+    private final PriorityQueue<Waiter> waiting = new PriorityQueue<>((a, b) -> {
+        int byPriority = a.priority.compareTo(b.priority);
+        if (byPriority != 0) {
+            return byPriority;
+        }
+        int byFinish = Double.compare(a.finish, b.finish);
+        return byFinish != 0 ? byFinish : Long.compare(a.sequence, b.sequence);
+    });
+
+    // Virtual finish tag of each flow's latest call, and the virtual time of the last admission
+    private final Map<String, Double> flowFinish = new HashMap<>();
+    private double virtualTime;
+    private long sequence;
+
+    /**
+     * @param liveReserve The share of the limit only live calls may use, e.g. 0.2.
+     */
+    public AnalyzerScheduler(ConcurrencyLimiter limiter, double liveReserve) {
+        this.limiter = limiter;
+        this.liveReserve = Math.max(0, Math.min(1, liveReserve));
+    }
+
+    public ConcurrencyLimiter getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Takes a slot if one is free for the priority and no call of higher or equal priority is
+     * waiting for it.
+     *
+     * @return Whether the call may proceed; if so, it must be followed by exactly one of
+     *         {@link #onSuccess}, {@link #onDropped} or {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire(AnalyzerWork.Priority priority) {
+        Waiter head = waiting.peek();
+        if ((head == null || head.priority.compareTo(priority) > 0) && hasSlot(priority) && limiter.tryAcquire()) {
+            return true;
+        }
+        limiter.countRejected();
+        return false;
+    }
+
+    /**
+     * Takes a slot, queueing for up to the timeout.
+     *
+     * @param payloads The payloads the call classifies, its cost in fair queuing.
+     * @return Whether a slot was taken.
+     */
+    public synchronized boolean acquire(AnalyzerWork.Priority priority, String flow, int weight, int payloads,
+                                        long timeoutMillis) throws InterruptedException {
+        double start = Math.max(virtualTime, flowFinish.getOrDefault(flow, 0.0));
+        double finish = start + (double) Math.max(1, payloads) / Math.max(1, weight);
+        flowFinish.put(flow, finish);
+        Waiter waiter = new Waiter(priority, start, finish, sequence++);
+        waiting.add(waiter);
+        dispatch();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        try {
+            while (!waiter.granted) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    withdraw(waiter, flow);
+                    limiter.countRejected();
+                    dispatch();
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            if (waiter.granted) {
+                // Admitted just before the interrupt: hand the slot on
+                limiter.onIgnored();
+                dispatch();
+            } else {
+                withdraw(waiter, flow);
+                dispatch();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Removes a call that gave up waiting. If it is its flow's latest call, the flow's tag goes
+     * back to the call's start, so the flow is not queued behind others for work it never did.
+     */
+    private void withdraw(Waiter waiter, String flow) {
+        waiting.remove(waiter);
+        Double finish = flowFinish.get(flow);
+        if (finish != null && finish == waiter.finish) {
+            flowFinish.put(flow, waiter.start);
+        }
+    }
+
+    public synchronized void onSuccess(AnalyzerWork.Priority priority, long nanos, int payloads) {
+        limiter.onSuccess(priority, nanos, payloads);
+        dispatch();
+    }
+
+    public synchronized void onDropped(long nanos) {
+        limiter.onDropped(nanos);
+        dispatch();
+    }
+
+    public synchronized void onIgnored() {
+        limiter.onIgnored();
+        dispatch();
+    }
+
+    private boolean hasSlot(AnalyzerWork.Priority priority) {
+        int limit = limiter.getLimit();
+        int capacity = priority == AnalyzerWork.Priority.LIVE ? limit : limit - reserved(limit);
+        return limiter.getInFlight() < capacity;
+    }
+
+    private int reserved(int limit) {
+        if (liveReserve <= 0 || limit < 2) {
+            return 0;
+        }
+        return Math.max(1, (int) Math.round(limit * liveReserve));
+    }
+
+    /**
+     * Admits waiting calls, in queue order, while their priority has a free slot. The head blocks
+     * the calls behind it, so lower priority work cannot overtake.
+     */
+    private void dispatch() {
+        boolean admitted = false;
+        while (!waiting.isEmpty() && hasSlot(waiting.peek().priority) && limiter.tryAcquire()) {
+            Waiter next = waiting.poll();
+            next.granted = true;
+            virtualTime = Math.max(virtualTime, next.start);
+            admitted = true;
+        }
+        if (admitted) {
+            notifyAll();
+            // Flows that fell behind the virtual time start over from it anyway
+            Iterator<Map.Entry<String, Double>> flows = flowFinish.entrySet().iterator();
+            while (flows.hasNext()) {
+                if (flows.next().getValue() <= virtualTime) {
+                    flows.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The limiter's state plus the calls queued per priority, for the status API.
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> state = new LinkedHashMap<>(limiter.snapshot());
+        Map<AnalyzerWork.Priority, Integer> queued = new EnumMap<>(AnalyzerWork.Priority.class);
+        for (AnalyzerWork.Priority priority : AnalyzerWork.Priority.values()) {
+            queued.put(priority, 0);
+        }
+        for (Waiter waiter : waiting) {
+            queued.merge(waiter.priority, 1, Integer::sum);
+        }
+        state.put("liveReserve", reserved(limiter.getLimit()));
+        state.put("queued", queued);
+        return state;
+    }
+}
@@ -0,0 +1,121 @@
+package com.SafeGate.analyzer;
+
+import com.SafeGate.model.AnalysisVerdict;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.MediaType;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The compact binary framing of analyzer batch requests and verdict streams; see analyzer/wire.py
+ * for the layout. All integers are unsigned big-endian and all strings UTF-8.
+ */
+public final class AnalyzerWire {
+
+    public static final MediaType BATCH_TYPE = MediaType.parseMediaType("application/x-safegate-batch");
+    public static final MediaType VERDICTS_TYPE = MediaType.parseMediaType("application/x-safegate-verdicts");
+    public static final MediaType NDJSON_TYPE = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final byte[] BATCH_MAGIC = "SGB1".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] VERDICTS_MAGIC = "SGV1".getBytes(StandardCharsets.US_ASCII);
+
+    // Category codes, by position
+    private static final String[] CATEGORIES = {"SAFE", "SQL_INJECTION", "XSS", "PATH_TRAVERSAL", "OTHER"};
+
+    private static final int FLAG_MALICIOUS = 1;
+    private static final int FLAG_ERROR = 2;
+    private static final int FLAG_DEGRADED = 4;
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * The wire format requested from the analyzer service.
+     *
+     * @param binary Send binary batch requests and ask for binary verdict frames instead of JSON/NDJSON.
+     * @param gzip   Compress request bodies and ask for compressed responses.
+     */
+    public record Options(boolean binary, boolean gzip) {
+
+        /** Plain JSON, understood by every analyzer version. */
+        public static final Options JSON = new Options(false, false);
+
+        /**
+         * @param format      "binary" or "json".
+         * @param compression "gzip" or "none".
+         */
+        public static Options of(String format, String compression) {
+            return new Options("binary".equalsIgnoreCase(format), "gzip".equalsIgnoreCase(compression));
+        }
+    }
+
+    private AnalyzerWire() {
+    }
+
+    /**
+     * Writes a binary batch request. The stream is flushed but not closed.
+     */
+    public static void writeBatch(OutputStream body, Map<String, Object> options, List<String> payloads) throws IOException {
+        DataOutputStream out = new DataOutputStream(body);
+        byte[] json = MAPPER.writeValueAsBytes(options);
+        out.write(BATCH_MAGIC);
+        out.writeInt(json.length);
+        out.write(json);
+        out.writeInt(payloads.size());
+        for (String payload : payloads) {
+            byte[] data = (payload != null ? payload : "").getBytes(StandardCharsets.UTF_8);
+            out.writeInt(data.length);
+            out.write(data);
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads binary verdict frames, handing each verdict to the consumer as soon as its frame
+     * has arrived.
+     *
+     * @return The number of verdicts read.
+     * @throws IOException if the stream is not a verdict stream or ends within a frame.
+     */
+    public static int readVerdicts(InputStream body, Consumer<AnalysisVerdict> consumer) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(body));
+        byte[] magic = new byte[VERDICTS_MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, VERDICTS_MAGIC)) {
+            throw new IOException("Analyzer response is not a binary verdict stream");
+        }
+
+        int count = 0;
+        int first;
+        while ((first = in.read()) >= 0) {
+            int index = (first << 24) | (in.readUnsignedByte() << 16) | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int code = in.readUnsignedByte();
+            byte[] text = new byte[in.readUnsignedShort()];
+            in.readFully(text);
+
+            AnalysisVerdict verdict = new AnalysisVerdict();
+            verdict.setIndex(index);
+            if ((flags & FLAG_ERROR) != 0) {
+                verdict.setError(new String(text, StandardCharsets.UTF_8));
+            } else {
+                verdict.setMalicious((flags & FLAG_MALICIOUS) != 0);
+                verdict.setCategory(code < CATEGORIES.length ? CATEGORIES[code] : "OTHER");
+                verdict.setReason(new String(text, StandardCharsets.UTF_8));
+                verdict.setDegraded((flags & FLAG_DEGRADED) != 0);
+            }
+            consumer.accept(verdict);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,95 @@
+package com.SafeGate.analyzer;
+
+import java.util.Locale;
+import java.util.function.Supplier;
+
+/**
+ * The kind of work an analyzer call is made for, which decides how {@link AnalyzerScheduler}
+ * admits it and how the analyzer service queues it.
+ * <p>
+ * Work is bound to the calling thread with {@link #run}, so it reaches every analyzer of a
+ * fallback chain without being passed through the {@link Analyzer} interface. Calls made outside
+ * {@link #run} are treated as live when single-payload and interactive when batched.
+ */
+public final class AnalyzerWork {
+
+    /**
+     * Scheduling classes, highest priority first.
+     */
+    public enum Priority {
+        /** Requests checked by the WAF filter. */
+        LIVE,
+        /** Dataset runs a user is waiting for. */
+        INTERACTIVE,
+        /** Background dataset jobs. */
+        BULK;
+
+        /**
+         * @return The name the analyzer service knows the priority by, e.g. "bulk".
+         */
+        public String wireName() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final ThreadLocal<AnalyzerWork> CURRENT = new ThreadLocal<>();
+
+    private final Priority priority;
+    private final String flow;
+    private final int weight;
+
+    /**
+     * @param priority The scheduling class.
+     * @param flow     The job the work belongs to; jobs of the same class share capacity fairly.
+     * @param weight   The job's share relative to other jobs of the same class.
+     */
+    public AnalyzerWork(Priority priority, String flow, int weight) {
+        this.priority = priority;
+        this.flow = flow;
+        this.weight = Math.max(1, weight);
+    }
+
+    public static AnalyzerWork interactive(String flow) {
+        return new AnalyzerWork(Priority.INTERACTIVE, flow, 1);
+    }
+
+    public static AnalyzerWork bulk(String flow) {
+        return new AnalyzerWork(Priority.BULK, flow, 1);
+    }
+
+    public Priority getPriority() {
+        return priority;
+    }
+
+    public String getFlow() {
+        return flow;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return The work bound to the calling thread, or null outside {@link #run}.
+     */
+    public static AnalyzerWork current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Runs the call with the work bound to the calling thread.
+     */
+    public static <T> T run(AnalyzerWork work, Supplier<T> call) {
+        AnalyzerWork previous = CURRENT.get();
+        CURRENT.set(work);
+        try {
+            return call.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.SafeGate.analyzer;
+
+import com.SafeGate.model.LLMConfig;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Builds the {@link Analyzer} selected by {@link LLMConfig#getProvider()}.
+ * <p>
+ * The provider is a single name or a comma-separated fallback chain:
+ * <ul>
+ *     <li>"heuristic" - the in-process {@link HeuristicAnalyzer}, no analyzer URL needed</li>
+ *     <li>any other name (e.g. "ollama", "mock") - the analyzer service at the configured URL(s)</li>
+ *     <li>"ollama,heuristic" - the analyzer service, falling back to the heuristic per payload</li>
+ * </ul>
+ */
+public final class Analyzers {
+
+    private Analyzers() {
+    }
+
+    public static Analyzer forConfig(LLMConfig config, RestTemplate restTemplate) {
+        return forConfig(config, restTemplate, AnalyzerWire.Options.JSON);
+    }
+
+    /**
+     * @param wire The wire format analyzer service backends request for streamed batches.
+     */
+    public static Analyzer forConfig(LLMConfig config, RestTemplate restTemplate, AnalyzerWire.Options wire) {
+        return forConfig(config, restTemplate, wire, EndpointPool.of(config));
+    }
+
+    /**
+     * @param pool The analyzer service instances shared by all analyzer service backends of the chain.
+     */
+    public static Analyzer forConfig(LLMConfig config, RestTemplate restTemplate, AnalyzerWire.Options wire,
+                                     EndpointPool pool) {
+        List<Analyzer> chain = new ArrayList<>();
+        for (String provider : providers(config.getProvider())) {
+            chain.add(HeuristicAnalyzer.NAME.equals(provider)
+                    ? new HeuristicAnalyzer()
+                    : new HttpAnalyzer(restTemplate, config, provider, wire, pool));
+        }
+        return chain.size() == 1 ? chain.get(0) : new FallbackAnalyzer(chain);
+    }
+
+    /**
+     * @return Whether the provider chain includes a provider served by the analyzer service.
+     */
+    public static boolean requiresUrl(String provider) {
+        return providers(provider).stream().anyMatch(p -> !HeuristicAnalyzer.NAME.equals(p));
+    }
+
+    /**
+     * @return Whether the provider chain includes the named provider.
+     */
+    public static boolean includes(String provider, String name) {
+        return providers(provider).contains(name);
+    }
+
+    private static List<String> providers(String provider) {
+        List<String> names = new ArrayList<>();
+        if (provider != null) {
+            for (String name : provider.split(",")) {
+                if (!name.isBlank()) {
+                    names.add(name.trim().toLowerCase(Locale.ROOT));
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            // Same default as LLMConfig
+            names.add("ollama");
+        }
+        return names;
+    }
+}
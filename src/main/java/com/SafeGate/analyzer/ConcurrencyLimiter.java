@@ -0,0 +1,210 @@
+package com.SafeGate.analyzer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Adaptive limit on the analyzer calls in flight (AIMD).
+ * <p>
+ * The limit grows by one per call that completes in time while it is at least half used, and
+ * shrinks by 10% when a call fails or its latency exceeds twice the baseline. Overload thus
+ * shows up as a shrinking limit and quick rejections here instead of queueing inside Ollama
+ * until every caller times out.
+ * <p>
+ * Live calls and dataset (interactive or bulk) calls have separate baselines: a batch call's
+ * latency per payload is far below a single call's latency, so comparing one against the other
+ * would read every live call as congestion. Each baseline is the 10th percentile of the last
+ * samples of its kind, which follows the analyzer when its model or hardware changes without
+ * being set by one lucky sample. The limit shrinks at most once per round trip: calls that
+ * started before the last decrease were already in flight when it happened, so they do not
+ * shrink it again.
+ */
+public class ConcurrencyLimiter implements MeterBinder {
+
+    private static final double BACKOFF_RATIO = 0.9;
+    // Latency over this multiple of the baseline counts as congestion
+    private static final double TOLERANCE = 2.0;
+    // Samples the baseline percentile is taken over
+    private static final int WINDOW = 100;
+    // Samples needed before latency is judged, and between baseline updates
+    private static final int MIN_SAMPLES = 10;
+    private static final double PERCENTILE = 0.1;
+
+    /**
+     * Recent latency samples of one kind of call, and their baseline.
+     */
+    private static final class Baseline {
+        private final long[] samples = new long[WINDOW];
+        private int filled;
+        private int next;
+        private int sinceUpdate;
+        private long nanos = Long.MAX_VALUE;
+
+        void add(long sample) {
+            samples[next] = sample;
+            next = (next + 1) % WINDOW;
+            filled = Math.min(WINDOW, filled + 1);
+            if (filled >= MIN_SAMPLES && ++sinceUpdate >= MIN_SAMPLES) {
+                sinceUpdate = 0;
+                long[] sorted = Arrays.copyOf(samples, filled);
+                Arrays.sort(sorted);
+                nanos = sorted[(int) (filled * PERCENTILE)];
+            }
+        }
+
+        boolean isCongested(long sample) {
+            return nanos != Long.MAX_VALUE && sample > nanos * TOLERANCE;
+        }
+
+        Double millis() {
+            return nanos == Long.MAX_VALUE ? null : Math.round(nanos / 10_000.0) / 100.0;
+        }
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private double limit;
+    private int inFlight;
+
+    private final Baseline liveBaseline = new Baseline();
+    private final Baseline batchBaseline = new Baseline();
+    // When the limit last shrank, in System.nanoTime()
+    private long lastDecreaseNanos;
+    private boolean decreased;
+
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param initialLimit The limit to start with, before any latency is measured.
+     * @param maxLimit     The highest the limit may grow to.
+     */
+    public ConcurrencyLimiter(int initialLimit, int maxLimit) {
+        this.minLimit = 1;
+        this.maxLimit = Math.max(minLimit, maxLimit);
+        this.limit = Math.max(minLimit, Math.min(this.maxLimit, initialLimit));
+    }
+
+    /**
+     * Takes a slot if one is free.
+     *
+     * @return Whether the call may proceed; if so, it must be followed by exactly one of
+     *         {@link #onSuccess}, {@link #onDropped} or {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejected.increment();
+            return false;
+        }
+        inFlight++;
+        accepted.increment();
+        return true;
+    }
+
+    /**
+     * Releases a slot after a successful call and adjusts the limit to its latency.
+     *
+     * @param priority The call's scheduling class; live calls are judged against live latency only.
+     * @param nanos    The call duration.
+     * @param payloads The number of payloads the call classified.
+     */
+    public synchronized void onSuccess(AnalyzerWork.Priority priority, long nanos, int payloads) {
+        boolean live = priority == AnalyzerWork.Priority.LIVE;
+        // Batches are compared per payload, since chunk sizes vary
+        long sample = live ? nanos : nanos / Math.max(1, payloads);
+        Baseline baseline = live ? liveBaseline : batchBaseline;
+        boolean congested = baseline.isCongested(sample);
+        baseline.add(sample);
+
+        if (congested) {
+            decrease(nanos);
+        } else if (inFlight * 2 >= limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        release();
+    }
+
+    /**
+     * Releases a slot after a failed or timed out call, which counts as congestion.
+     *
+     * @param nanos The call duration.
+     */
+    public synchronized void onDropped(long nanos) {
+        decrease(nanos);
+        release();
+    }
+
+    /**
+     * Releases a slot without adjusting the limit, e.g. after a rejected request.
+     */
+    public synchronized void onIgnored() {
+        release();
+    }
+
+    /**
+     * Shrinks the limit, unless the call started before the last decrease.
+     */
+    private void decrease(long callNanos) {
+        long now = System.nanoTime();
+        if (decreased && now - callNanos - lastDecreaseNanos < 0) {
+            return;
+        }
+        limit = Math.max(minLimit, limit * BACKOFF_RATIO);
+        lastDecreaseNanos = now;
+        decreased = true;
+    }
+
+    private void release() {
+        inFlight--;
+    }
+
+    /**
+     * Counts a call that was turned away before reaching {@link #tryAcquire}, e.g. by the scheduler.
+     */
+    synchronized void countRejected() {
+        rejected.increment();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("safegate.analyzer.concurrency.limit", this, ConcurrencyLimiter::getLimit)
+                .description("Adaptive limit of concurrent analyzer calls")
+                .register(registry);
+        Gauge.builder("safegate.analyzer.concurrency.in.flight", this, ConcurrencyLimiter::getInFlight)
+                .description("Analyzer calls in flight")
+                .register(registry);
+        FunctionCounter.builder("safegate.analyzer.concurrency.rejected", rejected, LongAdder::sum)
+                .description("Analyzer calls rejected or degraded because the limit was reached")
+                .register(registry);
+    }
+
+    /**
+     * @return The limit, load and latency baseline, for the status API.
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("limit", (int) limit);
+        state.put("inFlight", inFlight);
+        state.put("liveBaselineMillis", liveBaseline.millis());
+        state.put("batchBaselineMillisPerPayload", batchBaseline.millis());
+        state.put("accepted", accepted.sum());
+        state.put("rejected", rejected.sum());
+        return state;
+    }
+}
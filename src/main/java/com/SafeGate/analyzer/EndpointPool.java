@@ -0,0 +1,368 @@
+package com.SafeGate.analyzer;
+
+import com.SafeGate.model.LLMConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * The analyzer service instances requests are balanced across: {@link LLMConfig#getLlmApiUrl()}
+ * plus any {@link LLMConfig#getLlmApiUrls()}.
+ * <p>
+ * Each call goes to the better of two randomly chosen available endpoints ("power of two
+ * choices"), scored by (outstanding requests + 1) x EWMA latency: slow or busy instances get
+ * less work, while load still spreads across equally fast ones. Endpoints are ejected after
+ * {@value #FAILURE_THRESHOLD} consecutive failures or a failed health check; if every endpoint
+ * is ejected, the one due back first is used rather than failing the call.
+ * <p>
+ * With a {@link HedgingPolicy}, single live calls that are slower than usual are duplicated to a
+ * second endpoint; see {@link #hedgedCall}.
+ */
+public class EndpointPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(EndpointPool.class);
+
+    static final int FAILURE_THRESHOLD = 3;
+
+    private final List<AnalyzerEndpoint> endpoints;
+
+    private volatile HedgingPolicy hedging;
+
+    public EndpointPool(List<String> urls) {
+        Map<String, AnalyzerEndpoint> unique = new LinkedHashMap<>();
+        for (String url : urls) {
+            if (url != null && !url.isBlank()) {
+                AnalyzerEndpoint endpoint = new AnalyzerEndpoint(url);
+                unique.putIfAbsent(endpoint.getAnalyzeUrl(), endpoint);
+            }
+        }
+        this.endpoints = List.copyOf(unique.values());
+    }
+
+    public static EndpointPool of(LLMConfig config) {
+        List<String> urls = new ArrayList<>();
+        urls.add(config.getLlmApiUrl());
+        urls.addAll(parseUrls(config.getLlmApiUrls()));
+        return new EndpointPool(urls);
+    }
+
+    /**
+     * @return The URLs of a comma-, space- or newline-separated list.
+     */
+    public static List<String> parseUrls(String urls) {
+        List<String> parsed = new ArrayList<>();
+        if (urls != null) {
+            for (String url : urls.split("[,\\s]+")) {
+                if (!url.isBlank()) {
+                    parsed.add(url.trim());
+                }
+            }
+        }
+        return parsed;
+    }
+
+    public List<AnalyzerEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    public boolean isEmpty() {
+        return endpoints.isEmpty();
+    }
+
+    public HedgingPolicy getHedging() {
+        return hedging;
+    }
+
+    /**
+     * @param hedging When to hedge single live calls, or null not to.
+     */
+    public void setHedging(HedgingPolicy hedging) {
+        this.hedging = hedging;
+    }
+
+    /**
+     * @return The number of endpoints that are not ejected.
+     */
+    public int availableCount() {
+        long now = System.currentTimeMillis();
+        return (int) endpoints.stream().filter(e -> e.isAvailable(now)).count();
+    }
+
+    /**
+     * Sends a call to the best endpoint and records its outcome.
+     * <p>
+     * Client errors (4xx) are passed on without counting against the endpoint. With failover,
+     * a call that could not reach its endpoint is retried once on another one; streamed calls
+     * should not fail over, since part of the response may already have been consumed.
+     *
+     * @param payloads The number of payloads in the call, to normalize its latency.
+     * @param failover Whether to retry connection failures on another endpoint.
+     * @param call     Performs the request against the given endpoint.
+     * @throws IllegalStateException if the pool has no endpoints.
+     */
+    public <T> T call(int payloads, boolean failover, Function<AnalyzerEndpoint, T> call) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalStateException("LLM analyzer URL is not configured");
+        }
+        int attempts = failover ? Math.min(2, endpoints.size()) : 1;
+        AnalyzerEndpoint previous = null;
+        RuntimeException lastFailure = null;
+        for (int attempt = 0; attempt < attempts; attempt++) {
+            AnalyzerEndpoint endpoint = pick(previous);
+            endpoint.started();
+            long start = System.nanoTime();
+            try {
+                T result = call.apply(endpoint);
+                endpoint.succeeded((System.nanoTime() - start) / 1_000_000, payloads);
+                return result;
+            } catch (HttpClientErrorException e) {
+                endpoint.released();
+                throw e;
+            } catch (RuntimeException e) {
+                if (endpoint.failed(FAILURE_THRESHOLD)) {
+                    logger.warn("Ejected analyzer endpoint {} after {} consecutive failures: {}",
+                            endpoint.getAnalyzeUrl(), FAILURE_THRESHOLD, e.getMessage());
+                }
+                lastFailure = e;
+                if (!(e instanceof ResourceAccessException)) {
+                    break;
+                }
+                previous = endpoint;
+            }
+        }
+        throw lastFailure;
+    }
+
+    /**
+     * Sends an asynchronous single-payload call, hedged by the pool's {@link HedgingPolicy}: if the
+     * first endpoint has not answered within the hedge delay and the hedge budget allows, the call
+     * is duplicated to a second endpoint. The first successful answer wins and the other call is
+     * cancelled. A first call that cannot reach its endpoint fails over like {@link #call}.
+     *
+     * @param call Starts the request against the given endpoint; cancelling the returned future
+     *             must abort the request.
+     * @throws IllegalStateException if the pool has no endpoints or no hedging policy.
+     */
+    public <T> T hedgedCall(Function<AnalyzerEndpoint, CompletableFuture<T>> call) {
+        HedgingPolicy policy = hedging;
+        if (endpoints.isEmpty()) {
+            throw new IllegalStateException("LLM analyzer URL is not configured");
+        }
+        if (policy == null) {
+            throw new IllegalStateException("Hedging is not configured");
+        }
+        long delay = policy.onCall();
+        AnalyzerEndpoint primary = pick(null);
+        CompletableFuture<T> first = track(primary, policy, call);
+        CompletableFuture<T> second = null;
+        try {
+            try {
+                if (delay >= 0 && availableCount() > 1) {
+                    return first.get(delay, TimeUnit.MILLISECONDS);
+                }
+                return first.get();
+            } catch (TimeoutException e) {
+                // Slower than usual: hedge below
+            } catch (ExecutionException e) {
+                RuntimeException failure = unwrap(e);
+                if (!(failure instanceof ResourceAccessException) || endpoints.size() < 2) {
+                    throw failure;
+                }
+                second = track(pick(primary), policy, call);
+                return second.get();
+            }
+
+            AnalyzerEndpoint secondary = pick(primary);
+            if (secondary == primary || !secondary.isAvailable(System.currentTimeMillis()) || !policy.tryHedge()) {
+                return first.get();
+            }
+            second = track(secondary, policy, call);
+            AtomicReference<CompletableFuture<T>> winner = new AtomicReference<>();
+            T result = firstSuccessful(first, second, winner).get();
+            if (winner.get() == second) {
+                policy.onHedgeWon();
+            }
+            return result;
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the analyzer", e);
+        } finally {
+            // Abort whichever call is still running
+            first.cancel(true);
+            if (second != null) {
+                second.cancel(true);
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> track(AnalyzerEndpoint endpoint, HedgingPolicy policy,
+                                           Function<AnalyzerEndpoint, CompletableFuture<T>> call) {
+        endpoint.started();
+        long start = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = call.apply(endpoint);
+        } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+        }
+        future.whenComplete((value, error) -> {
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause == null) {
+                endpoint.succeeded(millis, 1);
+                policy.recordLatency(millis);
+            } else if (cause instanceof CancellationException || cause instanceof HttpClientErrorException) {
+                endpoint.released();
+            } else if (endpoint.failed(FAILURE_THRESHOLD)) {
+                logger.warn("Ejected analyzer endpoint {} after {} consecutive failures: {}",
+                        endpoint.getAnalyzeUrl(), FAILURE_THRESHOLD, cause.getMessage());
+            }
+        });
+        return future;
+    }
+
+    /**
+     * @return A future completed by the first of the two futures to succeed, or with the last
+     *         failure if both fail. The winning future is stored in winner.
+     */
+    private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> a, CompletableFuture<T> b,
+                                                            AtomicReference<CompletableFuture<T>> winner) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<T> future : List.of(a, b)) {
+            BiConsumer<T, Throwable> handler = (value, error) -> {
+                if (error == null) {
+                    if (winner.compareAndSet(null, future)) {
+                        result.complete(value);
+                    }
+                } else if (failures.incrementAndGet() == 2) {
+                    result.completeExceptionally(error);
+                }
+            };
+            future.whenComplete(handler);
+        }
+        return result;
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        Throwable cause = error;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause.getMessage(), cause);
+    }
+
+    /**
+     * Picks the better of two random available endpoints, other than the excluded one if possible.
+     */
+    AnalyzerEndpoint pick(AnalyzerEndpoint excluded) {
+        long now = System.currentTimeMillis();
+        List<AnalyzerEndpoint> candidates = new ArrayList<>(endpoints.size());
+        AnalyzerEndpoint dueFirst = null;
+        for (AnalyzerEndpoint endpoint : endpoints) {
+            if (endpoint == excluded && endpoints.size() > 1) {
+                continue;
+            }
+            if (endpoint.isAvailable(now)) {
+                candidates.add(endpoint);
+            } else if (dueFirst == null || endpoint.getEjectedUntil() < dueFirst.getEjectedUntil()) {
+                dueFirst = endpoint;
+            }
+        }
+        if (candidates.isEmpty()) {
+            return dueFirst != null ? dueFirst : endpoints.get(0);
+        }
+        if (candidates.size() == 1) {
+            return candidates.get(0);
+        }
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int first = random.nextInt(candidates.size());
+        int second = random.nextInt(candidates.size() - 1);
+        if (second >= first) {
+            second++;
+        }
+        AnalyzerEndpoint a = candidates.get(first);
+        AnalyzerEndpoint b = candidates.get(second);
+        double mean = meanLatency();
+        double scoreA = a.score(mean);
+        double scoreB = b.score(mean);
+        if (scoreA != scoreB) {
+            return scoreA < scoreB ? a : b;
+        }
+        return a.getOutstanding() <= b.getOutstanding() ? a : b;
+    }
+
+    /**
+     * @return The mean latency per payload of the endpoints with a sample, or 0 if none has one.
+     */
+    private double meanLatency() {
+        double sum = 0;
+        int sampled = 0;
+        for (AnalyzerEndpoint endpoint : endpoints) {
+            double latency = endpoint.getEwmaMillis();
+            if (latency > 0) {
+                sum += latency;
+                sampled++;
+            }
+        }
+        return sampled > 0 ? sum / sampled : 0;
+    }
+
+    /**
+     * Probes every endpoint's /health: healthy endpoints are readmitted, failing ones ejected.
+     * Analyzer versions without /health count as healthy as long as they respond.
+     *
+     * @param restTemplate A client with short timeouts.
+     */
+    public void checkHealth(RestTemplate restTemplate) {
+        for (AnalyzerEndpoint endpoint : endpoints) {
+            boolean healthy;
+            String problem = null;
+            try {
+                ResponseEntity<Map> response = restTemplate.getForEntity(endpoint.getBaseUrl() + "/health", Map.class);
+                healthy = response.getStatusCode().is2xxSuccessful();
+            } catch (HttpClientErrorException.NotFound e) {
+                healthy = true;
+            } catch (RestClientException e) {
+                healthy = false;
+                problem = e.getMessage();
+            }
+            if (endpoint.checked(healthy)) {
+                if (healthy) {
+                    logger.info("Analyzer endpoint {} is healthy again", endpoint.getAnalyzeUrl());
+                } else {
+                    logger.warn("Ejected analyzer endpoint {} after a failed health check: {}", endpoint.getAnalyzeUrl(), problem);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The state of every endpoint, for the status API.
+     */
+    public List<Map<String, Object>> snapshot() {
+        return endpoints.stream().map(AnalyzerEndpoint::snapshot).toList();
+    }
+}
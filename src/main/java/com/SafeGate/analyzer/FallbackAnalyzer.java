@@ -0,0 +1,113 @@
+package com.SafeGate.analyzer;
+
+import com.SafeGate.model.AnalysisVerdict;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Chains analyzers: each payload is classified by the first analyzer that succeeds for it.
+ * An analyzer fails for a payload by throwing or by returning a verdict with an error.
+ * <p>
+ * In a batch, payloads the current analyzer fails on (an exception, an error verdict, or no
+ * verdict at all) are passed on to the next analyzer, so e.g. "ollama,heuristic" only uses the
+ * heuristic for what the model could not classify.
+ */
+public class FallbackAnalyzer implements Analyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FallbackAnalyzer.class);
+
+    private final List<Analyzer> chain;
+
+    public FallbackAnalyzer(List<Analyzer> chain) {
+        if (chain.isEmpty()) {
+            throw new IllegalArgumentException("Fallback chain needs at least one analyzer");
+        }
+        this.chain = List.copyOf(chain);
+    }
+
+    public List<Analyzer> getChain() {
+        return chain;
+    }
+
+    @Override
+    public String name() {
+        return chain.stream().map(Analyzer::name).collect(Collectors.joining(","));
+    }
+
+    @Override
+    public AnalysisVerdict analyze(String payload) {
+        RuntimeException lastFailure = null;
+        for (Analyzer analyzer : chain) {
+            try {
+                AnalysisVerdict verdict = analyzer.analyze(payload);
+                if (verdict.getError() == null) {
+                    return verdict;
+                }
+                lastFailure = new IllegalStateException(analyzer.name() + " analyzer failed: " + verdict.getError());
+            } catch (RuntimeException e) {
+                lastFailure = e;
+            }
+            logger.debug("Analyzer {} failed, trying next: {}", analyzer.name(), lastFailure.getMessage());
+        }
+        throw lastFailure;
+    }
+
+    @Override
+    public int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+        // Positions (in the original batch) still waiting for a verdict
+        List<Integer> pending = new ArrayList<>(payloads.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            pending.add(i);
+        }
+
+        int delivered = 0;
+        for (int step = 0; step < chain.size() && !pending.isEmpty(); step++) {
+            Analyzer analyzer = chain.get(step);
+            boolean last = step == chain.size() - 1;
+            List<Integer> positions = pending;
+            boolean[] done = new boolean[positions.size()];
+            List<String> batch = new ArrayList<>(positions.size());
+            for (int position : positions) {
+                batch.add(payloads.get(position));
+            }
+
+            int[] count = {0};
+            try {
+                analyzer.analyzeBatchStream(batch, verdict -> {
+                    int local = verdict.getIndex();
+                    if (local < 0 || local >= positions.size() || done[local]) {
+                        return;
+                    }
+                    // Error verdicts are retried by the next analyzer; the last one reports them as is
+                    if (verdict.getError() != null && !last) {
+                        return;
+                    }
+                    done[local] = true;
+                    verdict.setIndex(positions.get(local));
+                    consumer.accept(verdict);
+                    count[0]++;
+                });
+            } catch (RuntimeException e) {
+                if (last) {
+                    throw e;
+                }
+                logger.warn("Analyzer {} failed for a batch of {} payloads, falling back to {}: {}",
+                        analyzer.name(), batch.size(), chain.get(step + 1).name(), e.getMessage());
+            }
+            delivered += count[0];
+
+            pending = new ArrayList<>();
+            for (int local = 0; local < positions.size(); local++) {
+                if (!done[local]) {
+                    pending.add(positions.get(local));
+                }
+            }
+        }
+        return delivered;
+    }
+}
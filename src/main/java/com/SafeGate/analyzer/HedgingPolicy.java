@@ -0,0 +1,150 @@
+package com.SafeGate.analyzer;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * When to hedge a live analyzer call, i.e. send a duplicate to a second endpoint because the
+ * first has not answered yet.
+ * <p>
+ * The hedge delay is the p95 of recent call latencies, so about 5% of calls are candidates. A
+ * token bucket caps the extra load: every call earns {@code budget} tokens (e.g. 0.05) and every
+ * hedge spends one, so hedges stay below that fraction of calls even when the analyzer slows
+ * down as a whole, which is when hedging would only add load.
+ */
+public class HedgingPolicy implements MeterBinder {
+
+    // Recent latencies the percentile is computed from
+    private static final int WINDOW = 1024;
+    // Samples needed before the percentile is trusted
+    private static final int MIN_SAMPLES = 50;
+    // Hedges that may be saved up for bursts
+    private static final double MAX_TOKENS = 10;
+
+    private final boolean enabled;
+    private final double budget;
+    private final long minDelayMillis;
+
+    private final long[] latencies = new long[WINDOW];
+    private int samples;
+    private int next;
+    private long delayMillis = -1;
+    private double tokens;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder wins = new LongAdder();
+    private final LongAdder denied = new LongAdder();
+
+    /**
+     * @param enabled        Whether calls are hedged at all.
+     * @param budget         Hedges allowed per call, e.g. 0.05 for at most 5% extra requests.
+     * @param minDelayMillis Lower bound of the hedge delay, so fast analyzers are not hedged on noise.
+     */
+    public HedgingPolicy(boolean enabled, double budget, long minDelayMillis) {
+        this.enabled = enabled;
+        this.budget = Math.max(0, budget);
+        this.minDelayMillis = Math.max(0, minDelayMillis);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Counts a call and earns its share of the hedge budget.
+     *
+     * @return The delay after which the call may be hedged, or -1 if there are too few samples yet.
+     */
+    public synchronized long onCall() {
+        calls.increment();
+        tokens = Math.min(MAX_TOKENS, tokens + budget);
+        return delayMillis;
+    }
+
+    /**
+     * Spends budget for a hedge.
+     *
+     * @return Whether the hedge may be sent.
+     */
+    public synchronized boolean tryHedge() {
+        if (tokens < 1) {
+            denied.increment();
+            return false;
+        }
+        tokens -= 1;
+        hedges.increment();
+        return true;
+    }
+
+    /**
+     * Records that the hedge answered before the original call.
+     */
+    public void onHedgeWon() {
+        wins.increment();
+    }
+
+    /**
+     * Records the latency of a completed call.
+     */
+    public synchronized void recordLatency(long millis) {
+        latencies[next] = millis;
+        next = (next + 1) % WINDOW;
+        samples = Math.min(WINDOW, samples + 1);
+        // Recompute now and then rather than on every call
+        if (samples >= MIN_SAMPLES && (next % 32 == 0 || delayMillis < 0)) {
+            long[] sorted = Arrays.copyOf(latencies, samples);
+            Arrays.sort(sorted);
+            delayMillis = Math.max(minDelayMillis, sorted[(int) Math.ceil(samples * 0.95) - 1]);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("safegate.analyzer.hedge.calls", calls, LongAdder::sum)
+                .description("Live analyzer calls eligible for hedging")
+                .register(registry);
+        FunctionCounter.builder("safegate.analyzer.hedge.sent", hedges, LongAdder::sum)
+                .description("Hedged duplicates sent to a second analyzer endpoint")
+                .register(registry);
+        FunctionCounter.builder("safegate.analyzer.hedge.wins", wins, LongAdder::sum)
+                .description("Hedged duplicates that answered first")
+                .register(registry);
+        FunctionCounter.builder("safegate.analyzer.hedge.denied", denied, LongAdder::sum)
+                .description("Hedges skipped because the hedge budget was spent")
+                .register(registry);
+        Gauge.builder("safegate.analyzer.hedge.delay", this, HedgingPolicy::currentDelayMillis)
+                .description("Current hedge delay (p95 of live analyzer latency)")
+                .baseUnit("milliseconds")
+                .register(registry);
+    }
+
+    private synchronized double currentDelayMillis() {
+        return delayMillis;
+    }
+
+    /**
+     * @return Counters and the current delay, for the status API.
+     */
+    public synchronized Map<String, Object> snapshot() {
+        long callCount = calls.sum();
+        long hedgeCount = hedges.sum();
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("enabled", enabled);
+        state.put("budget", budget);
+        state.put("delayMillis", delayMillis);
+        state.put("calls", callCount);
+        state.put("hedges", hedgeCount);
+        state.put("wins", wins.sum());
+        state.put("denied", denied.sum());
+        state.put("hedgeRate", callCount > 0 ? (double) hedgeCount / callCount : 0.0);
+        return state;
+    }
+}
@@ -0,0 +1,96 @@
+package com.SafeGate.analyzer;
+
+import com.SafeGate.model.AnalysisVerdict;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * In-process rule-based analyzer. It needs no network and no model, classifies a payload in
+ * microseconds, and is deterministic, which makes it suitable for latency-critical deployments,
+ * for CI and as the last step of a fallback chain.
+ * <p>
+ * Payloads are URL-decoded (up to twice, to catch double encoding) and matched against
+ * precompiled patterns per category, in order of specificity.
+ */
+public class HeuristicAnalyzer implements Analyzer {
+
+    public static final String NAME = "heuristic";
+
+    // Every heuristic reason starts with this, so readers of a verdict can tell where it came from
+    public static final String REASON_PREFIX = "Heuristic: ";
+
+    private record Rule(String category, Pattern pattern, String reason) {
+    }
+
+    private static final List<Rule> RULES = List.of(
+            new Rule("SQL_INJECTION", Pattern.compile(
+                    "union(\\s|/\\*.*?\\*/)+(all\\s+)?select"
+                            + "|'\\s*or\\s*'?\\d+'?\\s*=\\s*'?\\d+"
+                            + "|\\bor\\s+1\\s*=\\s*1\\b"
+                            + "|;\\s*(drop|delete|insert|update|alter)\\s"
+                            + "|\\b(sleep|benchmark|pg_sleep)\\s*\\("
+                            + "|\\bwaitfor\\s+delay\\b"
+                            + "|'\\s*(--|#)"
+                            + "|\\bdrop\\s+table\\b",
+                    Pattern.CASE_INSENSITIVE), "SQL injection pattern"),
+            new Rule("XSS", Pattern.compile(
+                    "<\\s*script\\b"
+                            + "|javascript\\s*:"
+                            + "|\\bon(error|load|mouseover|focus|click)\\s*="
+                            + "|<\\s*(svg|iframe|img|body)\\b[^>]*\\bon\\w+\\s*="
+                            + "|\\bdocument\\.cookie\\b",
+                    Pattern.CASE_INSENSITIVE), "cross-site scripting pattern"),
+            new Rule("PATH_TRAVERSAL", Pattern.compile(
+                    "\\.\\.[/\\\\]"
+                            + "|/etc/(passwd|shadow)\\b"
+                            + "|\\bboot\\.ini\\b"
+                            + "|[a-z]:\\\\windows\\\\",
+                    Pattern.CASE_INSENSITIVE), "path traversal pattern"),
+            new Rule("OTHER", Pattern.compile(
+                    "[;|`]\\s*(cat|ls|id|whoami|uname|wget|curl|nc)\\b"
+                            + "|\\$\\(\\s*\\w+"
+                            + "|\\$\\{jndi:"
+                            + "|<!ENTITY\\b",
+                    Pattern.CASE_INSENSITIVE), "command/template injection pattern")
+    );
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public AnalysisVerdict analyze(String payload) {
+        String text = payload != null ? payload : "";
+        String decoded = decode(text);
+        String twiceDecoded = decode(decoded);
+        for (Rule rule : RULES) {
+            if (rule.pattern().matcher(text).find()
+                    || (!decoded.equals(text) && rule.pattern().matcher(decoded).find())
+                    || (!twiceDecoded.equals(decoded) && rule.pattern().matcher(twiceDecoded).find())) {
+                return degraded(new AnalysisVerdict(0, true, rule.category(), REASON_PREFIX + rule.reason()));
+            }
+        }
+        return degraded(new AnalysisVerdict(0, false, "SAFE", REASON_PREFIX + "no attack pattern matched"));
+    }
+
+    private static AnalysisVerdict degraded(AnalysisVerdict verdict) {
+        verdict.setDegraded(true);
+        return verdict;
+    }
+
+    private static String decode(String text) {
+        if (text.indexOf('%') < 0 && text.indexOf('+') < 0) {
+            return text;
+        }
+        try {
+            return URLDecoder.decode(text, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            // Malformed escape sequence; classify the text as is
+            return text;
+        }
+    }
+}
@@ -0,0 +1,321 @@
+package com.SafeGate.analyzer;
+
+import com.SafeGate.model.AnalysisVerdict;
+import com.SafeGate.model.LLMConfig;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Analyzer backed by the Python analyzer service (analyzer/main.py), which serves the
+ * "ollama" and "mock" providers. Calls are balanced across the instances of an {@link EndpointPool}.
+ */
+public class HttpAnalyzer implements Analyzer {
+
+    private static final Logger logger = LoggerFactory.getLogger(HttpAnalyzer.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // Reads concatenated/newline-delimited verdict objects from a streamed response
+    private static final ObjectReader VERDICT_READER = MAPPER.readerFor(AnalysisVerdict.class);
+
+    // Hedged calls need requests that can be aborted when the other copy wins, which the
+    // blocking RestTemplate cannot do
+    private static final HttpClient ASYNC_CLIENT = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(5))
+            .build();
+
+    private final RestTemplate restTemplate;
+    private final LLMConfig config;
+    private final String provider;
+    private final EndpointPool pool;
+
+    // Wire format for streamed batches; downgraded to JSON if the analyzer service rejects it
+    private volatile AnalyzerWire.Options wire;
+
+    /**
+     * @param restTemplate The client used for analyzer calls.
+     * @param config       The analyzer URL, model and GPU settings.
+     * @param provider     The provider the analyzer service should use, e.g. "ollama".
+     */
+    public HttpAnalyzer(RestTemplate restTemplate, LLMConfig config, String provider) {
+        this(restTemplate, config, provider, AnalyzerWire.Options.JSON);
+    }
+
+    /**
+     * @param wire The wire format to request for streamed batches.
+     */
+    public HttpAnalyzer(RestTemplate restTemplate, LLMConfig config, String provider, AnalyzerWire.Options wire) {
+        this(restTemplate, config, provider, wire, EndpointPool.of(config));
+    }
+
+    /**
+     * @param pool The analyzer service instances to balance calls across.
+     */
+    public HttpAnalyzer(RestTemplate restTemplate, LLMConfig config, String provider, AnalyzerWire.Options wire,
+                        EndpointPool pool) {
+        this.restTemplate = restTemplate;
+        this.config = config;
+        this.provider = provider;
+        this.wire = wire;
+        this.pool = pool;
+    }
+
+    public EndpointPool getPool() {
+        return pool;
+    }
+
+    @Override
+    public String name() {
+        return provider;
+    }
+
+    /**
+     * Analyze via the analyzer /analyze endpoint, hedged if the pool has hedging enabled.
+     */
+    @Override
+    public AnalysisVerdict analyze(String payload) {
+        Map<String, Object> request = baseRequest();
+        request.put("payload", payload);
+        HedgingPolicy hedging = pool.getHedging();
+        if (hedging != null && hedging.isEnabled()) {
+            byte[] body;
+            try {
+                body = MAPPER.writeValueAsBytes(request);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return pool.hedgedCall(endpoint -> analyzeAsync(endpoint, body));
+        }
+        // The analyzer answers 502 when its backend fails, which RestTemplate throws
+        Map response = pool.call(1, true,
+                endpoint -> restTemplate.postForObject(endpoint.getAnalyzeUrl(), request, Map.class));
+        if (response == null) {
+            throw new IllegalStateException("Analyzer returned no response");
+        }
+        return checked(toVerdict(0, response));
+    }
+
+    private CompletableFuture<AnalysisVerdict> analyzeAsync(AnalyzerEndpoint endpoint, byte[] body) {
+        String url = endpoint.getAnalyzeUrl();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body))
+                .build();
+        CompletableFuture<HttpResponse<byte[]>> exchange = ASYNC_CLIENT.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray());
+        // Same exceptions as RestTemplate, so the pool treats both paths alike
+        CompletableFuture<AnalysisVerdict> verdict = exchange.handle((response, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                throw new ResourceAccessException("I/O error on POST request for \"" + url + "\": " + cause.getMessage(),
+                        cause instanceof IOException io ? io : new IOException(cause));
+            }
+            HttpStatusCode status = HttpStatusCode.valueOf(response.statusCode());
+            if (status.is4xxClientError()) {
+                throw HttpClientErrorException.create(status, "", new HttpHeaders(), response.body(), StandardCharsets.UTF_8);
+            }
+            if (status.isError()) {
+                throw HttpServerErrorException.create(status, "", new HttpHeaders(), response.body(), StandardCharsets.UTF_8);
+            }
+            try {
+                return checked(toVerdict(0, MAPPER.readValue(response.body(), Map.class)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        // Cancelling the verdict aborts the request
+        verdict.whenComplete((value, error) -> {
+            if (verdict.isCancelled()) {
+                exchange.cancel(true);
+            }
+        });
+        return verdict;
+    }
+
+    /**
+     * Analyze via the analyzer /analyze/batch endpoint; the whole result set is returned at once,
+     * by index rather than echoing the payloads.
+     */
+    @Override
+    public List<AnalysisVerdict> analyzeBatch(List<String> payloads) {
+        Map<String, Object> request = baseRequest();
+        request.put("payloads", payloads);
+        request.put("compact", true);
+        // Parsed inside the call, so payloads the backend failed on count against the endpoint
+        return pool.call(payloads.size(), true, endpoint -> toVerdicts(payloads.size(),
+                restTemplate.postForObject(endpoint.getAnalyzeUrl() + "/batch", request, Map.class)));
+    }
+
+    /**
+     * @throws IllegalStateException if the results do not match the payloads, or any payload failed.
+     */
+    private static List<AnalysisVerdict> toVerdicts(int payloads, Map response) {
+        Object results = response != null ? response.get("results") : null;
+        if (!(results instanceof List) || ((List) results).size() != payloads) {
+            throw new IllegalStateException("Analyzer returned " + (results instanceof List ? ((List) results).size() : 0)
+                    + " results for " + payloads + " payloads");
+        }
+        List<AnalysisVerdict> verdicts = new ArrayList<>(payloads);
+        for (Object item : (List) results) {
+            if (!(item instanceof Map)) {
+                throw new IllegalStateException("Analyzer returned a malformed result: " + item);
+            }
+            verdicts.add(checked(toVerdict(verdicts.size(), (Map) item)));
+        }
+        return verdicts;
+    }
+
+    /**
+     * Analyze via the analyzer /analyze/batch/stream endpoint. Verdicts are parsed as they arrive,
+     * so neither side holds the full result set.
+     * <p>
+     * The configured wire format is negotiated with standard headers: the request body may be
+     * binary and/or gzip-compressed, and the response is decoded by its Content-Type (NDJSON or
+     * binary verdict frames) and Content-Encoding. An analyzer service that rejects the compact
+     * request (older versions only read JSON) is sent JSON from then on.
+     */
+    @Override
+    public int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+        AnalyzerWire.Options options = wire;
+        try {
+            return stream(payloads, consumer, options);
+        } catch (HttpClientErrorException e) {
+            HttpStatus status = HttpStatus.resolve(e.getStatusCode().value());
+            if (options.equals(AnalyzerWire.Options.JSON) || (status != HttpStatus.BAD_REQUEST
+                    && status != HttpStatus.UNSUPPORTED_MEDIA_TYPE && status != HttpStatus.UNPROCESSABLE_ENTITY)) {
+                throw e;
+            }
+            logger.warn("Analyzer rejected the {} batch format ({}), falling back to JSON", options, e.getStatusCode());
+            wire = AnalyzerWire.Options.JSON;
+            return stream(payloads, consumer, AnalyzerWire.Options.JSON);
+        }
+    }
+
+    private int stream(List<String> payloads, Consumer<AnalysisVerdict> consumer, AnalyzerWire.Options options) {
+        return pool.call(payloads.size(), false, endpoint -> stream(endpoint, payloads, consumer, options));
+    }
+
+    private int stream(AnalyzerEndpoint endpoint, List<String> payloads, Consumer<AnalysisVerdict> consumer,
+                       AnalyzerWire.Options options) {
+        Map<String, Object> request = baseRequest();
+        Integer received = restTemplate.execute(endpoint.getAnalyzeUrl() + "/batch/stream", HttpMethod.POST,
+                httpRequest -> {
+                    HttpHeaders headers = httpRequest.getHeaders();
+                    headers.setContentType(options.binary() ? AnalyzerWire.BATCH_TYPE : MediaType.APPLICATION_JSON);
+                    headers.setAccept(List.of(options.binary() ? AnalyzerWire.VERDICTS_TYPE : AnalyzerWire.NDJSON_TYPE));
+                    if (options.gzip()) {
+                        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+                        headers.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+                    }
+                    OutputStream body = options.gzip()
+                            ? new GZIPOutputStream(httpRequest.getBody(), 64 * 1024)
+                            : httpRequest.getBody();
+                    if (options.binary()) {
+                        AnalyzerWire.writeBatch(new BufferedOutputStream(body, 64 * 1024), request, payloads);
+                    } else {
+                        request.put("payloads", payloads);
+                        body.write(MAPPER.writeValueAsBytes(request));
+                    }
+                    if (body instanceof GZIPOutputStream gzip) {
+                        gzip.finish();
+                    }
+                },
+                response -> readVerdicts(response, consumer));
+        return received != null ? received : 0;
+    }
+
+    private static int readVerdicts(ClientHttpResponse response, Consumer<AnalysisVerdict> consumer) throws IOException {
+        HttpHeaders headers = response.getHeaders();
+        InputStream body = response.getBody();
+        if ("gzip".equalsIgnoreCase(headers.getFirst(HttpHeaders.CONTENT_ENCODING))) {
+            body = new GZIPInputStream(body);
+        }
+        MediaType type = headers.getContentType();
+        if (type != null && type.isCompatibleWith(AnalyzerWire.VERDICTS_TYPE)) {
+            return AnalyzerWire.readVerdicts(body, consumer);
+        }
+        // NDJSON: one verdict object per line
+        int count = 0;
+        try (MappingIterator<AnalysisVerdict> verdicts = VERDICT_READER.readValues(body)) {
+            while (verdicts.hasNextValue()) {
+                consumer.accept(verdicts.nextValue());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private Map<String, Object> baseRequest() {
+        Map<String, Object> request = new HashMap<>();
+        request.put("provider", provider);
+        if (config.getModel() != null) request.put("model", config.getModel());
+        request.put("gpu_enabled", Boolean.TRUE.equals(config.getGpuEnabled()));
+        // Lets the analyzer service serve live payloads before dataset payloads
+        AnalyzerWork work = AnalyzerWork.current();
+        if (work != null) {
+            request.put("priority", work.getPriority().wireName());
+        }
+        return request;
+    }
+
+    private static AnalysisVerdict toVerdict(int index, Map result) {
+        Object error = result.get("error");
+        if (error != null) {
+            AnalysisVerdict verdict = new AnalysisVerdict();
+            verdict.setIndex(index);
+            verdict.setError(String.valueOf(error));
+            return verdict;
+        }
+        Object category = result.get("category");
+        Object reason = result.get("reason");
+        AnalysisVerdict verdict = new AnalysisVerdict(index, Boolean.TRUE.equals(result.get("is_malicious")),
+                category != null ? String.valueOf(category) : "OTHER",
+                reason != null ? String.valueOf(reason) : "");
+        verdict.setDegraded(Boolean.TRUE.equals(result.get("degraded")));
+        return verdict;
+    }
+
+    /**
+     * @throws IllegalStateException if the analyzer could not classify the payload.
+     */
+    private static AnalysisVerdict checked(AnalysisVerdict verdict) {
+        if (verdict.getError() != null) {
+            throw new IllegalStateException("Analyzer failed for payload " + verdict.getIndex() + ": " + verdict.getError());
+        }
+        return verdict;
+    }
+}
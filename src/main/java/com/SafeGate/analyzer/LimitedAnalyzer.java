@@ -0,0 +1,179 @@
+package com.SafeGate.analyzer;
+
+import com.SafeGate.model.AnalysisVerdict;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs an analyzer's calls under a {@link ConcurrencyLimiter}, admitted by an
+ * {@link AnalyzerScheduler} according to the calling thread's {@link AnalyzerWork}, and decides
+ * what happens to calls over the limit: live calls and dataset (interactive or bulk) calls each
+ * have their own {@link Overflow} policy.
+ */
+public class LimitedAnalyzer implements Analyzer {
+
+    /**
+     * What a call over the limit does.
+     */
+    public enum Overflow {
+        /** Classify with the in-process {@link HeuristicAnalyzer} instead. */
+        HEURISTIC,
+        /** Report the payloads as safe. */
+        FAIL_OPEN,
+        /** Throw, so the caller can retry later. */
+        REJECT,
+        /** Wait for a free slot, up to the wait timeout, then throw. */
+        WAIT;
+
+        /**
+         * @return The policy named e.g. "heuristic" or "fail-open", or the fallback for unknown names.
+         */
+        public static Overflow of(String name, Overflow fallback) {
+            if (name == null || name.isBlank()) {
+                return fallback;
+            }
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+    }
+
+    // Reason of the verdicts reported by FAIL_OPEN
+    public static final String OVERLOADED_REASON = "Analyzer overloaded";
+
+    private final Analyzer delegate;
+    private final AnalyzerScheduler scheduler;
+    private final Overflow liveOverflow;
+    private final Overflow batchOverflow;
+    private final long waitTimeoutMillis;
+    private final HeuristicAnalyzer heuristic = new HeuristicAnalyzer();
+
+    public LimitedAnalyzer(Analyzer delegate, AnalyzerScheduler scheduler, Overflow liveOverflow,
+                           Overflow batchOverflow, long waitTimeoutMillis) {
+        this.delegate = delegate;
+        this.scheduler = scheduler;
+        this.liveOverflow = liveOverflow;
+        this.batchOverflow = batchOverflow;
+        this.waitTimeoutMillis = waitTimeoutMillis;
+    }
+
+    public Analyzer getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public AnalysisVerdict analyze(String payload) {
+        Overflow overflow = overflow(AnalyzerWork.Priority.LIVE);
+        if (!acquire(AnalyzerWork.Priority.LIVE, 1)) {
+            return overflow == Overflow.HEURISTIC ? heuristic.analyze(payload) : failOpen(0);
+        }
+        return limited(AnalyzerWork.Priority.LIVE, 1, () -> delegate.analyze(payload));
+    }
+
+    @Override
+    public int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+        Overflow overflow = overflow(AnalyzerWork.Priority.INTERACTIVE);
+        if (!acquire(AnalyzerWork.Priority.INTERACTIVE, payloads.size())) {
+            if (overflow == Overflow.HEURISTIC) {
+                return heuristic.analyzeBatchStream(payloads, consumer);
+            }
+            for (int i = 0; i < payloads.size(); i++) {
+                consumer.accept(failOpen(i));
+            }
+            return payloads.size();
+        }
+        return limited(AnalyzerWork.Priority.INTERACTIVE, payloads.size(),
+                () -> delegate.analyzeBatchStream(payloads, consumer));
+    }
+
+    @Override
+    public List<AnalysisVerdict> analyzeBatch(List<String> payloads) {
+        Overflow overflow = overflow(AnalyzerWork.Priority.INTERACTIVE);
+        if (!acquire(AnalyzerWork.Priority.INTERACTIVE, payloads.size())) {
+            if (overflow == Overflow.HEURISTIC) {
+                return heuristic.analyzeBatch(payloads);
+            }
+            List<AnalysisVerdict> verdicts = new ArrayList<>(payloads.size());
+            for (int i = 0; i < payloads.size(); i++) {
+                verdicts.add(failOpen(i));
+            }
+            return verdicts;
+        }
+        return limited(AnalyzerWork.Priority.INTERACTIVE, payloads.size(), () -> delegate.analyzeBatch(payloads));
+    }
+
+    /**
+     * @param routePriority The priority of calls of this kind made outside {@link AnalyzerWork#run}.
+     * @return The overflow policy for the calling thread's work.
+     */
+    private Overflow overflow(AnalyzerWork.Priority routePriority) {
+        return priority(routePriority) == AnalyzerWork.Priority.LIVE ? liveOverflow : batchOverflow;
+    }
+
+    private static AnalyzerWork.Priority priority(AnalyzerWork.Priority routePriority) {
+        AnalyzerWork work = AnalyzerWork.current();
+        return work != null ? work.getPriority() : routePriority;
+    }
+
+    /**
+     * @return Whether a slot was taken; false means the overflow policy degrades the call.
+     * @throws IllegalStateException if the call is over the limit and the policy rejects it.
+     */
+    private boolean acquire(AnalyzerWork.Priority routePriority, int payloads) {
+        AnalyzerWork work = AnalyzerWork.current();
+        AnalyzerWork.Priority priority = priority(routePriority);
+        Overflow overflow = overflow(routePriority);
+        boolean acquired;
+        if (overflow == Overflow.WAIT) {
+            try {
+                acquired = scheduler.acquire(priority, work != null ? work.getFlow() : priority.wireName(),
+                        work != null ? work.getWeight() : 1, payloads, waitTimeoutMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the analyzer", e);
+            }
+        } else {
+            acquired = scheduler.tryAcquire(priority);
+        }
+        if (!acquired && (overflow == Overflow.REJECT || overflow == Overflow.WAIT)) {
+            throw new IllegalStateException("Analyzer concurrency limit of " + scheduler.getLimiter().getLimit()
+                    + " reached for " + priority.wireName() + " work");
+        }
+        return acquired;
+    }
+
+    private <T> T limited(AnalyzerWork.Priority routePriority, int payloads, Supplier<T> call) {
+        AnalyzerWork.Priority priority = priority(routePriority);
+        long start = System.nanoTime();
+        try {
+            T result = call.get();
+            scheduler.onSuccess(priority, System.nanoTime() - start, payloads);
+            return result;
+        } catch (HttpClientErrorException e) {
+            // A rejected request says nothing about the analyzer's load
+            scheduler.onIgnored();
+            throw e;
+        } catch (RuntimeException | Error e) {
+            scheduler.onDropped(System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    private static AnalysisVerdict failOpen(int index) {
+        AnalysisVerdict verdict = new AnalysisVerdict(index, false, "SAFE", OVERLOADED_REASON);
+        verdict.setDegraded(true);
+        return verdict;
+    }
+}
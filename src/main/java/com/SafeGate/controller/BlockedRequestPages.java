@@ -0,0 +1,121 @@
+package com.SafeGate.controller;
+
+import com.SafeGate.repository.BlockedRequestQueryRepository;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Cursor;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Field;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Query;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes blocked requests as JSON while they are read from the database, for the log and
+ * security APIs. Pages are {"items": [...], "nextCursor": ...}, where nextCursor is null on
+ * the last page; exports are one JSON object per line.
+ */
+final class BlockedRequestPages {
+
+    static final int MAX_PAGE = 1000;
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private BlockedRequestPages() {
+    }
+
+    /**
+     * @return A page of the matching requests, newest first, or 400 for an invalid cursor or field.
+     */
+    static ResponseEntity<?> page(BlockedRequestQueryRepository repository, Instant since, String category,
+                                  String sourceIp, String cursor, int limit, String fields) {
+        Query query;
+        List<Field> projection;
+        try {
+            int size = Math.max(1, Math.min(limit, MAX_PAGE));
+            // One row more than the page tells whether another page follows
+            query = new Query(since, blankToNull(category), blankToNull(sourceIp), Cursor.decode(cursor), size + 1L);
+            projection = Field.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = JSON.createGenerator(out)) {
+                json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                json.writeStartObject();
+                json.writeArrayFieldStart("items");
+                long size = query.limit() - 1;
+                long[] written = {0};
+                Cursor[] last = new Cursor[1];
+                boolean[] more = {false};
+                repository.stream(query, projection, (rowCursor, values) -> {
+                    if (written[0] == size) {
+                        more[0] = true;
+                        return;
+                    }
+                    writeRow(json, projection, values);
+                    written[0]++;
+                    last[0] = rowCursor;
+                });
+                json.writeEndArray();
+                json.writeStringField("nextCursor", more[0] ? last[0].encode() : null);
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * @return Every matching request, newest first, as newline-delimited JSON, or 400 for an invalid field.
+     */
+    static ResponseEntity<?> export(BlockedRequestQueryRepository repository, Instant since, String category,
+                                    String sourceIp, String fields) {
+        List<Field> projection;
+        try {
+            projection = Field.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        Query query = new Query(since, blankToNull(category), blankToNull(sourceIp), null, 0);
+
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = JSON.createGenerator(out)) {
+                json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+                json.setRootValueSeparator(null);
+                repository.stream(query, projection, (rowCursor, values) -> {
+                    writeRow(json, projection, values);
+                    json.writeRaw('\n');
+                });
+            }
+        };
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    private static void writeRow(JsonGenerator json, List<Field> fields, Object[] values) throws IOException {
+        json.writeStartObject();
+        for (int i = 0; i < values.length; i++) {
+            String name = fields.get(i).jsonName();
+            Object value = values[i];
+            if (value == null) {
+                json.writeNullField(name);
+            } else if (value instanceof Long number) {
+                json.writeNumberField(name, number);
+            } else {
+                // Instants as ISO-8601, like the entity serializes them
+                json.writeStringField(name, value.toString());
+            }
+        }
+        json.writeEndObject();
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
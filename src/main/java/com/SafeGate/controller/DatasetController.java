@@ -0,0 +1,64 @@
+package com.SafeGate.controller;
+
+import com.SafeGate.entity.Dataset;
+import com.SafeGate.service.DatasetStoreService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/datasets")
+public class DatasetController {
+
+    @Autowired
+    private DatasetStoreService datasetStoreService;
+
+    @GetMapping
+    public List<Dataset> listDatasets() {
+        return datasetStoreService.listDatasets();
+    }
+
+    /**
+     * Upload a dataset into the dataset library. Uploading content that is already stored
+     * returns the existing entry without parsing the file again.
+     *
+     * @param file The dataset file
+     * @param datasetFormat The format of the dataset (TXT, CSV, JSON, XML, TSV, AUTO)
+     * @return The stored dataset or an error response
+     */
+    @PostMapping
+    public ResponseEntity<?> uploadDataset(
+            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "datasetFormat", required = false, defaultValue = "AUTO") String datasetFormat) {
+        try {
+            return ResponseEntity.ok(datasetStoreService.ingest(file, datasetFormat));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Error storing dataset: " + e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<Dataset> getDataset(@PathVariable Long id) {
+        return datasetStoreService.findById(id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<?> deleteDataset(@PathVariable Long id) {
+        try {
+            if (!datasetStoreService.deleteDataset(id)) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(Map.of("message", "Dataset deleted successfully"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Error deleting dataset: " + e.getMessage()));
+        }
+    }
+}
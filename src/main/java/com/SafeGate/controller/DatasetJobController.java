@@ -0,0 +1,117 @@
+package com.SafeGate.controller;
+
+import com.SafeGate.service.DatasetJob;
+import com.SafeGate.service.DatasetJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Asynchronous dataset tests. Submitting a job returns its id right away; progress can be
+ * polled or followed as a Server-Sent Event stream.
+ */
+@RestController
+@RequestMapping({"/api/tests/dataset-jobs", "/api/test/dataset-jobs"})
+public class DatasetJobController {
+
+    @Autowired
+    private DatasetJobService datasetJobService;
+
+    /**
+     * Queue a dataset test for the provided file, or for a stored dataset when a datasetId
+     * is given instead of a file.
+     *
+     * @param file The dataset file to test (optional when datasetId is given)
+     * @param datasetId The id of a stored dataset (optional when a file is given)
+     * @param datasetFormat The format of the dataset (TXT, CSV, JSON, XML, AUTO). Optional, defaults to AUTO.
+     * @param attackTypeTag Optional tag for the attack type
+     * @param samplingSize Number of attacks to test (All, Random 100, Random 1000, etc.)
+     * @param seed Optional seed for deterministic sampling
+     * @return The queued job or an error response
+     */
+    @PostMapping
+    public ResponseEntity<?> submitJob(
+            @RequestParam(value = "file", required = false) MultipartFile file,
+            @RequestParam(value = "datasetId", required = false) Long datasetId,
+            @RequestParam(value = "datasetFormat", required = false, defaultValue = "AUTO") String datasetFormat,
+            @RequestParam(value = "attackTypeTag", required = false) String attackTypeTag,
+            @RequestParam(value = "samplingSize", required = false, defaultValue = "All") String samplingSize,
+            @RequestParam(value = "seed", required = false) Long seed) {
+        try {
+            DatasetJob job;
+            if (file != null && !file.isEmpty()) {
+                job = datasetJobService.submit(file, datasetFormat, attackTypeTag, samplingSize, seed);
+            } else if (datasetId != null) {
+                job = datasetJobService.submit(datasetId, attackTypeTag, samplingSize, seed);
+            } else {
+                throw new IllegalArgumentException("Either a dataset file or a datasetId is required.");
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.progress());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Too many dataset jobs are queued. Try again later."));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Error processing dataset: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Queue a job that resumes an interrupted dataset test run from its last checkpoint.
+     */
+    @PostMapping("/resume/{testRunId}")
+    public ResponseEntity<?> resumeJob(@PathVariable Long testRunId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(datasetJobService.resume(testRunId).progress());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Too many dataset jobs are queued. Try again later."));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", e.getMessage()));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping
+    public List<Map<String, Object>> listJobs() {
+        return datasetJobService.listJobs().stream()
+                .map(DatasetJob::progress)
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String jobId) {
+        return datasetJobService.findJob(jobId)
+                .map(job -> ResponseEntity.ok(job.progress()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @PostMapping("/{jobId}/cancel")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable String jobId) {
+        return datasetJobService.cancel(jobId)
+                .map(job -> ResponseEntity.ok(job.progress()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Stream job events: "progress" snapshots, "chunk" verdict rows as each chunk is analyzed,
+     * and a final "done" snapshot.
+     */
+    @GetMapping(value = "/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamJobEvents(@PathVariable String jobId) {
+        return datasetJobService.findJob(jobId)
+                .map(job -> ResponseEntity.ok(datasetJobService.subscribe(job)))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+}
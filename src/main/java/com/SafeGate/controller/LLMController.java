@@ -1,5 +1,7 @@
 package com.SafeGate.controller;
 
+import com.SafeGate.analyzer.Analyzers;
+import com.SafeGate.analyzer.EndpointPool;
 import com.SafeGate.model.LLMConfig;
 import com.SafeGate.service.LLMService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,19 +29,35 @@ public class LLMController {
     @PostMapping("/config")
     public ResponseEntity<?> saveConfig(@RequestBody LLMConfig config) {
         try {
-            // Validate analyzer URL
+            // Validate analyzer URL; the in-process heuristic provider does not need one
             String url = config.getLlmApiUrl();
-            if (url == null || url.isBlank()) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Analyzer URL is required and must be a valid URL."));
+            if (Analyzers.requiresUrl(config.getProvider())) {
+                if (url == null || url.isBlank()) {
+                    return ResponseEntity.badRequest().body(Map.of("message", "Analyzer URL is required and must be a valid URL."));
+                }
+                try {
+                    new URL(url);
+                } catch (MalformedURLException e) {
+                    return ResponseEntity.badRequest().body(Map.of("message", "Analyzer URL is required and must be a valid URL."));
+                }
+            } else if (url != null && url.isBlank()) {
+                config.setLlmApiUrl(null);
             }
-            try {
-                new URL(url);
-            } catch (MalformedURLException e) {
-                return ResponseEntity.badRequest().body(Map.of("message", "Analyzer URL is required and must be a valid URL."));
+            // Validate further analyzer instances of the pool, if any
+            String urls = config.getLlmApiUrls();
+            if (urls != null && urls.isBlank()) {
+                config.setLlmApiUrls(null);
             }
-            // Validate model when provider is ollama
-            String provider = config.getProvider() != null ? config.getProvider().toLowerCase() : "";
-            if ("ollama".equals(provider)) {
+            for (String extra : EndpointPool.parseUrls(urls)) {
+                try {
+                    new URL(extra);
+                } catch (MalformedURLException e) {
+                    return ResponseEntity.badRequest().body(Map.of("message", "Additional analyzer URL is not a valid URL: " + extra));
+                }
+            }
+            // Validate model when provider is ollama (alone or in a fallback chain)
+            boolean usesOllama = Analyzers.includes(config.getProvider(), "ollama");
+            if (usesOllama) {
                 String model = config.getModel();
                 if (model == null || model.isBlank()) {
                     return ResponseEntity.badRequest().body(Map.of(
@@ -54,7 +72,7 @@ public class LLMController {
             LLMConfig saved = llmService.saveConfig(config);
             // Best-effort pull after save if provider is ollama (do not fail save on errors)
             try {
-                if ("ollama".equals(provider)) {
+                if (usesOllama) {
                     String model = config.getModel();
                     if (model != null && !model.isBlank()) {
                         llmService.pullModel(model);
@@ -68,6 +86,21 @@ public class LLMController {
         }
     }
 
+    @GetMapping("/endpoints")
+    public ResponseEntity<?> getEndpoints() {
+        return ResponseEntity.ok(llmService.getEndpointStatus());
+    }
+
+    @GetMapping("/hedging")
+    public ResponseEntity<?> getHedging() {
+        return ResponseEntity.ok(llmService.getHedgingStatus());
+    }
+
+    @GetMapping("/limit")
+    public ResponseEntity<?> getLimit() {
+        return ResponseEntity.ok(llmService.getLimitStatus());
+    }
+
     @GetMapping("/models")
     public ResponseEntity<?> getModels() {
         return ResponseEntity.ok(llmService.getModels());
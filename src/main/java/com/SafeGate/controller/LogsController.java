@@ -1,16 +1,21 @@
 package com.SafeGate.controller;
 
-import com.SafeGate.entity.BlockedRequest;
-import com.SafeGate.repository.BlockedRequestRepository;
+import com.SafeGate.repository.BlockedRequestPartitionRepository;
+import com.SafeGate.repository.BlockedRequestQueryRepository;
+import com.SafeGate.service.AttackAnalytics;
+import com.SafeGate.service.BlockedEventStream;
+import com.SafeGate.service.BlockedRequestRetentionService;
+import com.SafeGate.service.BlockedRequestRollupService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -18,38 +23,111 @@ import java.util.Map;
 public class LogsController {
     
     @Autowired
-    private BlockedRequestRepository blockedRequestRepository;
-    
+    private BlockedRequestQueryRepository blockedRequestQueryRepository;
+
+    @Autowired
+    private BlockedRequestPartitionRepository partitionRepository;
+
+    @Autowired
+    private BlockedRequestRollupService rollupService;
+
+    @Autowired
+    private AttackAnalytics attackAnalytics;
+
+    @Autowired
+    private BlockedEventStream blockedEventStream;
+
+    @Autowired
+    private BlockedRequestRetentionService retentionService;
+
+    /**
+     * A page of blocked requests, newest first. Pass the returned nextCursor as cursor for the
+     * next page. Fields are comma-separated JSON names; by default every field but rawPayload.
+     */
     @GetMapping("/logs")
-    public List<BlockedRequest> getLogs() {
-        return blockedRequestRepository.findAll(Sort.by(Sort.Direction.DESC, "timestamp"));
+    public ResponseEntity<?> getLogs(@RequestParam(required = false) String cursor,
+                                     @RequestParam(defaultValue = "100") int limit,
+                                     @RequestParam(required = false) String fields,
+                                     @RequestParam(required = false) String category,
+                                     @RequestParam(required = false) String ip) {
+        return BlockedRequestPages.page(blockedRequestQueryRepository, null, category, ip, cursor, limit, fields);
     }
     
     @GetMapping("/logs/recent")
-    public List<BlockedRequest> getRecentLogs(@RequestParam(defaultValue = "24") int hours) {
+    public ResponseEntity<?> getRecentLogs(@RequestParam(defaultValue = "24") int hours,
+                                           @RequestParam(required = false) String cursor,
+                                           @RequestParam(defaultValue = "100") int limit,
+                                           @RequestParam(required = false) String fields) {
         Instant since = Instant.now().minus(hours, ChronoUnit.HOURS);
-        return blockedRequestRepository.findRecentRequests(since);
+        return BlockedRequestPages.page(blockedRequestQueryRepository, since, null, null, cursor, limit, fields);
+    }
+
+    /**
+     * Every matching blocked request, newest first, as newline-delimited JSON.
+     */
+    @GetMapping("/logs/export")
+    public ResponseEntity<?> exportLogs(@RequestParam(required = false) String fields,
+                                        @RequestParam(required = false) String category,
+                                        @RequestParam(required = false) String ip,
+                                        @RequestParam(required = false) Integer hours) {
+        Instant since = hours != null ? Instant.now().minus(hours, ChronoUnit.HOURS) : null;
+        return BlockedRequestPages.export(blockedRequestQueryRepository, since, category, ip, fields);
     }
     
+    /**
+     * Block counts read from the rollup table, which lags saved blocks by up to the rollup flush interval.
+     */
     @GetMapping("/logs/stats")
     public ResponseEntity<Map<String, Object>> getStats() {
-        Map<String, Object> stats = new HashMap<>();
-        
-        stats.put("totalBlocked", blockedRequestRepository.count());
-        
-        Instant since24h = Instant.now().minus(24, ChronoUnit.HOURS);
-        stats.put("blockedLast24h", blockedRequestRepository.findRecentRequests(since24h).size());
-        
-        stats.put("attackPatterns", blockedRequestRepository.findAttackPatternStats());
-        stats.put("topAttackingIPs", blockedRequestRepository.findTopAttackingIPs());
-        stats.put("timestamp", Instant.now());
-        
-        return ResponseEntity.ok(stats);
+        return ResponseEntity.ok(rollupService.stats());
+    }
+    
+    /**
+     * Live attack analytics of the last minutes, kept in memory: block counts, distinct
+     * attacking IPs, and the top IPs, rules, URIs and user agents with their maximum overcount.
+     */
+    @GetMapping("/logs/live")
+    public ResponseEntity<Map<String, Object>> getLiveStats(@RequestParam(defaultValue = "15") int minutes,
+                                                            @RequestParam(defaultValue = "10") int top) {
+        return ResponseEntity.ok(attackAnalytics.snapshot(minutes, Math.min(top, 100)));
     }
     
+    /**
+     * Stream blocks as they happen: "blocked" events with the block as JSON and "epoch-sequence"
+     * as the id, "gap" events when the client fell too far behind, and a "reset" event when a
+     * Last-Event-ID is from another epoch (before a restart). Reconnecting with Last-Event-ID
+     * resumes after that event.
+     */
+    @GetMapping(value = "/logs/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamBlockedEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        return blockedEventStream.subscribe(lastEventId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build());
+    }
+    
+    /**
+     * Partitions blocked_requests by day when it already holds rows, which the retention job
+     * never does on its own: MySQL copies the table and blocks writes to it meanwhile. The
+     * conversion runs in the background; its outcome is logged.
+     */
+    @PostMapping("/logs/partitioning")
+    public ResponseEntity<Map<String, String>> startPartitioning() {
+        Map<String, String> response = new HashMap<>();
+        if (!retentionService.startPartitioning()) {
+            response.put("message", "Not partitioned: blocked_requests is already partitioned, the database is not MySQL, "
+                    + "or safegate.logs.partitioning.enabled is false");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+        }
+        response.put("message", "Partitioning blocked_requests");
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(response);
+    }
+
     @DeleteMapping("/logs")
     public ResponseEntity<Map<String, String>> clearLogs() {
-        blockedRequestRepository.deleteAll();
+        // One TRUNCATE instead of loading and deleting every entity
+        partitionRepository.truncate();
+        rollupService.clear();
         Map<String, String> response = new HashMap<>();
         response.put("message", "All logs cleared");
         return ResponseEntity.ok(response);
@@ -1,12 +1,11 @@
 package com.SafeGate.controller;
 
-import com.SafeGate.entity.BlockedRequest;
+import com.SafeGate.repository.BlockedRequestQueryRepository;
 import com.SafeGate.repository.BlockedRequestRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
-
 @RestController
 @RequestMapping("/api/security")
 public class SecurityController {
@@ -14,9 +13,17 @@ public class SecurityController {
     @Autowired
     private BlockedRequestRepository blockedRequestRepository;
     
+    @Autowired
+    private BlockedRequestQueryRepository blockedRequestQueryRepository;
+
+    /**
+     * A page of blocked requests, newest first; see {@link LogsController#getLogs}.
+     */
     @GetMapping("/blocked")
-    public List<BlockedRequest> getBlockedRequests() {
-        return blockedRequestRepository.findAllByOrderByTimestampDesc();
+    public ResponseEntity<?> getBlockedRequests(@RequestParam(required = false) String cursor,
+                                                @RequestParam(defaultValue = "100") int limit,
+                                                @RequestParam(required = false) String fields) {
+        return BlockedRequestPages.page(blockedRequestQueryRepository, null, null, null, cursor, limit, fields);
     }
     
     @GetMapping("/blocked/count")
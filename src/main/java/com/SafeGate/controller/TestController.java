@@ -1,17 +1,25 @@
 package com.SafeGate.controller;
 
 import com.SafeGate.entity.TestRun;
+import com.SafeGate.repository.PassedPayloadBulkRepository;
 import com.SafeGate.repository.TestRunRepository;
 import com.SafeGate.service.DatasetTestRunnerService;
 import com.SafeGate.service.LLMService;
+import com.SafeGate.service.RunResultStore;
 import com.SafeGate.service.WafTestModeService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -24,11 +32,19 @@ public class TestController {
 
     private static final Logger logger = LoggerFactory.getLogger(TestController.class);
 
+    private static final int MAX_RESULT_PAGE = 1000;
+
     @Autowired
     private WafTestModeService testModeService;
 
     @Autowired
     private TestRunRepository testRunRepository;
+
+    @Autowired
+    private PassedPayloadBulkRepository passedPayloadRepository;
+
+    @Autowired
+    private RunResultStore runResultStore;
     
     @Autowired
     private DatasetTestRunnerService datasetTestRunnerService;
@@ -70,6 +86,132 @@ public class TestController {
         return ResponseEntity.ok(testRunRepository.findAll());
     }
     
+    /**
+     * Get a page of a test run's per-payload results, read from the result store.
+     *
+     * @param id       The ID of the test run
+     * @param verdict  "malicious", "safe" or "all"
+     * @param category Only rows with this category, if given
+     * @param cursor   The row index to start at; the previous page's nextCursor
+     * @param limit    The maximum number of rows (at most 1000)
+     * @param payloads Whether to include the payload text
+     * @return The rows, the number of matching rows and the cursor of the next page (null on the last page)
+     */
+    @GetMapping("/results/{id}/payloads")
+    public ResponseEntity<?> getResultPayloads(
+            @PathVariable Long id,
+            @RequestParam(value = "verdict", required = false, defaultValue = "all") String verdict,
+            @RequestParam(value = "category", required = false) String category,
+            @RequestParam(value = "cursor", required = false, defaultValue = "0") long cursor,
+            @RequestParam(value = "limit", required = false, defaultValue = "100") int limit,
+            @RequestParam(value = "payloads", required = false, defaultValue = "true") boolean payloads) {
+        try {
+            if (!testRunRepository.existsById(id)) {
+                return ResponseEntity.notFound().build();
+            }
+            RunResultStore.Filter filter = resultFilter(verdict, category);
+            int pageSize = Math.max(1, Math.min(MAX_RESULT_PAGE, limit));
+            List<RunResultStore.Row> rows = runResultStore.page(id, filter, cursor, pageSize, payloads);
+
+            List<Map<String, Object>> items = new ArrayList<>(rows.size());
+            for (RunResultStore.Row row : rows) {
+                Map<String, Object> item = new HashMap<>();
+                item.put("index", row.index());
+                item.put("is_malicious", row.malicious());
+                item.put("category", row.category());
+                item.put("reason", row.reason() != null ? row.reason() : "");
+                if (payloads) {
+                    item.put("payload", row.payload());
+                }
+                items.add(item);
+            }
+
+            Map<String, Object> result = new HashMap<>();
+            result.put("items", items);
+            result.put("total", runResultStore.count(id, filter));
+            result.put("nextCursor", rows.size() < pageSize ? null : rows.get(rows.size() - 1).index() + 1);
+            return ResponseEntity.ok(result);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get the payload text of one result row
+     *
+     * @param id    The ID of the test run
+     * @param index The row index, as returned by the results page
+     * @return The payload as plain text, or 404
+     */
+    @GetMapping(value = "/results/{id}/payloads/{index}", produces = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<String> getResultPayload(@PathVariable Long id, @PathVariable long index) {
+        return runResultStore.payload(id, index)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Download a test run's payloads as a text report. The report is streamed page by page,
+     * so its size is not limited by memory on either side.
+     *
+     * @param id      The ID of the test run
+     * @param verdict "malicious", "safe" or "all"
+     * @return The report as an attachment
+     */
+    @GetMapping("/results/{id}/payloads/download")
+    public ResponseEntity<?> downloadResultPayloads(
+            @PathVariable Long id,
+            @RequestParam(value = "verdict", required = false, defaultValue = "all") String verdict,
+            @RequestParam(value = "category", required = false) String category) {
+        if (!testRunRepository.existsById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        RunResultStore.Filter filter;
+        try {
+            filter = resultFilter(verdict, category);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+
+        StreamingResponseBody body = out -> {
+            Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(verdict.toUpperCase() + " PAYLOADS REPORT\n" + "=".repeat(20) + "\n");
+            long entry = 0;
+            long cursor = 0;
+            List<RunResultStore.Row> rows;
+            do {
+                rows = runResultStore.page(id, filter, cursor, MAX_RESULT_PAGE, true);
+                for (RunResultStore.Row row : rows) {
+                    writer.write("\n[Entry " + (++entry) + "]\n");
+                    if (row.malicious()) {
+                        writer.write("Category: " + row.category() + "\n");
+                    }
+                    writer.write(row.payload());
+                    writer.write("\n");
+                }
+                if (!rows.isEmpty()) {
+                    cursor = rows.get(rows.size() - 1).index() + 1;
+                }
+                writer.flush();
+            } while (rows.size() == MAX_RESULT_PAGE);
+        };
+        String filename = "run_" + id + "_" + verdict.toLowerCase() + "_payloads.txt";
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .contentType(new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    private static RunResultStore.Filter resultFilter(String verdict, String category) {
+        Boolean malicious = switch (verdict.toLowerCase()) {
+            case "all" -> null;
+            case "malicious" -> true;
+            case "safe" -> false;
+            default -> throw new IllegalArgumentException("Unknown verdict: " + verdict + " (expected malicious, safe or all)");
+        };
+        return new RunResultStore.Filter(malicious, category == null || category.isBlank() ? null : category);
+    }
+
     /**
      * Delete a test run by ID
      * 
@@ -82,6 +224,10 @@ public class TestController {
             if (!testRunRepository.existsById(id)) {
                 return ResponseEntity.notFound().build();
             }
+            // Results are not cascaded from the run. Runs stored before switching to the columnar
+            // store may still have passed_payloads rows, which would block deleting the run
+            runResultStore.delete(id);
+            passedPayloadRepository.deleteByTestRunId(id);
             testRunRepository.deleteById(id);
             return ResponseEntity.ok(Map.of("message", "Test run deleted successfully"));
         } catch (Exception e) {
@@ -90,10 +236,12 @@ public class TestController {
     }
     
     /**
-     * Start a dataset test with the provided file and parameters.
+     * Start a dataset test with the provided file and parameters, or with a dataset
+     * from the dataset library when a datasetId is given instead of a file.
      * If datasetFormat is not specified, the format will be auto-detected.
      * 
-     * @param file The dataset file to test
+     * @param file The dataset file to test (optional when datasetId is given)
+     * @param datasetId The id of a stored dataset (optional when a file is given)
      * @param datasetFormat The format of the dataset (TXT, CSV, JSON, XML, AUTO). Optional, defaults to AUTO.
      * @param attackTypeTag Optional tag for the attack type
      * @param samplingSize Number of attacks to test (All, Random 100, Random 1000, etc.)
@@ -102,7 +250,8 @@ public class TestController {
     @SuppressWarnings("unchecked")
     @PostMapping("/start-dataset-test")
     public ResponseEntity<?> startDatasetTest(
-            @RequestParam("file") MultipartFile file,
+            @RequestParam(value = "file", required = false) MultipartFile file,
+            @RequestParam(value = "datasetId", required = false) Long datasetId,
             @RequestParam(value = "datasetFormat", required = false, defaultValue = "AUTO") String datasetFormat,
             @RequestParam(value = "attackTypeTag", required = false) String attackTypeTag,
             @RequestParam(value = "samplingSize", required = false, defaultValue = "All") String samplingSize,
@@ -111,20 +260,24 @@ public class TestController {
             Map<String, Object> result = new HashMap<>();
             
             // Run the dataset test
-            TestRun completedTest = datasetTestRunnerService.runDatasetTest(file, datasetFormat, attackTypeTag, samplingSize, seed);
+            TestRun completedTest;
+            if (file != null && !file.isEmpty()) {
+                completedTest = datasetTestRunnerService.runDatasetTest(file, datasetFormat, attackTypeTag, samplingSize, seed);
+            } else if (datasetId != null) {
+                completedTest = datasetTestRunnerService.runStoredDatasetTest(datasetId, attackTypeTag, samplingSize, seed);
+            } else {
+                throw new IllegalArgumentException("Either a dataset file or a datasetId is required.");
+            }
             
             // Add the detected format to the response
             result.put("testRun", completedTest);
             result.put("detectedFormat", completedTest.getDatasetFormat());
             result.put("message", "Test completed successfully using " + completedTest.getDatasetFormat() + " format");
             
-            // Collect LLM stats and categorized results produced by the service
+            // Collect LLM stats; the per-payload results are paged from the result store
             Map<String, Object> stats = datasetTestRunnerService.getLastLlmStats();
-            List<Map<String, Object>> maliciousList = datasetTestRunnerService.getLastLlmMaliciousList();
-            List<Map<String, Object>> safeList = datasetTestRunnerService.getLastLlmSafeList();
             result.put("llmStats", stats);
-            result.put("llmMaliciousPayloads", maliciousList);
-            result.put("llmSafePayloads", safeList);
+            result.put("llmResultsUrl", "/api/tests/results/" + completedTest.getId() + "/payloads");
             
             return ResponseEntity.ok(result);
         } catch (IllegalStateException e) {
@@ -7,8 +7,19 @@ import lombok.NoArgsConstructor;
 
 import java.time.Instant;
 
+/**
+ * A request the WAF blocked.
+ * <p>
+ * The indexes match the log queries, which filter by time, source IP or rule and read newest
+ * first. On MySQL the table is partitioned by day on timestamp by BlockedRequestRetentionService,
+ * which makes (id, timestamp) the primary key and drops expired days as whole partitions.
+ */
 @Entity
-@Table(name = "blocked_requests")
+@Table(name = "blocked_requests", indexes = {
+        @Index(name = "idx_blocked_timestamp", columnList = "timestamp, id"),
+        @Index(name = "idx_blocked_source_ip", columnList = "source_ip, timestamp, id"),
+        @Index(name = "idx_blocked_pattern", columnList = "matched_pattern, timestamp, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
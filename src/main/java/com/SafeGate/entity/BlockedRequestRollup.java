@@ -0,0 +1,55 @@
+package com.SafeGate.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Number of requests blocked from one source IP by one rule within a time bucket. Buckets are
+ * a minute, an hour or a day long, starting at bucketStart (epoch seconds, UTC).
+ * <p>
+ * Rows are written and read with JDBC by BlockedRequestRollupRepository; the entity defines
+ * the table and its unique key, which counts are added to.
+ */
+@Entity
+@Table(name = "blocked_request_rollups",
+        uniqueConstraints = @UniqueConstraint(name = "uk_rollup_bucket",
+                columnNames = {"bucket_seconds", "bucket_start", "category", "source_ip"}))
+@Data
+@NoArgsConstructor
+public class BlockedRequestRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Bucket length: 60, 3600 or 86400
+    @Column(name = "bucket_seconds", nullable = false)
+    private int bucketSeconds;
+
+    @Column(name = "bucket_start", nullable = false)
+    private long bucketStart;
+
+    @Column(nullable = false, length = 100)
+    private String category;
+
+    @Column(name = "source_ip", nullable = false, length = 64)
+    private String sourceIp;
+
+    @Column(name = "blocked_count", nullable = false)
+    private long blockedCount;
+
+    // Manual getters/setters to fix build issues when Lombok fails
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public int getBucketSeconds() { return bucketSeconds; }
+    public void setBucketSeconds(int bucketSeconds) { this.bucketSeconds = bucketSeconds; }
+    public long getBucketStart() { return bucketStart; }
+    public void setBucketStart(long bucketStart) { this.bucketStart = bucketStart; }
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+    public String getSourceIp() { return sourceIp; }
+    public void setSourceIp(String sourceIp) { this.sourceIp = sourceIp; }
+    public long getBlockedCount() { return blockedCount; }
+    public void setBlockedCount(long blockedCount) { this.blockedCount = blockedCount; }
+}
@@ -0,0 +1,60 @@
+package com.SafeGate.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * A dataset in the dataset library. Uploads are identified by the SHA-256 of their
+ * content and parsed once into a binary snapshot that later runs read directly.
+ */
+@Entity
+@Table(name = "datasets", uniqueConstraints = @UniqueConstraint(columnNames = {"sha256", "dataset_format"}))
+@Data
+@NoArgsConstructor
+public class Dataset {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "dataset_format", nullable = false)
+    private String datasetFormat;
+
+    private String originalFileName;
+
+    // Size of the original upload in bytes
+    private long sizeBytes;
+
+    private long recordCount;
+
+    // Snapshot file name, relative to the dataset store directory
+    @Column(nullable = false)
+    private String snapshotFile;
+
+    @CreationTimestamp
+    private LocalDateTime createdAt;
+
+    // Manual getters/setters to fix build issues when Lombok fails
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+    public String getSha256() { return sha256; }
+    public void setSha256(String sha256) { this.sha256 = sha256; }
+    public String getDatasetFormat() { return datasetFormat; }
+    public void setDatasetFormat(String datasetFormat) { this.datasetFormat = datasetFormat; }
+    public String getOriginalFileName() { return originalFileName; }
+    public void setOriginalFileName(String originalFileName) { this.originalFileName = originalFileName; }
+    public long getSizeBytes() { return sizeBytes; }
+    public void setSizeBytes(long sizeBytes) { this.sizeBytes = sizeBytes; }
+    public long getRecordCount() { return recordCount; }
+    public void setRecordCount(long recordCount) { this.recordCount = recordCount; }
+    public String getSnapshotFile() { return snapshotFile; }
+    public void setSnapshotFile(String snapshotFile) { this.snapshotFile = snapshotFile; }
+    public LocalDateTime getCreatedAt() { return createdAt; }
+    public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
+}
@@ -1,5 +1,6 @@
 package com.SafeGate.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -23,6 +24,7 @@ public class TestRun {
     private long totalBlocked = 0;
     
     // New fields for dataset testing
+    private Long datasetId;
     private String datasetFileName;
     private String datasetFormat;
     private String attackTypeTag;
@@ -32,11 +34,20 @@ public class TestRun {
     // Fields for malicious attack analysis
     private long totalMaliciousRequests = 0;
     private long totalMaliciousBlocked = 0;
+
+    // Checkpoint of an unfinished dataset run: payloads processed and result store rows written
+    // up to it. Cleared when the run finishes; a run left with a checkpoint can be resumed
+    private Long checkpointPosition;
+    private Long checkpointResultRows;
+    private LocalDateTime checkpointTime;
     
     @OneToMany(mappedBy = "testRun", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.EAGER)
     private List<TestRunBlockCount> blockCounts = new ArrayList<>();
     
-    @OneToMany(mappedBy = "testRun", cascade = CascadeType.ALL, orphanRemoval = true, fetch = FetchType.LAZY)
+    // Written and deleted in bulk by PassedPayloadBulkRepository, not cascaded from the run.
+    // Not serialized: clients page through /api/tests/results/{id}/payloads instead
+    @JsonIgnore
+    @OneToMany(mappedBy = "testRun", fetch = FetchType.LAZY)
     private List<PassedPayload> passedPayloads = new ArrayList<>();
     
     // Helper method to get test parameters as a string
@@ -72,6 +83,12 @@ public class TestRun {
         return params.toString();
     }
     
+    // A dataset run that was interrupted (failure or restart) after its last checkpoint
+    @Transient
+    public boolean isResumable() {
+        return endTime == null && checkpointPosition != null;
+    }
+
     // Helper method to calculate effectiveness percentage
     @Transient
     public double getEffectivenessPercentage() {
@@ -92,6 +109,8 @@ public class TestRun {
     public void setTotalPassed(long totalPassed) { this.totalPassed = totalPassed; }
     public long getTotalBlocked() { return totalBlocked; }
     public void setTotalBlocked(long totalBlocked) { this.totalBlocked = totalBlocked; }
+    public Long getDatasetId() { return datasetId; }
+    public void setDatasetId(Long datasetId) { this.datasetId = datasetId; }
     public String getDatasetFileName() { return datasetFileName; }
     public void setDatasetFileName(String datasetFileName) { this.datasetFileName = datasetFileName; }
     public String getDatasetFormat() { return datasetFormat; }
@@ -106,6 +125,12 @@ public class TestRun {
     public void setTotalMaliciousRequests(long totalMaliciousRequests) { this.totalMaliciousRequests = totalMaliciousRequests; }
     public long getTotalMaliciousBlocked() { return totalMaliciousBlocked; }
     public void setTotalMaliciousBlocked(long totalMaliciousBlocked) { this.totalMaliciousBlocked = totalMaliciousBlocked; }
+    public Long getCheckpointPosition() { return checkpointPosition; }
+    public void setCheckpointPosition(Long checkpointPosition) { this.checkpointPosition = checkpointPosition; }
+    public Long getCheckpointResultRows() { return checkpointResultRows; }
+    public void setCheckpointResultRows(Long checkpointResultRows) { this.checkpointResultRows = checkpointResultRows; }
+    public LocalDateTime getCheckpointTime() { return checkpointTime; }
+    public void setCheckpointTime(LocalDateTime checkpointTime) { this.checkpointTime = checkpointTime; }
     public List<TestRunBlockCount> getBlockCounts() { return blockCounts; }
     public void setBlockCounts(List<TestRunBlockCount> blockCounts) { this.blockCounts = blockCounts; }
     public List<PassedPayload> getPassedPayloads() { return passedPayloads; }
@@ -0,0 +1,9 @@
+package com.SafeGate.enums;
+
+public enum DatasetJobStatus {
+    QUEUED,
+    RUNNING,
+    COMPLETED,
+    CANCELLED,
+    FAILED
+}
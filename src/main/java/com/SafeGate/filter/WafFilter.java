@@ -4,6 +4,9 @@ import com.SafeGate.entity.BlockedRequest;
 import com.SafeGate.enums.LLMMode;
 import com.SafeGate.model.LLMConfig;
 import com.SafeGate.repository.BlockedRequestRepository;
+import com.SafeGate.service.AttackAnalytics;
+import com.SafeGate.service.BlockedEventStream;
+import com.SafeGate.service.BlockedRequestRollupService;
 import com.SafeGate.service.LLMService;
 import com.SafeGate.service.WafTestModeService;
 import jakarta.servlet.*;
@@ -38,9 +41,19 @@ public class WafFilter implements Filter {
     @Autowired
     private LLMService llmService;
 
+    @Autowired
+    private BlockedRequestRollupService rollupService;
+
+    @Autowired
+    private AttackAnalytics attackAnalytics;
+
+    @Autowired
+    private BlockedEventStream blockedEventStream;
+
     private static final List<String> EXCLUDED_PATHS = Arrays.asList(
             "/api/logs",
             "/api/tests",
+            "/api/datasets",
             "/api/llm",
             "/actuator"
     );
@@ -89,30 +102,35 @@ public class WafFilter implements Filter {
                 long blockedRequestId = -1;
                 String ruleName = "LLM:" + category;
                 String ruleId = "LLM-" + category;
+                attackAnalytics.record(getClientIpAddress(httpRequest), ruleName, httpRequest.getRequestURI(),
+                        httpRequest.getHeader("User-Agent"));
+                
+                BlockedRequest blockedRequest = new BlockedRequest(
+                    getClientIpAddress(httpRequest),
+                    ruleName + (reason.isEmpty() ? "" : " - " + reason),
+                    normalizedPayload,
+                    ruleId
+                );
+                blockedRequest.setRequestMethod(httpRequest.getMethod());
+                blockedRequest.setRequestUri(httpRequest.getRequestURI());
+                blockedRequest.setUserAgent(httpRequest.getHeader("User-Agent"));
                 
-                if (testModeService.isTestModeEnabled()) {
+                boolean testMode = testModeService.isTestModeEnabled();
+                if (testMode) {
                     testModeService.recordBlockedRequest(ruleName);
                     logger.warn("BLOCKED (TEST MODE) - Rule: {} | IP: {} | Reason: {}", ruleName, getClientIpAddress(httpRequest), reason);
                 } else {
-                    BlockedRequest blockedRequest = new BlockedRequest(
-                        getClientIpAddress(httpRequest),
-                        ruleName + (reason.isEmpty() ? "" : " - " + reason),
-                        normalizedPayload,
-                        ruleId
-                    );
-                    blockedRequest.setRequestMethod(httpRequest.getMethod());
-                    blockedRequest.setRequestUri(httpRequest.getRequestURI());
-                    blockedRequest.setUserAgent(httpRequest.getHeader("User-Agent"));
-                    
                     try {
                         BlockedRequest savedRequest = blockedRequestRepository.save(blockedRequest);
                         blockedRequestId = savedRequest.getId();
+                        rollupService.record(savedRequest);
                         logger.warn("BLOCKED & SAVED - Rule: {} | IP: {} | ID: {}", 
                                    ruleName, getClientIpAddress(httpRequest), blockedRequestId);
                     } catch (Exception e) {
                         logger.error("Failed to save blocked request", e);
                     }
                 }
+                blockedEventStream.publish(blockedRequest, testMode);
                 
                 httpResponse.setStatus(HttpServletResponse.SC_FORBIDDEN);
                 httpResponse.setContentType("application/json");
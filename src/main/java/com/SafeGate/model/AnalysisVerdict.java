@@ -0,0 +1,110 @@
+package com.SafeGate.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * Data class for one verdict line of the analyzer's streaming batch endpoint.
+ * The index refers to the payload's position in the batch request, since verdicts
+ * may be streamed in any order.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class AnalysisVerdict {
+    private int index;
+
+    @JsonProperty("is_malicious")
+    private boolean malicious;
+
+    private String category;
+    private String reason;
+    private String error;
+    private boolean degraded;
+
+    /**
+     * Default constructor for AnalysisVerdict
+     */
+    public AnalysisVerdict() {
+    }
+
+    /**
+     * Constructor for AnalysisVerdict
+     * @param index The position of the payload in the batch
+     * @param malicious Whether the payload was classified as malicious
+     * @param category The attack category, or SAFE
+     * @param reason The analyzer's explanation
+     */
+    public AnalysisVerdict(int index, boolean malicious, String category, String reason) {
+        this.index = index;
+        this.malicious = malicious;
+        this.category = category;
+        this.reason = reason;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public boolean isMalicious() {
+        return malicious;
+    }
+
+    public void setMalicious(boolean malicious) {
+        this.malicious = malicious;
+    }
+
+    public String getCategory() {
+        return category;
+    }
+
+    public void setCategory(String category) {
+        this.category = category;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    public void setReason(String reason) {
+        this.reason = reason;
+    }
+
+    /**
+     * Get the analyzer error for this payload
+     * @return The error message, or null if the payload was analyzed
+     */
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    /**
+     * Whether the verdict stands in for the model's: a heuristic verdict (here or in the analyzer
+     * service), or one reported safe because the analyzer was overloaded
+     * @return True if the model did not classify the payload
+     */
+    public boolean isDegraded() {
+        return degraded;
+    }
+
+    public void setDegraded(boolean degraded) {
+        this.degraded = degraded;
+    }
+
+    @Override
+    public String toString() {
+        return "AnalysisVerdict{" +
+                "index=" + index +
+                ", malicious=" + malicious +
+                ", category='" + category + '\'' +
+                ", error='" + error + '\'' +
+                ", degraded=" + degraded +
+                '}';
+    }
+}
@@ -7,6 +7,13 @@ package com.SafeGate.model;
 public class HttpRequestData {
     private String method;
     private String payload;
+    private String label;
+
+    /**
+     * Default constructor for HttpRequestData
+     */
+    public HttpRequestData() {
+    }
 
     /**
      * Constructor for HttpRequestData
@@ -18,6 +25,18 @@ public class HttpRequestData {
         this.payload = payload;
     }
 
+    /**
+     * Constructor for HttpRequestData with a dataset label
+     * @param method The HTTP method (GET, POST, etc.)
+     * @param payload The payload data
+     * @param label The label assigned by the dataset (e.g. "sqli", "benign"), or null
+     */
+    public HttpRequestData(String method, String payload, String label) {
+        this.method = method;
+        this.payload = payload;
+        this.label = label;
+    }
+
     /**
      * Get the HTTP method
      * @return The HTTP method
@@ -50,6 +69,22 @@ public class HttpRequestData {
         this.payload = payload;
     }
 
+    /**
+     * Get the dataset label
+     * @return The label, or null if the dataset has none
+     */
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Set the dataset label
+     * @param label The label
+     */
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
     /**
      * Returns a string representation of the HttpRequestData
      * @return A string representation of the HttpRequestData
@@ -59,6 +94,7 @@ public class HttpRequestData {
         return "HttpRequestData{" +
                 "method='" + method + '\'' +
                 ", payload='" + payload + '\'' +
+                ", label='" + label + '\'' +
                 '}';
     }
 }
\ No newline at end of file
@@ -20,6 +20,10 @@ public class LLMConfig {
     @Column
     private String llmApiUrl;
 
+    // Further analyzer instances, comma- or newline-separated; requests are balanced across all of them
+    @Column(length = 2000)
+    private String llmApiUrls;
+
     // Optional API key if ever needed
     @Column
     private String llmApiKey;
@@ -43,6 +47,8 @@ public class LLMConfig {
     public void setLlmMode(LLMMode llmMode) { this.llmMode = llmMode; }
     public String getLlmApiUrl() { return llmApiUrl; }
     public void setLlmApiUrl(String llmApiUrl) { this.llmApiUrl = llmApiUrl; }
+    public String getLlmApiUrls() { return llmApiUrls; }
+    public void setLlmApiUrls(String llmApiUrls) { this.llmApiUrls = llmApiUrls; }
     public String getLlmApiKey() { return llmApiKey; }
     public void setLlmApiKey(String llmApiKey) { this.llmApiKey = llmApiKey; }
     public String getProvider() { return provider; }
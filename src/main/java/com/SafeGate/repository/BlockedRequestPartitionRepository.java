@@ -0,0 +1,148 @@
+package com.SafeGate.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+
+/**
+ * Manages the storage of blocked_requests with JDBC: its daily partitions on MySQL, and bulk
+ * deletes that never load entities.
+ * <p>
+ * Each partition is named after its exclusive upper bound, a UTC day: p20250302 holds the rows
+ * before 2025-03-02 00:00 UTC that no earlier partition holds. A last p_future partition takes
+ * every later row, so inserts never fail for want of a partition, and new days are split off it.
+ * MySQL requires the partitioning column in every unique key, so the primary key becomes
+ * (id, timestamp); id stays auto-increment and unique.
+ */
+@Repository
+public class BlockedRequestPartitionRepository {
+
+    private static final String TABLE = "blocked_requests";
+    private static final String FUTURE = "p_future";
+    private static final DateTimeFormatter NAME = DateTimeFormatter.ofPattern("'p'yyyyMMdd", Locale.ROOT);
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * @return Whether the database is MySQL, the only one partitions are managed on.
+     */
+    public boolean isMySql() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                connection.getMetaData().getDatabaseProductName());
+        return product != null && product.toLowerCase(Locale.ROOT).contains("mysql");
+    }
+
+    /**
+     * @return Whether blocked_requests is partitioned.
+     */
+    public boolean isPartitioned() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL", Long.class, TABLE);
+        return count != null && count > 0;
+    }
+
+    /**
+     * @return Whether blocked_requests holds no rows.
+     */
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT id FROM " + TABLE + " LIMIT 1", Long.class).isEmpty();
+    }
+
+    /**
+     * @return The upper bounds of the daily partitions, in order, without p_future.
+     */
+    public List<LocalDate> partitionBounds() {
+        List<String> names = jdbcTemplate.queryForList("SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                + "ORDER BY PARTITION_ORDINAL_POSITION", String.class, TABLE);
+        List<LocalDate> bounds = new ArrayList<>();
+        for (String name : names) {
+            if (!FUTURE.equalsIgnoreCase(name)) {
+                bounds.add(LocalDate.parse(name.toLowerCase(Locale.ROOT), NAME));
+            }
+        }
+        return bounds;
+    }
+
+    /**
+     * Partitions the table by day with the given upper bounds and p_future, and widens the
+     * primary key to (id, timestamp). MySQL copies the table to do so and blocks writes to it
+     * meanwhile, which takes a while on a large table.
+     */
+    public void partition(List<LocalDate> bounds) {
+        boolean datetime = "datetime".equalsIgnoreCase(jdbcTemplate.queryForObject("SELECT DATA_TYPE FROM "
+                + "information_schema.COLUMNS WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND COLUMN_NAME = 'timestamp'",
+                String.class, TABLE));
+        // DATETIME columns are partitioned on their value; TIMESTAMP columns only through UNIX_TIMESTAMP
+        String scheme = datetime ? "RANGE COLUMNS(`timestamp`)" : "RANGE (UNIX_TIMESTAMP(`timestamp`))";
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PRIMARY KEY, ADD PRIMARY KEY (id, `timestamp`) "
+                + "PARTITION BY " + scheme + " (" + definitions(bounds, datetime) + ")");
+    }
+
+    /**
+     * Splits daily partitions with the given upper bounds, all after the last one, off p_future.
+     */
+    public void addPartitions(List<LocalDate> bounds) {
+        if (bounds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " REORGANIZE PARTITION " + FUTURE + " INTO ("
+                + definitions(bounds, isDatetimePartitioned()) + ")");
+    }
+
+    /**
+     * Drops the daily partitions with the given upper bounds, and every row in them.
+     */
+    public void dropPartitions(List<LocalDate> bounds) {
+        if (bounds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.execute("ALTER TABLE " + TABLE + " DROP PARTITION "
+                + bounds.stream().map(NAME::format).collect(Collectors.joining(", ")));
+    }
+
+    /**
+     * Deletes the rows before the time, for tables that are not partitioned.
+     *
+     * @return The number of rows deleted.
+     */
+    public int deleteBefore(Instant before) {
+        // Instants are stored as UTC date-times, like Hibernate writes them
+        return jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE `timestamp` < ?",
+                LocalDateTime.ofInstant(before, ZoneOffset.UTC));
+    }
+
+    /**
+     * Deletes every blocked request at once. Partitions are kept.
+     */
+    public void truncate() {
+        jdbcTemplate.execute("TRUNCATE TABLE " + TABLE);
+    }
+
+    private boolean isDatetimePartitioned() {
+        String expression = jdbcTemplate.queryForObject("SELECT PARTITION_EXPRESSION FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME = ?", String.class, TABLE, FUTURE);
+        return expression != null && !expression.toLowerCase(Locale.ROOT).contains("unix_timestamp");
+    }
+
+    private static String definitions(List<LocalDate> bounds, boolean datetime) {
+        StringBuilder sql = new StringBuilder();
+        for (LocalDate bound : bounds) {
+            String limit = datetime ? "'" + bound + "'" : Long.toString(bound.atStartOfDay(ZoneOffset.UTC).toEpochSecond());
+            sql.append("PARTITION ").append(NAME.format(bound)).append(" VALUES LESS THAN (").append(limit).append("), ");
+        }
+        return sql.append("PARTITION ").append(FUTURE).append(" VALUES LESS THAN (MAXVALUE)").toString();
+    }
+}
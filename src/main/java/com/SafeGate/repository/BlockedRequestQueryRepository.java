@@ -0,0 +1,235 @@
+package com.SafeGate.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Calendar;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+
+/**
+ * Reads blocked requests newest first with keyset pagination, handing rows to a callback as
+ * the JDBC cursor delivers them instead of loading entities, so memory use does not depend on
+ * the size of blocked_requests.
+ * <p>
+ * Rows are ordered by (timestamp, id) descending, and a page continues after the key of the
+ * last row of the previous one. With useCursorFetch=true on the MySQL URL, rows are fetched
+ * fetch-size at a time through a server-side cursor.
+ */
+@Repository
+public class BlockedRequestQueryRepository {
+
+    // Instants are stored as UTC date-times, like Hibernate writes them
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${safegate.logs.fetch-size:500}")
+    private int fetchSize;
+
+    /**
+     * The columns of a blocked request, by the name they have in JSON.
+     */
+    public enum Field {
+        ID("id", "id"),
+        TIMESTAMP("timestamp", "timestamp"),
+        SOURCE_IP("sourceIp", "source_ip"),
+        DETECTION_CATEGORY("detectionCategory", "matched_pattern"),
+        RULE_ID("ruleId", "rule_id"),
+        REQUEST_METHOD("requestMethod", "request_method"),
+        REQUEST_URI("requestUri", "request_uri"),
+        USER_AGENT("userAgent", "user_agent"),
+        RAW_PAYLOAD("rawPayload", "raw_payload");
+
+        private final String jsonName;
+        private final String column;
+
+        Field(String jsonName, String column) {
+            this.jsonName = jsonName;
+            this.column = column;
+        }
+
+        public String jsonName() {
+            return jsonName;
+        }
+
+        /**
+         * @param names Comma-separated JSON names, or null or blank for every field but the raw payload.
+         * @return The fields, in declaration order.
+         * @throws IllegalArgumentException if a name is unknown.
+         */
+        public static List<Field> parse(String names) {
+            if (names == null || names.isBlank()) {
+                return List.copyOf(EnumSet.complementOf(EnumSet.of(RAW_PAYLOAD)));
+            }
+            Set<Field> fields = EnumSet.noneOf(Field.class);
+            for (String name : names.split(",")) {
+                String trimmed = name.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                Field match = null;
+                for (Field field : values()) {
+                    if (field.jsonName.equalsIgnoreCase(trimmed)) {
+                        match = field;
+                    }
+                }
+                if (match == null) {
+                    throw new IllegalArgumentException("Unknown field: " + trimmed);
+                }
+                fields.add(match);
+            }
+            return List.copyOf(fields);
+        }
+    }
+
+    /**
+     * Position after a row in (timestamp, id) descending order.
+     */
+    public record Cursor(Instant timestamp, long id) {
+
+        /**
+         * @return The cursor as an opaque URL-safe token.
+         */
+        public String encode() {
+            String key = timestamp.getEpochSecond() + ":" + timestamp.getNano() + ":" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+        }
+
+        /**
+         * @return The cursor of a token from {@link #encode()}, or null for a null or blank token.
+         * @throws IllegalArgumentException if the token is not a cursor.
+         */
+        public static Cursor decode(String token) {
+            if (token == null || token.isBlank()) {
+                return null;
+            }
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(token.trim()), StandardCharsets.UTF_8).split(":");
+                if (parts.length != 3) {
+                    throw new IllegalArgumentException("Invalid cursor: " + token);
+                }
+                return new Cursor(Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1])),
+                        Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + token, e);
+            }
+        }
+    }
+
+    /**
+     * Which blocked requests to read.
+     *
+     * @param since Only requests at or after this time, or null.
+     * @param category Only requests of this detection category, or null.
+     * @param sourceIp Only requests from this address, or null.
+     * @param after Only requests after this cursor, or null to start with the newest.
+     * @param limit The maximum number of rows, or 0 for all.
+     */
+    public record Query(Instant since, String category, String sourceIp, Cursor after, long limit) {
+    }
+
+    /**
+     * Receives the rows of a query.
+     */
+    @FunctionalInterface
+    public interface RowHandler {
+        /**
+         * @param cursor The row's position, to continue after it.
+         * @param values The values of the requested fields, in field order.
+         */
+        void row(Cursor cursor, Object[] values) throws IOException;
+    }
+
+    /**
+     * Reads the matching rows, handing each to the handler before the next one is read.
+     *
+     * @throws UncheckedIOException if the handler fails to write a row.
+     */
+    public void stream(Query query, List<Field> fields, RowHandler handler) {
+        StringBuilder sql = new StringBuilder("SELECT id, timestamp");
+        for (Field field : fields) {
+            if (field != Field.ID && field != Field.TIMESTAMP) {
+                sql.append(", ").append(field.column);
+            }
+        }
+        sql.append(" FROM blocked_requests");
+        List<String> conditions = new ArrayList<>();
+        List<Object> params = new ArrayList<>();
+        if (query.after() != null) {
+            Timestamp after = Timestamp.from(query.after().timestamp());
+            conditions.add("(timestamp < ? OR (timestamp = ? AND id < ?))");
+            params.add(after);
+            params.add(after);
+            params.add(query.after().id());
+        }
+        if (query.since() != null) {
+            conditions.add("timestamp >= ?");
+            params.add(Timestamp.from(query.since()));
+        }
+        if (query.category() != null) {
+            conditions.add("matched_pattern = ?");
+            params.add(query.category());
+        }
+        if (query.sourceIp() != null) {
+            conditions.add("source_ip = ?");
+            params.add(query.sourceIp());
+        }
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" ORDER BY timestamp DESC, id DESC");
+        if (query.limit() > 0) {
+            sql.append(" LIMIT ?");
+            params.add(query.limit());
+        }
+
+        // Calendars are not thread-safe, so each query gets its own
+        Calendar utc = Calendar.getInstance(UTC);
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql.toString(),
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(Math.max(1, fetchSize));
+            for (int i = 0; i < params.size(); i++) {
+                Object param = params.get(i);
+                if (param instanceof Timestamp timestamp) {
+                    statement.setTimestamp(i + 1, timestamp, utc);
+                } else {
+                    statement.setObject(i + 1, param);
+                }
+            }
+            return statement;
+        }, (RowCallbackHandler) rs -> {
+            long id = rs.getLong(1);
+            Instant timestamp = rs.getTimestamp(2, utc).toInstant();
+            Object[] values = new Object[fields.size()];
+            int column = 3;
+            for (int i = 0; i < values.length; i++) {
+                Field field = fields.get(i);
+                values[i] = field == Field.ID ? id
+                        : field == Field.TIMESTAMP ? timestamp
+                        : rs.getString(column++);
+            }
+            try {
+                handler.row(new Cursor(timestamp, id), values);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+}
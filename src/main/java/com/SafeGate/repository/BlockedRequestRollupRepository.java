@@ -0,0 +1,193 @@
+package com.SafeGate.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Reads and writes the blocked_request_rollups table with JDBC. Counts are added to a bucket
+ * with an upsert, so writers never read a row first and flushes may be split arbitrarily.
+ * <p>
+ * Minute buckets are kept for recent counts; hour and day buckets cover disjoint periods
+ * (hours are folded into days by {@link #downsample}), so summing both gives all-time counts.
+ * <p>
+ * One row with a bucket length of 0 records how far the backfill from blocked_requests got.
+ * Every query selects buckets by length, so the row is never counted.
+ */
+@Repository
+public class BlockedRequestRollupRepository {
+
+    public static final int MINUTE = 60;
+    public static final int HOUR = 3600;
+    public static final int DAY = 86400;
+
+    // Progress of a backfill that counted every block
+    public static final String BACKFILL_DONE = "done";
+
+    private static final int BACKFILL = 0;
+
+    private static final String UPSERT_SQL = "INSERT INTO blocked_request_rollups "
+            + "(bucket_seconds, bucket_start, category, source_ip, blocked_count) VALUES (?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE blocked_count = blocked_count + VALUES(blocked_count)";
+
+    // Hour and day buckets together count every block once
+    private static final String ALL_TIME = "bucket_seconds IN (" + HOUR + ", " + DAY + ")";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * One bucket's key.
+     *
+     * @param bucketSeconds The bucket length.
+     * @param bucketStart The bucket's start, in epoch seconds; a multiple of the length.
+     */
+    public record Bucket(int bucketSeconds, long bucketStart, String category, String sourceIp) {
+
+        /**
+         * @return The bucket of the given length that contains the instant.
+         */
+        public static Bucket of(int bucketSeconds, long epochSecond, String category, String sourceIp) {
+            return new Bucket(bucketSeconds, Math.floorDiv(epochSecond, bucketSeconds) * bucketSeconds, category, sourceIp);
+        }
+    }
+
+    /**
+     * Adds the counts to their buckets in one transaction.
+     */
+    public void add(Map<Bucket, Long> counts) {
+        if (counts.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Bucket, Long>> entries = new ArrayList<>(counts.entrySet());
+        new TransactionTemplate(transactionManager).executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(UPSERT_SQL, entries, entries.size(), (statement, entry) -> {
+                    Bucket bucket = entry.getKey();
+                    statement.setInt(1, bucket.bucketSeconds());
+                    statement.setLong(2, bucket.bucketStart());
+                    statement.setString(3, bucket.category());
+                    statement.setString(4, bucket.sourceIp());
+                    statement.setLong(5, entry.getValue());
+                }));
+    }
+
+    /**
+     * @return Blocks counted in buckets of the given length starting at or after the time.
+     */
+    public long sumSince(int bucketSeconds, long fromEpochSecond) {
+        Long sum = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(blocked_count), 0) FROM blocked_request_rollups "
+                + "WHERE bucket_seconds = ? AND bucket_start >= ?", Long.class, bucketSeconds, fromEpochSecond);
+        return sum != null ? sum : 0;
+    }
+
+    /**
+     * @return Every block counted.
+     */
+    public long sumAll() {
+        Long sum = jdbcTemplate.queryForObject("SELECT COALESCE(SUM(blocked_count), 0) FROM blocked_request_rollups WHERE "
+                + ALL_TIME, Long.class);
+        return sum != null ? sum : 0;
+    }
+
+    /**
+     * @return [category, count] pairs over all time, most blocks first.
+     */
+    public List<Object[]> countsByCategory() {
+        return countsBy("category", 0);
+    }
+
+    /**
+     * @return [source IP, count] pairs over all time, most blocks first.
+     */
+    public List<Object[]> countsBySourceIp(int limit) {
+        return countsBy("source_ip", limit);
+    }
+
+    private List<Object[]> countsBy(String column, int limit) {
+        String sql = "SELECT " + column + ", SUM(blocked_count) AS blocked FROM blocked_request_rollups WHERE " + ALL_TIME
+                + " GROUP BY " + column + " ORDER BY blocked DESC" + (limit > 0 ? " LIMIT " + limit : "");
+        return jdbcTemplate.query(sql, (rs, row) -> new Object[]{rs.getString(1), rs.getLong(2)});
+    }
+
+    /**
+     * Deletes the buckets of the given length that start before the time.
+     *
+     * @return The number of rows deleted.
+     */
+    public int deleteBefore(int bucketSeconds, long beforeEpochSecond) {
+        return jdbcTemplate.update("DELETE FROM blocked_request_rollups WHERE bucket_seconds = ? AND bucket_start < ?",
+                bucketSeconds, beforeEpochSecond);
+    }
+
+    /**
+     * Folds the buckets of one length that start before the time into buckets of a longer
+     * length, and deletes them, in one transaction.
+     *
+     * @return The number of rows folded.
+     */
+    public int downsample(int fromSeconds, int toSeconds, long beforeEpochSecond) {
+        Integer folded = new TransactionTemplate(transactionManager).execute(status -> {
+            Map<Bucket, Long> counts = new HashMap<>();
+            jdbcTemplate.query("SELECT bucket_start, category, source_ip, blocked_count FROM blocked_request_rollups "
+                    + "WHERE bucket_seconds = ? AND bucket_start < ?", (RowCallbackHandler) rs ->
+                    counts.merge(Bucket.of(toSeconds, rs.getLong(1), rs.getString(2), rs.getString(3)), rs.getLong(4), Long::sum),
+                    fromSeconds, beforeEpochSecond);
+            add(counts);
+            return deleteBefore(fromSeconds, beforeEpochSecond);
+        });
+        return folded != null ? folded : 0;
+    }
+
+    /**
+     * @return Whether no bucket has been written.
+     */
+    public boolean isEmpty() {
+        return jdbcTemplate.queryForList("SELECT id FROM blocked_request_rollups LIMIT 1", Long.class).isEmpty();
+    }
+
+    /**
+     * @return How far the backfill from blocked_requests got: empty if it never started,
+     *         {@link #BACKFILL_DONE} once it finished, else the encoded cursor of the last block it counted.
+     */
+    public Optional<String> backfillProgress() {
+        return jdbcTemplate.queryForList("SELECT category FROM blocked_request_rollups WHERE bucket_seconds = ?",
+                String.class, BACKFILL).stream().findFirst();
+    }
+
+    /**
+     * Adds a backfill batch's counts and records the backfill's progress in one transaction, so
+     * a backfill that stops resumes right after the last batch it wrote.
+     *
+     * @param progress The encoded cursor of the last block counted, or {@link #BACKFILL_DONE}.
+     */
+    public void addBackfill(Map<Bucket, Long> counts, String progress) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            add(counts);
+            if (jdbcTemplate.update("UPDATE blocked_request_rollups SET category = ? WHERE bucket_seconds = ?",
+                    progress, BACKFILL) == 0) {
+                jdbcTemplate.update("INSERT INTO blocked_request_rollups "
+                        + "(bucket_seconds, bucket_start, category, source_ip, blocked_count) VALUES (?, 0, ?, '', 0)",
+                        BACKFILL, progress);
+            }
+        });
+    }
+
+    /**
+     * Deletes every bucket, keeping the backfill's progress.
+     */
+    public void deleteAll() {
+        jdbcTemplate.update("DELETE FROM blocked_request_rollups WHERE bucket_seconds <> ?", BACKFILL);
+    }
+}
@@ -0,0 +1,14 @@
+package com.SafeGate.repository;
+
+import com.SafeGate.entity.Dataset;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DatasetRepository extends JpaRepository<Dataset, Long> {
+    Optional<Dataset> findBySha256AndDatasetFormat(String sha256, String datasetFormat);
+    List<Dataset> findAllByOrderByCreatedAtDesc();
+}
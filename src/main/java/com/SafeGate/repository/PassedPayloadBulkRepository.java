@@ -0,0 +1,143 @@
+package com.SafeGate.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes the passed payloads of a test run with JDBC batch inserts, bypassing the persistence
+ * context: no entity is created per row, rows are inserted in bounded transactions, and ids are
+ * left to the database. With rewriteBatchedStatements on the MySQL URL, each batch is sent as a
+ * single multi-row INSERT.
+ * <p>
+ * The test run itself must already be saved, since the rows reference it.
+ */
+@Repository
+public class PassedPayloadBulkRepository {
+
+    private static final String INSERT_SQL = "INSERT INTO passed_payloads (payload, test_run_id) VALUES (?, ?)";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // Rows per JDBC batch and per transaction
+    @Value("${safegate.persistence.batch-size:1000}")
+    private int batchSize;
+
+    /**
+     * Opens a writer that buffers payloads and inserts them a batch at a time, so memory use
+     * stays bounded however many rows a run produces.
+     */
+    public Writer open(long testRunId) {
+        return new Writer(testRunId);
+    }
+
+    /**
+     * Inserts the payloads, one transaction per batch.
+     */
+    public void insert(long testRunId, List<String> payloads) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        int step = Math.max(1, batchSize);
+        for (int from = 0; from < payloads.size(); from += step) {
+            List<String> batch = payloads.subList(from, Math.min(payloads.size(), from + step));
+            transaction.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(),
+                    (statement, payload) -> {
+                        statement.setString(1, payload);
+                        statement.setLong(2, testRunId);
+                    }));
+        }
+    }
+
+    /**
+     * @return The number of passed payloads stored for the test run.
+     */
+    public long countByTestRunId(long testRunId) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM passed_payloads WHERE test_run_id = ?",
+                Long.class, testRunId);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return A page of the test run's passed payloads, in insertion order.
+     */
+    public List<String> findPayloads(long testRunId, long offset, int limit) {
+        return jdbcTemplate.queryForList("SELECT payload FROM passed_payloads WHERE test_run_id = ? ORDER BY id LIMIT ? OFFSET ?",
+                String.class, testRunId, limit, offset);
+    }
+
+    /**
+     * Keeps the first rows of a test run's passed payloads, in insertion order, and deletes the rest.
+     *
+     * @return The number of rows deleted.
+     */
+    public int truncate(long testRunId, long keep) {
+        if (keep <= 0) {
+            return deleteByTestRunId(testRunId);
+        }
+        List<Long> last = jdbcTemplate.queryForList("SELECT id FROM passed_payloads WHERE test_run_id = ? ORDER BY id LIMIT 1 OFFSET ?",
+                Long.class, testRunId, keep - 1);
+        if (last.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM passed_payloads WHERE test_run_id = ? AND id > ?", testRunId, last.get(0));
+    }
+
+    /**
+     * Deletes a test run's passed payloads in one statement, ahead of deleting the run.
+     *
+     * @return The number of rows deleted.
+     */
+    public int deleteByTestRunId(long testRunId) {
+        return jdbcTemplate.update("DELETE FROM passed_payloads WHERE test_run_id = ?", testRunId);
+    }
+
+    /**
+     * Buffers one test run's payloads; {@link #close()} writes what is left.
+     */
+    public class Writer implements AutoCloseable {
+        private final long testRunId;
+        private final List<String> buffer = new ArrayList<>();
+        private long written;
+
+        private Writer(long testRunId) {
+            this.testRunId = testRunId;
+        }
+
+        public void add(String payload) {
+            buffer.add(payload);
+            if (buffer.size() >= Math.max(1, batchSize)) {
+                flush();
+            }
+        }
+
+        public void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            insert(testRunId, buffer);
+            written += buffer.size();
+            buffer.clear();
+        }
+
+        /**
+         * @return The number of rows inserted so far.
+         */
+        public long getWritten() {
+            return written;
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+}
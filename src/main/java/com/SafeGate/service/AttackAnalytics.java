@@ -0,0 +1,195 @@
+package com.SafeGate.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Live view of the attacks the WAF blocks, fed by every block decision and kept entirely in
+ * memory: block counts over sliding windows, the top source IPs, rules, URIs and user agents,
+ * and the number of distinct attacking IPs.
+ * <p>
+ * Time is split into one-minute panes over the window. Each pane has a {@link SpaceSaving}
+ * summary per dimension and a {@link HyperLogLog} of source IPs, and a ring of per-second
+ * counters tracks the block rate. A query merges the panes it covers; a pane is cleared and
+ * reused when its minute comes round again, so memory use is fixed whatever the traffic.
+ */
+@Service
+public class AttackAnalytics {
+
+    // Items are cut to this length, so one long user agent cannot grow a summary
+    private static final int MAX_ITEM_LENGTH = 256;
+
+    @Value("${safegate.analytics.window-minutes:60}")
+    private int windowMinutes;
+
+    // Counters per dimension and pane; items with more than 1/capacity of a pane's blocks are never lost
+    @Value("${safegate.analytics.top-capacity:64}")
+    private int topCapacity;
+
+    @Value("${safegate.analytics.hll-precision:12}")
+    private int hllPrecision;
+
+    private Pane[] panes;
+    private long[] secondCounts;
+    private long[] secondEpochs;
+
+    /**
+     * One minute of blocks.
+     */
+    private final class Pane {
+        long minute = Long.MIN_VALUE;
+        final SpaceSaving ips = new SpaceSaving(topCapacity);
+        final SpaceSaving categories = new SpaceSaving(topCapacity);
+        final SpaceSaving uris = new SpaceSaving(topCapacity);
+        final SpaceSaving userAgents = new SpaceSaving(topCapacity);
+        final HyperLogLog attackers = new HyperLogLog(hllPrecision);
+
+        void reset(long minute) {
+            this.minute = minute;
+            ips.clear();
+            categories.clear();
+            uris.clear();
+            userAgents.clear();
+            attackers.clear();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        int minutes = Math.max(1, windowMinutes);
+        panes = new Pane[minutes];
+        for (int i = 0; i < minutes; i++) {
+            panes[i] = new Pane();
+        }
+        secondCounts = new long[minutes * 60];
+        secondEpochs = new long[minutes * 60];
+        Arrays.fill(secondEpochs, Long.MIN_VALUE);
+    }
+
+    /**
+     * Counts a blocked request now.
+     */
+    public void record(String sourceIp, String category, String uri, String userAgent) {
+        record(Instant.now(), sourceIp, category, uri, userAgent);
+    }
+
+    /**
+     * Counts a blocked request at the given time; blocks older than the window are ignored.
+     */
+    public synchronized void record(Instant when, String sourceIp, String category, String uri, String userAgent) {
+        long second = when.getEpochSecond();
+        long minute = Math.floorDiv(second, 60);
+        int slot = (int) Math.floorMod(second, (long) secondCounts.length);
+        if (secondEpochs[slot] != second) {
+            if (secondEpochs[slot] > second) {
+                return;
+            }
+            secondEpochs[slot] = second;
+            secondCounts[slot] = 0;
+        }
+        secondCounts[slot]++;
+
+        Pane pane = panes[(int) Math.floorMod(minute, (long) panes.length)];
+        if (pane.minute != minute) {
+            pane.reset(minute);
+        }
+        String ip = item(sourceIp);
+        pane.ips.offer(ip);
+        pane.attackers.offer(ip);
+        pane.categories.offer(item(category));
+        pane.uris.offer(item(uri));
+        pane.userAgents.offer(item(userAgent));
+    }
+
+    /**
+     * @return The analytics of the last minutes, up to the window, as of now.
+     */
+    public Map<String, Object> snapshot(int minutes, int top) {
+        return snapshot(Instant.now(), minutes, top);
+    }
+
+    /**
+     * @param minutes How many minutes back to look, including the current one; capped at the window.
+     * @param top How many items to list per dimension.
+     * @return Block count, blocks per minute (oldest first), distinct attacking IPs, and the top
+     *         IPs, rules, URIs and user agents, each with its count and maximum overestimate.
+     */
+    public synchronized Map<String, Object> snapshot(Instant now, int minutes, int top) {
+        int span = Math.max(1, Math.min(minutes, panes.length));
+        long currentSecond = now.getEpochSecond();
+        long currentMinute = Math.floorDiv(currentSecond, 60);
+        long firstMinute = currentMinute - span + 1;
+
+        long[] perMinute = new long[span];
+        long blocked = 0;
+        for (int slot = 0; slot < secondCounts.length; slot++) {
+            long second = secondEpochs[slot];
+            long minute = Math.floorDiv(second, 60);
+            if (second != Long.MIN_VALUE && second <= currentSecond && minute >= firstMinute) {
+                perMinute[(int) (minute - firstMinute)] += secondCounts[slot];
+                blocked += secondCounts[slot];
+            }
+        }
+
+        Map<String, long[]> ips = new HashMap<>();
+        Map<String, long[]> categories = new HashMap<>();
+        Map<String, long[]> uris = new HashMap<>();
+        Map<String, long[]> userAgents = new HashMap<>();
+        HyperLogLog attackers = new HyperLogLog(hllPrecision);
+        for (Pane pane : panes) {
+            if (pane.minute >= firstMinute && pane.minute <= currentMinute) {
+                pane.ips.mergeInto(ips);
+                pane.categories.mergeInto(categories);
+                pane.uris.mergeInto(uris);
+                pane.userAgents.mergeInto(userAgents);
+                attackers.merge(pane.attackers);
+            }
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("windowMinutes", span);
+        snapshot.put("blocked", blocked);
+        List<Long> series = new ArrayList<>(span);
+        for (long count : perMinute) {
+            series.add(count);
+        }
+        snapshot.put("blockedPerMinute", series);
+        snapshot.put("distinctAttackers", blocked == 0 ? 0 : attackers.estimate());
+        snapshot.put("topIps", top(ips, top));
+        snapshot.put("topCategories", top(categories, top));
+        snapshot.put("topUris", top(uris, top));
+        snapshot.put("topUserAgents", top(userAgents, top));
+        snapshot.put("timestamp", now);
+        return snapshot;
+    }
+
+    private static List<Map<String, Object>> top(Map<String, long[]> counters, int top) {
+        return counters.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+                .limit(Math.max(1, top))
+                .map(entry -> {
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("value", entry.getKey());
+                    item.put("count", entry.getValue()[0]);
+                    item.put("maxError", entry.getValue()[1]);
+                    return item;
+                })
+                .toList();
+    }
+
+    private static String item(String value) {
+        if (value == null || value.isBlank()) {
+            return "unknown";
+        }
+        return value.length() > MAX_ITEM_LENGTH ? value.substring(0, MAX_ITEM_LENGTH) : value;
+    }
+}
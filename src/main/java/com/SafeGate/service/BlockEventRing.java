@@ -0,0 +1,97 @@
+package com.SafeGate.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-size ring of the latest events, numbered by a sequence that starts at 0. Publishing
+ * claims a sequence with one atomic increment and stores the event in its slot, so any number
+ * of threads publish without locks; once the ring is full, each event overwrites the one a
+ * capacity earlier.
+ * <p>
+ * Readers keep their own position and never block publishers. A reader that falls more than a
+ * capacity behind skips to the oldest event still held, and sees the skipped events as a gap
+ * in the sequence.
+ */
+public final class BlockEventRing {
+
+    /**
+     * @param data The event, already serialized, so it is encoded once however many readers send it.
+     */
+    public record Event(long sequence, String data) {
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicReferenceArray<Event> slots;
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * @param capacity Events held; rounded up to a power of two.
+     */
+    public BlockEventRing(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Capacity must be between 1 and 2^30: " + capacity);
+        }
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+    }
+
+    /**
+     * @return The event's sequence.
+     */
+    public long publish(String data) {
+        long sequence = next.getAndIncrement();
+        slots.set((int) (sequence & mask), new Event(sequence, data));
+        return sequence;
+    }
+
+    /**
+     * @return The sequence the next event will get.
+     */
+    public long head() {
+        return next.get();
+    }
+
+    /**
+     * @return The sequence of the oldest event still held.
+     */
+    public long oldest() {
+        return Math.max(0, next.get() - capacity);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Reads events in sequence order from the given one. Events already overwritten are
+     * skipped, so the first event returned may have a later sequence than asked for.
+     *
+     * @param from The sequence of the first event wanted.
+     * @param max Events to read at most.
+     * @return The events, stopping early at an event claimed but not yet stored.
+     */
+    public List<Event> read(long from, int max) {
+        List<Event> events = new ArrayList<>(Math.min(max, capacity));
+        long sequence = Math.max(from, oldest());
+        while (events.size() < max && sequence < next.get()) {
+            Event event = slots.get((int) (sequence & mask));
+            if (event == null || event.sequence() < sequence) {
+                // Claimed by a publisher that has not stored it yet
+                break;
+            }
+            if (event.sequence() > sequence) {
+                // Overwritten while reading; continue from the oldest event held now
+                sequence = Math.max(sequence + 1, oldest());
+                continue;
+            }
+            events.add(event);
+            sequence++;
+        }
+        return events;
+    }
+}
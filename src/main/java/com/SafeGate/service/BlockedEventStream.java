@@ -0,0 +1,341 @@
+package com.SafeGate.service;
+
+import com.SafeGate.entity.BlockedRequest;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pushes block decisions to dashboards over server-sent events, so open dashboards receive
+ * each block once instead of re-reading the logs.
+ * <p>
+ * The WAF publishes each block into a {@link BlockEventRing}, serialized once. A dispatcher
+ * thread, woken by publishers, hands subscribers that are behind to a small pool of sender
+ * threads, one batch at a time, so a slow client holds up only its own sender. A send that stays
+ * blocked past the send timeout drops its subscriber, and the pool gets a thread in place of the
+ * stuck one until that send returns. A client that falls more than the ring size behind skips
+ * ahead and gets a "gap" event with the number of blocks it missed.
+ * <p>
+ * Block events are named "blocked" and carry "&lt;epoch&gt;-&lt;sequence&gt;" as the event id, where
+ * the epoch identifies this run of the stream, since the sequence starts over at each restart.
+ * A client that reconnects with Last-Event-ID resumes after that event; one whose id is from
+ * another epoch, or is not an event id at all, gets a "reset" event and the blocks still held.
+ */
+@Service
+public class BlockedEventStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockedEventStream.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Value("${safegate.events.ring-size:4096}")
+    private int ringSize;
+
+    @Value("${safegate.events.max-subscribers:100}")
+    private int maxSubscribers;
+
+    @Value("${safegate.events.sender-threads:4}")
+    private int senderThreads;
+
+    // Events sent to one subscriber before the sender moves on to the next
+    @Value("${safegate.events.batch-size:256}")
+    private int batchSize;
+
+    // Idle streams get a comment this often, which also detects clients that went away
+    @Value("${safegate.events.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    @Value("${safegate.events.send-timeout-ms:5000}")
+    private long sendTimeoutMs;
+
+    private BlockEventRing ring;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private ThreadPoolExecutor senders;
+    private Thread dispatcher;
+    private volatile boolean running;
+
+    /**
+     * One open stream and the sequence of the next event it is sent.
+     */
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final AtomicBoolean sending = new AtomicBoolean();
+        volatile long cursor;
+        volatile boolean reset;
+        volatile long lastSentMillis = System.currentTimeMillis();
+        // Guarded by the subscriber: the thread sending to it, since when, and whether it was dropped for taking too long
+        Thread sender;
+        long sendStartedNanos;
+        boolean abandoned;
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        ring = new BlockEventRing(Math.max(16, ringSize));
+        int threads = Math.max(1, senderThreads);
+        senders = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "blocked-event-sender");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        running = true;
+        dispatcher = new Thread(this::dispatch, "blocked-event-stream");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        LockSupport.unpark(dispatcher);
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.emitter.complete();
+        }
+        subscribers.clear();
+    }
+
+    /**
+     * Publishes a block decision. Never blocks: the event overwrites the oldest one held.
+     *
+     * @param blocked The block; its id is null when it was not saved.
+     * @param testMode Whether the block happened during a WAF test.
+     */
+    public void publish(BlockedRequest blocked, boolean testMode) {
+        Map<String, Object> event = new LinkedHashMap<>();
+        event.put("id", blocked.getId());
+        event.put("timestamp", blocked.getTimestamp() != null ? blocked.getTimestamp().toString() : null);
+        event.put("sourceIp", blocked.getSourceIp());
+        event.put("detectionCategory", blocked.getDetectionCategory());
+        event.put("ruleId", blocked.getRuleId());
+        event.put("requestMethod", blocked.getRequestMethod());
+        event.put("requestUri", blocked.getRequestUri());
+        event.put("userAgent", blocked.getUserAgent());
+        event.put("testMode", testMode);
+        try {
+            ring.publish(MAPPER.writeValueAsString(event));
+        } catch (JsonProcessingException e) {
+            logger.warn("Could not serialize block event: {}", e.getMessage());
+            return;
+        }
+        LockSupport.unpark(dispatcher);
+    }
+
+    /**
+     * Opens a stream of block events.
+     *
+     * @param lastEventId The Last-Event-ID of a reconnecting client, or null to receive only
+     *                    blocks from now on.
+     * @return The stream, or empty if the subscriber limit is reached.
+     */
+    public Optional<SseEmitter> subscribe(String lastEventId) {
+        return subscribe(lastEventId, new SseEmitter(0L));
+    }
+
+    Optional<SseEmitter> subscribe(String lastEventId, SseEmitter emitter) {
+        if (subscribers.size() >= Math.max(1, maxSubscribers)) {
+            return Optional.empty();
+        }
+        long head = ring.head();
+        long cursor = head;
+        boolean reset = false;
+        if (lastEventId != null && !lastEventId.isBlank()) {
+            long last = sequenceOf(lastEventId.trim());
+            if (last >= 0 && last < head) {
+                cursor = last + 1;
+            } else {
+                // The id is from before a restart, or not one of ours; send what is held
+                cursor = ring.oldest();
+                reset = true;
+            }
+        }
+
+        Subscriber subscriber = new Subscriber(emitter, cursor);
+        subscriber.reset = reset;
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        schedule(subscriber);
+        return Optional.of(emitter);
+    }
+
+    /**
+     * @return The sequence of an event id of this epoch, or -1 for any other id.
+     */
+    private long sequenceOf(String eventId) {
+        String prefix = epoch + "-";
+        if (!eventId.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(eventId.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void dispatch() {
+        long heartbeatNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1000, heartbeatMs));
+        long sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, sendTimeoutMs));
+        while (running) {
+            LockSupport.parkNanos(this, Math.min(heartbeatNanos, TimeUnit.SECONDS.toNanos(1)));
+            long head = ring.head();
+            long now = System.currentTimeMillis();
+            long nowNanos = System.nanoTime();
+            for (Subscriber subscriber : subscribers) {
+                if (abandonIfStalled(subscriber, nowNanos, sendTimeoutNanos)) {
+                    continue;
+                }
+                if (subscriber.cursor < head || now - subscriber.lastSentMillis >= heartbeatMs) {
+                    schedule(subscriber);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops the subscriber if its send has been blocked for longer than the timeout, e.g. on a
+     * client that stopped reading. The stuck sender is interrupted, which fails a write blocked
+     * on the socket, and a thread is added to the pool in its place until the send returns.
+     *
+     * @return Whether the subscriber was dropped.
+     */
+    private boolean abandonIfStalled(Subscriber subscriber, long nowNanos, long timeoutNanos) {
+        synchronized (subscriber) {
+            if (subscriber.sender == null || subscriber.abandoned
+                    || nowNanos - subscriber.sendStartedNanos < timeoutNanos) {
+                return false;
+            }
+            subscriber.abandoned = true;
+            subscribers.remove(subscriber);
+            resizeSenders(1);
+            // Under the lock, so the interrupt cannot reach the thread's next task
+            subscriber.sender.interrupt();
+        }
+        logger.debug("Dropped block event subscriber: send blocked for more than {} ms", sendTimeoutMs);
+        return true;
+    }
+
+    private synchronized void resizeSenders(int delta) {
+        // The core size may never exceed the maximum, so grow the maximum first and shrink it last
+        if (delta > 0) {
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+            senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+        } else {
+            senders.setCorePoolSize(senders.getCorePoolSize() + delta);
+            senders.setMaximumPoolSize(senders.getMaximumPoolSize() + delta);
+        }
+    }
+
+    private void schedule(Subscriber subscriber) {
+        // At most one sender per subscriber, so its events stay in order
+        if (!subscriber.sending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            senders.execute(() -> send(subscriber));
+        } catch (RejectedExecutionException e) {
+            subscriber.sending.set(false);
+        }
+    }
+
+    /**
+     * Sends the subscriber its next batch of events, or a heartbeat if there are none.
+     */
+    private void send(Subscriber subscriber) {
+        synchronized (subscriber) {
+            if (subscriber.abandoned) {
+                return;
+            }
+            subscriber.sender = Thread.currentThread();
+            subscriber.sendStartedNanos = System.nanoTime();
+        }
+        boolean more = false;
+        Exception failure = null;
+        try {
+            if (subscriber.reset) {
+                subscriber.emitter.send(SseEmitter.event().name("reset")
+                        .data("{\"epoch\":\"" + epoch + "\",\"oldest\":" + subscriber.cursor + "}"));
+                subscriber.reset = false;
+            }
+            int batch = Math.max(1, batchSize);
+            List<BlockEventRing.Event> events = ring.read(subscriber.cursor, batch);
+            for (BlockEventRing.Event event : events) {
+                if (event.sequence() > subscriber.cursor) {
+                    // The subscriber was overtaken by the ring
+                    subscriber.emitter.send(SseEmitter.event().name("gap")
+                            .data("{\"missed\":" + (event.sequence() - subscriber.cursor) + "}"));
+                }
+                subscriber.emitter.send(SseEmitter.event().id(epoch + "-" + event.sequence()).name("blocked")
+                        .data(event.data()));
+                subscriber.cursor = event.sequence() + 1;
+            }
+            long now = System.currentTimeMillis();
+            boolean sent = !events.isEmpty();
+            if (!sent && now - subscriber.lastSentMillis >= heartbeatMs) {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+                sent = true;
+            }
+            if (sent) {
+                subscriber.lastSentMillis = now;
+            }
+            more = events.size() == batch;
+        } catch (Exception e) {
+            failure = e;
+        }
+
+        boolean abandoned;
+        synchronized (subscriber) {
+            subscriber.sender = null;
+            abandoned = subscriber.abandoned;
+        }
+        if (abandoned) {
+            // The dispatcher already replaced this thread; give the extra one back
+            Thread.interrupted();
+            resizeSenders(-1);
+            if (failure == null) {
+                failure = new TimeoutException("Send blocked for more than " + sendTimeoutMs + " ms");
+            }
+        }
+        subscriber.sending.set(false);
+        if (failure != null) {
+            // The client went away or cannot keep up with writes; drop the subscription
+            subscribers.remove(subscriber);
+            subscriber.emitter.completeWithError(failure);
+            if (!abandoned) {
+                logger.debug("Dropped block event subscriber: {}", failure.getMessage());
+            }
+            return;
+        }
+        if (more) {
+            // Behind by more than a batch; queue the rest behind the other subscribers
+            schedule(subscriber);
+        }
+    }
+}
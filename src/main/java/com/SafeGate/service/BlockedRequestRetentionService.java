@@ -0,0 +1,197 @@
+package com.SafeGate.service;
+
+import com.SafeGate.repository.BlockedRequestPartitionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps blocked_requests within its retention period.
+ * <p>
+ * On MySQL the table is partitioned by UTC day: every run adds the partitions of the next days
+ * and drops the partitions whose days have all expired, which frees them at once instead of
+ * deleting row by row. An empty table is partitioned by the first run. A table that already
+ * holds rows is only partitioned on request ({@link #startPartitioning}), since MySQL copies the
+ * table to do so and blocks writes to it meanwhile; until then its expired rows are deleted, as
+ * on other databases or with partitioning disabled.
+ * <p>
+ * The log statistics come from blocked_request_rollups, which keeps its own retention, so
+ * dropping blocked requests does not change the all-time counts.
+ */
+@Service
+public class BlockedRequestRetentionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockedRequestRetentionService.class);
+
+    @Autowired
+    private BlockedRequestPartitionRepository partitionRepository;
+
+    // Days of blocked requests kept, including today; 0 keeps every day
+    @Value("${safegate.logs.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${safegate.logs.partitioning.enabled:true}")
+    private boolean partitioningEnabled;
+
+    // Days after today that partitions are created in advance
+    @Value("${safegate.logs.partitioning.ahead-days:7}")
+    private int aheadDays;
+
+    @Value("${safegate.logs.retention.interval-ms:3600000}")
+    private long intervalMs;
+
+    private ScheduledExecutorService scheduler;
+    private volatile boolean unpartitionedWarned;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "blocked-request-retention");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(60_000, intervalMs);
+        scheduler.scheduleWithFixedDelay(() -> maintain(Instant.now()), 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Partitions blocked_requests even though it already holds rows, on the retention thread.
+     * MySQL copies the table to do so and blocks writes to it meanwhile, so on a large table this
+     * is a migration to run at a quiet time.
+     *
+     * @return Whether the conversion was started: false if partitioning is disabled, the
+     *         database is not MySQL, or the table is already partitioned.
+     */
+    public boolean startPartitioning() {
+        if (!partitioningEnabled || !partitionRepository.isMySql() || partitionRepository.isPartitioned()) {
+            return false;
+        }
+        scheduler.execute(() -> partitionExisting(Instant.now()));
+        return true;
+    }
+
+    /**
+     * Partitions the table unless it already is, then maintains it as usual.
+     */
+    void partitionExisting(Instant now) {
+        try {
+            if (!partitionRepository.isPartitioned()) {
+                logger.info("Partitioning blocked_requests; writes to it wait until the table is copied");
+                partition(LocalDate.ofInstant(now, ZoneOffset.UTC));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not partition blocked_requests: {}", e.getMessage());
+            return;
+        }
+        maintain(now);
+    }
+
+    /**
+     * Adds the coming days' partitions and removes expired rows; partitions the table first if
+     * it is empty.
+     */
+    void maintain(Instant now) {
+        LocalDate today = LocalDate.ofInstant(now, ZoneOffset.UTC);
+        // Rows before the start of this day have expired
+        LocalDate cutoff = cutoff(today);
+        try {
+            if (!partitioningEnabled || !partitionRepository.isMySql()) {
+                deleteExpired(cutoff);
+                return;
+            }
+
+            if (!partitionRepository.isPartitioned()) {
+                if (!partitionRepository.isEmpty()) {
+                    if (!unpartitionedWarned) {
+                        unpartitionedWarned = true;
+                        logger.warn("blocked_requests holds rows and is not partitioned, so expired rows are deleted "
+                                + "row by row; POST /api/logs/partitioning converts it (see SETUP_GUIDE.md)");
+                    }
+                    deleteExpired(cutoff);
+                    return;
+                }
+                partition(today);
+            }
+
+            LocalDate last = today.plusDays(Math.max(0, aheadDays) + 1L);
+            List<LocalDate> bounds = partitionRepository.partitionBounds();
+            LocalDate next = bounds.isEmpty() ? today : bounds.get(bounds.size() - 1).plusDays(1);
+            if (!next.isAfter(last)) {
+                partitionRepository.addPartitions(days(next, last));
+            }
+
+            if (cutoff != null) {
+                List<LocalDate> expired = new ArrayList<>();
+                for (LocalDate bound : bounds) {
+                    if (!bound.isAfter(cutoff)) {
+                        expired.add(bound);
+                    }
+                }
+                partitionRepository.dropPartitions(expired);
+                if (!expired.isEmpty()) {
+                    logger.info("Dropped {} blocked_requests partitions from before {}", expired.size(), cutoff);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not apply blocked-request retention: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Partitions the table from the first retained day to the last day created in advance.
+     */
+    private void partition(LocalDate today) {
+        LocalDate cutoff = cutoff(today);
+        // Older rows all go to the first partition, which expires first
+        LocalDate first = cutoff != null ? cutoff : today;
+        LocalDate last = today.plusDays(Math.max(0, aheadDays) + 1L);
+        partitionRepository.partition(days(first, last));
+        logger.info("Partitioned blocked_requests by day up to {}", last);
+    }
+
+    private void deleteExpired(LocalDate cutoff) {
+        if (cutoff == null) {
+            return;
+        }
+        int deleted = partitionRepository.deleteBefore(cutoff.atStartOfDay(ZoneOffset.UTC).toInstant());
+        if (deleted > 0) {
+            logger.info("Deleted {} blocked requests from before {}", deleted, cutoff);
+        }
+    }
+
+    /**
+     * @return The first retained day, or null if every day is kept.
+     */
+    private LocalDate cutoff(LocalDate today) {
+        return retentionDays > 0 ? today.minusDays(retentionDays - 1L) : null;
+    }
+
+    /**
+     * @return The days from first to last, both included.
+     */
+    private static List<LocalDate> days(LocalDate first, LocalDate last) {
+        List<LocalDate> days = new ArrayList<>();
+        for (LocalDate day = first; !day.isAfter(last); day = day.plusDays(1)) {
+            days.add(day);
+        }
+        return days;
+    }
+}
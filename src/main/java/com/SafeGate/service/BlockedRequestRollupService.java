@@ -0,0 +1,273 @@
+package com.SafeGate.service;
+
+import com.SafeGate.entity.BlockedRequest;
+import com.SafeGate.repository.BlockedRequestQueryRepository;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Cursor;
+import com.SafeGate.repository.BlockedRequestRollupRepository;
+import com.SafeGate.repository.BlockedRequestRollupRepository.Bucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.SafeGate.repository.BlockedRequestRollupRepository.BACKFILL_DONE;
+import static com.SafeGate.repository.BlockedRequestRollupRepository.DAY;
+import static com.SafeGate.repository.BlockedRequestRollupRepository.HOUR;
+import static com.SafeGate.repository.BlockedRequestRollupRepository.MINUTE;
+
+/**
+ * Keeps per-minute and per-hour counts of blocked requests by rule and source IP, so the log
+ * statistics are read from a few rollup rows instead of scanning blocked_requests.
+ * <p>
+ * Each saved block is counted in memory and the counts are added to the rollup table every
+ * flush interval. A compactor deletes minute buckets once they are older than the minute
+ * retention, and folds hour buckets older than the hour retention into day buckets.
+ * <p>
+ * The blocked requests stored before the first start are counted by a backfill. It writes its
+ * counts in batches, each together with the position it reached. A backfill that fails or is
+ * cut short by a shutdown is resumed from there, by the compactor or at the next start, until
+ * it records that it is done.
+ */
+@Service
+public class BlockedRequestRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BlockedRequestRollupService.class);
+
+    // Rollup column lengths
+    private static final int MAX_CATEGORY = 100;
+    private static final int MAX_SOURCE_IP = 64;
+
+    // Buckets buffered by the backfill before they are written
+    private static final int BACKFILL_BATCH = 10_000;
+
+    @Autowired
+    private BlockedRequestRollupRepository rollupRepository;
+
+    @Autowired
+    private BlockedRequestQueryRepository queryRepository;
+
+    @Value("${safegate.logs.rollup.flush-interval-ms:5000}")
+    private long flushIntervalMs;
+
+    @Value("${safegate.logs.rollup.compact-interval-ms:600000}")
+    private long compactIntervalMs;
+
+    @Value("${safegate.logs.rollup.minute-retention-hours:48}")
+    private int minuteRetentionHours;
+
+    @Value("${safegate.logs.rollup.hour-retention-days:90}")
+    private int hourRetentionDays;
+
+    @Value("${safegate.logs.stats.top-ips:20}")
+    private int topIps;
+
+    // Counts not yet added to the rollup table
+    private final Map<Bucket, Long> pending = new ConcurrentHashMap<>();
+
+    // Live counts are held back until the backfill has recorded where it starts, so a restart
+    // never takes them for rollups from before the backfill
+    private volatile boolean holdingCounts;
+    private volatile boolean backfilled;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "blocked-request-rollups");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Blocks saved from now on are counted as they happen; older ones by the backfill
+        holdingCounts = true;
+        Instant backfillBefore = Instant.now();
+        scheduler.execute(() -> backfill(backfillBefore));
+        long flushInterval = Math.max(100, flushIntervalMs);
+        scheduler.scheduleWithFixedDelay(this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        long compactInterval = Math.max(1000, compactIntervalMs);
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (!backfilled) {
+                backfill(backfillBefore);
+            }
+            compact();
+        }, compactInterval, compactInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        scheduler.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Counts a block that was saved to blocked_requests.
+     */
+    public void record(BlockedRequest blocked) {
+        Instant timestamp = blocked.getTimestamp() != null ? blocked.getTimestamp() : Instant.now();
+        String category = category(blocked.getDetectionCategory());
+        String sourceIp = sourceIp(blocked.getSourceIp());
+        long second = timestamp.getEpochSecond();
+        pending.merge(Bucket.of(MINUTE, second, category, sourceIp), 1L, Long::sum);
+        pending.merge(Bucket.of(HOUR, second, category, sourceIp), 1L, Long::sum);
+    }
+
+    /**
+     * @return Total and last-24-hour block counts, blocks by rule, and the top attacking IPs,
+     *         as of the last flush.
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("totalBlocked", rollupRepository.sumAll());
+        long since24h = Instant.now().minus(24, ChronoUnit.HOURS).getEpochSecond();
+        stats.put("blockedLast24h", rollupRepository.sumSince(MINUTE, since24h));
+        stats.put("attackPatterns", rollupRepository.countsByCategory());
+        stats.put("topAttackingIPs", rollupRepository.countsBySourceIp(Math.max(1, topIps)));
+        stats.put("timestamp", Instant.now());
+        return stats;
+    }
+
+    /**
+     * Forgets every count, for when the blocked requests are cleared.
+     */
+    public void clear() {
+        pending.clear();
+        rollupRepository.deleteAll();
+    }
+
+    /**
+     * Adds the pending counts to the rollup table.
+     */
+    void flush() {
+        if (holdingCounts || pending.isEmpty()) {
+            return;
+        }
+        // Removing a key returns its whole count; blocks recorded after that start a new entry
+        Map<Bucket, Long> batch = new HashMap<>();
+        for (Bucket bucket : pending.keySet()) {
+            Long count = pending.remove(bucket);
+            if (count != null) {
+                batch.put(bucket, count);
+            }
+        }
+        try {
+            rollupRepository.add(batch);
+        } catch (RuntimeException e) {
+            logger.warn("Could not write {} blocked-request rollups, retrying next flush: {}", batch.size(), e.getMessage());
+            batch.forEach((bucket, count) -> pending.merge(bucket, count, Long::sum));
+        }
+    }
+
+    /**
+     * Deletes expired minute buckets and folds expired hour buckets into days.
+     */
+    void compact() {
+        try {
+            Instant now = Instant.now();
+            // Minute buckets answer the last-24-hour count, so they are kept at least that long
+            long minuteCutoff = now.minus(Math.max(25, minuteRetentionHours), ChronoUnit.HOURS).getEpochSecond();
+            int minutes = rollupRepository.deleteBefore(MINUTE, minuteCutoff);
+            long hourCutoff = Math.floorDiv(now.minus(Math.max(1, hourRetentionDays), ChronoUnit.DAYS).getEpochSecond(), DAY) * DAY;
+            int hours = rollupRepository.downsample(HOUR, DAY, hourCutoff);
+            if (minutes > 0 || hours > 0) {
+                logger.info("Compacted blocked-request rollups: {} minute buckets dropped, {} hour buckets folded into days",
+                        minutes, hours);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not compact blocked-request rollups: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Counts the blocked requests stored before the given time, or resumes a backfill that
+     * stopped after the last batch it wrote.
+     */
+    void backfill(Instant before) {
+        try {
+            Optional<String> progress = rollupRepository.backfillProgress();
+            Cursor from;
+            if (progress.isEmpty() && !rollupRepository.isEmpty()) {
+                // Rollups written before backfills recorded their progress
+                rollupRepository.addBackfill(Map.of(), BACKFILL_DONE);
+                from = null;
+            } else if (progress.isEmpty()) {
+                from = new Cursor(before, 0);
+                rollupRepository.addBackfill(Map.of(), from.encode());
+            } else {
+                from = BACKFILL_DONE.equals(progress.get()) ? null : Cursor.decode(progress.get());
+            }
+            holdingCounts = false;
+            if (from == null) {
+                backfilled = true;
+                return;
+            }
+
+            long minuteCutoff = before.minus(Math.max(25, minuteRetentionHours), ChronoUnit.HOURS).getEpochSecond();
+            long hourCutoff = before.minus(Math.max(1, hourRetentionDays), ChronoUnit.DAYS).getEpochSecond();
+            Map<Bucket, Long> counts = new HashMap<>();
+            long[] rows = {0};
+            List<BlockedRequestQueryRepository.Field> fields = List.of(BlockedRequestQueryRepository.Field.TIMESTAMP,
+                    BlockedRequestQueryRepository.Field.SOURCE_IP, BlockedRequestQueryRepository.Field.DETECTION_CATEGORY);
+            BlockedRequestQueryRepository.Query query = new BlockedRequestQueryRepository.Query(null, null, null, from, 0);
+            queryRepository.stream(query, fields, (cursor, values) -> {
+                long second = cursor.timestamp().getEpochSecond();
+                String sourceIp = sourceIp((String) values[1]);
+                String category = category((String) values[2]);
+                if (second >= minuteCutoff) {
+                    counts.merge(Bucket.of(MINUTE, second, category, sourceIp), 1L, Long::sum);
+                }
+                // Buckets past the hour retention go straight to days, as the compactor would leave them
+                int length = second >= hourCutoff ? HOUR : DAY;
+                counts.merge(Bucket.of(length, second, category, sourceIp), 1L, Long::sum);
+                rows[0]++;
+                if (counts.size() >= BACKFILL_BATCH) {
+                    rollupRepository.addBackfill(counts, cursor.encode());
+                    counts.clear();
+                }
+            });
+            rollupRepository.addBackfill(counts, BACKFILL_DONE);
+            backfilled = true;
+            if (rows[0] > 0) {
+                logger.info("Built blocked-request rollups from {} stored blocked requests", rows[0]);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not build blocked-request rollups from stored blocked requests, resuming later: {}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * @return The rule a block was detected by, without the analyzer's reason, e.g. "LLM:XSS".
+     */
+    static String category(String detectionCategory) {
+        if (detectionCategory == null || detectionCategory.isBlank()) {
+            return "UNKNOWN";
+        }
+        int reason = detectionCategory.indexOf(" - ");
+        String rule = (reason >= 0 ? detectionCategory.substring(0, reason) : detectionCategory).trim();
+        return rule.length() > MAX_CATEGORY ? rule.substring(0, MAX_CATEGORY) : rule;
+    }
+
+    private static String sourceIp(String sourceIp) {
+        if (sourceIp == null || sourceIp.isBlank()) {
+            return "unknown";
+        }
+        // The address may come from X-Forwarded-For, so its length is up to the client
+        String trimmed = sourceIp.trim();
+        return trimmed.length() > MAX_SOURCE_IP ? trimmed.substring(0, MAX_SOURCE_IP) : trimmed;
+    }
+}
@@ -0,0 +1,179 @@
+package com.SafeGate.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Splits a memory-mapped dataset into record-aligned byte ranges so that each
+ * range can be decoded and parsed independently.
+ * <p>
+ * Records end at a line feed. For quote-aware formats (CSV) a line feed inside
+ * a double-quoted field does not end the record, so chunk boundaries never cut
+ * a quoted value in half. Quotes follow RFC 4180: a quote opens a quoted field
+ * only at the start of a field, and inside one "" stands for a quote, so a stray
+ * quote in an unquoted payload such as {@code admin"--} is just a character.
+ */
+public final class DatasetChunker {
+
+    private static final byte LF = '\n';
+    private static final byte QUOTE = '"';
+    private static final byte COMMA = ',';
+
+    // Where a CSV scan is relative to the quotes of the current field
+    private static final int FIELD_START = 0;
+    private static final int UNQUOTED = 1;
+    private static final int QUOTED = 2;
+    // A quote inside a quoted field: either the closing one or the first of ""
+    private static final int QUOTE_IN_QUOTED = 3;
+
+    private DatasetChunker() {
+    }
+
+    /**
+     * A half-open byte range [start, end) of the mapped file.
+     */
+    public record Chunk(int start, int end) {
+        public int length() {
+            return end - start;
+        }
+    }
+
+    /**
+     * Splits buffer[from, limit) into roughly equal chunks that start and end on record boundaries.
+     *
+     * @param buffer        The mapped file contents.
+     * @param from          Offset of the first byte to include (e.g. after a header record).
+     * @param targetChunks  Desired number of chunks; fewer are returned for small inputs.
+     * @param minChunkBytes Lower bound on the size of a chunk.
+     * @param quoteAware    Whether line feeds inside double quotes are part of the record.
+     * @return The chunks in file order.
+     */
+    public static List<Chunk> split(ByteBuffer buffer, int from, int targetChunks, int minChunkBytes, boolean quoteAware) {
+        int limit = buffer.limit();
+        List<Chunk> chunks = new ArrayList<>();
+        if (from >= limit) {
+            return chunks;
+        }
+        int approx = Math.max(minChunkBytes, (limit - from) / Math.max(1, targetChunks));
+
+        int start = from;
+        while (start < limit) {
+            int tentative = start + approx;
+            int end = tentative >= limit ? limit : boundaryAfter(buffer, start, tentative, quoteAware);
+            chunks.add(new Chunk(start, end));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Returns the offset just past the first record that starts at {@code from}.
+     */
+    public static int recordEnd(ByteBuffer buffer, int from, boolean quoteAware) {
+        return boundaryAfter(buffer, from, from, quoteAware);
+    }
+
+    /**
+     * Finds the first record terminator at or after {@code tentative}. For quote-aware
+     * scanning the quote state is tracked from {@code start}, which must itself be a record start.
+     */
+    private static int boundaryAfter(ByteBuffer buffer, int start, int tentative, boolean quoteAware) {
+        int limit = buffer.limit();
+        if (!quoteAware) {
+            for (int i = tentative; i < limit; i++) {
+                if (buffer.get(i) == LF) {
+                    return i + 1;
+                }
+            }
+            return limit;
+        }
+
+        int state = FIELD_START;
+        for (int i = start; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == LF && state != QUOTED && i >= tentative) {
+                return i + 1;
+            }
+            state = next(state, b);
+        }
+        return limit;
+    }
+
+    /**
+     * @return The CSV quote state after the character c.
+     */
+    private static int next(int state, int c) {
+        if (state == QUOTED) {
+            return c == QUOTE ? QUOTE_IN_QUOTED : QUOTED;
+        }
+        if (state == QUOTE_IN_QUOTED && c == QUOTE) {
+            // "" inside a quoted field
+            return QUOTED;
+        }
+        if (c == COMMA || c == LF) {
+            return FIELD_START;
+        }
+        return state == FIELD_START && c == QUOTE ? QUOTED : UNQUOTED;
+    }
+
+    /**
+     * Invokes the consumer for every record in the decoded chunk text, with the trailing
+     * line terminator (LF or CRLF) removed.
+     */
+    public static void forEachRecord(CharSequence text, boolean quoteAware, Consumer<String> consumer) {
+        int length = text.length();
+        int start = 0;
+        int state = FIELD_START;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n' && state != QUOTED) {
+                consumer.accept(stripCarriageReturn(text, start, i));
+                start = i + 1;
+            }
+            if (quoteAware) {
+                state = next(state, c);
+            }
+        }
+        if (start < length) {
+            consumer.accept(stripCarriageReturn(text, start, length));
+        }
+    }
+
+    /**
+     * Splits a CSV record into its fields. Quoted fields are returned without their quotes and
+     * with "" unescaped; unquoted fields are trimmed. Characters after the closing quote of a
+     * quoted field are kept as written.
+     */
+    public static List<String> splitFields(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int state = FIELD_START;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            int next = next(state, c);
+            if (next == FIELD_START) {
+                fields.add(quoted ? field.toString() : field.toString().trim());
+                field.setLength(0);
+                quoted = false;
+            } else if (state == FIELD_START && next == QUOTED) {
+                quoted = true;
+            } else if (next != QUOTE_IN_QUOTED) {
+                // Only the quotes that close a field or escape a quote are left out
+                field.append(c);
+            }
+            state = next;
+        }
+        fields.add(quoted ? field.toString() : field.toString().trim());
+        return fields;
+    }
+
+    private static String stripCarriageReturn(CharSequence text, int start, int end) {
+        if (end > start && text.charAt(end - 1) == '\r') {
+            end--;
+        }
+        return text.subSequence(start, end).toString();
+    }
+}
@@ -0,0 +1,191 @@
+package com.SafeGate.service;
+
+import com.SafeGate.analyzer.AnalyzerWork;
+import com.SafeGate.enums.DatasetJobStatus;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+/**
+ * State of an asynchronous dataset test job.
+ * <p>
+ * Counters are written by the worker thread and read by request threads, so they are
+ * volatile; {@link #progress()} returns a consistent-enough snapshot for display.
+ */
+public class DatasetJob implements DatasetTestRunnerService.RunListener {
+
+    private final String id;
+    private final Long datasetId;
+    private final String datasetFileName;
+    private final String attackTypeTag;
+    private final String samplingSize;
+    private final Long seed;
+    // Set for jobs that continue an interrupted test run instead of starting a new one
+    private final Long resumeTestRunId;
+    private final Instant createdAt = Instant.now();
+
+    private volatile DatasetJobStatus status = DatasetJobStatus.QUEUED;
+    private volatile boolean cancelRequested;
+    private volatile boolean suspendRequested;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile int recordCount;
+    private volatile int total;
+    private volatile int analyzed;
+    private volatile int blocked;
+    private volatile int resumedFrom;
+    private volatile Long testRunId;
+    private volatile String error;
+    private volatile Future<?> future;
+
+    private final List<SseEmitter> emitters = new CopyOnWriteArrayList<>();
+    private final DatasetJobService jobService;
+
+    DatasetJob(String id, Long datasetId, String datasetFileName, String attackTypeTag, String samplingSize,
+               Long seed, Long resumeTestRunId, DatasetJobService jobService) {
+        this.id = id;
+        this.datasetId = datasetId;
+        this.datasetFileName = datasetFileName;
+        this.attackTypeTag = attackTypeTag;
+        this.samplingSize = samplingSize;
+        this.seed = seed;
+        this.resumeTestRunId = resumeTestRunId;
+        this.jobService = jobService;
+    }
+
+    @Override
+    public void onStarted(int recordCount, int total) {
+        this.recordCount = recordCount;
+        this.total = total;
+        jobService.publish(this, "progress", progress());
+    }
+
+    @Override
+    public void onChunk(List<Map<String, Object>> rows, int processed) {
+        int chunkBlocked = 0;
+        for (Map<String, Object> row : rows) {
+            if (Boolean.TRUE.equals(row.get("is_malicious"))) {
+                chunkBlocked++;
+            }
+        }
+        blocked += chunkBlocked;
+        analyzed = processed;
+
+        Map<String, Object> chunk = new HashMap<>();
+        chunk.put("processed", processed);
+        chunk.put("rows", rows);
+        jobService.publish(this, "chunk", chunk);
+        jobService.publish(this, "progress", progress());
+    }
+
+    @Override
+    public void onResumed(long processed, long blocked) {
+        this.analyzed = (int) processed;
+        this.blocked = (int) blocked;
+        this.resumedFrom = (int) processed;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    @Override
+    public boolean isSuspended() {
+        return suspendRequested;
+    }
+
+    /**
+     * Background jobs yield the analyzer to live traffic and interactive runs, and share it
+     * fairly with each other.
+     */
+    @Override
+    public AnalyzerWork analyzerWork() {
+        return AnalyzerWork.bulk(id);
+    }
+
+    /**
+     * @return A snapshot of the job state, including throughput and an ETA while running.
+     */
+    public Map<String, Object> progress() {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("jobId", id);
+        progress.put("status", status);
+        progress.put("datasetId", datasetId);
+        progress.put("datasetFileName", datasetFileName);
+        progress.put("attackTypeTag", attackTypeTag);
+        progress.put("samplingSize", samplingSize);
+        progress.put("seed", seed);
+        progress.put("resumeTestRunId", resumeTestRunId);
+        progress.put("createdAt", createdAt.toString());
+        progress.put("startedAt", startedAt != null ? startedAt.toString() : null);
+        progress.put("finishedAt", finishedAt != null ? finishedAt.toString() : null);
+        progress.put("parsed", recordCount);
+        progress.put("total", total);
+        progress.put("analyzed", analyzed);
+        progress.put("blocked", blocked);
+        progress.put("passed", analyzed - blocked);
+        progress.put("testRunId", testRunId);
+        progress.put("error", error);
+
+        double payloadsPerSecond = 0;
+        Long etaSeconds = null;
+        if (startedAt != null) {
+            Instant end = finishedAt != null ? finishedAt : Instant.now();
+            double seconds = Math.max(0.001, (end.toEpochMilli() - startedAt.toEpochMilli()) / 1000.0);
+            payloadsPerSecond = (analyzed - resumedFrom) / seconds;
+            if (status == DatasetJobStatus.RUNNING && payloadsPerSecond > 0) {
+                etaSeconds = Math.round((total - analyzed) / payloadsPerSecond);
+            }
+        }
+        progress.put("payloadsPerSecond", Math.round(payloadsPerSecond * 10) / 10.0);
+        progress.put("etaSeconds", etaSeconds);
+        return progress;
+    }
+
+    public boolean isFinished() {
+        return status == DatasetJobStatus.COMPLETED
+                || status == DatasetJobStatus.CANCELLED
+                || status == DatasetJobStatus.FAILED;
+    }
+
+    void markRunning() {
+        startedAt = Instant.now();
+        status = DatasetJobStatus.RUNNING;
+    }
+
+    void markFinished(DatasetJobStatus finalStatus, Long testRunId, String error) {
+        this.testRunId = testRunId;
+        this.error = error;
+        this.finishedAt = Instant.now();
+        this.status = finalStatus;
+    }
+
+    void requestCancel() {
+        cancelRequested = true;
+    }
+
+    // Stops the job, leaving its test run resumable
+    void requestSuspend() {
+        suspendRequested = true;
+        cancelRequested = true;
+    }
+
+    public String getId() { return id; }
+    public Long getDatasetId() { return datasetId; }
+    public String getAttackTypeTag() { return attackTypeTag; }
+    public String getSamplingSize() { return samplingSize; }
+    public Long getSeed() { return seed; }
+    public Long getResumeTestRunId() { return resumeTestRunId; }
+    public DatasetJobStatus getStatus() { return status; }
+    public Long getTestRunId() { return testRunId; }
+
+    Future<?> getFuture() { return future; }
+    void setFuture(Future<?> future) { this.future = future; }
+    List<SseEmitter> getEmitters() { return emitters; }
+}
@@ -0,0 +1,257 @@
+package com.SafeGate.service;
+
+import com.SafeGate.entity.Dataset;
+import com.SafeGate.entity.TestRun;
+import com.SafeGate.enums.DatasetJobStatus;
+import com.SafeGate.repository.TestRunRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs dataset tests as background jobs.
+ * <p>
+ * Submitting a job returns immediately; the run itself executes on a bounded executor and
+ * publishes progress and per-chunk verdicts to Server-Sent Event subscribers. Test mode is
+ * global, so jobs run one at a time on a single worker; further jobs wait in a bounded queue
+ * and submissions beyond its capacity are rejected.
+ */
+@Service
+public class DatasetJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatasetJobService.class);
+
+    @Autowired
+    private DatasetTestRunnerService datasetTestRunnerService;
+
+    @Autowired
+    private DatasetStoreService datasetStoreService;
+
+    @Autowired
+    private TestRunRepository testRunRepository;
+
+    @Value("${safegate.jobs.queue-capacity:8}")
+    private int queueCapacity;
+
+    @Value("${safegate.jobs.retained:50}")
+    private int retainedJobs;
+
+    @Value("${safegate.jobs.shutdown-grace-ms:15000}")
+    private long shutdownGraceMs;
+
+    private ThreadPoolExecutor executor;
+
+    // Insertion-ordered so the oldest finished jobs are evicted first
+    private final Map<String, DatasetJob> jobs = new LinkedHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "dataset-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // A running job stops after its current chunk and saves a checkpoint to resume from
+        synchronized (jobs) {
+            jobs.values().forEach(DatasetJob::requestSuspend);
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(shutdownGraceMs, TimeUnit.MILLISECONDS)) {
+            logger.warn("Dataset job still running at shutdown; it can be resumed from its last periodic checkpoint");
+        }
+    }
+
+    /**
+     * Stores the uploaded file in the dataset library and queues a test job for it. The upload
+     * is ingested before returning because the multipart file does not outlive the request.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if the job queue is full.
+     */
+    public DatasetJob submit(MultipartFile file, String datasetFormat, String attackTypeTag,
+                             String samplingSize, Long seed) throws Exception {
+        Dataset dataset = datasetStoreService.ingest(file, datasetFormat);
+        return submit(dataset, attackTypeTag, samplingSize, seed);
+    }
+
+    /**
+     * Queues a test job for a stored dataset.
+     *
+     * @throws IllegalArgumentException if the dataset does not exist.
+     * @throws java.util.concurrent.RejectedExecutionException if the job queue is full.
+     */
+    public DatasetJob submit(Long datasetId, String attackTypeTag, String samplingSize, Long seed) {
+        Dataset dataset = datasetStoreService.findById(datasetId)
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found: " + datasetId));
+        return submit(dataset, attackTypeTag, samplingSize, seed);
+    }
+
+    /**
+     * Queues a job that resumes an interrupted test run from its last checkpoint.
+     *
+     * @throws IllegalArgumentException if the test run does not exist.
+     * @throws IllegalStateException if the test run has no checkpoint.
+     * @throws java.util.concurrent.RejectedExecutionException if the job queue is full.
+     */
+    public DatasetJob resume(Long testRunId) {
+        TestRun testRun = testRunRepository.findById(testRunId)
+                .orElseThrow(() -> new IllegalArgumentException("Test run not found: " + testRunId));
+        if (!testRun.isResumable()) {
+            throw new IllegalStateException("Test run " + testRunId + " has no checkpoint to resume from.");
+        }
+        DatasetJob job = new DatasetJob(UUID.randomUUID().toString(), testRun.getDatasetId(), testRun.getDatasetFileName(),
+                testRun.getAttackTypeTag(), testRun.getSamplingSize(), testRun.getSeedNumber(), testRunId, this);
+        queue(job);
+        logger.info("Queued dataset job {} to resume test run {}", job.getId(), testRunId);
+        return job;
+    }
+
+    private DatasetJob submit(Dataset dataset, String attackTypeTag, String samplingSize, Long seed) {
+        DatasetJob job = new DatasetJob(UUID.randomUUID().toString(), dataset.getId(), dataset.getOriginalFileName(),
+                attackTypeTag, samplingSize, seed, null, this);
+        queue(job);
+        logger.info("Queued dataset job {} for dataset {}", job.getId(), dataset.getId());
+        return job;
+    }
+
+    private void queue(DatasetJob job) {
+        synchronized (jobs) {
+            job.setFuture(executor.submit(() -> execute(job)));
+            jobs.put(job.getId(), job);
+            evictFinishedJobs();
+        }
+    }
+
+    private void execute(DatasetJob job) {
+        if (job.isCancelled()) {
+            finish(job, DatasetJobStatus.CANCELLED, null, null);
+            return;
+        }
+        job.markRunning();
+        publish(job, "progress", job.progress());
+        try {
+            TestRun testRun = job.getResumeTestRunId() != null
+                    ? datasetTestRunnerService.resumeDatasetTest(job.getResumeTestRunId(), job)
+                    : datasetTestRunnerService.runStoredDatasetTest(job.getDatasetId(), job.getAttackTypeTag(),
+                    job.getSamplingSize(), job.getSeed(), job);
+            finish(job, job.isCancelled() ? DatasetJobStatus.CANCELLED : DatasetJobStatus.COMPLETED, testRun.getId(), null);
+        } catch (Exception e) {
+            logger.error("Dataset job {} failed: {}", job.getId(), e.getMessage(), e);
+            finish(job, DatasetJobStatus.FAILED, null, e.getMessage());
+        }
+    }
+
+    private void finish(DatasetJob job, DatasetJobStatus status, Long testRunId, String error) {
+        job.markFinished(status, testRunId, error);
+        logger.info("Dataset job {} finished with status {}", job.getId(), status);
+        publish(job, "done", job.progress());
+        for (SseEmitter emitter : job.getEmitters()) {
+            emitter.complete();
+        }
+        job.getEmitters().clear();
+    }
+
+    public Optional<DatasetJob> findJob(String jobId) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(jobId));
+        }
+    }
+
+    public List<DatasetJob> listJobs() {
+        synchronized (jobs) {
+            return new ArrayList<>(jobs.values());
+        }
+    }
+
+    /**
+     * Requests cancellation. A queued job is cancelled right away; a running job stops before
+     * its next chunk and keeps the results of the payloads processed so far.
+     *
+     * @return The job, if it exists.
+     */
+    public Optional<DatasetJob> cancel(String jobId) {
+        Optional<DatasetJob> job = findJob(jobId);
+        job.ifPresent(j -> {
+            if (j.isFinished()) {
+                return;
+            }
+            j.requestCancel();
+            if (executor.remove((Runnable) j.getFuture())) {
+                finish(j, DatasetJobStatus.CANCELLED, null, null);
+            }
+        });
+        return job;
+    }
+
+    /**
+     * Subscribes to a job's events: "progress" snapshots, "chunk" verdict rows and a final
+     * "done" snapshot, after which the stream is completed.
+     */
+    public SseEmitter subscribe(DatasetJob job) {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> job.getEmitters().remove(emitter));
+        emitter.onTimeout(() -> job.getEmitters().remove(emitter));
+        emitter.onError(e -> job.getEmitters().remove(emitter));
+        job.getEmitters().add(emitter);
+
+        boolean finished = job.isFinished();
+        send(job, emitter, finished ? "done" : "progress", job.progress());
+        if (finished) {
+            job.getEmitters().remove(emitter);
+            emitter.complete();
+        }
+        return emitter;
+    }
+
+    void publish(DatasetJob job, String eventName, Object data) {
+        for (SseEmitter emitter : job.getEmitters()) {
+            send(job, emitter, eventName, data);
+        }
+    }
+
+    private void send(DatasetJob job, SseEmitter emitter, String eventName, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(eventName).data(data, MediaType.APPLICATION_JSON));
+        } catch (Exception e) {
+            // The client went away; drop the subscription, the job keeps running
+            job.getEmitters().remove(emitter);
+            logger.debug("Dropped event subscriber for dataset job {}: {}", job.getId(), e.getMessage());
+        }
+    }
+
+    private void evictFinishedJobs() {
+        int excess = jobs.size() - Math.max(1, retainedJobs);
+        Iterator<DatasetJob> iterator = jobs.values().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            if (iterator.next().isFinished()) {
+                iterator.remove();
+                excess--;
+            }
+        }
+    }
+}
@@ -1,54 +1,231 @@
 package com.SafeGate.service;
 
+import com.SafeGate.model.HttpRequestData;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Collectors;
 
 /**
  * Service for parsing dataset files in various formats.
  * This service extracts payloads from uploaded files for WAF testing.
+ * <p>
+ * Line-oriented formats (TXT, CSV, TSV) are spooled to a temporary file, memory-mapped and
+ * split into record-aligned chunks that are parsed in parallel. Chunk results are merged
+ * back in file order, so seeded sampling sees exactly the same list as a sequential parse.
  */
 @Service
 public class DatasetParsingService {
     
     private static final Logger logger = LoggerFactory.getLogger(DatasetParsingService.class);
 
+    // Files smaller than this are parsed as a single chunk
+    private static final int MIN_CHUNK_BYTES = 1024 * 1024;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Format detection inspects at most this many bytes and lines of the file
+    private static final int DETECTION_PREFIX_BYTES = 64 * 1024;
+    private static final int DETECTION_SAMPLE_LINES = 10;
+    private static final byte[] JSON_KEY_SIGNATURE = "\":".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] XML_CLOSE_SIGNATURE = "</".getBytes(StandardCharsets.US_ASCII);
+
+    private final ForkJoinPool parsePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    @PreDestroy
+    public void shutdown() {
+        parsePool.shutdown();
+    }
+
+    /**
+     * An upload spooled to a temporary file together with its SHA-256 content hash.
+     * Closing it removes the temporary file.
+     */
+    public record SpooledUpload(Path path, String sha256, long size, String originalFilename) implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            Files.deleteIfExists(path);
+        }
+    }
+
     /**
      * Parses the uploaded file based on its specified type and extracts HTTP request data.
+     * The upload is read exactly once: it is spooled to a temporary file, format detection
+     * peeks at a bounded prefix of the mapping and the parser consumes the same mapping.
      *
      * @param file        The uploaded dataset file.
      * @param datasetType The type of the dataset (e.g., "CSV", "TXT", "AUTO").
      * @return A list of HttpRequestData objects containing method and payload information.
      * @throws Exception if parsing fails.
      */
-    public List<com.SafeGate.model.HttpRequestData> getPayloadsFromFile(MultipartFile file, String datasetType) throws Exception {
+    public List<HttpRequestData> getPayloadsFromFile(MultipartFile file, String datasetType) throws Exception {
         if (file.isEmpty()) {
             throw new IllegalArgumentException("File cannot be empty.");
         }
 
-        // If datasetType is AUTO or null, detect the format
-        if (datasetType == null || datasetType.trim().isEmpty() || "AUTO".equalsIgnoreCase(datasetType)) {
-            datasetType = detectFileFormat(file);
-            logger.info("Auto-detected file format: {}", datasetType);
+        try (SpooledUpload upload = spool(file)) {
+            return parse(upload, datasetType);
+        }
+    }
+
+    /**
+     * Copies the upload to a temporary file, hashing it with SHA-256 on the way.
+     *
+     * @param file The uploaded dataset file.
+     * @return The spooled upload; the caller must close it.
+     * @throws IOException if the upload cannot be read or written.
+     */
+    public SpooledUpload spool(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        Path spooled = Files.createTempFile("safegate-dataset-", ".upload");
+        try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+            long size = Files.copy(in, spooled, StandardCopyOption.REPLACE_EXISTING);
+            return new SpooledUpload(spooled, HexFormat.of().formatHex(digest.digest()), size, file.getOriginalFilename());
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves AUTO (or a missing type) to a concrete format by inspecting the spooled file.
+     *
+     * @return The upper-case dataset format (CSV, TXT, JSON, XML, TSV).
+     */
+    public String resolveFormat(SpooledUpload upload, String datasetType) throws IOException {
+        if (datasetType != null && !datasetType.trim().isEmpty() && !"AUTO".equalsIgnoreCase(datasetType)) {
+            return datasetType.trim().toUpperCase();
+        }
+        try (FileChannel channel = FileChannel.open(upload.path(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = map(channel);
+            String detected = detectFileFormat(buffer, skipByteOrderMark(buffer), upload.originalFilename());
+            logger.info("Auto-detected file format: {}", detected);
+            return detected;
+        }
+    }
+
+    /**
+     * Parses a spooled upload.
+     *
+     * @param upload      The spooled upload.
+     * @param datasetType The dataset format, or AUTO to detect it.
+     * @return The extracted request data in file order.
+     */
+    public List<HttpRequestData> parse(SpooledUpload upload, String datasetType) throws Exception {
+        try (FileChannel channel = FileChannel.open(upload.path(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = map(channel);
+            int start = skipByteOrderMark(buffer);
+
+            // If datasetType is AUTO or null, detect the format
+            if (datasetType == null || datasetType.trim().isEmpty() || "AUTO".equalsIgnoreCase(datasetType)) {
+                datasetType = detectFileFormat(buffer, start, upload.originalFilename());
+                logger.info("Auto-detected file format: {}", datasetType);
+            }
+
+            return switch (datasetType.toUpperCase()) {
+                case "CSV" -> parseCsvBuffer(buffer, start);
+                case "TXT" -> parseTxtBuffer(buffer, start);
+                case "JSON" -> convertToHttpRequestData(parseJson(joinLines(decode(buffer, start, buffer.limit() - start))));
+                case "XML" -> convertToHttpRequestData(parseXml(joinLines(decode(buffer, start, buffer.limit() - start))));
+                case "TSV" -> parseTsvBuffer(buffer, start);
+                default -> throw new IllegalArgumentException("Unsupported dataset type: " + datasetType);
+            };
+        }
+    }
+
+    private static MappedByteBuffer map(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Dataset file is too large to map: " + size + " bytes");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+    }
+
+    /**
+     * Returns the offset of the first content byte, skipping a UTF-8 byte order mark.
+     */
+    private static int skipByteOrderMark(ByteBuffer buffer) {
+        int limit = buffer.limit();
+        if (limit >= 3 && (buffer.get(0) & 0xFF) == 0xEF && (buffer.get(1) & 0xFF) == 0xBB && (buffer.get(2) & 0xFF) == 0xBF) {
+            return 3;
+        }
+        if (limit >= 2) {
+            int b0 = buffer.get(0) & 0xFF;
+            int b1 = buffer.get(1) & 0xFF;
+            if ((b0 == 0xFE && b1 == 0xFF) || (b0 == 0xFF && b1 == 0xFE)) {
+                throw new IllegalArgumentException("UTF-16 encoded datasets are not supported. Please save the file as UTF-8.");
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Parses a chunk of decoded text into request data.
+     */
+    @FunctionalInterface
+    private interface ChunkParser {
+        List<HttpRequestData> parse(int chunkIndex, String text);
+    }
+
+    /**
+     * Splits buffer[from, limit) into record-aligned chunks, parses them on the fork-join pool
+     * and concatenates the results in chunk order.
+     */
+    private List<HttpRequestData> parseChunks(MappedByteBuffer buffer, int from, boolean quoteAware, ChunkParser parser) {
+        int targetChunks = parsePool.getParallelism() * CHUNKS_PER_THREAD;
+        List<DatasetChunker.Chunk> chunks = DatasetChunker.split(buffer, from, targetChunks, MIN_CHUNK_BYTES, quoteAware);
+        logger.debug("Parsing {} bytes in {} chunks", buffer.limit() - from, chunks.size());
+
+        List<ForkJoinTask<List<HttpRequestData>>> tasks = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            final int chunkIndex = i;
+            final DatasetChunker.Chunk chunk = chunks.get(i);
+            tasks.add(parsePool.submit(() -> parser.parse(chunkIndex, decode(buffer, chunk.start(), chunk.length()))));
+        }
+
+        List<HttpRequestData> merged = new ArrayList<>();
+        for (ForkJoinTask<List<HttpRequestData>> task : tasks) {
+            merged.addAll(task.join());
         }
+        return merged;
+    }
 
-        return switch (datasetType.toUpperCase()) {
-            case "CSV" -> parseCsvFile(file);
-            case "TXT" -> convertToHttpRequestData(parseTxtFile(file));
-            case "JSON" -> convertToHttpRequestData(parseJsonFile(file));
-            case "XML" -> convertToHttpRequestData(parseXmlFile(file));
-            case "TSV" -> convertToHttpRequestData(parseTsvFile(file));
-            default -> throw new IllegalArgumentException("Unsupported dataset type: " + datasetType);
-        };
+    private static String decode(ByteBuffer buffer, int start, int length) {
+        return StandardCharsets.UTF_8.decode(buffer.slice(start, length)).toString();
+    }
+
+    /**
+     * Concatenates the lines of a document, dropping line terminators.
+     */
+    private static String joinLines(String text) {
+        return text.replace("\r", "").replace("\n", "");
     }
 
     /**
@@ -58,507 +235,517 @@ public class DatasetParsingService {
      * @param payloads The list of payload strings.
      * @return A list of HttpRequestData objects.
      */
-    private List<com.SafeGate.model.HttpRequestData> convertToHttpRequestData(List<String> payloads) {
+    private List<HttpRequestData> convertToHttpRequestData(List<String> payloads) {
         return payloads.stream()
-                .map(payload -> new com.SafeGate.model.HttpRequestData("GET", payload))
+                .map(payload -> new HttpRequestData("GET", payload))
                 .collect(Collectors.toList());
     }
 
     /**
      * Parses a text file with one payload per line.
      */
-    private List<String> parseTxtFile(MultipartFile file) throws Exception {
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            return reader.lines()
-                    .filter(line -> !line.trim().isEmpty())
-                    .collect(Collectors.toList());
+    private List<HttpRequestData> parseTxtBuffer(MappedByteBuffer buffer, int start) {
+        return parseChunks(buffer, start, false, (chunkIndex, text) -> {
+            List<HttpRequestData> chunkData = new ArrayList<>();
+            DatasetChunker.forEachRecord(text, false, line -> {
+                if (!line.trim().isEmpty()) {
+                    chunkData.add(new HttpRequestData("GET", line));
+                }
+            });
+            return chunkData;
+        });
+    }
+
+    /**
+     * Splits a CSV header line into column names, removing surrounding quotes.
+     */
+    private String[] parseCsvHeader(String headerLine) {
+        String[] headers;
+        // Check if the header has quoted values
+        if (headerLine.contains("\"")) {
+            // Split by commas outside of quoted fields
+            headers = DatasetChunker.splitFields(headerLine).toArray(new String[0]);
+        } else {
+            headers = headerLine.split(",");
         }
+        return headers;
     }
 
     /**
-     * Parses a CSV file, looking for columns named "method" and "payload".
+     * Parses a CSV file, looking for columns named "method", "payload" and (optionally) "label".
+     * Chunk boundaries are resolved quote-aware so quoted values containing line breaks stay intact.
      */
-    private List<com.SafeGate.model.HttpRequestData> parseCsvFile(MultipartFile file) throws Exception {
-        List<com.SafeGate.model.HttpRequestData> requestDataList = new ArrayList<>();
-    
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            // Read the header line
-            String headerLine = reader.readLine();
-            if (headerLine == null || headerLine.trim().isEmpty()) {
-                throw new IllegalArgumentException("CSV file is empty or has no headers.");
-            }
+    private List<HttpRequestData> parseCsvBuffer(MappedByteBuffer buffer, int start) {
+        // Read the header record
+        int headerEnd = DatasetChunker.recordEnd(buffer, start, true);
+        String headerLine = decode(buffer, start, headerEnd - start).replaceAll("\\r?\\n$", "");
+        if (headerLine.trim().isEmpty()) {
+            throw new IllegalArgumentException("CSV file is empty or has no headers.");
+        }
 
-            // Find the indices of the "method" and "payload" columns
-            String[] headers;
-            int methodColumnIndex = -1;
-            int payloadColumnIndex = -1;
-        
-            // Check if the header has quoted values
-            if (headerLine.contains("\"")) {
-                // Use regex to split by commas outside of quotes
-                headers = headerLine.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-            
-                // Clean up the quoted values
-                for (int i = 0; i < headers.length; i++) {
-                    String header = headers[i].trim();
-                    if (header.startsWith("\"") && header.endsWith("\"")) {
-                        headers[i] = header.substring(1, header.length() - 1);
-                    }
-                }
-            } else {
-                headers = headerLine.split(",");
-            }
-        
-            if (headers.length == 0) {
-                throw new IllegalArgumentException("CSV file has no columns.");
-            }
-        
-            // Log all headers for debugging
-            logger.debug("CSV headers found ({}): {}", headers.length, String.join(", ", headers));
-        
-            // Look for columns named "method" and "payload" (case insensitive)
-            for (int i = 0; i < headers.length; i++) {
-                String header = headers[i].trim();
-                if (header.equalsIgnoreCase("method")) {
-                    methodColumnIndex = i;
-                    logger.info("Found method column at index {}", methodColumnIndex);
-                } else if (header.equalsIgnoreCase("payload")) {
-                    payloadColumnIndex = i;
-                    logger.info("Found payload column at index {}", payloadColumnIndex);
-                }
-            }
-        
-            // If no method column was found, default to "GET"
-            if (methodColumnIndex == -1) {
-                logger.info("No column named 'method' found. Defaulting to GET method for all requests.");
-            }
-        
-            // If no payload column was found, use the last column
-            if (payloadColumnIndex == -1) {
-                payloadColumnIndex = headers.length - 1;
-                logger.info("No column named 'payload' found. Using column '{}' as payload column", 
-                        headers[payloadColumnIndex]);
+        // Find the indices of the "method" and "payload" columns
+        String[] headers = parseCsvHeader(headerLine);
+        int methodColumnIndex = -1;
+        int payloadColumnIndex = -1;
+        int labelColumnIndex = -1;
+
+        if (headers.length == 0) {
+            throw new IllegalArgumentException("CSV file has no columns.");
+        }
+
+        // Log all headers for debugging
+        logger.debug("CSV headers found ({}): {}", headers.length, String.join(", ", headers));
+
+        // Look for columns named "method" and "payload" (case insensitive)
+        for (int i = 0; i < headers.length; i++) {
+            String header = headers[i].trim();
+            if (header.equalsIgnoreCase("method")) {
+                methodColumnIndex = i;
+                logger.info("Found method column at index {}", methodColumnIndex);
+            } else if (header.equalsIgnoreCase("payload")) {
+                payloadColumnIndex = i;
+                logger.info("Found payload column at index {}", payloadColumnIndex);
+            } else if (header.equalsIgnoreCase("label")) {
+                labelColumnIndex = i;
+                logger.info("Found label column at index {}", labelColumnIndex);
             }
-        
-            // Read data rows and extract method and payload
-            String line;
-            int rowCount = 0;
-            while ((line = reader.readLine()) != null) {
-                rowCount++;
+        }
+
+        // If no method column was found, default to "GET"
+        if (methodColumnIndex == -1) {
+            logger.info("No column named 'method' found. Defaulting to GET method for all requests.");
+        }
+
+        // If no payload column was found, use the last column
+        if (payloadColumnIndex == -1) {
+            payloadColumnIndex = headers.length - 1;
+            logger.info("No column named 'payload' found. Using column '{}' as payload column",
+                    headers[payloadColumnIndex]);
+        }
+
+        final int methodColumn = methodColumnIndex;
+        final int payloadColumn = payloadColumnIndex;
+        final int labelColumn = labelColumnIndex;
+        List<HttpRequestData> requestDataList = parseChunks(buffer, headerEnd, true, (chunkIndex, text) -> {
+            List<HttpRequestData> chunkData = new ArrayList<>();
+            int[] rowCount = {0};
+            DatasetChunker.forEachRecord(text, true, line -> {
+                rowCount[0]++;
                 if (!line.trim().isEmpty()) {
                     try {
-                        // Split the line, being careful about quoted values that might contain commas
-                        String[] parts = line.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-                    
-                        if (parts.length > payloadColumnIndex) {
-                            // Extract method (default to GET if not found)
-                            String method = "GET";
-                            if (methodColumnIndex != -1 && parts.length > methodColumnIndex) {
-                                method = parts[methodColumnIndex].trim();
-                                // Remove quotes if present
-                                if (method.startsWith("\"") && method.endsWith("\"")) {
-                                    method = method.substring(1, method.length() - 1);
-                                }
-                            }
-                        
-                            // Extract payload
-                            String payload = parts[payloadColumnIndex].trim();
-                            // Remove quotes if present
-                            if (payload.startsWith("\"") && payload.endsWith("\"")) {
-                                payload = payload.substring(1, payload.length() - 1);
-                            }
-                        
-                            if (!payload.isEmpty()) {
-                                requestDataList.add(new com.SafeGate.model.HttpRequestData(method, payload));
-                            }
-                        } else {
-                            logger.warn("Row {} has fewer columns ({}) than the payload column index ({})", 
-                                    rowCount, parts.length, payloadColumnIndex);
+                        HttpRequestData requestData = parseCsvRow(line, methodColumn, payloadColumn, labelColumn);
+                        if (requestData != null) {
+                            chunkData.add(requestData);
                         }
                     } catch (Exception e) {
-                        logger.warn("Error parsing CSV row {}: {}", rowCount, e.getMessage());
+                        logger.warn("Error parsing CSV row {} of chunk {}: {}", rowCount[0], chunkIndex, e.getMessage());
                         // Continue processing other rows
                     }
                 }
-            }
-        
-            if (requestDataList.isEmpty()) {
-                throw new IllegalArgumentException("No request data could be extracted from the CSV file.");
-            }
-        
-            logger.info("Extracted {} request data entries from CSV file with {} data rows", requestDataList.size(), rowCount);
+            });
+            return chunkData;
+        });
+
+        if (requestDataList.isEmpty()) {
+            throw new IllegalArgumentException("No request data could be extracted from the CSV file.");
         }
-    
+
+        logger.info("Extracted {} request data entries from CSV file", requestDataList.size());
         return requestDataList;
     }
 
+    /**
+     * Extracts method, payload and label from a single CSV data row.
+     *
+     * @return The request data, or null if the row has no usable payload.
+     */
+    private HttpRequestData parseCsvRow(String line, int methodColumnIndex, int payloadColumnIndex, int labelColumnIndex) {
+        // Split the line, being careful about quoted values that might contain commas or quotes
+        List<String> parts = DatasetChunker.splitFields(line);
+
+        if (parts.size() <= payloadColumnIndex) {
+            logger.warn("Row has fewer columns ({}) than the payload column index ({})",
+                    parts.size(), payloadColumnIndex);
+            return null;
+        }
+
+        // Extract method (default to GET if not found)
+        String method = "GET";
+        if (methodColumnIndex != -1 && parts.size() > methodColumnIndex) {
+            method = parts.get(methodColumnIndex).trim();
+        }
+
+        // Extract label (optional)
+        String label = null;
+        if (labelColumnIndex != -1 && parts.size() > labelColumnIndex) {
+            String value = parts.get(labelColumnIndex).trim();
+            label = value.isEmpty() ? null : value;
+        }
+
+        // Extract payload
+        String payload = parts.get(payloadColumnIndex);
+        return payload.isEmpty() ? null : new HttpRequestData(method, payload, label);
+    }
+
     /**
      * Parses a TSV (tab-separated values) file.
      */
-    private List<String> parseTsvFile(MultipartFile file) throws Exception {
-        List<String> payloads = new ArrayList<>();
-        
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            // Read the header line
-            String headerLine = reader.readLine();
-            if (headerLine == null || headerLine.trim().isEmpty()) {
-                throw new IllegalArgumentException("TSV file is empty or has no headers.");
-            }
+    private List<HttpRequestData> parseTsvBuffer(MappedByteBuffer buffer, int start) {
+        // Read the header line
+        int headerEnd = DatasetChunker.recordEnd(buffer, start, false);
+        String headerLine = decode(buffer, start, headerEnd - start).replaceAll("\\r?\\n$", "");
+        if (headerLine.trim().isEmpty()) {
+            throw new IllegalArgumentException("TSV file is empty or has no headers.");
+        }
 
-            // Find the index of the "payload" column
-            String[] headers = headerLine.split("\t");
-            int payloadColumnIndex = -1;
-            
-            // Look for a column named "payload" (case insensitive)
-            for (int i = 0; i < headers.length; i++) {
-                if (headers[i].trim().equalsIgnoreCase("payload")) {
-                    payloadColumnIndex = i;
-                    break;
-                }
-            }
-            
-            // If no payload column was found, use the last column
-            if (payloadColumnIndex == -1) {
-                payloadColumnIndex = headers.length - 1;
+        // Find the index of the "payload" column
+        String[] headers = headerLine.split("\t");
+        int payloadColumnIndex = -1;
+
+        // Look for a column named "payload" (case insensitive)
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].trim().equalsIgnoreCase("payload")) {
+                payloadColumnIndex = i;
+                break;
             }
-            
-            // Read data rows and extract payloads
-            String line;
-            while ((line = reader.readLine()) != null) {
+        }
+
+        // If no payload column was found, use the last column
+        if (payloadColumnIndex == -1) {
+            payloadColumnIndex = headers.length - 1;
+        }
+
+        final int payloadColumn = payloadColumnIndex;
+        return parseChunks(buffer, headerEnd, false, (chunkIndex, text) -> {
+            List<HttpRequestData> chunkData = new ArrayList<>();
+            DatasetChunker.forEachRecord(text, false, line -> {
                 if (!line.trim().isEmpty()) {
                     String[] parts = line.split("\t");
-                    if (parts.length > payloadColumnIndex) {
-                        String payload = parts[payloadColumnIndex].trim();
+                    if (parts.length > payloadColumn) {
+                        String payload = parts[payloadColumn].trim();
                         if (!payload.isEmpty()) {
-                            payloads.add(payload);
+                            chunkData.add(new HttpRequestData("GET", payload));
                         }
                     }
                 }
-            }
-        }
-        
-        return payloads;
+            });
+            return chunkData;
+        });
     }
 
     /**
-     * Parses a JSON file, looking for payloads in various formats.
+     * Parses JSON content, looking for payloads in various formats.
      */
-    private List<String> parseJsonFile(MultipartFile file) throws Exception {
+    private List<String> parseJson(String content) {
         List<String> payloads = new ArrayList<>();
+
+        String json = content.trim();
+        if (json.isEmpty()) {
+            throw new IllegalArgumentException("JSON file is empty.");
+        }
         
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder jsonContent = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                jsonContent.append(line);
-            }
+        // Simple JSON parsing - this is a basic implementation
+        // For production use, consider using a proper JSON parser like Jackson or Gson
+        
+        if (json.startsWith("[") && json.endsWith("]")) {
+            // It's an array
+            json = json.substring(1, json.length() - 1);
             
-            String json = jsonContent.toString().trim();
-            if (json.isEmpty()) {
-                throw new IllegalArgumentException("JSON file is empty.");
+            // Handle empty array
+            if (json.trim().isEmpty()) {
+                return payloads;
             }
             
-            // Simple JSON parsing - this is a basic implementation
-            // For production use, consider using a proper JSON parser like Jackson or Gson
+            // Split by commas, but be careful about nested objects
+            List<String> items = new ArrayList<>();
+            int depth = 0;
+            int startPos = 0;
+            boolean inString = false;
             
-            if (json.startsWith("[") && json.endsWith("]")) {
-                // It's an array
-                json = json.substring(1, json.length() - 1);
-                
-                // Handle empty array
-                if (json.trim().isEmpty()) {
-                    return payloads;
-                }
-                
-                // Split by commas, but be careful about nested objects
-                List<String> items = new ArrayList<>();
-                int depth = 0;
-                int startPos = 0;
-                
-                for (int i = 0; i < json.length(); i++) {
-                    char c = json.charAt(i);
-                    if (c == '{' || c == '[') depth++;
-                    else if (c == '}' || c == ']') depth--;
-                    else if (c == ',' && depth == 0) {
-                        items.add(json.substring(startPos, i).trim());
-                        startPos = i + 1;
-                    }
+            for (int i = 0; i < json.length(); i++) {
+                char c = json.charAt(i);
+                // Commas and brackets inside string values are payload content
+                if (inString) {
+                    if (c == '\\') i++;
+                    else if (c == '"') inString = false;
+                    continue;
                 }
-                
-                // Add the last item
-                if (startPos < json.length()) {
-                    items.add(json.substring(startPos).trim());
+                if (c == '"') inString = true;
+                else if (c == '{' || c == '[') depth++;
+                else if (c == '}' || c == ']') depth--;
+                else if (c == ',' && depth == 0) {
+                    items.add(json.substring(startPos, i).trim());
+                    startPos = i + 1;
                 }
-                
-                for (String item : items) {
-                    if (item.startsWith("\"") && item.endsWith("\"")) {
-                        // It's a string
-                        payloads.add(item.substring(1, item.length() - 1));
-                    } else if (item.contains("\"payload\"")) {
-                        // It's an object with a payload field
-                        int start = item.indexOf("\"payload\"");
-                        int valueStart = item.indexOf(":", start) + 1;
-                        if (valueStart > 0) {
-                            int valueEnd = item.indexOf(",", valueStart);
-                            if (valueEnd == -1) valueEnd = item.indexOf("}", valueStart);
-                            if (valueEnd != -1) {
-                                String value = item.substring(valueStart, valueEnd).trim();
-                                if (value.startsWith("\"") && value.endsWith("\"")) {
-                                    payloads.add(value.substring(1, value.length() - 1));
-                                }
-                            }
-                        }
-                    }
-                }
-            } else if (json.startsWith("{") && json.endsWith("}")) {
-                // It's a single object, look for payload field
-                if (json.contains("\"payload\"")) {
-                    int start = json.indexOf("\"payload\"");
-                    int valueStart = json.indexOf(":", start) + 1;
+            }
+            
+            // Add the last item
+            if (startPos < json.length()) {
+                items.add(json.substring(startPos).trim());
+            }
+            
+            for (String item : items) {
+                if (item.startsWith("\"") && item.endsWith("\"")) {
+                    // It's a string
+                    payloads.add(item.substring(1, item.length() - 1));
+                } else if (item.contains("\"payload\"")) {
+                    // It's an object with a payload field
+                    int start = item.indexOf("\"payload\"");
+                    int valueStart = item.indexOf(":", start) + 1;
                     if (valueStart > 0) {
-                        int valueEnd = json.indexOf(",", valueStart);
-                        if (valueEnd == -1) valueEnd = json.indexOf("}", valueStart);
+                        int valueEnd = item.indexOf(",", valueStart);
+                        if (valueEnd == -1) valueEnd = item.indexOf("}", valueStart);
                         if (valueEnd != -1) {
-                            String value = json.substring(valueStart, valueEnd).trim();
+                            String value = item.substring(valueStart, valueEnd).trim();
                             if (value.startsWith("\"") && value.endsWith("\"")) {
                                 payloads.add(value.substring(1, value.length() - 1));
                             }
                         }
                     }
                 }
-            } else {
-                throw new IllegalArgumentException("Invalid JSON format. Expected an array or object.");
             }
+        } else if (json.startsWith("{") && json.endsWith("}")) {
+            // It's a single object, look for payload field
+            if (json.contains("\"payload\"")) {
+                int start = json.indexOf("\"payload\"");
+                int valueStart = json.indexOf(":", start) + 1;
+                if (valueStart > 0) {
+                    int valueEnd = json.indexOf(",", valueStart);
+                    if (valueEnd == -1) valueEnd = json.indexOf("}", valueStart);
+                    if (valueEnd != -1) {
+                        String value = json.substring(valueStart, valueEnd).trim();
+                        if (value.startsWith("\"") && value.endsWith("\"")) {
+                            payloads.add(value.substring(1, value.length() - 1));
+                        }
+                    }
+                }
+            }
+        } else {
+            throw new IllegalArgumentException("Invalid JSON format. Expected an array or object.");
         }
-        
+
         return payloads;
     }
 
     /**
-     * Parses an XML file, looking for payload tags or attributes.
+     * Parses XML content, looking for payload tags or attributes.
      */
-    private List<String> parseXmlFile(MultipartFile file) throws Exception {
+    private List<String> parseXml(String content) {
         List<String> payloads = new ArrayList<>();
+
+        String xml = content.trim();
+        if (xml.isEmpty()) {
+            throw new IllegalArgumentException("XML file is empty.");
+        }
         
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder xmlContent = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                xmlContent.append(line);
-            }
+        // Simple XML parsing - this is a basic implementation
+        // For production use, consider using a proper XML parser
+        
+        // Look for payload tags (case insensitive)
+        List<String> payloadTags = Arrays.asList("<payload>", "<PAYLOAD>", "<Payload>");
+        List<String> payloadEndTags = Arrays.asList("</payload>", "</PAYLOAD>", "</Payload>");
+        
+        int index = 0;
+        int payloadCount = 0;
+        
+        while (index < xml.length()) {
+            // Find the next payload tag
+            int tagStart = -1;
+            String matchedTag = null;
+            String matchedEndTag = null;
             
-            String xml = xmlContent.toString().trim();
-            if (xml.isEmpty()) {
-                throw new IllegalArgumentException("XML file is empty.");
+            for (int i = 0; i < payloadTags.size(); i++) {
+                String tag = payloadTags.get(i);
+                int pos = xml.indexOf(tag, index);
+                if (pos != -1 && (tagStart == -1 || pos < tagStart)) {
+                    tagStart = pos;
+                    matchedTag = tag;
+                    matchedEndTag = payloadEndTags.get(i);
+                }
             }
             
-            // Simple XML parsing - this is a basic implementation
-            // For production use, consider using a proper XML parser
+            if (tagStart == -1 || matchedTag == null) {
+                // No more payload tags found
+                break;
+            }
             
-            // Look for payload tags (case insensitive)
-            List<String> payloadTags = Arrays.asList("<payload>", "<PAYLOAD>", "<Payload>");
-            List<String> payloadEndTags = Arrays.asList("</payload>", "</PAYLOAD>", "</Payload>");
+            // Find the end tag
+            int contentStart = tagStart + matchedTag.length();
+            int tagEnd = xml.indexOf(matchedEndTag, contentStart);
             
-            int index = 0;
-            int payloadCount = 0;
+            if (tagEnd == -1) {
+                logger.warn("Found opening <payload> tag at position {} but no matching closing tag", tagStart);
+                // Move past this tag to avoid infinite loop
+                index = contentStart;
+                continue;
+            }
             
-            while (index < xml.length()) {
-                // Find the next payload tag
-                int tagStart = -1;
-                String matchedTag = null;
-                String matchedEndTag = null;
-                
-                for (int i = 0; i < payloadTags.size(); i++) {
-                    String tag = payloadTags.get(i);
-                    int pos = xml.indexOf(tag, index);
-                    if (pos != -1 && (tagStart == -1 || pos < tagStart)) {
-                        tagStart = pos;
-                        matchedTag = tag;
-                        matchedEndTag = payloadEndTags.get(i);
-                    }
-                }
-                
-                if (tagStart == -1 || matchedTag == null) {
-                    // No more payload tags found
-                    break;
-                }
-                
-                // Find the end tag
-                int contentStart = tagStart + matchedTag.length();
-                int tagEnd = xml.indexOf(matchedEndTag, contentStart);
-                
-                if (tagEnd == -1) {
-                    logger.warn("Found opening <payload> tag at position {} but no matching closing tag", tagStart);
-                    // Move past this tag to avoid infinite loop
-                    index = contentStart;
-                    continue;
-                }
-                
-                // Extract the payload content
-                String payload = xml.substring(contentStart, tagEnd).trim();
-                if (!payload.isEmpty()) {
-                    payloads.add(payload);
-                    payloadCount++;
-                }
-                
-                // Move past this tag
-                index = tagEnd + matchedEndTag.length();
+            // Extract the payload content
+            String payload = xml.substring(contentStart, tagEnd).trim();
+            if (!payload.isEmpty()) {
+                payloads.add(payload);
+                payloadCount++;
             }
             
-            // If no payload tags were found, try looking for a 'payload' attribute
-            if (payloadCount == 0) {
-                // Use a simple regex to find payload attributes
-                // For production use, consider using a proper XML parser
-                int attrIndex = 0;
-                while ((attrIndex = xml.indexOf("payload=\"", attrIndex)) != -1) {
-                    int valueStart = attrIndex + 9; // length of 'payload="'
-                    int valueEnd = xml.indexOf("\"", valueStart);
-                    if (valueEnd != -1) {
-                        String payload = xml.substring(valueStart, valueEnd).trim();
-                        if (!payload.isEmpty()) {
-                            payloads.add(payload);
-                            payloadCount++;
-                        }
+            // Move past this tag
+            index = tagEnd + matchedEndTag.length();
+        }
+        
+        // If no payload tags were found, try looking for a 'payload' attribute
+        if (payloadCount == 0) {
+            // Use a simple regex to find payload attributes
+            // For production use, consider using a proper XML parser
+            int attrIndex = 0;
+            while ((attrIndex = xml.indexOf("payload=\"", attrIndex)) != -1) {
+                int valueStart = attrIndex + 9; // length of 'payload="'
+                int valueEnd = xml.indexOf("\"", valueStart);
+                if (valueEnd != -1) {
+                    String payload = xml.substring(valueStart, valueEnd).trim();
+                    if (!payload.isEmpty()) {
+                        payloads.add(payload);
+                        payloadCount++;
                     }
-                    attrIndex = valueEnd + 1;
                 }
+                attrIndex = valueEnd + 1;
             }
         }
-        
+
         return payloads;
     }
 
     /**
-     * Attempts to detect the format of a file based on its content and extension.
-     * 
-     * @param file The file to analyze
+     * Attempts to detect the format of a file based on byte-level signatures and its extension.
+     * Only a bounded prefix of the mapping is inspected, plus the last non-blank byte of the file,
+     * so detection never re-reads the upload and works for single-line documents.
+     *
+     * @param buffer   The mapped file contents
+     * @param start    Offset of the first content byte (after any byte order mark)
+     * @param fileName The original file name, used as a fallback hint
      * @return The detected format (CSV, TXT, JSON, XML, TSV)
-     * @throws Exception if the file cannot be read or the format cannot be detected
      */
-    private String detectFileFormat(MultipartFile file) throws Exception {
-        // Check file extension first as a hint
-        String fileName = file.getOriginalFilename();
+    private String detectFileFormat(ByteBuffer buffer, int start, String fileName) {
+        // Check file extension as a fallback hint
         String fileExtension = "";
         if (fileName != null && fileName.contains(".")) {
             fileExtension = fileName.substring(fileName.lastIndexOf(".") + 1).toLowerCase();
         }
-        
-        // Read the first few lines to analyze content
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
-            StringBuilder content = new StringBuilder();
-            String line;
-            int lineCount = 0;
-            while ((line = reader.readLine()) != null && lineCount < 10) {
-                content.append(line).append("\n");
-                lineCount++;
-            }
-            
-            String sample = content.toString().trim();
-            if (sample.isEmpty()) {
-                throw new IllegalArgumentException("File is empty.");
-            }
-            
-            // Check for CSV format with quoted values
-            if (sample.contains(",") && (sample.contains("\"") || sample.contains("'"))) {
-                String[] lines = sample.split("\n");
-                
-                // Check if first line might be a header
-                if (lines.length > 1) {
-                    String firstLine = lines[0];
-                    // Headers often contain words, not just numbers
-                    if (firstLine.matches(".*[a-zA-Z].*") && firstLine.contains(",")) {
-                        // Look for a payload column in the header
-                        String[] headers;
-                        
-                        // Check if the header has quoted values
-                        if (firstLine.contains("\"")) {
-                            // Use regex to split by commas outside of quotes
-                            headers = firstLine.split(",(?=([^\"]*\"[^\"]*\")*[^\"]*$)");
-                            
-                            // Clean up the quoted values
-                            for (int i = 0; i < headers.length; i++) {
-                                String header = headers[i].trim();
-                                if (header.startsWith("\"") && header.endsWith("\"")) {
-                                    headers[i] = header.substring(1, header.length() - 1);
-                                }
-                            }
-                        } else {
-                            headers = firstLine.split(",");
-                        }
-                        
-                        for (String header : headers) {
-                            if (header.trim().equalsIgnoreCase("payload")) {
-                                logger.info("Found 'payload' column in CSV header");
-                                return "CSV";
-                            }
-                        }
-                    }
-                }
-                
-                // Even without a payload column, if it looks like CSV, return CSV
-                return "CSV";
+
+        int limit = buffer.limit();
+        int prefixEnd = Math.min(limit, start + DETECTION_PREFIX_BYTES);
+
+        int first = start;
+        while (first < limit && isBlank(buffer.get(first))) {
+            first++;
+        }
+        int last = limit - 1;
+        while (last >= first && isBlank(buffer.get(last))) {
+            last--;
+        }
+        if (first > last) {
+            throw new IllegalArgumentException("File is empty.");
+        }
+        byte firstByte = buffer.get(first);
+        byte lastByte = buffer.get(last);
+
+        // Structured documents are recognised by their opening and closing bytes
+        if (firstByte == '{' && lastByte == '}' && containsBytes(buffer, first, prefixEnd, JSON_KEY_SIGNATURE)) {
+            return "JSON";
+        }
+        if (firstByte == '[' && lastByte == ']') {
+            int next = first + 1;
+            while (next < prefixEnd && isBlank(buffer.get(next))) {
+                next++;
             }
-            
-            // Check for JSON format
-            if (sample.startsWith("{") && sample.endsWith("}") && sample.contains("\":")) {
+            if (next < prefixEnd && (buffer.get(next) == '{' || buffer.get(next) == '"' || buffer.get(next) == ']')) {
                 return "JSON";
-            } else if (sample.startsWith("[") && sample.endsWith("]")) {
-                if (sample.contains("{\"") || sample.contains("\":")) {
-                    return "JSON";
-                }
             }
-            
-            // Check for XML format
-            if (sample.startsWith("<") && sample.contains("</") && sample.contains(">")) {
-                return "XML";
+        }
+        if (firstByte == '<' && containsBytes(buffer, first, prefixEnd, XML_CLOSE_SIGNATURE)) {
+            return "XML";
+        }
+
+        // Delimited formats: the same number of delimiters on most of the sampled lines
+        String delimited = detectDelimiter(buffer, first, prefixEnd);
+        if (delimited != null) {
+            return delimited;
+        }
+
+        // Use file extension as a fallback
+        switch (fileExtension) {
+            case "json": return "JSON";
+            case "xml": return "XML";
+            case "csv": return "CSV";
+            case "tsv": return "TSV";
+            default: break;
+        }
+
+        // Default to TXT
+        return "TXT";
+    }
+
+    /**
+     * Counts commas (between CSV fields) and tabs per record over the first sampled records and
+     * reports CSV or TSV when the header's delimiter count repeats on most data records. Records
+     * and fields follow the same RFC 4180 quote rules as parsing ({@link DatasetChunker}), so a
+     * stray quote in an unquoted value does not swallow the rest of the sample.
+     *
+     * @return "TSV", "CSV" or null when the sample does not look delimited.
+     */
+    private static String detectDelimiter(ByteBuffer buffer, int from, int to) {
+        List<String> records = new ArrayList<>(DETECTION_SAMPLE_LINES);
+        DatasetChunker.forEachRecord(decode(buffer, from, to - from), true, record -> {
+            if (records.size() < DETECTION_SAMPLE_LINES && !record.isBlank()) {
+                records.add(record);
             }
-            
-            // Check for TSV format (tab-separated values)
-            if (sample.contains("\t") && lineCount > 1) {
-                String[] lines = sample.split("\n");
-                // Check if most lines have tabs
-                int linesWithTabs = 0;
-                for (String l : lines) {
-                    if (l.contains("\t")) {
-                        linesWithTabs++;
-                    }
-                }
-                if (linesWithTabs > lines.length / 2) {
-                    return "TSV";
-                }
+        });
+        int lines = records.size();
+        int[] commas = new int[lines];
+        int[] tabs = new int[lines];
+        for (int i = 0; i < lines; i++) {
+            String record = records.get(i);
+            commas[i] = DatasetChunker.splitFields(record).size() - 1;
+            tabs[i] = (int) record.chars().filter(c -> c == '\t').count();
+        }
+        if (lines < 2) {
+            return null;
+        }
+
+        if (tabs[0] > 0 && consistentLines(tabs, lines) > (lines - 1) / 2) {
+            return "TSV";
+        }
+        if (commas[0] > 0 && consistentLines(commas, lines) > (lines - 1) / 2) {
+            return "CSV";
+        }
+        return null;
+    }
+
+    /**
+     * Returns how many lines after the first have the same delimiter count as the first line.
+     */
+    private static int consistentLines(int[] counts, int lines) {
+        int matching = 0;
+        for (int i = 1; i < lines; i++) {
+            if (counts[i] == counts[0]) {
+                matching++;
             }
-            
-            // Check for CSV format without quotes
-            if (sample.contains(",")) {
-                String[] lines = sample.split("\n");
-                
-                // Count lines with commas
-                int linesWithCommas = 0;
-                for (String l : lines) {
-                    if (l.contains(",")) {
-                        linesWithCommas++;
-                    }
-                }
-                
-                // If most lines have commas, it's likely CSV
-                if (linesWithCommas > lines.length / 2) {
-                    return "CSV";
+        }
+        return matching;
+    }
+
+    private static boolean containsBytes(ByteBuffer buffer, int from, int to, byte[] needle) {
+        outer:
+        for (int i = from; i <= to - needle.length; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (buffer.get(i + j) != needle[j]) {
+                    continue outer;
                 }
             }
-            
-            // Use file extension as a fallback
-            if (fileExtension.equals("json")) {
-                return "JSON";
-            } else if (fileExtension.equals("xml")) {
-                return "XML";
-            } else if (fileExtension.equals("csv")) {
-                return "CSV";
-            } else if (fileExtension.equals("tsv")) {
-                return "TSV";
-            }
-            
-            // Default to TXT
-            return "TXT";
+            return true;
         }
+        return false;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
     }
-}
\ No newline at end of file
+}
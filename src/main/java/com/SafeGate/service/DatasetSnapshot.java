@@ -0,0 +1,150 @@
+package com.SafeGate.service;
+
+import com.SafeGate.model.HttpRequestData;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Read-only view over a pre-parsed dataset snapshot file.
+ * <p>
+ * Layout (big-endian): magic "SGDS", int version, int record count, then per record
+ * a u16-prefixed method, an int-prefixed payload and a u16-prefixed label
+ * (0xFFFF marks a missing label). All strings are UTF-8.
+ * <p>
+ * Opening a snapshot only scans record lengths to build an offset table; a record's
+ * strings are decoded from the mapping when it is accessed, so sampling a few records
+ * out of a large dataset decodes only those records.
+ */
+public final class DatasetSnapshot extends AbstractList<HttpRequestData> implements RandomAccess {
+
+    private static final int MAGIC = 0x53474453; // "SGDS"
+    private static final int VERSION = 1;
+    private static final int NO_LABEL = 0xFFFF;
+    private static final int MAX_SHORT_STRING = 0xFFFE;
+
+    private final MappedByteBuffer buffer;
+    private final int[] offsets;
+
+    private DatasetSnapshot(MappedByteBuffer buffer, int[] offsets) {
+        this.buffer = buffer;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Maps a snapshot file and indexes its records.
+     *
+     * @param path The snapshot file.
+     * @return A random-access list backed by the mapping.
+     * @throws IOException if the file cannot be read or is not a valid snapshot.
+     */
+    public static DatasetSnapshot open(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Dataset snapshot is too large to map: " + path);
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.limit() < 12 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a dataset snapshot: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported dataset snapshot version " + buffer.getInt(4) + ": " + path);
+        }
+
+        int count = buffer.getInt(8);
+        int[] offsets = new int[Math.max(0, count)];
+        int pos = 12;
+        try {
+            for (int i = 0; i < count; i++) {
+                offsets[i] = pos;
+                pos += 2 + Short.toUnsignedInt(buffer.getShort(pos));
+                pos += 4 + buffer.getInt(pos);
+                int labelLength = Short.toUnsignedInt(buffer.getShort(pos));
+                pos += 2 + (labelLength == NO_LABEL ? 0 : labelLength);
+            }
+        } catch (IndexOutOfBoundsException e) {
+            // A length runs past the end of the file
+            pos = -1;
+        }
+        if (pos != buffer.limit()) {
+            throw new IOException("Dataset snapshot is truncated or corrupt: " + path);
+        }
+        return new DatasetSnapshot(buffer, offsets);
+    }
+
+    /**
+     * Writes the records to a snapshot file, replacing any existing file.
+     *
+     * @param path     The target file.
+     * @param requests The records in dataset order.
+     * @return The number of bytes written.
+     */
+    public static long write(Path path, List<HttpRequestData> requests) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(requests.size());
+            for (HttpRequestData request : requests) {
+                writeShortString(out, request.getMethod() != null ? request.getMethod() : "GET");
+                byte[] payload = request.getPayload().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(payload.length);
+                out.write(payload);
+                if (request.getLabel() == null) {
+                    out.writeShort(NO_LABEL);
+                } else {
+                    writeShortString(out, request.getLabel());
+                }
+            }
+            out.flush();
+            return out.size();
+        }
+    }
+
+    private static void writeShortString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_SHORT_STRING) {
+            throw new IllegalArgumentException("Value too long for dataset snapshot: " + bytes.length + " bytes");
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    @Override
+    public HttpRequestData get(int index) {
+        int pos = offsets[index];
+        int methodLength = Short.toUnsignedInt(buffer.getShort(pos));
+        String method = decode(pos + 2, methodLength);
+        pos += 2 + methodLength;
+
+        int payloadLength = buffer.getInt(pos);
+        String payload = decode(pos + 4, payloadLength);
+        pos += 4 + payloadLength;
+
+        int labelLength = Short.toUnsignedInt(buffer.getShort(pos));
+        String label = labelLength == NO_LABEL ? null : decode(pos + 2, labelLength);
+        return new HttpRequestData(method, payload, label);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length;
+    }
+
+    private String decode(int start, int length) {
+        ByteBuffer slice = buffer.slice(start, length);
+        return StandardCharsets.UTF_8.decode(slice).toString();
+    }
+}
@@ -0,0 +1,141 @@
+package com.SafeGate.service;
+
+import com.SafeGate.entity.Dataset;
+import com.SafeGate.model.HttpRequestData;
+import com.SafeGate.repository.DatasetRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Content-addressed dataset library.
+ * <p>
+ * Uploads are hashed while they are spooled. If a dataset with the same SHA-256 and format
+ * is already stored, the upload is discarded without parsing. Otherwise it is parsed once
+ * and written as a binary {@link DatasetSnapshot}; runs then read records straight from
+ * the mapped snapshot.
+ */
+@Service
+public class DatasetStoreService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DatasetStoreService.class);
+
+    @Autowired
+    private DatasetRepository datasetRepository;
+
+    @Autowired
+    private DatasetParsingService datasetParsingService;
+
+    @Value("${safegate.datasets.dir:data/datasets}")
+    private String datasetsDir;
+
+    /**
+     * Stores an uploaded dataset, or returns the existing entry if identical content was stored before.
+     *
+     * @param file        The uploaded dataset file.
+     * @param datasetType The dataset format, or AUTO to detect it.
+     * @return The stored dataset.
+     * @throws Exception if the file cannot be read or parsed.
+     */
+    public Dataset ingest(MultipartFile file, String datasetType) throws Exception {
+        if (file.isEmpty()) {
+            throw new IllegalArgumentException("File cannot be empty.");
+        }
+
+        try (DatasetParsingService.SpooledUpload upload = datasetParsingService.spool(file)) {
+            String format = datasetParsingService.resolveFormat(upload, datasetType);
+
+            Optional<Dataset> existing = datasetRepository.findBySha256AndDatasetFormat(upload.sha256(), format);
+            if (existing.isPresent() && Files.exists(snapshotPath(existing.get()))) {
+                logger.info("Dataset {} ({}) already stored as id {}, skipping parse",
+                        upload.originalFilename(), format, existing.get().getId());
+                return existing.get();
+            }
+
+            List<HttpRequestData> requests = datasetParsingService.parse(upload, format);
+            String snapshotFile = upload.sha256() + "-" + format.toLowerCase() + ".sgds";
+            writeSnapshot(snapshotFile, requests);
+
+            Dataset dataset = existing.orElseGet(Dataset::new);
+            dataset.setSha256(upload.sha256());
+            dataset.setDatasetFormat(format);
+            dataset.setOriginalFileName(upload.originalFilename());
+            dataset.setSizeBytes(upload.size());
+            dataset.setRecordCount(requests.size());
+            dataset.setSnapshotFile(snapshotFile);
+            try {
+                Dataset saved = datasetRepository.save(dataset);
+                logger.info("Stored dataset {} ({}, {} records) as id {}",
+                        upload.originalFilename(), format, requests.size(), saved.getId());
+                return saved;
+            } catch (DataIntegrityViolationException e) {
+                // A concurrent upload of the same content won the race; its snapshot is identical
+                return datasetRepository.findBySha256AndDatasetFormat(upload.sha256(), format).orElseThrow(() -> e);
+            }
+        }
+    }
+
+    public List<Dataset> listDatasets() {
+        return datasetRepository.findAllByOrderByCreatedAtDesc();
+    }
+
+    public Optional<Dataset> findById(Long id) {
+        return datasetRepository.findById(id);
+    }
+
+    /**
+     * Opens the records of a stored dataset.
+     *
+     * @param dataset The stored dataset.
+     * @return A random-access list backed by the memory-mapped snapshot.
+     * @throws IOException if the snapshot is missing or corrupt.
+     */
+    public DatasetSnapshot openSnapshot(Dataset dataset) throws IOException {
+        return DatasetSnapshot.open(snapshotPath(dataset));
+    }
+
+    /**
+     * Deletes a dataset and its snapshot.
+     *
+     * @return true if the dataset existed.
+     */
+    public boolean deleteDataset(Long id) throws IOException {
+        Optional<Dataset> dataset = datasetRepository.findById(id);
+        if (dataset.isEmpty()) {
+            return false;
+        }
+        datasetRepository.delete(dataset.get());
+        Files.deleteIfExists(snapshotPath(dataset.get()));
+        return true;
+    }
+
+    private void writeSnapshot(String snapshotFile, List<HttpRequestData> requests) throws IOException {
+        Path dir = Paths.get(datasetsDir);
+        Files.createDirectories(dir);
+        // Write to a temporary file first so readers never see a partial snapshot
+        Path tmp = Files.createTempFile(dir, snapshotFile, ".tmp");
+        try {
+            long bytes = DatasetSnapshot.write(tmp, requests);
+            Files.move(tmp, dir.resolve(snapshotFile), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.debug("Wrote dataset snapshot {} ({} bytes)", snapshotFile, bytes);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private Path snapshotPath(Dataset dataset) {
+        return Paths.get(datasetsDir).resolve(dataset.getSnapshotFile());
+    }
+}
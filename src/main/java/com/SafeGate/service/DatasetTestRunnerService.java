@@ -1,13 +1,18 @@
 package com.SafeGate.service;
 
+import com.SafeGate.analyzer.AnalyzerWork;
+import com.SafeGate.entity.Dataset;
 import com.SafeGate.entity.PassedPayload;
 import com.SafeGate.entity.TestRun;
-import com.SafeGate.entity.TestRunBlockCount;
+import com.SafeGate.model.AnalysisVerdict;
 import com.SafeGate.model.HttpRequestData;
 import com.SafeGate.repository.TestRunRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -19,13 +24,22 @@ import org.springframework.web.multipart.MultipartFile;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -40,31 +54,112 @@ public class DatasetTestRunnerService {
     @Autowired
     private TestRunRepository testRunRepository;
 
+    @Autowired
+    private RunResultStore runResultStore;
+
     @Autowired
     private WafTestModeService testModeService;
     
     @Autowired
-    private DatasetParsingService datasetParsingService;
+    private DatasetStoreService datasetStoreService;
 
     @Autowired
     private LLMService llmService;
 
+    @Value("${safegate.jobs.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${safegate.llm.max-in-flight:4}")
+    private int maxInFlight;
+
+    @Value("${safegate.llm.chunk-retries:2}")
+    private int chunkRetries;
+
+    @Value("${safegate.llm.retry-backoff-ms:500}")
+    private long retryBackoffMs;
+
+    // How often a running dataset test saves a checkpoint it can be resumed from
+    @Value("${safegate.jobs.checkpoint-interval-ms:30000}")
+    private long checkpointIntervalMs;
+
+    // Sends chunk requests to the analyzer; each run bounds its outstanding chunks to
+    // maxInFlight per available analyzer endpoint
+    private ExecutorService analyzerPool;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        analyzerPool = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "dataset-analyzer-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        analyzerPool.shutdownNow();
+    }
+
+    /**
+     * Receives progress from a dataset run. Runs are analyzed chunk by chunk; the listener is
+     * notified after every chunk and asked before every chunk whether the run should stop.
+     */
+    public interface RunListener {
+
+        RunListener NONE = new RunListener() {
+        };
+
+        /**
+         * @param recordCount The number of records in the dataset.
+         * @param total       The number of payloads selected for this run.
+         */
+        default void onStarted(int recordCount, int total) {
+        }
+
+        /**
+         * @param rows      The verdict rows of the chunk, in dataset order.
+         * @param processed The number of payloads processed so far, including this chunk.
+         */
+        default void onChunk(List<Map<String, Object>> rows, int processed) {
+        }
+
+        /**
+         * Called before a resumed run continues.
+         *
+         * @param processed The number of payloads processed before the checkpoint.
+         * @param blocked   How many of them were malicious.
+         */
+        default void onResumed(long processed, long blocked) {
+        }
+
+        default boolean isCancelled() {
+            return false;
+        }
+
+        /**
+         * @return Whether a cancelled run should stay resumable, because the application is
+         * shutting down, rather than be saved as a partial run.
+         */
+        default boolean isSuspended() {
+            return false;
+        }
+
+        /**
+         * @return How the run's analyzer calls are scheduled; runs a user waits for are interactive.
+         */
+        default AnalyzerWork analyzerWork() {
+            return AnalyzerWork.interactive("interactive");
+        }
+    }
+
     // Legacy RestTemplate kept for deprecated methods to compile
     private final RestTemplate restTemplate = new RestTemplate();
 
-    // Transient storage for last dataset LLM aggregation
+    // Counters of the last dataset run; its rows are read back a page at a time from the result store
     private int lastLlmTotal = 0;
     private int lastLlmMalicious = 0;
     private int lastLlmSafe = 0;
-    private final List<Map<String, Object>> lastLlmMaliciousList = new ArrayList<>();
-    private final List<Map<String, Object>> lastLlmSafeList = new ArrayList<>();
-    private final List<String> lastPassedPayloadsForLlm = new ArrayList<>();
-
-    public synchronized List<String> consumePassedPayloadsForLlm() {
-        List<String> copy = new ArrayList<>(lastPassedPayloadsForLlm);
-        lastPassedPayloadsForLlm.clear();
-        return copy;
-    }
 
     public synchronized Map<String, Object> getLastLlmStats() {
         Map<String, Object> stats = new HashMap<>();
@@ -74,16 +169,10 @@ public class DatasetTestRunnerService {
         return stats;
     }
 
-    public synchronized List<Map<String, Object>> getLastLlmMaliciousList() {
-        return new ArrayList<>(lastLlmMaliciousList);
-    }
-
-    public synchronized List<Map<String, Object>> getLastLlmSafeList() {
-        return new ArrayList<>(lastLlmSafeList);
-    }
-
     /**
-     * Runs a test using the provided dataset file
+     * Runs a test using the provided dataset file.
+     * The upload is first stored in the dataset library; identical content that was stored
+     * before is not parsed again.
      * @param file The dataset file
      * @param datasetFormat The format of the dataset (TXT, CSV, JSON, XML, AUTO)
      * @param attackTypeTag Optional tag for the attack type
@@ -105,36 +194,129 @@ public class DatasetTestRunnerService {
             throw new IllegalArgumentException("Uploaded file is empty");
         }
 
+        Dataset dataset;
+        try {
+            dataset = datasetStoreService.ingest(file, datasetFormat);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Error storing dataset: {}", e.getMessage(), e);
+            throw new RuntimeException("Error storing dataset: " + e.getMessage(), e);
+        }
+        return runStoredDatasetTest(dataset.getId(), attackTypeTag, samplingSize, seed);
+    }
+
+    /**
+     * Runs a test against a dataset from the dataset library, reading records from its snapshot
+     * @param datasetId The id of the stored dataset
+     * @param attackTypeTag Optional tag for the attack type
+     * @param samplingSize Number of attacks to test (All, Random 100, Random 1000, etc.)
+     * @param seed Optional seed for deterministic sampling
+     * @return The completed test run
+     */
+    public TestRun runStoredDatasetTest(Long datasetId, String attackTypeTag, String samplingSize, Long seed) {
+        return runStoredDatasetTest(datasetId, attackTypeTag, samplingSize, seed, RunListener.NONE);
+    }
+
+    /**
+     * Runs a test against a stored dataset, reporting progress to the listener after every chunk.
+     * If the listener cancels the run, the payloads processed so far are saved as the test run.
+     * @param datasetId The id of the stored dataset
+     * @param attackTypeTag Optional tag for the attack type
+     * @param samplingSize Number of attacks to test (All, Random 100, Random 1000, etc.)
+     * @param seed Optional seed for deterministic sampling
+     * @param listener Receives progress and controls cancellation
+     * @return The completed (or partial, if cancelled) test run
+     */
+    public TestRun runStoredDatasetTest(Long datasetId, String attackTypeTag, String samplingSize, Long seed,
+                                        RunListener listener) {
+        if (testModeService.isTestModeEnabled()) {
+            throw new IllegalStateException("A test is already in progress.");
+        }
+
+        Dataset dataset = datasetStoreService.findById(datasetId)
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found: " + datasetId));
+        logger.info("Starting dataset test with stored dataset {} ({}, {} records)",
+                datasetId, dataset.getOriginalFileName(), dataset.getRecordCount());
+
         // Start test mode
         testModeService.startTest();
-        // Reset transient LLM buffers
-        synchronized (lastPassedPayloadsForLlm) {
-            lastPassedPayloadsForLlm.clear();
-        }
+        // Reset the last run's counters
         lastLlmTotal = 0;
         lastLlmMalicious = 0;
         lastLlmSafe = 0;
-        lastLlmMaliciousList.clear();
 
+        TestRun testRun;
         try {
             // Get the actual current test run to update its metadata
-            TestRun testRun = testModeService.getCurrentTestRun();
+            testRun = testModeService.getCurrentTestRun();
             if (testRun == null) {
                 throw new IllegalStateException("Test run not found after starting");
             }
             
             // Set dataset information
-            testRun.setDatasetFileName(file.getOriginalFilename());
-            testRun.setDatasetFormat(datasetFormat);
+            testRun.setDatasetId(dataset.getId());
+            testRun.setDatasetFileName(dataset.getOriginalFileName());
+            testRun.setDatasetFormat(dataset.getDatasetFormat());
             testRun.setAttackTypeTag(attackTypeTag);
             testRun.setSamplingSize(samplingSize);
+            // A resumed run has to draw the same sample, so random samples always get a seed
+            if (seed == null && samplingSize != null && samplingSize.startsWith("Random ")) {
+                seed = new Random().nextLong();
+            }
             testRun.setSeedNumber(seed);
+            // Saved up front, so results can be written as verdicts arrive rather than cascaded at the end
+            testRun = testModeService.checkpoint(0, 0);
+        } catch (RuntimeException e) {
+            testModeService.stopTest();
+            throw e;
+        }
+        return executeRun(testRun, dataset, 0, listener);
+    }
 
-            logger.info("Parsing dataset file: {}", file.getOriginalFilename());
-            
-            // Parse the dataset and get HTTP request data using the DatasetParsingService
-            List<HttpRequestData> requestDataList = datasetParsingService.getPayloadsFromFile(file, datasetFormat);
-            logger.info("Successfully parsed {} HTTP requests from dataset", requestDataList.size());
+    /**
+     * Resumes an interrupted dataset run from its last checkpoint. The payloads processed up to
+     * the checkpoint are not analyzed again, and results written after it are discarded.
+     * @param testRunId The id of the interrupted test run
+     * @param listener Receives progress and controls cancellation
+     * @return The completed (or partial, if cancelled) test run
+     */
+    public TestRun resumeDatasetTest(Long testRunId, RunListener listener) {
+        TestRun testRun = testRunRepository.findById(testRunId)
+                .orElseThrow(() -> new IllegalArgumentException("Test run not found: " + testRunId));
+        if (!testRun.isResumable()) {
+            throw new IllegalStateException("Test run " + testRunId + " has no checkpoint to resume from.");
+        }
+        Dataset dataset = datasetStoreService.findById(testRun.getDatasetId())
+                .orElseThrow(() -> new IllegalArgumentException("Dataset not found: " + testRun.getDatasetId()));
+
+        testModeService.resumeTest(testRun);
+        long start = testRun.getCheckpointPosition();
+        logger.info("Resuming test run {} on dataset {} from payload {}", testRunId, dataset.getId(), start);
+        lastLlmMalicious = (int) testRun.getTotalMaliciousBlocked();
+        lastLlmSafe = (int) (start - lastLlmMalicious);
+        lastLlmTotal = (int) start;
+        try {
+            runResultStore.truncate(testRunId, testRun.getCheckpointResultRows() != null ? testRun.getCheckpointResultRows() : 0);
+        } catch (RuntimeException e) {
+            testModeService.abandonTest();
+            throw e;
+        }
+        listener.onResumed(start, lastLlmMalicious);
+        return executeRun(testRun, dataset, (int) start, listener);
+    }
+
+    /**
+     * Analyzes the run's sampled payloads from a position on, checkpointing the run as it goes.
+     * If the run fails, test mode ends without saving, so the run keeps its last checkpoint.
+     */
+    private TestRun executeRun(TestRun testRun, Dataset dataset, int start, RunListener listener) {
+        long testRunId = testRun.getId();
+        int position = start;
+        try {
+            // Read the records straight from the dataset snapshot
+            List<HttpRequestData> requestDataList = datasetStoreService.openSnapshot(dataset);
+            logger.info("Loaded {} HTTP requests from dataset snapshot", requestDataList.size());
             
             if (requestDataList.isEmpty()) {
                 logger.warn("No HTTP requests were extracted from the dataset file. Please check the file format and content.");
@@ -154,7 +336,7 @@ public class DatasetTestRunnerService {
             
             // Sample the requests if needed
             logger.info("[DEBUG_LOG] Before sampling: {} requests in dataset", requestDataList.size());
-            List<HttpRequestData> sampledRequests = sampleRequests(requestDataList, samplingSize, seed);
+            List<HttpRequestData> sampledRequests = sampleRequests(requestDataList, testRun.getSamplingSize(), testRun.getSeedNumber());
             logger.info("After sampling: {} requests selected for testing", sampledRequests.size());
             logger.info("[DEBUG_LOG] Sampled requests size after sampleRequests call: {}", sampledRequests.size());
             
@@ -162,82 +344,116 @@ public class DatasetTestRunnerService {
             testRun.setTotalMaliciousRequests(sampledRequests.size());
             logger.info("[DEBUG_LOG] Set totalMaliciousRequests to: {}", sampledRequests.size());
             
-            // Build payload list
-            List<String> payloads = sampledRequests.stream()
+            // Build payload list, skipping the payloads processed before the checkpoint
+            List<String> payloads = sampledRequests.subList(Math.min(start, sampledRequests.size()), sampledRequests.size())
+                    .stream()
                     .map(HttpRequestData::getPayload)
                     .collect(Collectors.toList());
 
-            // Perform LLM-only analysis
-            lastLlmTotal = payloads.size();
-            lastLlmMalicious = 0;
-            lastLlmSafe = 0;
-            lastLlmMaliciousList.clear();
-            lastLlmSafeList.clear();
-            synchronized (lastPassedPayloadsForLlm) {
-                lastPassedPayloadsForLlm.clear();
+            // Analyze each distinct payload once; duplicates reuse the verdict of their first occurrence
+            PayloadDeduplicator dedup = PayloadDeduplicator.of(payloads);
+            List<String> uniquePayloads = dedup.uniquePayloads();
+            logger.info("Deduplicated {} payloads to {} unique payloads ({} duplicates skipped)",
+                    payloads.size(), uniquePayloads.size(), dedup.duplicateCount());
+            listener.onStarted(requestDataList.size(), start + payloads.size());
+
+            AnalysisVerdict[] verdicts = new AnalysisVerdict[uniquePayloads.size()];
+            int step = Math.max(1, chunkSize);
+            int chunkCount = (payloads.size() + step - 1) / step;
+
+            // Unique indices are assigned in order of first occurrence, so the payloads first seen in
+            // a chunk form a contiguous range right after those of the previous chunks
+            int[] uniqueEnds = new int[chunkCount];
+            int uniqueEnd = 0;
+            for (int c = 0; c < chunkCount; c++) {
+                for (int pos = c * step, end = Math.min(payloads.size(), pos + step); pos < end; pos++) {
+                    uniqueEnd = Math.max(uniqueEnd, dedup.uniqueIndexOf(pos) + 1);
+                }
+                uniqueEnds[c] = uniqueEnd;
             }
 
-            Map batchResponse = llmService.analyzeBatch(payloads);
-            Object resultsObj = batchResponse.get("results");
-            Map stats = (Map) batchResponse.getOrDefault("stats", Map.of());
-            Object byCategoryObj = stats.getOrDefault("byCategory", Map.of());
-            Map byCategory = byCategoryObj instanceof Map ? (Map) byCategoryObj : Map.of();
-
-            // Prepare category counts and totals via test mode counters
-            if (resultsObj instanceof List) {
-                List results = (List) resultsObj;
-                for (Object item : results) {
-                    if (item instanceof Map) {
-                        Map itemMap = (Map) item;
-                        boolean isMalicious = Boolean.TRUE.equals(itemMap.get("is_malicious"));
-                        String category = String.valueOf(itemMap.getOrDefault("category", "OTHER"));
-                        String reason = String.valueOf(itemMap.getOrDefault("reason", ""));
-                        String payload = String.valueOf(itemMap.getOrDefault("payload", ""));
+            // Keep up to maxInFlight chunk requests outstanding per analyzer endpoint, so chunks are
+            // spread across all healthy endpoints, and aggregate them in dataset order
+            int window = Math.max(1, maxInFlight) * llmService.availableEndpointCount();
+            AnalyzerWork work = listener.analyzerWork();
+            Deque<Future<?>> inFlight = new ArrayDeque<>();
+            int submitted = 0;
+            int processed = 0;
+            long lastCheckpoint = System.nanoTime();
+            try (RunResultStore.Writer resultWriter = runResultStore.open(testRunId)) {
+                for (int c = 0; c < chunkCount; c++) {
+                    while (submitted < chunkCount && submitted - c < window && !listener.isCancelled()) {
+                        int from = submitted == 0 ? 0 : uniqueEnds[submitted - 1];
+                        int to = uniqueEnds[submitted];
+                        inFlight.add(from == to
+                                ? CompletableFuture.completedFuture(null)
+                                : analyzerPool.submit(() -> analyzeChunkWithRetry(uniquePayloads, from, to, verdicts, work)));
+                        submitted++;
+                    }
+                    if (c >= submitted || listener.isCancelled()) {
+                        logger.info("Dataset test cancelled after {} of {} payloads", start + processed, start + payloads.size());
+                        break;
+                    }
 
+                    // The chunk's verdicts were streamed into the array; completing the future publishes them
+                    awaitChunk(inFlight.poll());
+                    int chunkEnd = Math.min(payloads.size(), processed + step);
+
+                    // Fan verdicts back out to every occurrence, so totals and per-category counts
+                    // (via test mode counters) reflect the full sampled dataset
+                    List<Map<String, Object>> chunkRows = new ArrayList<>(chunkEnd - processed);
+                    for (int pos = processed; pos < chunkEnd; pos++) {
+                        AnalysisVerdict verdict = verdicts[dedup.uniqueIndexOf(pos)];
+                        boolean isMalicious = verdict.isMalicious();
+                        String category = verdict.getCategory() != null ? verdict.getCategory() : "OTHER";
+                        String reason = verdict.getReason() != null ? verdict.getReason() : "";
+                        String payload = payloads.get(pos);
+
+                        resultWriter.add(payload, verdict);
+
+                        Map<String, Object> row = new HashMap<>();
+                        row.put("payload", payload);
+                        row.put("category", category);
+                        row.put("reason", reason);
+                        row.put("is_malicious", isMalicious);
+                        chunkRows.add(row);
                         if (isMalicious) {
                             lastLlmMalicious++;
-                            Map<String, Object> row = new HashMap<>();
-                            row.put("payload", payload);
-                            row.put("category", category);
-                            row.put("reason", reason);
-                            row.put("is_malicious", true);
-                            lastLlmMaliciousList.add(row);
                             testModeService.recordBlockedRequest("LLM:" + category);
                         } else {
                             lastLlmSafe++;
-                            Map<String, Object> row = new HashMap<>();
-                            row.put("payload", payload);
-                            row.put("category", category);
-                            row.put("reason", reason);
-                            row.put("is_malicious", false);
-                            lastLlmSafeList.add(row);
                             testModeService.recordPassedRequest();
-                            // Also store passed payload entity
-                            PassedPayload passedPayload = new PassedPayload(payload, testRun);
-                            testRun.getPassedPayloads().add(passedPayload);
-                            synchronized (lastPassedPayloadsForLlm) {
-                                lastPassedPayloadsForLlm.add(payload);
-                            }
                         }
                     }
+                    processed = chunkEnd;
+                    position = start + processed;
+                    listener.onChunk(chunkRows, position);
+
+                    if (System.nanoTime() - lastCheckpoint >= TimeUnit.MILLISECONDS.toNanos(checkpointIntervalMs)) {
+                        // Flush first, so the checkpoint never counts results that are not stored yet
+                        resultWriter.flush();
+                        testRun.setTotalMaliciousBlocked(lastLlmMalicious);
+                        testRun = testModeService.checkpoint(position, runResultStore.count(testRunId, RunResultStore.Filter.ALL));
+                        lastCheckpoint = System.nanoTime();
+                    }
                 }
+            } finally {
+                // Nothing is waiting for the remaining chunks once the run stops or fails
+                inFlight.forEach(future -> future.cancel(true));
             }
 
-            // For blockCounts, prefer stats.byCategory if provided
-            if (!byCategory.isEmpty()) {
-                byCategory.forEach((k, v) -> {
-                    long cnt = 0;
-                    if (v instanceof Number) {
-                        cnt = ((Number) v).longValue();
-                    }
-                    if (cnt > 0) {
-                        testRun.getBlockCounts().add(new TestRunBlockCount("LLM:" + String.valueOf(k), cnt, testRun));
-                    }
-                });
+            if (listener.isCancelled() && listener.isSuspended()) {
+                // The writer was closed above, so the checkpoint covers every processed payload
+                testRun.setTotalMaliciousBlocked(lastLlmMalicious);
+                testRun = testModeService.checkpoint(position, runResultStore.count(testRunId, RunResultStore.Filter.ALL));
+                testModeService.abandonTest();
+                logger.info("Suspended test run {} after {} payloads", testRunId, position);
+                return testRun;
             }
 
-            // Set totals for malicious tracking
-            testRun.setTotalMaliciousRequests(payloads.size());
+            // Set totals for malicious tracking (only what was processed, if the run was cancelled)
+            lastLlmTotal = position;
+            testRun.setTotalMaliciousRequests(position);
             testRun.setTotalMaliciousBlocked(lastLlmMalicious);
 
             // Stop the test and save the results (will compute totalPassed/totalBlocked from counters)
@@ -245,15 +461,81 @@ public class DatasetTestRunnerService {
             logger.info("Test completed. LLM malicious: {}, safe: {}", lastLlmMalicious, lastLlmSafe);
             return saved;
         } catch (Exception e) {
-            // If an error occurs, stop the test and rethrow the exception
+            // If an error occurs, leave the run at its last checkpoint and rethrow the exception
             if (testModeService.isTestModeEnabled()) {
-                testModeService.stopTest();
+                testModeService.abandonTest();
             }
-            logger.error("Error running dataset test: {}", e.getMessage(), e);
+            logger.error("Error running dataset test after {} payloads; test run {} can be resumed from its last checkpoint: {}",
+                    position, testRunId, e.getMessage(), e);
             throw new RuntimeException("Error running dataset test: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Streams the verdicts for uniquePayloads[from, to) from the analyzer into the verdicts array.
+     * A failed or incomplete stream is retried with exponential backoff, resending only the payloads
+     * that have no verdict yet.
+     * @param uniquePayloads The distinct payloads of the run
+     * @param from First index of the chunk
+     * @param to End index (exclusive) of the chunk
+     * @param verdicts Receives one verdict per distinct payload
+     * @param work How the chunk's analyzer calls are scheduled
+     */
+    private Void analyzeChunkWithRetry(List<String> uniquePayloads, int from, int to, AnalysisVerdict[] verdicts,
+                                       AnalyzerWork work) throws InterruptedException {
+        RuntimeException lastFailure = null;
+        for (int attempt = 0; attempt <= Math.max(0, chunkRetries); attempt++) {
+            List<Integer> missing = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                if (verdicts[i] == null) {
+                    missing.add(i);
+                }
+            }
+            if (missing.isEmpty()) {
+                return null;
+            }
+            if (attempt > 0) {
+                logger.warn("Retrying {} of {} payloads after analyzer failure (attempt {} of {}): {}",
+                        missing.size(), to - from, attempt + 1, chunkRetries + 1,
+                        lastFailure != null ? lastFailure.getMessage() : "incomplete response");
+                Thread.sleep(retryBackoffMs << (attempt - 1));
+            }
+
+            List<String> batch = new ArrayList<>(missing.size());
+            for (int i : missing) {
+                batch.add(uniquePayloads.get(i));
+            }
+            try {
+                AnalyzerWork.run(work, () -> llmService.analyzeBatchStream(batch, verdict -> {
+                    // Lines with an error, or for an unknown index, stay missing and are retried
+                    if (verdict.getError() == null && verdict.getIndex() >= 0 && verdict.getIndex() < missing.size()) {
+                        verdicts[missing.get(verdict.getIndex())] = verdict;
+                    }
+                }));
+                lastFailure = null;
+            } catch (RuntimeException e) {
+                lastFailure = e;
+            }
+        }
+        for (int i = from; i < to; i++) {
+            if (verdicts[i] == null) {
+                throw lastFailure != null ? lastFailure
+                        : new IllegalStateException("Analyzer returned no verdict for some payloads after "
+                        + (chunkRetries + 1) + " attempts");
+            }
+        }
+        return null;
+    }
+
+    private void awaitChunk(Future<?> future) throws InterruptedException {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw new IllegalStateException("Analyzer chunk failed: " + cause.getMessage(), cause);
+        }
+    }
+
     /**
      * Samples the payloads based on the sampling size
      * @param payloads The list of payloads
@@ -340,19 +622,25 @@ public class DatasetTestRunnerService {
             return requests;
         }
     
-        // Randomly sample the requests
-        List<HttpRequestData> sampledRequests = requests.stream()
-                .collect(Collectors.toList()); // Create a copy of the list
+        // Randomly sample the requests. Shuffling indices yields the same permutation as shuffling
+        // the list itself, but only the selected records are materialized (snapshot-backed lists
+        // decode a record on access).
+        List<Integer> indices = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            indices.add(i);
+        }
         
         if (seed != null) {
             logger.info("Using seed {} for deterministic sampling", seed);
-            Collections.shuffle(sampledRequests, new Random(seed));
+            Collections.shuffle(indices, new Random(seed));
         } else {
-            Collections.shuffle(sampledRequests);
+            Collections.shuffle(indices);
         }
         
-        // Create a new list instead of a view to avoid potential issues with subList
-        List<HttpRequestData> result = new ArrayList<>(sampledRequests.subList(0, size));
+        List<HttpRequestData> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(requests.get(indices.get(i)));
+        }
         logger.info("[DEBUG_LOG] Final sampled list size: {}", result.size());
         return result;
     }
@@ -485,10 +773,6 @@ public class DatasetTestRunnerService {
                 testRun.setTotalPassed(testRun.getTotalPassed() + 1);
                 PassedPayload passedPayload = new PassedPayload(payload, testRun);
                 testRun.getPassedPayloads().add(passedPayload);
-                // Append to transient buffer for post-run LLM batching
-                synchronized (lastPassedPayloadsForLlm) {
-                    lastPassedPayloadsForLlm.add(payload);
-                }
             
                 logger.debug("Request passed: {} {}", method, payload.length() > 100 ? payload.substring(0, 97) + "..." : payload);
 
@@ -509,9 +793,6 @@ public class DatasetTestRunnerService {
                 testRun.setTotalPassed(testRun.getTotalPassed() + 1);
                 PassedPayload passedPayload = new PassedPayload(payload, testRun);
                 testRun.getPassedPayloads().add(passedPayload);
-                synchronized (lastPassedPayloadsForLlm) {
-                    lastPassedPayloadsForLlm.add(payload);
-                }
 
             } catch (Exception e) {
                 // Other, more serious errors (e.g., connection refused, 5xx server errors).
@@ -521,9 +802,6 @@ public class DatasetTestRunnerService {
                 testRun.setTotalPassed(testRun.getTotalPassed() + 1);
                 PassedPayload passedPayload = new PassedPayload(payload, testRun);
                 testRun.getPassedPayloads().add(passedPayload);
-                synchronized (lastPassedPayloadsForLlm) {
-                    lastPassedPayloadsForLlm.add(payload);
-                }
             }
             
             processedCount++;
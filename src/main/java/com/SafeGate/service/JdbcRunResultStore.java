@@ -0,0 +1,82 @@
+package com.SafeGate.service;
+
+import com.SafeGate.model.AnalysisVerdict;
+import com.SafeGate.repository.PassedPayloadBulkRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Result store backed by the passed_payloads table. Like before the store existed, it keeps
+ * only the payloads that passed (verdict safe); malicious rows are counted by the test run's
+ * block counts instead.
+ */
+@Service
+@ConditionalOnProperty(name = "safegate.results.store", havingValue = "jdbc")
+public class JdbcRunResultStore implements RunResultStore {
+
+    @Autowired
+    private PassedPayloadBulkRepository passedPayloadRepository;
+
+    @Override
+    public Writer open(long testRunId) {
+        PassedPayloadBulkRepository.Writer passed = passedPayloadRepository.open(testRunId);
+        return new Writer() {
+            @Override
+            public void add(String payload, AnalysisVerdict verdict) {
+                if (!verdict.isMalicious()) {
+                    passed.add(payload);
+                }
+            }
+
+            @Override
+            public void flush() {
+                passed.flush();
+            }
+
+            @Override
+            public void close() {
+                passed.close();
+            }
+        };
+    }
+
+    @Override
+    public long count(long testRunId, Filter filter) {
+        return filter.matches(false, "SAFE") ? passedPayloadRepository.countByTestRunId(testRunId) : 0;
+    }
+
+    @Override
+    public List<Row> page(long testRunId, Filter filter, long cursor, int limit, boolean withPayloads) {
+        List<Row> rows = new ArrayList<>();
+        if (!filter.matches(false, "SAFE") || limit <= 0) {
+            return rows;
+        }
+        // Rows are numbered by position among the run's passed payloads
+        long index = Math.max(0, cursor);
+        for (String payload : passedPayloadRepository.findPayloads(testRunId, index, limit)) {
+            rows.add(new Row(index++, PayloadDeduplicator.hash64(payload), false, "SAFE", null,
+                    withPayloads ? payload : null));
+        }
+        return rows;
+    }
+
+    @Override
+    public Optional<String> payload(long testRunId, long index) {
+        return passedPayloadRepository.findPayloads(testRunId, index, 1).stream().findFirst();
+    }
+
+    @Override
+    public void truncate(long testRunId, long rows) {
+        passedPayloadRepository.truncate(testRunId, rows);
+    }
+
+    @Override
+    public void delete(long testRunId) {
+        passedPayloadRepository.deleteByTestRunId(testRunId);
+    }
+}
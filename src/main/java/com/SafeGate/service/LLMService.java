@@ -1,16 +1,39 @@
 package com.SafeGate.service;
 
+import com.SafeGate.analyzer.Analyzer;
+import com.SafeGate.analyzer.AnalyzerScheduler;
+import com.SafeGate.analyzer.AnalyzerWire;
+import com.SafeGate.analyzer.Analyzers;
+import com.SafeGate.analyzer.ConcurrencyLimiter;
+import com.SafeGate.analyzer.EndpointPool;
+import com.SafeGate.analyzer.HedgingPolicy;
+import com.SafeGate.analyzer.LimitedAnalyzer;
 import com.SafeGate.enums.LLMMode;
+import com.SafeGate.model.AnalysisVerdict;
 import com.SafeGate.model.LLMConfig;
 import com.SafeGate.repository.LLMConfigRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
@@ -18,14 +41,163 @@ import java.util.Arrays;
 @Service
 public class LLMService {
 
+    private static final Logger logger = LoggerFactory.getLogger(LLMService.class);
+
     @Autowired
     private LLMConfigRepository configRepository;
 
     private final RestTemplate restTemplate = new RestTemplate();
 
+    // Health checks must not hang on an unresponsive analyzer
+    private final RestTemplate healthRestTemplate = new RestTemplate(healthRequestFactory());
+
+    // Wire format of dataset batches sent to the analyzer service: json | binary, and gzip | none
+    @Value("${safegate.llm.wire-format:binary}")
+    private String wireFormat;
+
+    @Value("${safegate.llm.compression:gzip}")
+    private String compression;
+
+    @Value("${safegate.llm.health-interval-ms:5000}")
+    private long healthIntervalMs;
+
+    // Hedging of live single-payload calls across the endpoint pool
+    @Value("${safegate.llm.hedging.enabled:false}")
+    private boolean hedgingEnabled;
+
+    @Value("${safegate.llm.hedging.budget:0.05}")
+    private double hedgingBudget;
+
+    @Value("${safegate.llm.hedging.min-delay-ms:20}")
+    private long hedgingMinDelayMs;
+
+    // Adaptive limit of concurrent analyzer calls, and what live and batch calls over it do:
+    // heuristic | fail-open | reject | wait
+    @Value("${safegate.llm.limit.enabled:true}")
+    private boolean limitEnabled;
+
+    @Value("${safegate.llm.limit.initial:20}")
+    private int limitInitial;
+
+    @Value("${safegate.llm.limit.max:200}")
+    private int limitMax;
+
+    @Value("${safegate.llm.limit.live-overflow:heuristic}")
+    private String liveOverflow;
+
+    @Value("${safegate.llm.limit.batch-overflow:wait}")
+    private String batchOverflow;
+
+    @Value("${safegate.llm.limit.wait-timeout-ms:30000}")
+    private long limitWaitTimeoutMs;
+
+    // Share of the concurrency limit that dataset runs may not use, so live traffic always gets through
+    @Value("${safegate.llm.scheduler.live-reserve:0.2}")
+    private double liveReserve;
+
+    // Durable verdicts keyed by provider, model and prompt version, so repeat runs only send
+    // payloads not analyzed before; bump the prompt version whenever the analyzer's prompts change
+    @Value("${safegate.llm.verdict-store.enabled:true}")
+    private boolean verdictStoreEnabled;
+
+    @Value("${safegate.llm.verdict-store.path:data/verdicts.sgvs}")
+    private String verdictStorePath;
+
+    @Value("${safegate.llm.verdict-store.max-mb:512}")
+    private long verdictStoreMaxMb;
+
+    @Value("${safegate.llm.prompt-version:1}")
+    private String promptVersion;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
+    // Shared by every pool and analyzer built, so latency history, budget and limit survive config changes
+    private HedgingPolicy hedgingPolicy;
+    private AnalyzerScheduler analyzerScheduler;
+
+    // Analyzer and endpoint pool built from cachedConfig; analyzerConfig tracks which config they were built from
+    private volatile Analyzer analyzer;
+    private volatile EndpointPool endpointPool;
+    private volatile LLMConfig analyzerConfig;
+
+    private ScheduledExecutorService healthChecker;
+
+    private VerdictStore verdictStore;
+
     // Simple in-memory cache of the singleton config
     private volatile LLMConfig cachedConfig;
 
+    @PostConstruct
+    public void startHealthChecks() {
+        hedgingPolicy = new HedgingPolicy(hedgingEnabled, hedgingBudget, hedgingMinDelayMs);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(limitInitial, limitMax);
+        analyzerScheduler = new AnalyzerScheduler(limiter, liveReserve);
+        if (meterRegistry != null) {
+            hedgingPolicy.bindTo(meterRegistry);
+            limiter.bindTo(meterRegistry);
+        }
+        healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "analyzer-health-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = Math.max(1000, healthIntervalMs);
+        healthChecker.scheduleWithFixedDelay(this::checkEndpoints, interval, interval, TimeUnit.MILLISECONDS);
+        openVerdictStore();
+    }
+
+    @PreDestroy
+    public void stopHealthChecks() {
+        healthChecker.shutdownNow();
+        if (verdictStore != null) {
+            verdictStore.close();
+        }
+    }
+
+    private void openVerdictStore() {
+        if (!verdictStoreEnabled) {
+            return;
+        }
+        try {
+            verdictStore = VerdictStore.open(Paths.get(verdictStorePath), verdictStoreMaxMb * 1024 * 1024);
+            logger.info("Verdict store {} holds {} verdicts", verdictStorePath, verdictStore.size());
+            if (meterRegistry != null) {
+                verdictStore.bindTo(meterRegistry);
+            }
+        } catch (IOException | RuntimeException e) {
+            // Every payload is then sent to the analyzer, as before the store existed
+            logger.warn("Could not open verdict store {}: {}", verdictStorePath, e.getMessage());
+        }
+    }
+
+    private static SimpleClientHttpRequestFactory healthRequestFactory() {
+        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
+        factory.setConnectTimeout(2000);
+        factory.setReadTimeout(2000);
+        return factory;
+    }
+
+    /**
+     * Probes the analyzer endpoints, ejecting failing ones from and readmitting recovered ones to
+     * the pool requests are balanced across.
+     */
+    void checkEndpoints() {
+        try {
+            LLMConfig config = getConfig().orElse(null);
+            if (config == null || !Analyzers.requiresUrl(config.getProvider())) {
+                return;
+            }
+            getAnalyzer();
+            EndpointPool pool = endpointPool;
+            if (pool != null) {
+                pool.checkHealth(healthRestTemplate);
+            }
+        } catch (Exception e) {
+            logger.debug("Analyzer health check failed: {}", e.getMessage());
+        }
+    }
+
     public Optional<LLMConfig> getConfig() {
         // Return cached if available
         if (cachedConfig != null) {
@@ -61,23 +233,86 @@ public class LLMService {
     }
 
     /**
-     * Analyze a single payload and return full response map: { is_malicious, category, reason }
+     * Returns the analyzer selected by the configured provider. It is rebuilt whenever the
+     * configuration is saved.
+     */
+    public Analyzer getAnalyzer() {
+        LLMConfig config = getConfig().orElseGet(LLMConfig::new);
+        Analyzer current = analyzer;
+        if (current != null && analyzerConfig == config) {
+            return current;
+        }
+        synchronized (this) {
+            // The analyzer and the pool it routes to are built together, once per config
+            if (analyzer == null || analyzerConfig != config) {
+                EndpointPool pool = EndpointPool.of(config);
+                pool.setHedging(hedgingPolicy);
+                Analyzer built = Analyzers.forConfig(config, restTemplate, AnalyzerWire.Options.of(wireFormat, compression), pool);
+                // The in-process heuristic needs no protection from overload
+                if (limitEnabled && Analyzers.requiresUrl(config.getProvider())) {
+                    built = new LimitedAnalyzer(built, analyzerScheduler,
+                            LimitedAnalyzer.Overflow.of(liveOverflow, LimitedAnalyzer.Overflow.HEURISTIC),
+                            LimitedAnalyzer.Overflow.of(batchOverflow, LimitedAnalyzer.Overflow.WAIT),
+                            limitWaitTimeoutMs);
+                }
+                analyzer = built;
+                endpointPool = pool;
+                analyzerConfig = config;
+            }
+            return analyzer;
+        }
+    }
+
+    /**
+     * @return The number of analyzer endpoints currently accepting requests (at least 1), which
+     *         dataset runs scale their concurrency by.
+     */
+    public int availableEndpointCount() {
+        getAnalyzer();
+        EndpointPool pool = endpointPool;
+        return pool != null ? Math.max(1, pool.availableCount()) : 1;
+    }
+
+    /**
+     * @return The routing and health state of each analyzer endpoint.
+     */
+    public List<Map<String, Object>> getEndpointStatus() {
+        getAnalyzer();
+        EndpointPool pool = endpointPool;
+        return pool != null ? pool.snapshot() : List.of();
+    }
+
+    /**
+     * @return Hedging counters and the current hedge delay.
+     */
+    public Map<String, Object> getHedgingStatus() {
+        return hedgingPolicy.snapshot();
+    }
+
+    /**
+     * @return The adaptive concurrency limit, calls in flight and queued per priority, and rejections.
+     */
+    public Map<String, Object> getLimitStatus() {
+        Map<String, Object> status = new HashMap<>(analyzerScheduler.snapshot());
+        status.put("enabled", limitEnabled);
+        return status;
+    }
+
+    /**
+     * Analyze a single payload and return full response map: { is_malicious, category, reason }.
+     * Fails open: analyzer errors are reported as a SAFE verdict.
      */
     public Map analyzeSingle(String payload) {
         Optional<LLMConfig> configOpt = getConfig();
-        if (configOpt.isEmpty() || configOpt.get().getLlmApiUrl() == null) {
+        if (configOpt.isEmpty()
+                || (Analyzers.requiresUrl(configOpt.get().getProvider()) && configOpt.get().getLlmApiUrl() == null)) {
             return Map.of("is_malicious", false, "category", "SAFE", "reason", "LLM disabled");
         }
-        LLMConfig config = configOpt.get();
         try {
-            Map<String, Object> request = new HashMap<>();
-            request.put("payload", payload);
-            if (config.getProvider() != null) request.put("provider", config.getProvider());
-            if (config.getModel() != null) request.put("model", config.getModel());
-            request.put("gpu_enabled", Boolean.TRUE.equals(config.getGpuEnabled()));
-            Map response = restTemplate.postForObject(config.getLlmApiUrl(), request, Map.class);
-            if (response == null) return Map.of("is_malicious", false, "category", "SAFE", "reason", "No response");
-            return response;
+            AnalysisVerdict verdict = getAnalyzer().analyze(payload);
+            return Map.of("is_malicious", verdict.isMalicious(),
+                    "category", verdict.getCategory() != null ? verdict.getCategory() : "OTHER",
+                    "reason", verdict.getReason() != null ? verdict.getReason() : "");
         } catch (Exception e) {
             return Map.of("is_malicious", false, "category", "SAFE", "reason", "Analyzer error: "+e.getMessage());
         }
@@ -113,7 +348,8 @@ public class LLMService {
     }
 
     /**
-     * Request analyzer to pull a model.
+     * Request analyzer to pull a model. Further analyzer instances of the pool are asked as well
+     * (best effort); the response is the primary analyzer's.
      */
     public Map pullModel(String model) {
         Optional<LLMConfig> configOpt = getConfig();
@@ -121,9 +357,16 @@ public class LLMService {
             return Map.of("status", "error", "message", "Analyzer URL not configured");
         }
         String base = analyzerBaseUrl(configOpt.get().getLlmApiUrl());
+        Map<String, Object> req = new HashMap<>();
+        req.put("model", model);
+        for (String url : EndpointPool.parseUrls(configOpt.get().getLlmApiUrls())) {
+            try {
+                restTemplate.postForObject(analyzerBaseUrl(url.replaceAll("/+$", "")) + "/models/pull", req, Map.class);
+            } catch (Exception e) {
+                logger.warn("Failed to request model pull from analyzer {}: {}", url, e.getMessage());
+            }
+        }
         try {
-            Map<String, Object> req = new HashMap<>();
-            req.put("model", model);
             return restTemplate.postForObject(base + "/models/pull", req, Map.class);
         } catch (Exception e) {
             return Map.of("status", "error", "message", e.getMessage());
@@ -154,32 +397,112 @@ public class LLMService {
     }
 
     /**
-     * Analyze a batch of payloads via analyzer /analyze/batch endpoint.
-     * Returns a map containing results and stats per analyzer response.
+     * Analyze a batch of payloads with the configured analyzer.
+     * Returns one verdict per payload, in request order.
+     * Payloads with a stored verdict for the configured provider, model and prompt version are
+     * answered from the {@link VerdictStore}; only the rest are sent to the analyzer.
+     * Failures are thrown rather than reported as safe verdicts, so callers can retry the batch.
      */
-    public Map analyzeBatch(List<String> payloads) {
-        Optional<LLMConfig> configOpt = getConfig();
-        if (configOpt.isEmpty() || configOpt.get().getLlmApiUrl() == null) {
-            return Map.of("results", List.of(), "stats", Map.of("total", 0, "malicious", 0, "safe", 0));
+    public List<AnalysisVerdict> analyzeBatch(List<String> payloads) {
+        Analyzer current = getAnalyzer();
+        long modelKey = verdictModelKey();
+        AnalysisVerdict[] verdicts = modelKey != 0 ? verdictStore.lookup(modelKey, payloads) : null;
+        if (verdicts == null) {
+            return current.analyzeBatch(payloads);
+        }
+        List<Integer> missing = missing(verdicts);
+        if (!missing.isEmpty()) {
+            List<AnalysisVerdict> analyzed = current.analyzeBatch(select(payloads, missing));
+            for (int i = 0; i < missing.size(); i++) {
+                int position = missing.get(i);
+                AnalysisVerdict verdict = analyzed.get(i);
+                verdict.setIndex(position);
+                verdicts[position] = verdict;
+                storeVerdict(modelKey, payloads.get(position), verdict);
+            }
         }
-        LLMConfig config = configOpt.get();
-        String analyzeUrl = config.getLlmApiUrl();
-        String batchUrl = analyzeUrl.endsWith("/analyze") ? analyzeUrl + "/batch" : analyzeUrl + "/batch";
+        return new ArrayList<>(Arrays.asList(verdicts));
+    }
 
-        try {
-            Map<String, Object> request = new HashMap<>();
-            request.put("payloads", payloads);
-            if (config.getProvider() != null) request.put("provider", config.getProvider());
-            if (config.getModel() != null) request.put("model", config.getModel());
-            request.put("gpu_enabled", Boolean.TRUE.equals(config.getGpuEnabled()));
-            Map response = restTemplate.postForObject(batchUrl, request, Map.class);
-            if (response == null) {
-                return Map.of("results", List.of(), "stats", Map.of("total", 0, "malicious", 0, "safe", 0));
+    /**
+     * Analyze a batch of payloads with the configured analyzer, handing each verdict to the
+     * consumer as soon as it is available. Verdicts carry the payload's index in the batch and
+     * may arrive in any order; a verdict with an error marks a payload that could not be classified.
+     * Stored verdicts are handed over first, and only the other payloads are sent to the analyzer.
+     *
+     * @param payloads The payloads to analyze.
+     * @param consumer Receives each verdict on the calling thread.
+     * @return The number of verdicts received.
+     * @throws IllegalStateException if the analyzer service is needed but not configured.
+     * @throws org.springframework.web.client.RestClientException if the analyzer call fails.
+     */
+    public int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+        Analyzer current = getAnalyzer();
+        long modelKey = verdictModelKey();
+        AnalysisVerdict[] stored = modelKey != 0 ? verdictStore.lookup(modelKey, payloads) : null;
+        if (stored == null) {
+            return current.analyzeBatchStream(payloads, consumer);
+        }
+        int delivered = 0;
+        for (AnalysisVerdict verdict : stored) {
+            if (verdict != null) {
+                consumer.accept(verdict);
+                delivered++;
             }
-            return response;
-        } catch (Exception e) {
-            return Map.of("results", List.of(), "stats", Map.of("total", payloads.size(), "malicious", 0, "safe", payloads.size()));
         }
+        List<Integer> missing = missing(stored);
+        if (missing.isEmpty()) {
+            return delivered;
+        }
+        return delivered + current.analyzeBatchStream(select(payloads, missing), verdict -> {
+            int local = verdict.getIndex();
+            if (local >= 0 && local < missing.size()) {
+                int position = missing.get(local);
+                verdict.setIndex(position);
+                storeVerdict(modelKey, payloads.get(position), verdict);
+            }
+            consumer.accept(verdict);
+        });
+    }
+
+    /**
+     * @return The verdict store key of the configured provider, model and prompt version, or 0
+     *         if verdicts are not stored: the store is off, or the provider is the in-process heuristic.
+     */
+    private long verdictModelKey() {
+        LLMConfig config = analyzerConfig;
+        if (verdictStore == null || config == null || !Analyzers.requiresUrl(config.getProvider())) {
+            return 0;
+        }
+        return VerdictStore.modelKey(config.getProvider(), config.getModel(), promptVersion);
+    }
+
+    /**
+     * Stores a verdict the analyzer service's model produced; errors and stand-in verdicts are
+     * not stored, so the payload is analyzed again next time.
+     */
+    private void storeVerdict(long modelKey, String payload, AnalysisVerdict verdict) {
+        if (verdict.getError() == null && !verdict.isDegraded()) {
+            verdictStore.put(modelKey, payload, verdict);
+        }
+    }
+
+    private static List<Integer> missing(AnalysisVerdict[] verdicts) {
+        List<Integer> positions = new ArrayList<>();
+        for (int i = 0; i < verdicts.length; i++) {
+            if (verdicts[i] == null) {
+                positions.add(i);
+            }
+        }
+        return positions;
+    }
+
+    private static List<String> select(List<String> payloads, List<Integer> positions) {
+        List<String> selected = new ArrayList<>(positions.size());
+        for (int position : positions) {
+            selected.add(payloads.get(position));
+        }
+        return selected;
     }
 
     /**
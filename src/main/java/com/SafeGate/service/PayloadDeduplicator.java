@@ -0,0 +1,111 @@
+package com.SafeGate.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Collapses exact duplicate payloads so each distinct payload is analyzed once.
+ * <p>
+ * Payloads are indexed in an open-addressing table of 64-bit hashes (primitive arrays, no
+ * boxing). A hash match is confirmed with {@link String#equals}, so a hash collision can
+ * never merge two different payloads. Each original position remembers which unique payload
+ * it maps to, so verdicts can be fanned back out with their multiplicity and in the
+ * original order.
+ */
+public final class PayloadDeduplicator {
+
+    private final List<String> uniquePayloads;
+    private final int[] uniqueIndexByPosition;
+
+    private PayloadDeduplicator(List<String> uniquePayloads, int[] uniqueIndexByPosition) {
+        this.uniquePayloads = uniquePayloads;
+        this.uniqueIndexByPosition = uniqueIndexByPosition;
+    }
+
+    /**
+     * Deduplicates the payloads, keeping the first occurrence of each distinct payload.
+     *
+     * @param payloads The payloads in dataset order.
+     * @return The deduplication result.
+     */
+    public static PayloadDeduplicator of(List<String> payloads) {
+        int n = payloads.size();
+        // Power-of-two capacity with a load factor of at most 0.5
+        int capacity = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+        int mask = capacity - 1;
+        long[] slotHashes = new long[capacity];
+        int[] slotRefs = new int[capacity]; // unique index + 1, 0 marks an empty slot
+
+        List<String> unique = new ArrayList<>();
+        int[] uniqueIndexByPosition = new int[n];
+        for (int pos = 0; pos < n; pos++) {
+            String payload = payloads.get(pos);
+            long hash = hash64(payload);
+            int slot = (int) hash & mask;
+            while (true) {
+                int ref = slotRefs[slot];
+                if (ref == 0) {
+                    unique.add(payload);
+                    slotHashes[slot] = hash;
+                    slotRefs[slot] = unique.size();
+                    uniqueIndexByPosition[pos] = unique.size() - 1;
+                    break;
+                }
+                if (slotHashes[slot] == hash && unique.get(ref - 1).equals(payload)) {
+                    uniqueIndexByPosition[pos] = ref - 1;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+        return new PayloadDeduplicator(unique, uniqueIndexByPosition);
+    }
+
+    /**
+     * @return The distinct payloads in order of first occurrence.
+     */
+    public List<String> uniquePayloads() {
+        return Collections.unmodifiableList(uniquePayloads);
+    }
+
+    /**
+     * @param position A position in the original payload list.
+     * @return The index into {@link #uniquePayloads()} of the payload at that position.
+     */
+    public int uniqueIndexOf(int position) {
+        return uniqueIndexByPosition[position];
+    }
+
+    /**
+     * @return The number of payloads before deduplication.
+     */
+    public int size() {
+        return uniqueIndexByPosition.length;
+    }
+
+    /**
+     * @return The number of payloads that were dropped as duplicates.
+     */
+    public int duplicateCount() {
+        return uniqueIndexByPosition.length - uniquePayloads.size();
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 avalanche step
+     * so the low bits used for slot selection are well mixed.
+     */
+    static long hash64(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,373 @@
+package com.SafeGate.service;
+
+import com.SafeGate.model.AnalysisVerdict;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One segment file of a run's results, stored column by column.
+ * <p>
+ * Layout (big-endian): magic "SGRS", int version, int row count, int malicious count, then
+ * <ul>
+ *     <li>the payload hashes, one long per row</li>
+ *     <li>the verdicts as a bitset, one long per 64 rows</li>
+ *     <li>the metadata columns, int compressed length, int raw length and the deflated bytes of:
+ *     a u16-prefixed dictionary of u16-prefixed categories, a u16 category code per row and an
+ *     int-prefixed reason per row (-1 for none)</li>
+ *     <li>the payloads in deflated blocks of {@link #BLOCK_ROWS} rows: int block count, a table
+ *     of (int offset, int raw length) per block plus the end offset, then the blocks, each
+ *     holding int-prefixed payloads</li>
+ * </ul>
+ * All strings are UTF-8. Opening a segment reads everything but the payload blocks, which are
+ * read and inflated only for the rows asked for.
+ */
+final class RunResultSegment {
+
+    static final int BLOCK_ROWS = 64;
+
+    private static final int MAGIC = 0x53475253; // "SGRS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int NO_REASON = -1;
+    private static final int MAX_SHORT_STRING = 0xFFFF;
+
+    private final Path path;
+    private final long[] hashes;
+    private final long[] maliciousBits;
+    private final int maliciousCount;
+    private final String[] categories;
+    private final char[] categoryCodes;
+    private final String[] reasons;
+    private final int[] blockTable;
+    private final long blocksStart;
+
+    private RunResultSegment(Path path, long[] hashes, long[] maliciousBits, int maliciousCount, String[] categories,
+                             char[] categoryCodes, String[] reasons, int[] blockTable, long blocksStart) {
+        this.path = path;
+        this.hashes = hashes;
+        this.maliciousBits = maliciousBits;
+        this.maliciousCount = maliciousCount;
+        this.categories = categories;
+        this.categoryCodes = categoryCodes;
+        this.reasons = reasons;
+        this.blockTable = blockTable;
+        this.blocksStart = blocksStart;
+    }
+
+    /**
+     * Writes a segment, replacing any existing file.
+     *
+     * @param path     The target file.
+     * @param payloads The payloads in row order.
+     * @param verdicts The verdicts, one per payload.
+     * @return The number of bytes written.
+     */
+    static long write(Path path, List<String> payloads, List<AnalysisVerdict> verdicts) throws IOException {
+        if (payloads.size() != verdicts.size()) {
+            throw new IllegalArgumentException("Expected one verdict per payload");
+        }
+        int rows = payloads.size();
+        long[] bits = new long[(rows + 63) >>> 6];
+        int malicious = 0;
+        for (int i = 0; i < rows; i++) {
+            if (verdicts.get(i).isMalicious()) {
+                bits[i >>> 6] |= 1L << i;
+                malicious++;
+            }
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(rows);
+            out.writeInt(malicious);
+            for (String payload : payloads) {
+                out.writeLong(PayloadDeduplicator.hash64(payload));
+            }
+            for (long word : bits) {
+                out.writeLong(word);
+            }
+
+            byte[] metadata = metadataColumns(verdicts);
+            byte[] deflated = deflate(metadata);
+            out.writeInt(deflated.length);
+            out.writeInt(metadata.length);
+            out.write(deflated);
+
+            List<byte[]> blocks = new ArrayList<>();
+            List<Integer> rawLengths = new ArrayList<>();
+            for (int from = 0; from < rows; from += BLOCK_ROWS) {
+                ByteArrayOutputStream raw = new ByteArrayOutputStream();
+                DataOutputStream block = new DataOutputStream(raw);
+                for (String payload : payloads.subList(from, Math.min(rows, from + BLOCK_ROWS))) {
+                    writeString(block, payload);
+                }
+                rawLengths.add(raw.size());
+                blocks.add(deflate(raw.toByteArray()));
+            }
+            out.writeInt(blocks.size());
+            int offset = 0;
+            for (int b = 0; b < blocks.size(); b++) {
+                out.writeInt(offset);
+                out.writeInt(rawLengths.get(b));
+                offset += blocks.get(b).length;
+            }
+            out.writeInt(offset);
+            for (byte[] block : blocks) {
+                out.write(block);
+            }
+            out.flush();
+            return out.size();
+        }
+    }
+
+    private static byte[] metadataColumns(List<AnalysisVerdict> verdicts) throws IOException {
+        Map<String, Integer> dictionary = new HashMap<>();
+        List<String> entries = new ArrayList<>();
+        char[] codes = new char[verdicts.size()];
+        for (int i = 0; i < verdicts.size(); i++) {
+            String category = verdicts.get(i).getCategory() != null ? verdicts.get(i).getCategory() : "";
+            Integer code = dictionary.get(category);
+            if (code == null) {
+                if (entries.size() == MAX_SHORT_STRING) {
+                    throw new IllegalArgumentException("Too many distinct categories for one result segment");
+                }
+                code = entries.size();
+                dictionary.put(category, code);
+                entries.add(category);
+            }
+            codes[i] = (char) code.intValue();
+        }
+
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(raw);
+        out.writeShort(entries.size());
+        for (String entry : entries) {
+            byte[] bytes = entry.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_SHORT_STRING) {
+                throw new IllegalArgumentException("Category too long for result segment: " + bytes.length + " bytes");
+            }
+            out.writeShort(bytes.length);
+            out.write(bytes);
+        }
+        for (char code : codes) {
+            out.writeChar(code);
+        }
+        for (AnalysisVerdict verdict : verdicts) {
+            if (verdict.getReason() == null) {
+                out.writeInt(NO_REASON);
+            } else {
+                writeString(out, verdict.getReason());
+            }
+        }
+        return raw.toByteArray();
+    }
+
+    /**
+     * Reads the row and malicious counts from a segment's header only.
+     *
+     * @return {row count, malicious count}.
+     */
+    static int[] counts(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, HEADER_BYTES);
+            checkHeader(header, path);
+            return new int[]{header.getInt(8), header.getInt(12)};
+        }
+    }
+
+    /**
+     * Opens a segment, reading all columns but the payloads.
+     *
+     * @throws IOException if the file cannot be read or is not a valid segment.
+     */
+    static RunResultSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = read(channel, 0, HEADER_BYTES);
+            checkHeader(header, path);
+            int rows = header.getInt(8);
+            int maliciousCount = header.getInt(12);
+
+            long pos = HEADER_BYTES;
+            int words = (rows + 63) >>> 6;
+            ByteBuffer fixed = read(channel, pos, rows * 8 + words * 8 + 8);
+            long[] hashes = new long[rows];
+            fixed.asLongBuffer().get(hashes);
+            long[] bits = new long[words];
+            fixed.position(rows * 8);
+            fixed.asLongBuffer().get(bits);
+            fixed.position(rows * 8 + words * 8);
+            int deflatedLength = fixed.getInt();
+            int rawLength = fixed.getInt();
+            pos += fixed.capacity();
+
+            ByteBuffer metadata = ByteBuffer.wrap(inflate(read(channel, pos, deflatedLength), rawLength));
+            pos += deflatedLength;
+            String[] dictionary = new String[Short.toUnsignedInt(metadata.getShort())];
+            for (int i = 0; i < dictionary.length; i++) {
+                dictionary[i] = readString(metadata, Short.toUnsignedInt(metadata.getShort()));
+            }
+            char[] codes = new char[rows];
+            metadata.asCharBuffer().get(codes);
+            metadata.position(metadata.position() + rows * 2);
+            String[] reasons = new String[rows];
+            for (int i = 0; i < rows; i++) {
+                int length = metadata.getInt();
+                reasons[i] = length == NO_REASON ? null : readString(metadata, length);
+            }
+
+            int blocks = read(channel, pos, 4).getInt();
+            pos += 4;
+            int[] table = new int[blocks * 2 + 1];
+            read(channel, pos, table.length * 4).asIntBuffer().get(table);
+            pos += table.length * 4L;
+            if (pos + table[table.length - 1] != channel.size()) {
+                throw new IOException("Result segment is truncated or corrupt: " + path);
+            }
+            return new RunResultSegment(path, hashes, bits, maliciousCount, dictionary, codes, reasons, table, pos);
+        }
+    }
+
+    private static void checkHeader(ByteBuffer header, Path path) throws IOException {
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a result segment: " + path);
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("Unsupported result segment version " + header.getInt(4) + ": " + path);
+        }
+    }
+
+    int size() {
+        return hashes.length;
+    }
+
+    int maliciousCount() {
+        return maliciousCount;
+    }
+
+    long hash(int row) {
+        return hashes[row];
+    }
+
+    boolean malicious(int row) {
+        return (maliciousBits[row >>> 6] & (1L << row)) != 0;
+    }
+
+    String category(int row) {
+        return categories[categoryCodes[row]];
+    }
+
+    String reason(int row) {
+        return reasons[row];
+    }
+
+    /**
+     * Reads the payloads of the given rows, in ascending row order, inflating only the blocks
+     * that hold them.
+     */
+    List<String> payloads(List<Integer> rows) throws IOException {
+        List<String> payloads = new ArrayList<>(rows.size());
+        if (rows.isEmpty()) {
+            return payloads;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            int next = 0;
+            while (next < rows.size()) {
+                int block = rows.get(next) / BLOCK_ROWS;
+                int start = blockTable[block * 2];
+                int end = blockTable[block * 2 + 2];
+                ByteBuffer data = ByteBuffer.wrap(inflate(read(channel, blocksStart + start, end - start),
+                        blockTable[block * 2 + 1]));
+                int row = block * BLOCK_ROWS;
+                while (next < rows.size() && rows.get(next) / BLOCK_ROWS == block) {
+                    String payload = null;
+                    for (; row <= rows.get(next); row++) {
+                        payload = readString(data, data.getInt());
+                    }
+                    payloads.add(payload);
+                    next++;
+                }
+            }
+        }
+        return payloads;
+    }
+
+    private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Result segment is truncated");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 2));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(ByteBuffer deflated, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated.array(), deflated.arrayOffset(), deflated.remaining());
+            byte[] raw = new byte[rawLength];
+            int n = 0;
+            while (n < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, rawLength - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += read;
+            }
+            if (n != rawLength) {
+                throw new IOException("Result segment block is corrupt");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Result segment block is corrupt", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.SafeGate.service;
+
+import com.SafeGate.model.AnalysisVerdict;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Stores the per-payload results of dataset runs, selected by {@code safegate.results.store}:
+ * <ul>
+ *     <li>"columnar" (default) - {@link SegmentRunResultStore}, every verdict in compressed
+ *     column-oriented segment files appended to a directory per run</li>
+ *     <li>"jdbc" - {@link JdbcRunResultStore}, the passed payloads as rows of passed_payloads</li>
+ * </ul>
+ * Rows are numbered in the order they were written, which is dataset order. Results are read
+ * a page at a time, so neither the server nor a client ever holds a whole run.
+ */
+public interface RunResultStore {
+
+    /**
+     * One stored result.
+     *
+     * @param index       The row number within the run, usable with {@link #payload}.
+     * @param payloadHash 64-bit hash of the payload text.
+     * @param payload     The payload text, or null if it was not requested.
+     */
+    record Row(long index, long payloadHash, boolean malicious, String category, String reason, String payload) {
+    }
+
+    /**
+     * Selects rows by verdict and category.
+     *
+     * @param malicious Only rows with this verdict, or any verdict if null.
+     * @param category  Only rows with this category (ignoring case), or any category if null.
+     */
+    record Filter(Boolean malicious, String category) {
+
+        public static final Filter ALL = new Filter(null, null);
+
+        public boolean matches(boolean rowMalicious, String rowCategory) {
+            return (malicious == null || malicious == rowMalicious)
+                    && (category == null || category.equalsIgnoreCase(rowCategory));
+        }
+    }
+
+    /**
+     * Appends the results of one run; {@link #flush()} and {@link #close()} make everything
+     * added so far visible.
+     */
+    interface Writer extends AutoCloseable {
+
+        void add(String payload, AnalysisVerdict verdict);
+
+        /**
+         * Writes the buffered rows, so a checkpoint taken afterwards covers them.
+         */
+        void flush();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Opens a writer for a saved test run.
+     */
+    Writer open(long testRunId);
+
+    /**
+     * @return The number of stored rows that match the filter.
+     */
+    long count(long testRunId, Filter filter);
+
+    /**
+     * Reads the matching rows from a cursor on. Payload text is only decoded if requested.
+     *
+     * @param cursor       The row index to start at; pass the index after the last row of the
+     *                     previous page to continue.
+     * @param limit        The maximum number of rows to return.
+     * @param withPayloads Whether to include the payload text.
+     */
+    List<Row> page(long testRunId, Filter filter, long cursor, int limit, boolean withPayloads);
+
+    /**
+     * @return The payload text of one row (counted over all rows), if it exists.
+     */
+    Optional<String> payload(long testRunId, long index);
+
+    /**
+     * Drops the rows written after a checkpoint, keeping the first {@code rows} rows as counted
+     * by {@link #count} with {@link Filter#ALL}.
+     */
+    void truncate(long testRunId, long rows);
+
+    /**
+     * Deletes a run's results.
+     */
+    void delete(long testRunId);
+}
@@ -0,0 +1,385 @@
+package com.SafeGate.service;
+
+import com.SafeGate.model.AnalysisVerdict;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+/**
+ * Result store that keeps every verdict of a run in {@link RunResultSegment} files under
+ * {@code safegate.results.dir}/run-&lt;id&gt;/.
+ * <p>
+ * Pages are located from the segment headers, so only the segments a page touches are
+ * opened, and only the payload blocks it returns are inflated. The headers of a run are read
+ * once and kept as an index of row ranges until the run is written again. Deleting a run
+ * renames its directory out of the way, which is constant time; the files are removed in the
+ * background.
+ */
+@Service
+@ConditionalOnProperty(name = "safegate.results.store", havingValue = "columnar", matchIfMissing = true)
+public class SegmentRunResultStore implements RunResultStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentRunResultStore.class);
+
+    private static final String DELETED_PREFIX = ".deleted-";
+
+    @Value("${safegate.results.dir:data/results}")
+    private String resultsDir;
+
+    // Rows per segment file
+    @Value("${safegate.results.segment-rows:4096}")
+    private int segmentRows;
+
+    private ExecutorService cleaner;
+
+    // Row ranges of the segments of each run read so far, by run directory; dropped on every write
+    private final Map<Path, List<SegmentInfo>> indexes = new ConcurrentHashMap<>();
+
+    /**
+     * A segment file and the rows it holds, from its header.
+     */
+    private record SegmentInfo(Path file, long start, int rows, int malicious) {
+    }
+
+    @PostConstruct
+    public void start() {
+        cleaner = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "result-store-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Finish deletions interrupted by a restart
+        Path dir = Paths.get(resultsDir);
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> entries = Files.list(dir)) {
+                entries.filter(entry -> entry.getFileName().toString().startsWith(DELETED_PREFIX))
+                        .forEach(entry -> cleaner.execute(() -> deleteTree(entry)));
+            } catch (IOException e) {
+                logger.warn("Could not list result store directory {}: {}", dir, e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        cleaner.shutdown();
+    }
+
+    @Override
+    public Writer open(long testRunId) {
+        Path dir = runDir(testRunId);
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not create result directory " + dir, e);
+        }
+        return new SegmentWriter(dir);
+    }
+
+    @Override
+    public long count(long testRunId, Filter filter) {
+        long count = 0;
+        try {
+            for (SegmentInfo info : index(testRunId)) {
+                if (filter.category() == null) {
+                    count += matching(info, filter.malicious());
+                    continue;
+                }
+                // Categories are only in the metadata columns
+                RunResultSegment segment = RunResultSegment.open(info.file());
+                for (int row = 0; row < segment.size(); row++) {
+                    if (filter.matches(segment.malicious(row), segment.category(row))) {
+                        count++;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read results of test run " + testRunId, e);
+        }
+        return count;
+    }
+
+    @Override
+    public List<Row> page(long testRunId, Filter filter, long cursor, int limit, boolean withPayloads) {
+        List<Row> rows = new ArrayList<>();
+        List<SegmentInfo> index = index(testRunId);
+        try {
+            for (int next = find(index, cursor); next < index.size() && rows.size() < limit; next++) {
+                SegmentInfo info = index.get(next);
+                if (matching(info, filter.malicious()) == 0) {
+                    // No row with the verdict
+                    continue;
+                }
+                long base = info.start();
+                RunResultSegment segment = RunResultSegment.open(info.file());
+                List<Integer> selected = new ArrayList<>();
+                for (int row = (int) Math.max(0, cursor - base); row < segment.size() && rows.size() + selected.size() < limit; row++) {
+                    if (filter.matches(segment.malicious(row), segment.category(row))) {
+                        selected.add(row);
+                    }
+                }
+                List<String> payloads = withPayloads ? segment.payloads(selected) : null;
+                for (int i = 0; i < selected.size(); i++) {
+                    int row = selected.get(i);
+                    String payload = withPayloads ? payloads.get(i) : null;
+                    rows.add(new Row(base + row, segment.hash(row), segment.malicious(row), segment.category(row),
+                            segment.reason(row), payload));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read results of test run " + testRunId, e);
+        }
+        return rows;
+    }
+
+    @Override
+    public Optional<String> payload(long testRunId, long index) {
+        List<SegmentInfo> segments = index(testRunId);
+        int i = find(segments, index);
+        if (index < 0 || i == segments.size()) {
+            return Optional.empty();
+        }
+        SegmentInfo info = segments.get(i);
+        try {
+            return Optional.of(RunResultSegment.open(info.file()).payloads(List.of((int) (index - info.start()))).get(0));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read results of test run " + testRunId, e);
+        }
+    }
+
+    @Override
+    public void delete(long testRunId) {
+        Path dir = runDir(testRunId);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Path trash = dir.resolveSibling(DELETED_PREFIX + dir.getFileName() + "-" + System.nanoTime());
+        try {
+            Files.move(dir, trash, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not delete results of test run " + testRunId, e);
+        } finally {
+            indexes.remove(dir);
+        }
+        cleaner.execute(() -> deleteTree(trash));
+    }
+
+    @Override
+    public void truncate(long testRunId, long rows) {
+        try {
+            for (SegmentInfo info : index(testRunId)) {
+                Path file = info.file();
+                long base = info.start();
+                if (base >= rows) {
+                    Files.delete(file);
+                } else if (base + info.rows() > rows) {
+                    // The segment that was open at the checkpoint; keep the rows it had then
+                    int keep = (int) (rows - base);
+                    RunResultSegment segment = RunResultSegment.open(file);
+                    List<Integer> kept = new ArrayList<>(keep);
+                    List<AnalysisVerdict> verdicts = new ArrayList<>(keep);
+                    for (int row = 0; row < keep; row++) {
+                        kept.add(row);
+                        verdicts.add(new AnalysisVerdict(row, segment.malicious(row), segment.category(row), segment.reason(row)));
+                    }
+                    String name = file.getFileName().toString();
+                    int index = Integer.parseInt(name.substring("segment-".length(), name.length() - ".sgrs".length()));
+                    writeSegment(file.getParent(), index, segment.payloads(kept), verdicts);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not truncate results of test run " + testRunId, e);
+        } finally {
+            indexes.remove(runDir(testRunId));
+        }
+    }
+
+    private Path runDir(long testRunId) {
+        return Paths.get(resultsDir).resolve("run-" + testRunId);
+    }
+
+    /**
+     * @return The run's segments in row order, from the cached index or else their headers.
+     */
+    private List<SegmentInfo> index(long testRunId) {
+        Path dir = runDir(testRunId);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        // A write drops the entry only after this returns, so a stale index is never kept
+        return indexes.computeIfAbsent(dir, key -> {
+            List<SegmentInfo> index = new ArrayList<>();
+            long start = 0;
+            for (Path file : segments(dir)) {
+                int[] counts = counts(file);
+                index.add(new SegmentInfo(file, start, counts[0], counts[1]));
+                start += counts[0];
+            }
+            return List.copyOf(index);
+        });
+    }
+
+    /**
+     * @return The position of the segment holding the row, or the number of segments if no segment holds it.
+     */
+    private static int find(List<SegmentInfo> index, long row) {
+        int low = 0;
+        int high = index.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            SegmentInfo info = index.get(mid);
+            if (info.start() + info.rows() <= row) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static List<Path> segments(Path dir) {
+        try (Stream<Path> entries = Files.list(dir)) {
+            // Zero-padded names, so name order is write order
+            return entries.filter(entry -> entry.getFileName().toString().endsWith(".sgrs"))
+                    .sorted()
+                    .toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not list result directory " + dir, e);
+        }
+    }
+
+    /**
+     * Writes a segment to a temporary file and moves it into place, so readers never see a
+     * partial segment, replacing the segment with that number if there is one.
+     */
+    private void writeSegment(Path dir, int index, List<String> payloads, List<AnalysisVerdict> verdicts) {
+        String name = String.format("segment-%05d.sgrs", index);
+        try {
+            Path tmp = Files.createTempFile(dir, name, ".tmp");
+            try {
+                long bytes = RunResultSegment.write(tmp, payloads, verdicts);
+                Files.move(tmp, dir.resolve(name), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                logger.debug("Wrote result segment {}/{} ({} rows, {} bytes)", dir.getFileName(), name, payloads.size(), bytes);
+            } finally {
+                Files.deleteIfExists(tmp);
+                indexes.remove(dir);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write result segment " + name, e);
+        }
+    }
+
+    private static int[] counts(Path segment) {
+        try {
+            return RunResultSegment.counts(segment);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read result segment " + segment, e);
+        }
+    }
+
+    private static long matching(SegmentInfo info, Boolean malicious) {
+        if (malicious == null) {
+            return info.rows();
+        }
+        return malicious ? info.malicious() : info.rows() - info.malicious();
+    }
+
+    private static void deleteTree(Path root) {
+        try (Stream<Path> entries = Files.walk(root)) {
+            for (Path entry : entries.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(entry);
+            }
+        } catch (IOException e) {
+            logger.warn("Could not remove deleted results {}: {}", root, e.getMessage());
+        }
+    }
+
+    /**
+     * Buffers rows and writes them a segment at a time. A flush writes the rows of the segment
+     * being filled without ending it, and each later flush replaces that file until the segment
+     * is full, so checkpoints do not leave a trail of small segments.
+     */
+    private class SegmentWriter implements Writer {
+        private final Path dir;
+        private final List<String> payloads = new ArrayList<>();
+        private final List<AnalysisVerdict> verdicts = new ArrayList<>();
+        private int segmentCount;
+        private boolean dirty;
+
+        private SegmentWriter(Path dir) {
+            this.dir = dir;
+            // Resumed runs append after the segments already written, filling the last one first
+            List<Path> existing = segments(dir);
+            this.segmentCount = existing.size();
+            if (!existing.isEmpty()) {
+                reopen(existing.get(existing.size() - 1));
+            }
+        }
+
+        private void reopen(Path last) {
+            try {
+                RunResultSegment segment = RunResultSegment.open(last);
+                if (segment.size() >= Math.max(1, segmentRows)) {
+                    return;
+                }
+                List<Integer> rows = new ArrayList<>(segment.size());
+                for (int row = 0; row < segment.size(); row++) {
+                    rows.add(row);
+                    verdicts.add(new AnalysisVerdict(row, segment.malicious(row), segment.category(row), segment.reason(row)));
+                }
+                payloads.addAll(segment.payloads(rows));
+                segmentCount--;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not read result segment " + last, e);
+            }
+        }
+
+        @Override
+        public void add(String payload, AnalysisVerdict verdict) {
+            payloads.add(payload);
+            verdicts.add(verdict);
+            dirty = true;
+            if (payloads.size() >= Math.max(1, segmentRows)) {
+                writeSegment(dir, segmentCount, payloads, verdicts);
+                segmentCount++;
+                payloads.clear();
+                verdicts.clear();
+                dirty = false;
+            }
+        }
+
+        @Override
+        public void flush() {
+            if (!dirty) {
+                return;
+            }
+            writeSegment(dir, segmentCount, payloads, verdicts);
+            dirty = false;
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.SafeGate.service;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Space-Saving summary of the most frequent items of a stream, in a fixed number of counters.
+ * <p>
+ * A new item that finds every counter taken replaces the item with the smallest count and
+ * inherits that count as its error, so a reported count overestimates the true one by at
+ * most its error, and any item seen more often than (stream length / capacity) times is kept.
+ * Not thread-safe.
+ */
+public final class SpaceSaving {
+
+    private final int capacity;
+    // item -> {count, error}
+    private final Map<String, long[]> counters;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String item) {
+        long[] counter = counters.get(item);
+        if (counter != null) {
+            counter[0]++;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(item, new long[]{1, 0});
+            return;
+        }
+        // Most offers of a skewed stream hit an existing counter, so the scan is rare
+        String minItem = null;
+        long[] min = null;
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if (min == null || entry.getValue()[0] < min[0]) {
+                minItem = entry.getKey();
+                min = entry.getValue();
+            }
+        }
+        counters.remove(minItem);
+        min[1] = min[0];
+        min[0]++;
+        counters.put(item, min);
+    }
+
+    /**
+     * Adds this summary's counts and errors to the target, keyed by item.
+     */
+    public void mergeInto(Map<String, long[]> target) {
+        counters.forEach((item, counter) -> target.merge(item, counter.clone(), (a, b) -> {
+            a[0] += b[0];
+            a[1] += b[1];
+            return a;
+        }));
+    }
+
+    public int size() {
+        return counters.size();
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+}
@@ -0,0 +1,422 @@
+package com.SafeGate.service;
+
+import com.SafeGate.model.AnalysisVerdict;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durable store of analyzer verdicts, so a payload classified once by a provider, model and
+ * prompt version is not sent to the analyzer again, in the same run or any later one.
+ * <p>
+ * The store is one memory-mapped file: an open-addressing hash table followed by the records
+ * its slots point to. Layout (big-endian): magic "SGVS", int version, int slot count (a power
+ * of two), int used slots, int end of the record area, int reserved; then 16-byte slots of a
+ * long key (0 marks a free slot), an int check and an int record offset; then records of a
+ * flags byte (bit 0: malicious), a u8-prefixed category and a u16-prefixed reason (0xFFFF
+ * marks a missing reason). All strings are UTF-8.
+ * <p>
+ * The key mixes the payload's 64-bit hash with the model key and the check adds 32 more bits
+ * of the payload, so payloads are not stored. A record is written before the slot that points
+ * to it and the slot's key last, so a process that dies mid-write leaves at most unreferenced
+ * bytes behind. The table is rebuilt at twice the size when half full. Verdicts can always be
+ * reproduced, so a file that cannot be read is replaced rather than repaired.
+ */
+public final class VerdictStore implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(VerdictStore.class);
+
+    private static final int MAGIC = 0x53475653; // "SGVS"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int SLOT_BYTES = 16;
+    private static final int INITIAL_SLOTS = 1 << 12;
+    private static final int INITIAL_RECORD_BYTES = 1 << 20;
+    private static final int NO_REASON = 0xFFFF;
+    // Caps keep the encoded lengths within their u8 and u16 prefixes
+    private static final int MAX_CATEGORY_CHARS = 80;
+    private static final int MAX_REASON_CHARS = 2000;
+
+    private final Path path;
+    private final int maxBytes;
+
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int slotCount;
+    private int used;
+    private int recordEnd;
+    private boolean fullReported;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+
+    private VerdictStore(Path path, long maxBytes) {
+        this.path = path;
+        this.maxBytes = (int) Math.min(Integer.MAX_VALUE, maxBytes);
+    }
+
+    /**
+     * Maps the store file, creating it if it does not exist or cannot be read.
+     *
+     * @param path The store file.
+     * @param maxBytes The size the file may grow to; verdicts that do not fit are not stored.
+     * @return The open store.
+     * @throws IOException if the file cannot be created or mapped.
+     */
+    public static VerdictStore open(Path path, long maxBytes) throws IOException {
+        VerdictStore store = new VerdictStore(path, maxBytes);
+        Path dir = path.toAbsolutePath().getParent();
+        if (dir != null) {
+            Files.createDirectories(dir);
+        }
+        if (Files.exists(path)) {
+            try {
+                store.map();
+                return store;
+            } catch (IOException e) {
+                logger.warn("Replacing unreadable verdict store {}: {}", path, e.getMessage());
+                store.closeChannel();
+            }
+        }
+        if (!store.rebuild(INITIAL_SLOTS, INITIAL_RECORD_BYTES)) {
+            throw new IOException("Verdict store maximum size of " + maxBytes + " bytes is too small: " + path);
+        }
+        return store;
+    }
+
+    /**
+     * @return The key the verdicts of a provider, model and prompt version are stored under.
+     */
+    public static long modelKey(String provider, String model, String promptVersion) {
+        return PayloadDeduplicator.hash64(normalize(provider) + '\n' + normalize(model) + '\n' + normalize(promptVersion));
+    }
+
+    private static String normalize(String value) {
+        return value != null ? value.trim().toLowerCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * @return The stored verdict of the payload, with index 0, or null if there is none.
+     */
+    public synchronized AnalysisVerdict get(long modelKey, String payload) {
+        long key = key(modelKey, payload);
+        int slot = probe(buffer, slotCount, key, check(modelKey, payload));
+        int pos = slotOffset(slot);
+        AnalysisVerdict verdict = buffer.getLong(pos) == key ? read(buffer.getInt(pos + 12)) : null;
+        (verdict != null ? hits : misses).increment();
+        return verdict;
+    }
+
+    /**
+     * Looks up a batch of payloads under one lock.
+     *
+     * @return The stored verdicts, by position in the batch and with that index; null for payloads with none.
+     */
+    public synchronized AnalysisVerdict[] lookup(long modelKey, List<String> payloads) {
+        AnalysisVerdict[] verdicts = new AnalysisVerdict[payloads.size()];
+        for (int i = 0; i < verdicts.length; i++) {
+            AnalysisVerdict verdict = get(modelKey, payloads.get(i));
+            if (verdict != null) {
+                verdict.setIndex(i);
+                verdicts[i] = verdict;
+            }
+        }
+        return verdicts;
+    }
+
+    /**
+     * Stores a verdict, replacing any stored for the same payload and model key.
+     *
+     * @return Whether the verdict was stored; false once the store has reached its maximum size.
+     */
+    public synchronized boolean put(long modelKey, String payload, AnalysisVerdict verdict) {
+        byte[] category = utf8(verdict.getCategory() != null ? verdict.getCategory() : "", MAX_CATEGORY_CHARS);
+        byte[] reason = verdict.getReason() != null ? utf8(verdict.getReason(), MAX_REASON_CHARS) : null;
+        int size = 2 + category.length + 2 + (reason != null ? reason.length : 0);
+        try {
+            if ((used + 1) * 2L > slotCount && !rebuild(slotCount * 2, 0)) {
+                return full();
+            }
+            if ((long) recordEnd + size > buffer.limit() && !grow(size)) {
+                return full();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not grow verdict store " + path, e);
+        }
+
+        long key = key(modelKey, payload);
+        int pos = slotOffset(probe(buffer, slotCount, key, check(modelKey, payload)));
+        boolean replace = buffer.getLong(pos) == key;
+
+        int record = recordEnd;
+        buffer.put(record, (byte) (verdict.isMalicious() ? 1 : 0));
+        buffer.put(record + 1, (byte) category.length);
+        buffer.put(record + 2, category);
+        int reasonPos = record + 2 + category.length;
+        buffer.putShort(reasonPos, (short) (reason != null ? reason.length : NO_REASON));
+        if (reason != null) {
+            buffer.put(reasonPos + 2, reason);
+        }
+        recordEnd += size;
+        buffer.putInt(16, recordEnd);
+
+        buffer.putInt(pos + 8, check(modelKey, payload));
+        buffer.putInt(pos + 12, record);
+        buffer.putLong(pos, key);
+        if (!replace) {
+            used++;
+            buffer.putInt(12, used);
+        }
+        writes.increment();
+        return true;
+    }
+
+    /**
+     * @return The number of stored verdicts.
+     */
+    public synchronized int size() {
+        return used;
+    }
+
+    /**
+     * @return The size of the store file.
+     */
+    public synchronized long bytes() {
+        return buffer.limit();
+    }
+
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("safegate.llm.verdict-store.hits", hits, LongAdder::sum)
+                .description("Payloads answered from stored verdicts instead of the analyzer")
+                .register(registry);
+        FunctionCounter.builder("safegate.llm.verdict-store.misses", misses, LongAdder::sum)
+                .description("Payloads with no stored verdict, sent to the analyzer")
+                .register(registry);
+        FunctionCounter.builder("safegate.llm.verdict-store.writes", writes, LongAdder::sum)
+                .description("Analyzer verdicts written to the verdict store")
+                .register(registry);
+        Gauge.builder("safegate.llm.verdict-store.entries", this, VerdictStore::size)
+                .description("Verdicts in the verdict store")
+                .register(registry);
+        Gauge.builder("safegate.llm.verdict-store.size", this, VerdictStore::bytes)
+                .description("Size of the verdict store file")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * Writes the mapped pages back to the file and closes it.
+     */
+    @Override
+    public synchronized void close() {
+        if (buffer != null) {
+            buffer.force();
+        }
+        closeChannel();
+    }
+
+    private boolean full() {
+        if (!fullReported) {
+            fullReported = true;
+            logger.warn("Verdict store {} reached its maximum size of {} bytes; new verdicts are not stored", path, maxBytes);
+        }
+        return false;
+    }
+
+    private void map() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = channel.size();
+        if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+            throw new IOException("Not a verdict store: " + path);
+        }
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (mapped.getInt(0) != MAGIC) {
+            throw new IOException("Not a verdict store: " + path);
+        }
+        if (mapped.getInt(4) != VERSION) {
+            throw new IOException("Unsupported verdict store version " + mapped.getInt(4) + ": " + path);
+        }
+        int slots = mapped.getInt(8);
+        int end = mapped.getInt(16);
+        if (slots <= 0 || Integer.bitCount(slots) != 1 || recordStart(slots) > size
+                || end < recordStart(slots) || end > size || mapped.getInt(12) < 0 || mapped.getInt(12) > slots / 2) {
+            throw new IOException("Verdict store is truncated or corrupt: " + path);
+        }
+        buffer = mapped;
+        slotCount = slots;
+        used = mapped.getInt(12);
+        recordEnd = end;
+    }
+
+    private void closeChannel() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Could not close verdict store {}: {}", path, e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Extends the record area by remapping the file at up to twice its size.
+     *
+     * @return false if the record would not fit within the maximum size.
+     */
+    private boolean grow(int recordSize) throws IOException {
+        long needed = (long) recordEnd + recordSize;
+        if (needed > maxBytes) {
+            return false;
+        }
+        long size = Math.min(maxBytes, Math.max(needed, 2L * buffer.limit()));
+        // Mapping beyond the end of the file extends it
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return true;
+    }
+
+    /**
+     * Writes the stored verdicts into a new table of the given size, leaving out replaced
+     * records, and moves it over the store file.
+     *
+     * @param slots The slot count of the new table.
+     * @param minRecordBytes The least room to leave for new records.
+     * @return false if the table would not fit within the maximum size.
+     */
+    private boolean rebuild(int slots, int minRecordBytes) throws IOException {
+        long live = 0;
+        for (int slot = 0; buffer != null && slot < slotCount; slot++) {
+            int pos = slotOffset(slot);
+            if (buffer.getLong(pos) != 0) {
+                live += recordLength(buffer, buffer.getInt(pos + 12));
+            }
+        }
+        long start = recordStart(slots);
+        long size = Math.min(maxBytes, start + Math.max(minRecordBytes, 2 * live));
+        if (slots <= 0 || start + live > size) {
+            return false;
+        }
+
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer target = out.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                int end = (int) start;
+                int count = 0;
+                for (int slot = 0; buffer != null && slot < slotCount; slot++) {
+                    int pos = slotOffset(slot);
+                    long key = buffer.getLong(pos);
+                    if (key == 0) {
+                        continue;
+                    }
+                    int check = buffer.getInt(pos + 8);
+                    int record = buffer.getInt(pos + 12);
+                    int length = recordLength(buffer, record);
+                    target.put(end, buffer, record, length);
+                    int targetPos = slotOffset(probe(target, slots, key, check));
+                    target.putLong(targetPos, key);
+                    target.putInt(targetPos + 8, check);
+                    target.putInt(targetPos + 12, end);
+                    end += length;
+                    count++;
+                }
+                target.putInt(0, MAGIC);
+                target.putInt(4, VERSION);
+                target.putInt(8, slots);
+                target.putInt(12, count);
+                target.putInt(16, end);
+                target.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        closeChannel();
+        map();
+        logger.debug("Rebuilt verdict store {} with {} slots ({} verdicts, {} bytes)", path, slots, used, buffer.limit());
+        return true;
+    }
+
+    /**
+     * @return The slot holding the key, or the free slot it would be stored in.
+     */
+    private static int probe(ByteBuffer table, int slots, long key, int check) {
+        int mask = slots - 1;
+        int slot = (int) (key ^ (key >>> 32)) & mask;
+        while (true) {
+            long stored = table.getLong(slotOffset(slot));
+            if (stored == 0 || (stored == key && table.getInt(slotOffset(slot) + 8) == check)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private AnalysisVerdict read(int record) {
+        if (record < recordStart(slotCount) || record >= recordEnd) {
+            return null;
+        }
+        boolean malicious = (buffer.get(record) & 1) != 0;
+        int categoryLength = Byte.toUnsignedInt(buffer.get(record + 1));
+        String category = string(record + 2, categoryLength);
+        int reasonPos = record + 2 + categoryLength;
+        int reasonLength = Short.toUnsignedInt(buffer.getShort(reasonPos));
+        String reason = reasonLength == NO_REASON ? null : string(reasonPos + 2, reasonLength);
+        return new AnalysisVerdict(0, malicious, category, reason);
+    }
+
+    private String string(int pos, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(pos, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int recordLength(ByteBuffer table, int record) {
+        int categoryLength = Byte.toUnsignedInt(table.get(record + 1));
+        int reasonLength = Short.toUnsignedInt(table.getShort(record + 2 + categoryLength));
+        return 2 + categoryLength + 2 + (reasonLength == NO_REASON ? 0 : reasonLength);
+    }
+
+    private static long key(long modelKey, String payload) {
+        long key = PayloadDeduplicator.hash64(payload) ^ (modelKey * 0x9E3779B97F4A7C15L);
+        key ^= key >>> 29;
+        key *= 0xbf58476d1ce4e5b9L;
+        key ^= key >>> 32;
+        // 0 marks a free slot
+        return key != 0 ? key : 1;
+    }
+
+    private static int check(long modelKey, String payload) {
+        return payload.hashCode() ^ (int) (modelKey >>> 32);
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static long recordStart(int slots) {
+        return HEADER_BYTES + (long) slots * SLOT_BYTES;
+    }
+
+    private static byte[] utf8(String value, int maxChars) {
+        String text = value.length() > maxChars ? value.substring(0, maxChars) : value;
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
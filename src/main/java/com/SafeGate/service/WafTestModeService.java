@@ -8,6 +8,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
@@ -43,18 +44,78 @@ public class WafTestModeService {
         }
         testModeEnabled = false;
         currentTestRun.setEndTime(LocalDateTime.now());
-        currentTestRun.setTotalPassed(passedRequests.get());
+        currentTestRun.setCheckpointPosition(null);
+        currentTestRun.setCheckpointResultRows(null);
+        writeCounters();
+
+        return testRunRepository.save(currentTestRun);
+    }
+
+    /**
+     * Saves the running test with its counters so far and a checkpoint it can be resumed from.
+     *
+     * @param position   The number of dataset payloads processed.
+     * @param resultRows The number of result store rows written for them.
+     * @return The saved test run, which replaces the current one.
+     */
+    public synchronized TestRun checkpoint(long position, long resultRows) {
+        if (!testModeEnabled) {
+            throw new IllegalStateException("No test is currently in progress.");
+        }
+        writeCounters();
+        currentTestRun.setCheckpointPosition(position);
+        currentTestRun.setCheckpointResultRows(resultRows);
+        currentTestRun.setCheckpointTime(LocalDateTime.now());
+        // Saving a stored run merges it into a new instance; keep that one, so block counts
+        // added since are inserted only once
+        currentTestRun = testRunRepository.save(currentTestRun);
+        return currentTestRun;
+    }
+
+    /**
+     * Continues an interrupted test, with the counters of its last checkpoint.
+     */
+    public synchronized void resumeTest(TestRun testRun) {
+        if (testModeEnabled) {
+            throw new IllegalStateException("A test is already in progress.");
+        }
+        testModeEnabled = true;
+        passedRequests.set(testRun.getTotalPassed());
+        blockedRequestCounts.clear();
+        for (TestRunBlockCount blockCount : testRun.getBlockCounts()) {
+            blockedRequestCounts.put(blockCount.getDetectionCategory(), new AtomicLong(blockCount.getCount()));
+        }
+        currentTestRun = testRun;
+    }
+
+    /**
+     * Ends test mode after a failure without saving, so the stored run keeps its last
+     * checkpoint and can be resumed.
+     */
+    public synchronized void abandonTest() {
+        testModeEnabled = false;
+        currentTestRun = null;
+    }
 
+    // Copies the counters into the current run, updating block counts saved by a checkpoint
+    private void writeCounters() {
+        currentTestRun.setTotalPassed(passedRequests.get());
+        Map<String, TestRunBlockCount> saved = new HashMap<>();
+        for (TestRunBlockCount blockCount : currentTestRun.getBlockCounts()) {
+            saved.put(blockCount.getDetectionCategory(), blockCount);
+        }
         long totalBlocked = 0;
         for (Map.Entry<String, AtomicLong> entry : blockedRequestCounts.entrySet()) {
             long count = entry.getValue().get();
             totalBlocked += count;
-            TestRunBlockCount blockCount = new TestRunBlockCount(entry.getKey(), count, currentTestRun);
-            currentTestRun.getBlockCounts().add(blockCount);
+            TestRunBlockCount blockCount = saved.get(entry.getKey());
+            if (blockCount != null) {
+                blockCount.setCount(count);
+            } else {
+                currentTestRun.getBlockCounts().add(new TestRunBlockCount(entry.getKey(), count, currentTestRun));
+            }
         }
         currentTestRun.setTotalBlocked(totalBlocked);
-
-        return testRunRepository.save(currentTestRun);
     }
 
     public void recordPassedRequest() {
@@ -0,0 +1,389 @@
+package com.safegate.analyzer;
+
+import com.SafeGate.analyzer.Analyzer;
+import com.SafeGate.analyzer.AnalyzerScheduler;
+import com.SafeGate.analyzer.AnalyzerWire;
+import com.SafeGate.analyzer.AnalyzerWork;
+import com.SafeGate.analyzer.Analyzers;
+import com.SafeGate.analyzer.ConcurrencyLimiter;
+import com.SafeGate.analyzer.FallbackAnalyzer;
+import com.SafeGate.analyzer.HeuristicAnalyzer;
+import com.SafeGate.analyzer.HttpAnalyzer;
+import com.SafeGate.analyzer.LimitedAnalyzer;
+import com.SafeGate.model.AnalysisVerdict;
+import com.SafeGate.model.LLMConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AnalyzerTest {
+
+    private final HeuristicAnalyzer heuristic = new HeuristicAnalyzer();
+
+    @Test
+    public void testHeuristicCategories() {
+        assertEquals("SQL_INJECTION", heuristic.analyze("id=1' OR '1'='1").getCategory());
+        assertEquals("SQL_INJECTION", heuristic.analyze("id=1 UNION ALL SELECT user,pass FROM users").getCategory());
+        assertEquals("XSS", heuristic.analyze("q=<script>alert(1)</script>").getCategory());
+        assertEquals("XSS", heuristic.analyze("<img src=x onerror=alert(1)>").getCategory());
+        assertEquals("PATH_TRAVERSAL", heuristic.analyze("file=../../etc/passwd").getCategory());
+        // Double URL-encoded "../"
+        assertEquals("PATH_TRAVERSAL", heuristic.analyze("file=%252e%252e%252fetc").getCategory());
+        assertEquals("OTHER", heuristic.analyze("host=example.com; cat /etc/hosts").getCategory());
+
+        AnalysisVerdict safe = heuristic.analyze("GET /products?id=42&sort=price");
+        assertFalse(safe.isMalicious());
+        assertEquals("SAFE", safe.getCategory());
+        assertTrue(safe.isDegraded(), "Heuristic verdicts are never taken for the model's");
+        assertFalse(heuristic.analyze("q=100%").isMalicious(), "Malformed escapes are classified as is");
+    }
+
+    @Test
+    public void testFallbackOnlyRetriesFailedPayloads() {
+        // Primary classifies everything as OTHER, but reports an error for every second payload
+        List<List<String>> primaryCalls = new ArrayList<>();
+        Analyzer primary = new StubAnalyzer("primary") {
+            @Override
+            public int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+                primaryCalls.add(payloads);
+                for (int i = payloads.size() - 1; i >= 0; i--) {
+                    AnalysisVerdict verdict = new AnalysisVerdict(i, true, "OTHER", "primary");
+                    if (i % 2 == 1) {
+                        verdict.setError("model timeout");
+                    }
+                    consumer.accept(verdict);
+                }
+                return payloads.size();
+            }
+        };
+        FallbackAnalyzer chain = new FallbackAnalyzer(List.of(primary, heuristic));
+        assertEquals("primary,heuristic", chain.name());
+
+        List<String> payloads = List.of("a", "<script>x</script>", "b", "c", "d", "../../x");
+        List<AnalysisVerdict> verdicts = chain.analyzeBatch(payloads);
+
+        assertEquals(1, primaryCalls.size());
+        assertEquals(payloads.size(), verdicts.size());
+        for (int i = 0; i < payloads.size(); i++) {
+            assertEquals(i, verdicts.get(i).getIndex());
+        }
+        assertEquals("primary", verdicts.get(0).getReason());
+        assertEquals("XSS", verdicts.get(1).getCategory());
+        assertEquals("SAFE", verdicts.get(3).getCategory());
+        assertEquals("PATH_TRAVERSAL", verdicts.get(5).getCategory());
+    }
+
+    @Test
+    public void testFallbackWhenPrimaryFails() {
+        Analyzer failing = new StubAnalyzer("down") {
+            @Override
+            public int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+                throw new IllegalStateException("connection refused");
+            }
+        };
+        FallbackAnalyzer chain = new FallbackAnalyzer(List.of(failing, heuristic));
+        assertEquals("SQL_INJECTION", chain.analyze("x' or 1=1 --").getCategory());
+        assertEquals(2, chain.analyzeBatch(List.of("ok", "javascript:alert(1)")).size());
+
+        FallbackAnalyzer onlyFailing = new FallbackAnalyzer(List.of(failing));
+        assertThrows(IllegalStateException.class, () -> onlyFailing.analyzeBatch(List.of("x")));
+
+        // An error verdict is a failure too, not a verdict to pass on
+        Analyzer erring = new StubAnalyzer("erring") {
+            @Override
+            public AnalysisVerdict analyze(String payload) {
+                AnalysisVerdict verdict = new AnalysisVerdict();
+                verdict.setError("Ollama error: model not loaded");
+                return verdict;
+            }
+        };
+        assertEquals("XSS", new FallbackAnalyzer(List.of(erring, heuristic)).analyze("<script>x</script>").getCategory());
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> new FallbackAnalyzer(List.of(erring)).analyze("x"));
+        assertTrue(e.getMessage().contains("model not loaded"));
+    }
+
+    @Test
+    public void testProviderChainSelection() {
+        LLMConfig config = new LLMConfig();
+        RestTemplate restTemplate = new RestTemplate();
+
+        config.setProvider("heuristic");
+        assertTrue(Analyzers.forConfig(config, restTemplate) instanceof HeuristicAnalyzer);
+        config.setProvider("ollama");
+        assertTrue(Analyzers.forConfig(config, restTemplate) instanceof HttpAnalyzer);
+        config.setProvider(" Ollama , heuristic ");
+        Analyzer chain = Analyzers.forConfig(config, restTemplate);
+        assertTrue(chain instanceof FallbackAnalyzer);
+        assertEquals("ollama,heuristic", chain.name());
+
+        assertFalse(Analyzers.requiresUrl("heuristic"));
+        assertTrue(Analyzers.requiresUrl("ollama,heuristic"));
+        assertTrue(Analyzers.requiresUrl(null), "Defaults to ollama");
+        assertTrue(Analyzers.includes("ollama,heuristic", "ollama"));
+        assertFalse(Analyzers.includes("mock,heuristic", "ollama"));
+    }
+
+    @Test
+    public void testBinaryBatchRequest() throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        AnalyzerWire.writeBatch(body, Map.of("provider", "ollama"), List.of("id=1", "h\u00e9"));
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body.toByteArray()));
+        assertEquals("SGB1", new String(in.readNBytes(4), StandardCharsets.US_ASCII));
+        assertEquals("{\"provider\":\"ollama\"}", new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+        assertEquals(2, in.readInt());
+        assertEquals("id=1", new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8));
+        assertEquals(3, in.readInt(), "Lengths are in UTF-8 bytes");
+        assertEquals("h\u00e9", new String(in.readNBytes(3), StandardCharsets.UTF_8));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void testBinaryVerdictFrames() throws IOException {
+        // Frames as written by analyzer/wire.py: u32 index, u8 flags, u8 category code, u16 length, text
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeBytes("SGV1");
+        out.writeInt(2);
+        out.writeByte(1);
+        out.writeByte(2);
+        out.writeShort(3);
+        out.writeBytes("xss");
+        out.writeInt(0);
+        out.writeByte(2);
+        out.writeByte(4);
+        out.writeShort(7);
+        out.writeBytes("timeout");
+        out.writeInt(1);
+        out.writeByte(4);
+        out.writeByte(0);
+        out.writeShort(9);
+        out.writeBytes("Heuristic");
+
+        List<AnalysisVerdict> verdicts = new ArrayList<>();
+        assertEquals(3, AnalyzerWire.readVerdicts(new ByteArrayInputStream(body.toByteArray()), verdicts::add));
+        assertEquals(2, verdicts.get(0).getIndex());
+        assertTrue(verdicts.get(0).isMalicious());
+        assertEquals("XSS", verdicts.get(0).getCategory());
+        assertEquals("xss", verdicts.get(0).getReason());
+        assertEquals(0, verdicts.get(1).getIndex());
+        assertEquals("timeout", verdicts.get(1).getError());
+        assertFalse(verdicts.get(0).isDegraded());
+        assertTrue(verdicts.get(2).isDegraded(), "The model's answer was stood in for");
+        assertEquals("SAFE", verdicts.get(2).getCategory());
+
+        // A stream cut within a frame fails instead of losing the verdict silently
+        byte[] truncated = Arrays.copyOf(body.toByteArray(), body.size() - 2);
+        assertThrows(IOException.class, () -> AnalyzerWire.readVerdicts(new ByteArrayInputStream(truncated), v -> { }));
+        assertThrows(IOException.class, () -> AnalyzerWire.readVerdicts(new ByteArrayInputStream("[]".getBytes()), v -> { }));
+    }
+
+    @Test
+    public void testConcurrencyLimitAdapts() throws InterruptedException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 50);
+        // Busy analyzer answering at a steady latency: the limit grows
+        for (int round = 0; round < 10; round++) {
+            int acquired = 0;
+            while (limiter.tryAcquire()) {
+                acquired++;
+            }
+            for (int i = 0; i < acquired; i++) {
+                limiter.onSuccess(AnalyzerWork.Priority.LIVE, 1_000_000, 1);
+            }
+        }
+        int grown = limiter.getLimit();
+        assertTrue(grown > 4, "Limit grew to " + grown);
+
+        // Latency far above the baseline: the limit shrinks
+        limiter.tryAcquire();
+        limiter.onSuccess(AnalyzerWork.Priority.LIVE, 100_000_000, 1);
+        int shrunk = limiter.getLimit();
+        assertTrue(shrunk < grown);
+        // A call that was in flight during that decrease does not shrink it again
+        limiter.tryAcquire();
+        limiter.onDropped(1_000_000_000L);
+        assertEquals(shrunk, limiter.getLimit());
+        // One that started after it does
+        Thread.sleep(5);
+        limiter.tryAcquire();
+        limiter.onDropped(1_000);
+        assertTrue(limiter.getLimit() < shrunk);
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testBatchLatencyDoesNotThrottleLiveCalls() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(20, 50);
+        // A dataset run of 50-payload chunks, about 45 ms per payload, mixed with live calls of
+        // about 350 ms: far slower than a batch payload, but normal for a single call
+        for (int i = 0; i < 300; i++) {
+            assertTrue(limiter.tryAcquire());
+            if (i % 3 == 0) {
+                limiter.onSuccess(AnalyzerWork.Priority.LIVE, 300_000_000L + (i % 7) * 20_000_000L, 1);
+            } else {
+                limiter.onSuccess(AnalyzerWork.Priority.BULK, 2_000_000_000L + (i % 5) * 100_000_000L, 50);
+            }
+        }
+        assertEquals(20, limiter.getLimit());
+
+        // Live calls slowing to 2 s are congestion, but calls overlapping one decrease count once
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(AnalyzerWork.Priority.LIVE, 2_000_000_000L, 1);
+        }
+        assertEquals(18, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testCallsOverLimitFollowOverflowPolicy() {
+        Analyzer model = new StubAnalyzer("ollama") {
+            @Override
+            public AnalysisVerdict analyze(String payload) {
+                return new AnalysisVerdict(0, false, "SAFE", "model");
+            }
+        };
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1);
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(limiter, 0.2);
+        assertTrue(limiter.tryAcquire(), "Occupy the only slot");
+
+        LimitedAnalyzer degrading = new LimitedAnalyzer(model, scheduler,
+                LimitedAnalyzer.Overflow.HEURISTIC, LimitedAnalyzer.Overflow.FAIL_OPEN, 10);
+        assertEquals("SQL_INJECTION", degrading.analyze("x' or 1=1 --").getCategory());
+        List<AnalysisVerdict> open = degrading.analyzeBatch(List.of("x' or 1=1 --", "ok"));
+        assertEquals(List.of("SAFE", "SAFE"), open.stream().map(AnalysisVerdict::getCategory).toList());
+        assertEquals(1, open.get(1).getIndex());
+
+        LimitedAnalyzer strict = new LimitedAnalyzer(model, scheduler,
+                LimitedAnalyzer.Overflow.REJECT, LimitedAnalyzer.Overflow.WAIT, 10);
+        assertThrows(IllegalStateException.class, () -> strict.analyze("x"));
+        assertThrows(IllegalStateException.class, () -> strict.analyzeBatch(List.of("x")));
+
+        // With the slot free again, calls reach the model
+        scheduler.onIgnored();
+        assertEquals("model", strict.analyze("x").getReason());
+        assertEquals("model", degrading.analyzeBatch(List.of("x")).get(0).getReason());
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(LimitedAnalyzer.Overflow.FAIL_OPEN, LimitedAnalyzer.Overflow.of("fail-open", LimitedAnalyzer.Overflow.WAIT));
+        assertEquals(LimitedAnalyzer.Overflow.WAIT, LimitedAnalyzer.Overflow.of("bogus", LimitedAnalyzer.Overflow.WAIT));
+    }
+
+    @Test
+    public void testSchedulerPrefersLiveAndSharesBulkFairly() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(5, 5);
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(limiter, 0.2);
+
+        // Dataset work may take 4 of 5 slots; the last one is kept for live calls
+        for (int i = 0; i < 4; i++) {
+            assertTrue(scheduler.tryAcquire(AnalyzerWork.Priority.BULK));
+        }
+        assertFalse(scheduler.tryAcquire(AnalyzerWork.Priority.INTERACTIVE));
+        assertTrue(scheduler.tryAcquire(AnalyzerWork.Priority.LIVE));
+
+        // Job "a" queues three chunks before job "b" queues two, then an interactive run queues one
+        List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> waiters = new ArrayList<>();
+        String[][] queued = {{"a", "BULK"}, {"a", "BULK"}, {"a", "BULK"}, {"b", "BULK"}, {"b", "BULK"}, {"run", "INTERACTIVE"}};
+        for (String[] entry : queued) {
+            Thread waiter = new Thread(() -> {
+                try {
+                    if (scheduler.acquire(AnalyzerWork.Priority.valueOf(entry[1]), entry[0], 1, 10, 5000)) {
+                        admitted.add(entry[0]);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            waiter.start();
+            waiters.add(waiter);
+            // Queue in a known order
+            Thread.sleep(50);
+        }
+        // The live call finishing frees only the reserved slot
+        scheduler.onSuccess(AnalyzerWork.Priority.LIVE, 1_000_000, 1);
+        Thread.sleep(50);
+        assertTrue(admitted.isEmpty(), "Nothing is admitted while dataset slots are taken");
+
+        // Completing chunks hands out one slot at a time, highest priority and then fairest first
+        for (int i = 0; i < queued.length; i++) {
+            scheduler.onSuccess(AnalyzerWork.Priority.BULK, 1_000_000, 10);
+            int expected = i + 1;
+            for (int wait = 0; wait < 100 && admitted.size() < expected; wait++) {
+                Thread.sleep(10);
+            }
+            // The admitted call keeps its slot, so each completion admits exactly one more
+            assertEquals(expected, admitted.size(), "Admitted " + admitted);
+        }
+        for (Thread waiter : waiters) {
+            waiter.join(5000);
+        }
+        assertEquals(List.of("run", "a", "b", "a", "b", "a"), admitted);
+    }
+
+    @Test
+    public void testSchedulerDoesNotChargeFlowsForCallsThatGaveUp() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1);
+        AnalyzerScheduler scheduler = new AnalyzerScheduler(limiter, 0);
+        assertTrue(scheduler.tryAcquire(AnalyzerWork.Priority.BULK));
+
+        // A large chunk of job "a" times out in the queue, and is never analyzed
+        assertFalse(scheduler.acquire(AnalyzerWork.Priority.BULK, "a", 1, 1000, 20));
+
+        // Equal chunks of "a" and then "b" queue; "a" is not held back for the chunk it gave up
+        List<String> admitted = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> waiters = new ArrayList<>();
+        for (String flow : List.of("a", "b")) {
+            Thread waiter = new Thread(() -> {
+                try {
+                    if (scheduler.acquire(AnalyzerWork.Priority.BULK, flow, 1, 10, 5000)) {
+                        admitted.add(flow);
+                        scheduler.onIgnored();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            waiter.start();
+            waiters.add(waiter);
+            Thread.sleep(50);
+        }
+        scheduler.onIgnored();
+        for (Thread waiter : waiters) {
+            waiter.join(5000);
+        }
+        assertEquals(List.of("a", "b"), admitted);
+    }
+
+    private static class StubAnalyzer implements Analyzer {
+        private final String name;
+
+        StubAnalyzer(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public AnalysisVerdict analyze(String payload) {
+            throw new IllegalStateException(name + " unavailable");
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package com.safegate.analyzer;
+
+import com.SafeGate.analyzer.AnalyzerEndpoint;
+import com.SafeGate.analyzer.AnalyzerWire;
+import com.SafeGate.analyzer.EndpointPool;
+import com.SafeGate.analyzer.FallbackAnalyzer;
+import com.SafeGate.analyzer.HedgingPolicy;
+import com.SafeGate.analyzer.HeuristicAnalyzer;
+import com.SafeGate.analyzer.HttpAnalyzer;
+import com.SafeGate.model.AnalysisVerdict;
+import com.SafeGate.model.LLMConfig;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the endpoint pool against stub analyzers on local ports.
+ */
+public class EndpointPoolTest {
+
+    private final List<StubAnalyzer> stubs = new ArrayList<>();
+    private final RestTemplate restTemplate = new RestTemplate();
+
+    @AfterEach
+    public void stopStubs() {
+        stubs.forEach(stub -> stub.server.stop(0));
+    }
+
+    @Test
+    public void testSlowEndpointGetsLessTraffic() throws IOException {
+        // Keep client initialization out of the first latency sample
+        analyzer(start(0)).analyze("warm-up");
+
+        StubAnalyzer fast1 = start(0);
+        StubAnalyzer fast2 = start(0);
+        StubAnalyzer slow = start(60);
+        HttpAnalyzer analyzer = analyzer(fast1, fast2, slow);
+
+        for (int i = 0; i < 60; i++) {
+            assertFalse(analyzer.analyze("id=" + i).isMalicious());
+        }
+
+        assertTrue(slow.requests.get() > 0, "Every endpoint is tried");
+        assertTrue(slow.requests.get() < fast1.requests.get() && slow.requests.get() < fast2.requests.get(),
+                "Slow endpoint got " + slow.requests.get() + ", fast ones " + fast1.requests.get() + "/" + fast2.requests.get());
+        assertEquals(60, fast1.requests.get() + fast2.requests.get() + slow.requests.get());
+    }
+
+    @Test
+    public void testFailingEndpointIsEjected() throws IOException {
+        StubAnalyzer healthy = start(0);
+        StubAnalyzer failing = start(0);
+        failing.failing = true;
+        HttpAnalyzer analyzer = analyzer(healthy, failing);
+
+        int failures = 0;
+        for (int i = 0; i < 20; i++) {
+            try {
+                analyzer.analyze("id=" + i);
+            } catch (HttpServerErrorException e) {
+                failures++;
+            }
+        }
+        assertEquals(3, failures, "Ejected after three consecutive failures");
+        assertEquals(3, failing.requests.get());
+        assertEquals(1, analyzer.getPool().availableCount());
+
+        // Once healthy again, a health check readmits it
+        failing.failing = false;
+        analyzer.getPool().checkHealth(restTemplate);
+        assertEquals(2, analyzer.getPool().availableCount());
+    }
+
+    @Test
+    public void testBackendErrorsFallBackAndCountAsFailures() throws IOException {
+        StubAnalyzer failing = start(0);
+        failing.failing = true;
+        HttpAnalyzer analyzer = analyzer(failing);
+
+        // The analyzer reports its backend failing instead of a SAFE verdict, so the chain falls back
+        FallbackAnalyzer chain = new FallbackAnalyzer(List.of(analyzer, new HeuristicAnalyzer()));
+        AnalysisVerdict verdict = chain.analyze("x' or 1=1 --");
+        assertEquals("SQL_INJECTION", verdict.getCategory());
+        assertTrue(verdict.isDegraded());
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> analyzer.analyzeBatch(List.of("a", "b")));
+        assertTrue(e.getMessage().contains("Ollama error"), e.getMessage());
+        assertThrows(HttpServerErrorException.class, () -> analyzer.analyze("c"));
+        assertEquals(0, analyzer.getPool().availableCount(), "Ejected after three backend failures");
+    }
+
+    @Test
+    public void testReadmittedEndpointDoesNotTakeEveryCall() throws Exception {
+        StubAnalyzer healthy = start(0);
+        StubAnalyzer flaky = start(0);
+        flaky.failing = true;
+        HttpAnalyzer analyzer = analyzer(healthy, flaky);
+        for (int i = 0; i < 20; i++) {
+            try {
+                analyzer.analyze("id=" + i);
+            } catch (HttpServerErrorException e) {
+                // Until the flaky endpoint is ejected
+            }
+        }
+        assertEquals(1, analyzer.getPool().availableCount());
+
+        // Readmitted without a latency sample, and slow to answer its first calls
+        flaky.failing = false;
+        flaky.delayMillis = 300;
+        analyzer.getPool().checkHealth(restTemplate);
+        assertEquals(2, analyzer.getPool().availableCount());
+        int before = flaky.requests.get();
+
+        int calls = 20;
+        ExecutorService clients = Executors.newFixedThreadPool(calls);
+        try {
+            CountDownLatch go = new CountDownLatch(1);
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < calls; i++) {
+                int id = i;
+                results.add(clients.submit(() -> {
+                    go.await();
+                    return analyzer.analyze("burst=" + id);
+                }));
+            }
+            go.countDown();
+            for (Future<?> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+        // Scored like an average endpoint, its outstanding calls count against it; scored 0, it
+        // would win every call until its first one returned
+        int readmitted = flaky.requests.get() - before;
+        assertTrue(readmitted < calls * 3 / 4, "Readmitted endpoint got " + readmitted + " of " + calls + " calls");
+    }
+
+    @Test
+    public void testIdleSlowEndpointFadesOnlyToPoolMean() throws Exception {
+        EndpointPool pool = new EndpointPool(List.of("http://slow:5000", "http://fast:5000"));
+        AnalyzerEndpoint slow = pool.getEndpoints().get(0);
+        AnalyzerEndpoint fast = pool.getEndpoints().get(1);
+        // The slow endpoint's only sample is minutes old, long enough to fade to nearly 0
+        setLatency(slow, 50, System.nanoTime() - TimeUnit.MINUTES.toNanos(5));
+        setLatency(fast, 10, System.nanoTime());
+
+        Method pick = EndpointPool.class.getDeclaredMethod("pick", AnalyzerEndpoint.class);
+        pick.setAccessible(true);
+        for (int i = 0; i < 20; i++) {
+            assertSame(fast, pick.invoke(pool, (Object) null), "A faded sample does not make an endpoint look fastest");
+        }
+    }
+
+    @Test
+    public void testUnreachableEndpointFailsOver() throws IOException {
+        StubAnalyzer healthy = start(0);
+        StubAnalyzer stopped = start(0);
+        stopped.server.stop(0);
+        HttpAnalyzer analyzer = analyzer(stopped, healthy);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("SAFE", analyzer.analyze("id=" + i).getCategory());
+        }
+        assertEquals(10, healthy.requests.get());
+
+        analyzer.getPool().checkHealth(restTemplate);
+        AnalyzerEndpoint down = analyzer.getPool().getEndpoints().get(0);
+        assertFalse(down.isAvailable(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testHedgeAnswersForStuckEndpoint() {
+        EndpointPool pool = new EndpointPool(List.of("http://stuck:5000", "http://fast:5000"));
+        HedgingPolicy policy = hedging(1.0);
+        pool.setHedging(policy);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            // The stuck endpoint would only answer after 5s
+            assertEquals("fast", pool.hedgedCall(endpoint -> endpoint.getBaseUrl().contains("stuck")
+                    ? new CompletableFuture<String>().completeOnTimeout("stuck", 5, TimeUnit.SECONDS)
+                    : CompletableFuture.completedFuture("fast")));
+        }
+        assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(4), "Answered without waiting for the stuck endpoint");
+        Map<String, Object> status = policy.snapshot();
+        assertTrue(((Number) status.get("hedges")).longValue() > 0);
+        assertEquals(status.get("hedges"), status.get("wins"));
+        // Losing calls are cancelled rather than left outstanding
+        pool.getEndpoints().forEach(endpoint -> assertEquals(0, endpoint.getOutstanding()));
+    }
+
+    @Test
+    public void testHedgesStayWithinBudget() {
+        EndpointPool pool = new EndpointPool(List.of("http://a:5000", "http://b:5000"));
+        HedgingPolicy policy = hedging(0.05);
+        pool.setHedging(policy);
+
+        // Every call is slower than the hedge delay, so every call would like a hedge
+        for (int i = 0; i < 40; i++) {
+            assertEquals("ok", pool.hedgedCall(endpoint ->
+                    new CompletableFuture<String>().completeOnTimeout("ok", 30, TimeUnit.MILLISECONDS)));
+        }
+        Map<String, Object> status = policy.snapshot();
+        assertTrue(((Number) status.get("hedges")).longValue() <= 2, "Hedges: " + status.get("hedges"));
+        assertTrue(((Number) status.get("denied")).longValue() >= 38, "Denied: " + status.get("denied"));
+    }
+
+    @Test
+    public void testPoolFromConfig() {
+        LLMConfig config = new LLMConfig();
+        config.setLlmApiUrl("http://a:5000/analyze");
+        config.setLlmApiUrls("http://b:5000/analyze,\nhttp://a:5000/ http://c:5000");
+        List<AnalyzerEndpoint> endpoints = EndpointPool.of(config).getEndpoints();
+        assertEquals(List.of("http://a:5000/analyze", "http://b:5000/analyze", "http://c:5000/analyze"),
+                endpoints.stream().map(AnalyzerEndpoint::getAnalyzeUrl).toList());
+        assertEquals("http://c:5000", endpoints.get(2).getBaseUrl());
+    }
+
+    private static void setLatency(AnalyzerEndpoint endpoint, double ewmaMillis, long sampledAtNanos) throws Exception {
+        Field ewma = AnalyzerEndpoint.class.getDeclaredField("ewmaMillis");
+        ewma.setAccessible(true);
+        ewma.set(endpoint, ewmaMillis);
+        Field sampled = AnalyzerEndpoint.class.getDeclaredField("lastSampleNanos");
+        sampled.setAccessible(true);
+        sampled.set(endpoint, sampledAtNanos);
+    }
+
+    /**
+     * A policy whose delay is already settled at its 10ms minimum, as after a run of fast calls.
+     */
+    private static HedgingPolicy hedging(double budget) {
+        HedgingPolicy policy = new HedgingPolicy(true, budget, 10);
+        for (int i = 0; i < 1000; i++) {
+            policy.recordLatency(5);
+        }
+        return policy;
+    }
+
+    private HttpAnalyzer analyzer(StubAnalyzer... nodes) {
+        List<String> urls = new ArrayList<>();
+        for (StubAnalyzer node : nodes) {
+            urls.add(node.url());
+        }
+        return new HttpAnalyzer(restTemplate, new LLMConfig(), "mock", AnalyzerWire.Options.JSON, new EndpointPool(urls));
+    }
+
+    private StubAnalyzer start(long delayMillis) throws IOException {
+        StubAnalyzer stub = new StubAnalyzer(delayMillis);
+        stubs.add(stub);
+        return stub;
+    }
+
+    /**
+     * Answers /analyze with a SAFE verdict and /analyze/batch with SAFE results, or, while failing,
+     * like an analyzer whose backend is down: 502 and a result error. /health answers 200 (or 503).
+     */
+    private static class StubAnalyzer {
+        final HttpServer server;
+        final AtomicInteger requests = new AtomicInteger();
+        volatile boolean failing;
+        volatile long delayMillis;
+
+        StubAnalyzer(long delayMillis) throws IOException {
+            this.delayMillis = delayMillis;
+            server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.createContext("/analyze", exchange -> {
+                exchange.getRequestBody().readAllBytes();
+                requests.incrementAndGet();
+                try {
+                    Thread.sleep(this.delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                if (exchange.getRequestURI().getPath().endsWith("/batch")) {
+                    String result = failing ? "{\"index\":%d,\"error\":\"Ollama error: stub down\"}"
+                            : "{\"index\":%d,\"is_malicious\":false,\"category\":\"SAFE\",\"reason\":\"stub\"}";
+                    respond(exchange, 200, "{\"results\":[" + String.format(result, 0) + "," + String.format(result, 1) + "]}");
+                } else if (failing) {
+                    respond(exchange, 502, "{\"error\":\"Ollama error: stub down\"}");
+                } else {
+                    respond(exchange, 200, "{\"is_malicious\":false,\"category\":\"SAFE\",\"reason\":\"stub\"}");
+                }
+            });
+            server.createContext("/health", exchange -> respond(exchange, failing ? 503 : 200, "{\"status\":\"ok\"}"));
+            server.start();
+        }
+
+        String url() {
+            return "http://127.0.0.1:" + server.getAddress().getPort() + "/analyze";
+        }
+
+        private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
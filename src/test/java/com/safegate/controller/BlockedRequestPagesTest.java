@@ -0,0 +1,135 @@
+package com.safegate.controller;
+
+import com.SafeGate.SafeGateApplication;
+import com.SafeGate.entity.BlockedRequest;
+import com.SafeGate.repository.BlockedRequestQueryRepository;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Cursor;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Field;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Query;
+import com.SafeGate.repository.BlockedRequestRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Pages through blocked requests that share timestamps, which only the id in the cursor tells apart.
+ */
+@SpringBootTest(classes = SafeGateApplication.class)
+@ActiveProfiles("test")
+public class BlockedRequestPagesTest {
+
+    // Rows of this test only, so rows saved by other tests do not end up in its pages
+    private static final String CATEGORY = "PAGING_TEST";
+
+    @Autowired
+    private BlockedRequestRepository blockedRequestRepository;
+
+    @Autowired
+    private BlockedRequestQueryRepository queryRepository;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private List<BlockedRequest> saved;
+
+    @BeforeEach
+    public void saveBlocks() {
+        List<BlockedRequest> blocks = new ArrayList<>();
+        // Runs of equal timestamps, down to the microsecond, between distinct ones
+        Instant[] timestamps = {Instant.parse("2025-03-01T12:00:00.000001Z"), Instant.parse("2025-03-01T12:00:00.123456Z"),
+                Instant.parse("2025-03-01T12:00:01Z"), Instant.parse("2025-03-01T12:00:02.5Z")};
+        int[] runs = {1, 9, 3, 10};
+        for (int t = 0; t < timestamps.length; t++) {
+            for (int i = 0; i < runs[t]; i++) {
+                BlockedRequest block = new BlockedRequest("10.0.0." + (blocks.size() % 3), CATEGORY, "payload", "TEST");
+                block.setTimestamp(timestamps[t]);
+                blocks.add(block);
+            }
+        }
+        // Saved out of timestamp order, so ids do not follow timestamps
+        List<BlockedRequest> shuffled = new ArrayList<>(blocks.subList(12, blocks.size()));
+        shuffled.addAll(blocks.subList(0, 12));
+        saved = blockedRequestRepository.saveAll(shuffled);
+    }
+
+    @AfterEach
+    public void deleteBlocks() {
+        blockedRequestRepository.deleteAll(saved);
+    }
+
+    @Test
+    public void testStreamPagesWithoutDuplicatesOrGaps() {
+        List<Long> seen = new ArrayList<>();
+        Cursor cursor = null;
+        for (int pages = 0; pages < 100; pages++) {
+            List<Cursor> page = new ArrayList<>();
+            queryRepository.stream(new Query(null, CATEGORY, null, cursor, 4), List.of(Field.ID),
+                    (rowCursor, values) -> page.add(rowCursor));
+            if (page.isEmpty()) {
+                break;
+            }
+            for (Cursor row : page) {
+                seen.add(row.id());
+            }
+            cursor = page.get(page.size() - 1);
+        }
+        assertEquals(expectedIds(), seen);
+    }
+
+    @Test
+    public void testApiPagesWithoutDuplicatesOrGaps() throws Exception {
+        Method pageMethod = Class.forName("com.SafeGate.controller.BlockedRequestPages").getDeclaredMethod("page",
+                BlockedRequestQueryRepository.class, Instant.class, String.class, String.class, String.class, int.class,
+                String.class);
+        pageMethod.setAccessible(true);
+
+        List<Long> seen = new ArrayList<>();
+        String cursor = null;
+        for (int pages = 0; pages < 100; pages++) {
+            ResponseEntity<?> response = (ResponseEntity<?>) pageMethod.invoke(null, queryRepository, null, CATEGORY,
+                    null, cursor, 5, "id,timestamp");
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ((StreamingResponseBody) response.getBody()).writeTo(out);
+            JsonNode page = mapper.readTree(out.toByteArray());
+            for (JsonNode item : page.get("items")) {
+                seen.add(item.get("id").asLong());
+            }
+            if (page.get("nextCursor").isNull()) {
+                break;
+            }
+            assertEquals(5, page.get("items").size(), "Only the last page is short");
+            cursor = page.get("nextCursor").asText();
+        }
+
+        List<Long> expected = expectedIds();
+        assertEquals(expected, seen);
+        Set<Long> unique = new HashSet<>(seen);
+        assertEquals(seen.size(), unique.size());
+    }
+
+    /**
+     * @return The ids of the saved rows, newest first, ties broken by descending id.
+     */
+    private List<Long> expectedIds() {
+        return saved.stream()
+                .sorted(Comparator.comparing(BlockedRequest::getTimestamp).thenComparing(BlockedRequest::getId).reversed())
+                .map(BlockedRequest::getId)
+                .toList();
+    }
+}
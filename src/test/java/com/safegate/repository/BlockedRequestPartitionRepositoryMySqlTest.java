@@ -0,0 +1,113 @@
+package com.safegate.repository;
+
+import com.SafeGate.repository.BlockedRequestPartitionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the partitioning DDL against a real MySQL, which H2 does not emulate. Set
+ * SAFEGATE_TEST_MYSQL_URL (and SAFEGATE_TEST_MYSQL_USER / SAFEGATE_TEST_MYSQL_PASSWORD) to a
+ * scratch database, e.g. jdbc:mysql://localhost:3306/safegate_test; the test drops and
+ * recreates blocked_requests there.
+ */
+@EnabledIfEnvironmentVariable(named = "SAFEGATE_TEST_MYSQL_URL", matches = ".+")
+public class BlockedRequestPartitionRepositoryMySqlTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private BlockedRequestPartitionRepository repository;
+
+    @BeforeEach
+    public void connect() throws Exception {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(System.getenv("SAFEGATE_TEST_MYSQL_URL"),
+                System.getenv().getOrDefault("SAFEGATE_TEST_MYSQL_USER", "root"),
+                System.getenv().getOrDefault("SAFEGATE_TEST_MYSQL_PASSWORD", ""));
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        repository = new BlockedRequestPartitionRepository();
+        Field field = BlockedRequestPartitionRepository.class.getDeclaredField("jdbcTemplate");
+        field.setAccessible(true);
+        field.set(repository, jdbcTemplate);
+    }
+
+    @Test
+    public void testDatetimeTableIsPartitionedByDay() {
+        createTable("DATETIME(6)");
+        runPartitionLifecycle();
+    }
+
+    @Test
+    public void testTimestampTableIsPartitionedByDay() {
+        createTable("TIMESTAMP(6)");
+        runPartitionLifecycle();
+    }
+
+    private void runPartitionLifecycle() {
+        assertTrue(repository.isMySql());
+        assertTrue(repository.isEmpty());
+        insert("2025-03-01T10:00:00Z");
+        insert("2025-03-02T10:00:00Z");
+        insert("2025-03-03T10:00:00Z");
+        assertFalse(repository.isEmpty());
+        assertFalse(repository.isPartitioned());
+
+        // Rows before the first bound all land in the first partition
+        repository.partition(days("2025-03-03", "2025-03-04"));
+        assertTrue(repository.isPartitioned());
+        assertEquals(days("2025-03-03", "2025-03-04"), repository.partitionBounds());
+        assertEquals(3, count(), "Partitioning keeps every row");
+
+        repository.addPartitions(days("2025-03-05", "2025-03-06"));
+        assertEquals(days("2025-03-03", "2025-03-04", "2025-03-05", "2025-03-06"), repository.partitionBounds());
+
+        // A row past the last bound goes to p_future instead of failing
+        insert("2025-04-01T10:00:00Z");
+        assertEquals(4, count());
+
+        repository.dropPartitions(days("2025-03-03"));
+        assertEquals(days("2025-03-04", "2025-03-05", "2025-03-06"), repository.partitionBounds());
+        assertEquals(2, count(), "The dropped partition took the two oldest rows with it");
+
+        assertEquals(1, repository.deleteBefore(Instant.parse("2025-03-04T00:00:00Z")));
+        repository.truncate();
+        assertTrue(repository.isEmpty());
+        assertEquals(days("2025-03-04", "2025-03-05", "2025-03-06"), repository.partitionBounds(),
+                "Truncating keeps the partitions");
+    }
+
+    /**
+     * The columns the partitioning touches, as Hibernate creates them from BlockedRequest.
+     */
+    private void createTable(String timestampType) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS blocked_requests");
+        jdbcTemplate.execute("CREATE TABLE blocked_requests (id BIGINT NOT NULL AUTO_INCREMENT, "
+                + "`timestamp` " + timestampType + " NOT NULL, source_ip VARCHAR(255) NOT NULL, "
+                + "matched_pattern VARCHAR(255) NOT NULL, PRIMARY KEY (id), "
+                + "INDEX idx_blocked_timestamp (`timestamp`, id))");
+    }
+
+    private void insert(String timestamp) {
+        jdbcTemplate.update("INSERT INTO blocked_requests (`timestamp`, source_ip, matched_pattern) VALUES (?, ?, ?)",
+                LocalDateTime.ofInstant(Instant.parse(timestamp), ZoneOffset.UTC), "10.0.0.1", "SQL_INJECTION");
+    }
+
+    private long count() {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM blocked_requests", Long.class);
+        return count != null ? count : 0;
+    }
+
+    private static List<LocalDate> days(String... days) {
+        return Arrays.stream(days).map(LocalDate::parse).toList();
+    }
+}
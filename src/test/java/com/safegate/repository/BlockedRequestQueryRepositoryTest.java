@@ -0,0 +1,33 @@
+package com.safegate.repository;
+
+import com.SafeGate.repository.BlockedRequestQueryRepository.Cursor;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Field;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockedRequestQueryRepositoryTest {
+
+    @Test
+    public void testCursorRoundTrip() {
+        Cursor cursor = new Cursor(Instant.parse("2025-03-01T12:30:45.123456Z"), 42);
+        String token = cursor.encode();
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+        assertEquals(cursor, Cursor.decode(token));
+        assertNull(Cursor.decode(""));
+        assertThrows(IllegalArgumentException.class, () -> Cursor.decode("not-a-cursor"));
+    }
+
+    @Test
+    public void testDefaultFieldsLeaveOutPayload() {
+        List<Field> fields = Field.parse(null);
+        assertFalse(fields.contains(Field.RAW_PAYLOAD));
+        assertTrue(fields.contains(Field.USER_AGENT));
+
+        assertEquals(List.of(Field.ID, Field.SOURCE_IP, Field.RAW_PAYLOAD), Field.parse("rawPayload, sourceip,id"));
+        assertThrows(IllegalArgumentException.class, () -> Field.parse("id,password"));
+    }
+}
@@ -0,0 +1,106 @@
+package com.safegate.repository;
+
+import com.SafeGate.SafeGateApplication;
+import com.SafeGate.repository.BlockedRequestRollupRepository;
+import com.SafeGate.repository.BlockedRequestRollupRepository.Bucket;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static com.SafeGate.repository.BlockedRequestRollupRepository.BACKFILL_DONE;
+import static com.SafeGate.repository.BlockedRequestRollupRepository.DAY;
+import static com.SafeGate.repository.BlockedRequestRollupRepository.HOUR;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the rollup SQL against H2 in MySQL mode, which accepts the ON DUPLICATE KEY UPDATE upsert.
+ */
+@SpringBootTest(classes = SafeGateApplication.class)
+@ActiveProfiles("test")
+public class BlockedRequestRollupRepositoryTest {
+
+    private static final long DAY_START = Instant.parse("2025-03-01T00:00:00Z").getEpochSecond();
+
+    @Autowired
+    private BlockedRequestRollupRepository repository;
+
+    @BeforeEach
+    public void awaitBackfill() throws Exception {
+        // The rollup service backfills the empty table at startup; wait until it is done
+        for (int i = 0; i < 100 && !repository.backfillProgress().map(BACKFILL_DONE::equals).orElse(false); i++) {
+            Thread.sleep(50);
+        }
+        assertEquals(BACKFILL_DONE, repository.backfillProgress().orElseThrow());
+        repository.deleteAll();
+    }
+
+    @AfterEach
+    public void clear() {
+        repository.addBackfill(Map.of(), BACKFILL_DONE);
+        repository.deleteAll();
+    }
+
+    @Test
+    public void testUpsertAddsToExistingBuckets() {
+        Bucket xss = new Bucket(HOUR, DAY_START, "LLM:XSS", "10.0.0.1");
+        Bucket sqli = new Bucket(HOUR, DAY_START, "LLM:SQL_INJECTION", "10.0.0.2");
+        repository.add(Map.of(xss, 2L, sqli, 1L));
+        repository.add(Map.of(xss, 3L));
+
+        assertEquals(6, repository.sumAll());
+        assertEquals(6, repository.sumSince(HOUR, DAY_START));
+        assertEquals(0, repository.sumSince(HOUR, DAY_START + HOUR));
+        List<Object[]> categories = repository.countsByCategory();
+        assertEquals(2, categories.size());
+        assertArrayEquals(new Object[]{"LLM:XSS", 5L}, categories.get(0));
+        assertArrayEquals(new Object[]{"LLM:SQL_INJECTION", 1L}, categories.get(1));
+        List<Object[]> ips = repository.countsBySourceIp(1);
+        assertEquals(1, ips.size());
+        assertArrayEquals(new Object[]{"10.0.0.1", 5L}, ips.get(0));
+    }
+
+    @Test
+    public void testDownsampleFoldsHoursIntoDays() {
+        repository.add(Map.of(
+                new Bucket(HOUR, DAY_START + HOUR, "LLM:XSS", "10.0.0.1"), 2L,
+                new Bucket(HOUR, DAY_START + 5 * HOUR, "LLM:XSS", "10.0.0.1"), 3L,
+                new Bucket(HOUR, DAY_START + 2 * HOUR, "LLM:XSS", "10.0.0.2"), 1L,
+                new Bucket(HOUR, DAY_START + DAY + HOUR, "LLM:XSS", "10.0.0.1"), 7L,
+                // A day bucket from an earlier compaction, which the folded hours are added to
+                new Bucket(DAY, DAY_START, "LLM:XSS", "10.0.0.1"), 4L));
+
+        assertEquals(3, repository.downsample(HOUR, DAY, DAY_START + DAY));
+        assertEquals(17, repository.sumAll(), "Folding keeps every count");
+        assertEquals(10, repository.sumSince(DAY, DAY_START));
+        assertEquals(7, repository.sumSince(HOUR, 0));
+
+        // Folding again finds nothing left to fold
+        assertEquals(0, repository.downsample(HOUR, DAY, DAY_START + DAY));
+        assertEquals(17, repository.sumAll());
+    }
+
+    @Test
+    public void testBackfillProgressIsNotCounted() {
+        Bucket bucket = new Bucket(HOUR, DAY_START, "LLM:XSS", "10.0.0.1");
+        repository.addBackfill(Map.of(bucket, 2L), "cursor-1");
+        assertEquals("cursor-1", repository.backfillProgress().orElseThrow());
+        repository.addBackfill(Map.of(bucket, 1L), BACKFILL_DONE);
+        assertEquals(BACKFILL_DONE, repository.backfillProgress().orElseThrow());
+
+        assertEquals(3, repository.sumAll());
+        assertEquals(1, repository.countsByCategory().size());
+        assertFalse(repository.isEmpty());
+
+        // Clearing the counts keeps the progress, so the backfill does not run again
+        repository.deleteAll();
+        assertEquals(0, repository.sumAll());
+        assertEquals(BACKFILL_DONE, repository.backfillProgress().orElseThrow());
+    }
+}
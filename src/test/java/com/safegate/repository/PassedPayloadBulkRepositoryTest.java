@@ -0,0 +1,131 @@
+package com.safegate.repository;
+
+import com.SafeGate.SafeGateApplication;
+import com.SafeGate.entity.TestRun;
+import com.SafeGate.repository.PassedPayloadBulkRepository;
+import com.SafeGate.repository.TestRunRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.AopTestUtils;
+
+import java.lang.reflect.Field;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = SafeGateApplication.class)
+@ActiveProfiles("test")
+public class PassedPayloadBulkRepositoryTest {
+
+    @Autowired
+    private PassedPayloadBulkRepository repository;
+
+    @Autowired
+    private TestRunRepository testRunRepository;
+
+    private final List<Long> runs = new ArrayList<>();
+    private Object originalBatchSize;
+
+    @BeforeEach
+    public void useSmallBatches() throws Exception {
+        originalBatchSize = swapBatchSize(3);
+    }
+
+    @AfterEach
+    public void clear() throws Exception {
+        swapBatchSize(originalBatchSize);
+        for (long id : runs) {
+            repository.deleteByTestRunId(id);
+            testRunRepository.deleteById(id);
+        }
+    }
+
+    @Test
+    public void testWriterInsertsFullBatchesAndTheRestOnClose() {
+        long runId = newRun();
+        try (PassedPayloadBulkRepository.Writer writer = repository.open(runId)) {
+            for (int i = 0; i < 7; i++) {
+                writer.add("payload-" + i);
+                // A batch is written as soon as it is full, and not before
+                assertEquals(i + 1 - (i + 1) % 3, writer.getWritten());
+                assertEquals(writer.getWritten(), repository.countByTestRunId(runId));
+            }
+            writer.flush();
+            assertEquals(7, writer.getWritten());
+            writer.flush();
+            assertEquals(7, writer.getWritten(), "An empty flush writes nothing");
+        }
+        assertEquals(7, repository.countByTestRunId(runId));
+        assertEquals(List.of("payload-0", "payload-1", "payload-2", "payload-3", "payload-4", "payload-5", "payload-6"),
+                repository.findPayloads(runId, 0, 10));
+        assertEquals(List.of("payload-3", "payload-4"), repository.findPayloads(runId, 3, 2));
+
+        long emptyRunId = newRun();
+        repository.open(emptyRunId).close();
+        assertEquals(0, repository.countByTestRunId(emptyRunId));
+    }
+
+    @Test
+    public void testTruncateKeepsTheFirstRows() {
+        long runId = newRun();
+        long otherRunId = newRun();
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            payloads.add("payload-" + i);
+        }
+        // Interleave the runs' ids, so the cut must not count the other run's rows
+        for (String payload : payloads) {
+            repository.insert(runId, List.of(payload));
+            repository.insert(otherRunId, List.of("other-" + payload));
+        }
+
+        assertEquals(4, repository.truncate(runId, 6));
+        assertEquals(6, repository.countByTestRunId(runId));
+        assertEquals(payloads.subList(0, 6), repository.findPayloads(runId, 0, 10));
+
+        assertEquals(0, repository.truncate(runId, 6), "Keeping every row deletes nothing");
+        assertEquals(0, repository.truncate(runId, 20), "Keeping more rows than exist deletes nothing");
+        assertEquals(6, repository.countByTestRunId(runId));
+
+        assertEquals(6, repository.truncate(runId, 0));
+        assertEquals(0, repository.countByTestRunId(runId));
+        assertEquals(10, repository.countByTestRunId(otherRunId));
+    }
+
+    @Test
+    public void testDeleteByTestRunIdOnlyDeletesThatRun() {
+        long runId = newRun();
+        long otherRunId = newRun();
+        repository.insert(runId, List.of("a", "b", "c", "d", "e"));
+        repository.insert(otherRunId, List.of("f", "g"));
+
+        assertEquals(5, repository.deleteByTestRunId(runId));
+        assertEquals(0, repository.countByTestRunId(runId));
+        assertEquals(List.of("f", "g"), repository.findPayloads(otherRunId, 0, 10));
+        assertEquals(0, repository.deleteByTestRunId(runId));
+    }
+
+    private long newRun() {
+        TestRun run = new TestRun();
+        run.setStartTime(LocalDateTime.now());
+        long id = testRunRepository.save(run).getId();
+        runs.add(id);
+        return id;
+    }
+
+    private Object swapBatchSize(Object value) throws Exception {
+        // The repository bean is proxied for exception translation; the field lives on the target
+        Object target = AopTestUtils.getTargetObject(repository);
+        Field field = PassedPayloadBulkRepository.class.getDeclaredField("batchSize");
+        field.setAccessible(true);
+        Object previous = field.get(target);
+        field.set(target, value);
+        return previous;
+    }
+}
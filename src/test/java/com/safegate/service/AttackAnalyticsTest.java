@@ -0,0 +1,93 @@
+package com.safegate.service;
+
+import com.SafeGate.service.AttackAnalytics;
+import com.SafeGate.service.HyperLogLog;
+import com.SafeGate.service.SpaceSaving;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AttackAnalyticsTest {
+
+    private static AttackAnalytics analytics(int windowMinutes, int topCapacity) throws Exception {
+        AttackAnalytics analytics = new AttackAnalytics();
+        set(analytics, "windowMinutes", windowMinutes);
+        set(analytics, "topCapacity", topCapacity);
+        set(analytics, "hllPrecision", 12);
+        analytics.init();
+        return analytics;
+    }
+
+    private static void set(AttackAnalytics analytics, String name, int value) throws Exception {
+        Field field = AttackAnalytics.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.setInt(analytics, value);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testWindowCountsAndTopItems() throws Exception {
+        AttackAnalytics analytics = analytics(10, 8);
+        Instant start = Instant.parse("2025-03-01T12:00:00Z");
+        // An old block that the window has moved past
+        analytics.record(start.minusSeconds(3600), "10.0.0.9", "LLM:XSS", "/old", "curl");
+        for (int i = 0; i < 300; i++) {
+            Instant when = start.plusSeconds(i);
+            String ip = i % 3 == 0 ? "10.0.0.1" : "192.168.1." + i;
+            analytics.record(when, ip, i % 2 == 0 ? "LLM:XSS" : "LLM:SQL_INJECTION", "/login", "sqlmap/1.7");
+        }
+
+        Map<String, Object> all = analytics.snapshot(start.plusSeconds(299), 10, 3);
+        assertEquals(300, (long) (Long) all.get("blocked"));
+        List<Long> perMinute = (List<Long>) all.get("blockedPerMinute");
+        assertEquals(10, perMinute.size());
+        assertEquals(List.of(60L, 60L, 60L, 60L, 60L), perMinute.subList(5, 10));
+
+        List<Map<String, Object>> topIps = (List<Map<String, Object>>) all.get("topIps");
+        assertEquals(3, topIps.size());
+        assertEquals("10.0.0.1", topIps.get(0).get("value"));
+        assertTrue((long) (Long) topIps.get(0).get("count") >= 100);
+        assertEquals(2, ((List<?>) all.get("topCategories")).size());
+
+        long distinct = (Long) all.get("distinctAttackers");
+        assertTrue(Math.abs(distinct - 201) <= 10, "distinct attackers " + distinct);
+
+        // The last two minutes only
+        Map<String, Object> recent = analytics.snapshot(start.plusSeconds(299), 2, 3);
+        assertEquals(120, (long) (Long) recent.get("blocked"));
+    }
+
+    @Test
+    public void testSpaceSavingKeepsFrequentItems() {
+        SpaceSaving summary = new SpaceSaving(10);
+        for (int i = 0; i < 10_000; i++) {
+            summary.offer(i % 4 == 0 ? "heavy" : "item-" + i);
+        }
+        assertEquals(10, summary.size());
+        Map<String, long[]> counts = new HashMap<>();
+        summary.mergeInto(counts);
+        long[] heavy = counts.get("heavy");
+        assertNotNull(heavy);
+        // The true count is 2500; the reported count is never below it nor above it by more than the error
+        assertTrue(heavy[0] >= 2500 && heavy[0] - heavy[1] <= 2500);
+    }
+
+    @Test
+    public void testHyperLogLogEstimateAndMerge() {
+        HyperLogLog first = new HyperLogLog(12);
+        HyperLogLog second = new HyperLogLog(12);
+        for (int i = 0; i < 50_000; i++) {
+            first.offer("10.1." + (i % 30_000));
+            second.offer("10.1." + (20_000 + i % 30_000));
+        }
+        assertTrue(Math.abs(first.estimate() - 30_000) < 30_000 * 0.05, "estimate " + first.estimate());
+        first.merge(second);
+        assertTrue(Math.abs(first.estimate() - 50_000) < 50_000 * 0.05, "merged estimate " + first.estimate());
+    }
+}
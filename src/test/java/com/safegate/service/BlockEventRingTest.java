@@ -0,0 +1,65 @@
+package com.safegate.service;
+
+import com.SafeGate.service.BlockEventRing;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockEventRingTest {
+
+    @Test
+    public void testReadersResumeAndSkipOverwrittenEvents() {
+        BlockEventRing ring = new BlockEventRing(6);
+        assertEquals(8, ring.capacity());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, ring.publish("event-" + i));
+        }
+        List<BlockEventRing.Event> events = ring.read(2, 10);
+        assertEquals(3, events.size());
+        assertEquals("event-2", events.get(0).data());
+        assertTrue(ring.read(5, 10).isEmpty());
+
+        for (int i = 5; i < 20; i++) {
+            ring.publish("event-" + i);
+        }
+        // A reader at 3 was overtaken; it continues from the oldest event held
+        events = ring.read(3, 100);
+        assertEquals(12, events.get(0).sequence());
+        assertEquals(8, events.size());
+        assertEquals(19, events.get(7).sequence());
+        assertEquals(12, ring.oldest());
+        assertEquals(2, ring.read(12, 2).size());
+    }
+
+    @Test
+    public void testConcurrentPublishersGetDistinctSequences() throws Exception {
+        BlockEventRing ring = new BlockEventRing(1024);
+        Set<Long> sequences = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    sequences.add(ring.publish("x"));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40_000, sequences.size());
+        assertEquals(40_000, ring.head());
+
+        List<BlockEventRing.Event> events = ring.read(0, 2048);
+        assertEquals(1024, events.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(40_000 - 1024 + i, events.get(i).sequence());
+        }
+    }
+}
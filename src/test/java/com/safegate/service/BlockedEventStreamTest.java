@@ -0,0 +1,174 @@
+package com.safegate.service;
+
+import com.SafeGate.entity.BlockedRequest;
+import com.SafeGate.service.BlockedEventStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockedEventStreamTest {
+
+    private final List<BlockedEventStream> streams = new ArrayList<>();
+
+    /**
+     * Records the events sent to it as SSE text. A stalled emitter blocks in every send until
+     * interrupted, like a client that stopped reading.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        final BlockingQueue<String> frames = new LinkedBlockingQueue<>();
+        final CountDownLatch failed = new CountDownLatch(1);
+        final boolean stalled;
+        volatile Throwable error;
+
+        RecordingEmitter() {
+            this(false);
+        }
+
+        RecordingEmitter(boolean stalled) {
+            super(0L);
+            this.stalled = stalled;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            if (stalled) {
+                try {
+                    new CountDownLatch(1).await();
+                } catch (InterruptedException e) {
+                    throw new IOException("Write interrupted", e);
+                }
+            }
+            StringBuilder frame = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                frame.append(part.getData());
+            }
+            frames.add(frame.toString());
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            error = ex;
+            failed.countDown();
+        }
+
+        /**
+         * @return The next event's "name id" (id only for block events), waiting for it if needed.
+         */
+        String next() throws InterruptedException {
+            String frame = frames.poll(5, TimeUnit.SECONDS);
+            assertNotNull(frame, "No event within 5s");
+            String name = null;
+            String id = null;
+            for (String line : frame.split("\n")) {
+                if (line.startsWith("event:")) {
+                    name = line.substring("event:".length());
+                } else if (line.startsWith("id:")) {
+                    id = line.substring("id:".length());
+                }
+            }
+            return id != null ? name + " " + id : name;
+        }
+    }
+
+    @AfterEach
+    public void stopStreams() {
+        streams.forEach(BlockedEventStream::stop);
+    }
+
+    @Test
+    public void testEventIdsCarryTheEpochAcrossRestarts() throws Exception {
+        BlockedEventStream stream = start();
+        RecordingEmitter first = new RecordingEmitter();
+        subscribe(stream, null, first);
+        for (int i = 0; i < 3; i++) {
+            stream.publish(new BlockedRequest("10.0.0." + i, "XSS", "<script>", null), false);
+        }
+        String id0 = first.next().substring("blocked ".length());
+        String epoch = id0.substring(0, id0.lastIndexOf('-'));
+        assertEquals(epoch + "-0", id0);
+        assertEquals("blocked " + epoch + "-1", first.next());
+        assertEquals("blocked " + epoch + "-2", first.next());
+
+        // Same epoch: resume after the given event
+        RecordingEmitter resumed = new RecordingEmitter();
+        subscribe(stream, epoch + "-0", resumed);
+        assertEquals("blocked " + epoch + "-1", resumed.next());
+        assertEquals("blocked " + epoch + "-2", resumed.next());
+
+        // After a restart the sequence starts over, so an id from before it must not skip events
+        Thread.sleep(5);
+        BlockedEventStream restarted = start();
+        restarted.publish(new BlockedRequest("10.0.0.9", "SQL_INJECTION", "' or 1=1", null), false);
+        RecordingEmitter reconnected = new RecordingEmitter();
+        subscribe(restarted, epoch + "-0", reconnected);
+        assertEquals("reset", reconnected.next());
+        String after = reconnected.next();
+        assertTrue(after.startsWith("blocked ") && after.endsWith("-0") && !after.contains(epoch), after);
+
+        RecordingEmitter garbled = new RecordingEmitter();
+        subscribe(restarted, "not-an-id", garbled);
+        assertEquals("reset", garbled.next());
+    }
+
+    @Test
+    public void testStalledSubscriberIsDroppedWithoutHoldingUpOthers() throws Exception {
+        BlockedEventStream stream = start(1, 200);
+        RecordingEmitter stalled = new RecordingEmitter(true);
+        RecordingEmitter fast = new RecordingEmitter();
+        subscribe(stream, null, stalled);
+        subscribe(stream, null, fast);
+        stream.publish(new BlockedRequest("10.0.0.1", "XSS", "<script>", null), false);
+
+        // The only sender thread is stuck on the stalled client until its send times out
+        assertTrue(fast.next().startsWith("blocked "));
+        assertTrue(stalled.failed.await(5, TimeUnit.SECONDS), "The stalled subscriber was not dropped");
+        assertNotNull(stalled.error);
+
+        stream.publish(new BlockedRequest("10.0.0.2", "XSS", "<script>", null), false);
+        assertTrue(fast.next().startsWith("blocked "));
+        assertTrue(stalled.frames.isEmpty());
+    }
+
+    private BlockedEventStream start() throws Exception {
+        return start(2, 5000);
+    }
+
+    private BlockedEventStream start(int senderThreads, long sendTimeoutMs) throws Exception {
+        BlockedEventStream stream = new BlockedEventStream();
+        set(stream, "ringSize", 16);
+        set(stream, "maxSubscribers", 10);
+        set(stream, "senderThreads", senderThreads);
+        set(stream, "sendTimeoutMs", sendTimeoutMs);
+        set(stream, "batchSize", 256);
+        set(stream, "heartbeatMs", 60_000L);
+        stream.start();
+        streams.add(stream);
+        return stream;
+    }
+
+    private static void subscribe(BlockedEventStream stream, String lastEventId, SseEmitter emitter) throws Exception {
+        Method subscribe = BlockedEventStream.class.getDeclaredMethod("subscribe", String.class, SseEmitter.class);
+        subscribe.setAccessible(true);
+        assertTrue(((Optional<?>) subscribe.invoke(stream, lastEventId, emitter)).isPresent());
+    }
+
+    private static void set(BlockedEventStream stream, String name, Object value) throws Exception {
+        Field field = BlockedEventStream.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(stream, value);
+    }
+}
@@ -0,0 +1,143 @@
+package com.safegate.service;
+
+import com.SafeGate.repository.BlockedRequestPartitionRepository;
+import com.SafeGate.service.BlockedRequestRetentionService;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockedRequestRetentionServiceTest {
+
+    /**
+     * Keeps partition bounds in memory instead of altering a table.
+     */
+    private static class FakeRepository extends BlockedRequestPartitionRepository {
+        boolean mySql = true;
+        boolean partitioned;
+        boolean empty = true;
+        final List<LocalDate> bounds = new ArrayList<>();
+        Instant deletedBefore;
+
+        @Override
+        public boolean isMySql() {
+            return mySql;
+        }
+
+        @Override
+        public boolean isPartitioned() {
+            return partitioned;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return empty;
+        }
+
+        @Override
+        public List<LocalDate> partitionBounds() {
+            return new ArrayList<>(bounds);
+        }
+
+        @Override
+        public void partition(List<LocalDate> days) {
+            partitioned = true;
+            bounds.addAll(days);
+        }
+
+        @Override
+        public void addPartitions(List<LocalDate> days) {
+            assertTrue(bounds.isEmpty() || days.get(0).isAfter(bounds.get(bounds.size() - 1)));
+            bounds.addAll(days);
+        }
+
+        @Override
+        public void dropPartitions(List<LocalDate> days) {
+            bounds.removeAll(days);
+        }
+
+        @Override
+        public int deleteBefore(Instant before) {
+            deletedBefore = before;
+            return 0;
+        }
+    }
+
+    private static BlockedRequestRetentionService service(FakeRepository repository, int retentionDays) throws Exception {
+        BlockedRequestRetentionService service = new BlockedRequestRetentionService();
+        set(service, "partitionRepository", repository);
+        set(service, "retentionDays", retentionDays);
+        set(service, "partitioningEnabled", true);
+        set(service, "aheadDays", 2);
+        return service;
+    }
+
+    private static void set(BlockedRequestRetentionService service, String name, Object value) throws Exception {
+        Field field = BlockedRequestRetentionService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(service, value);
+    }
+
+    private static void maintain(BlockedRequestRetentionService service, String now) throws Exception {
+        invoke(service, "maintain", now);
+    }
+
+    private static void invoke(BlockedRequestRetentionService service, String method, String now) throws Exception {
+        Method maintain = BlockedRequestRetentionService.class.getDeclaredMethod(method, Instant.class);
+        maintain.setAccessible(true);
+        maintain.invoke(service, Instant.parse(now));
+    }
+
+    @Test
+    public void testPartitionsAreAddedAheadAndDroppedOnExpiry() throws Exception {
+        FakeRepository repository = new FakeRepository();
+        BlockedRequestRetentionService service = service(repository, 3);
+
+        maintain(service, "2025-03-10T08:00:00Z");
+        // The first partition holds everything before the retained days and is dropped at once
+        assertEquals(List.of(LocalDate.parse("2025-03-09"), LocalDate.parse("2025-03-10"), LocalDate.parse("2025-03-11"),
+                LocalDate.parse("2025-03-12"), LocalDate.parse("2025-03-13")), repository.bounds);
+
+        maintain(service, "2025-03-12T00:30:00Z");
+        assertEquals(LocalDate.parse("2025-03-11"), repository.bounds.get(0));
+        assertEquals(LocalDate.parse("2025-03-15"), repository.bounds.get(repository.bounds.size() - 1));
+        assertEquals(5, repository.bounds.size());
+    }
+
+    @Test
+    public void testTableWithRowsIsOnlyPartitionedOnRequest() throws Exception {
+        FakeRepository repository = new FakeRepository();
+        repository.empty = false;
+        BlockedRequestRetentionService service = service(repository, 3);
+
+        // Partitioning would copy the whole table, so expired rows are deleted instead
+        maintain(service, "2025-03-10T08:00:00Z");
+        assertFalse(repository.partitioned);
+        assertEquals(Instant.parse("2025-03-08T00:00:00Z"), repository.deletedBefore);
+
+        invoke(service, "partitionExisting", "2025-03-10T08:00:00Z");
+        assertTrue(repository.partitioned);
+        assertEquals(LocalDate.parse("2025-03-09"), repository.bounds.get(0));
+        assertEquals(LocalDate.parse("2025-03-13"), repository.bounds.get(repository.bounds.size() - 1));
+    }
+
+    @Test
+    public void testRowsAreDeletedWithoutPartitioning() throws Exception {
+        FakeRepository repository = new FakeRepository();
+        repository.mySql = false;
+        BlockedRequestRetentionService service = service(repository, 3);
+        maintain(service, "2025-03-10T08:00:00Z");
+        assertEquals(Instant.parse("2025-03-08T00:00:00Z"), repository.deletedBefore);
+        assertFalse(repository.partitioned);
+
+        repository.deletedBefore = null;
+        maintain(service(repository, 0), "2025-03-10T08:00:00Z");
+        assertNull(repository.deletedBefore);
+    }
+}
@@ -0,0 +1,205 @@
+package com.safegate.service;
+
+import com.SafeGate.entity.BlockedRequest;
+import com.SafeGate.repository.BlockedRequestQueryRepository;
+import com.SafeGate.repository.BlockedRequestQueryRepository.Cursor;
+import com.SafeGate.repository.BlockedRequestRollupRepository;
+import com.SafeGate.repository.BlockedRequestRollupRepository.Bucket;
+import com.SafeGate.service.BlockedRequestRollupService;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockedRequestRollupServiceTest {
+
+    /**
+     * Collects added counts instead of writing them, and fails while told to.
+     */
+    private static class RecordingRepository extends BlockedRequestRollupRepository {
+        final Map<Bucket, Long> added = new HashMap<>();
+        boolean failing;
+        String progress;
+
+        @Override
+        public void add(Map<Bucket, Long> counts) {
+            if (failing) {
+                throw new IllegalStateException("database down");
+            }
+            counts.forEach((bucket, count) -> added.merge(bucket, count, Long::sum));
+        }
+
+        @Override
+        public void addBackfill(Map<Bucket, Long> counts, String progress) {
+            add(counts);
+            this.progress = progress;
+        }
+
+        @Override
+        public Optional<String> backfillProgress() {
+            return Optional.ofNullable(progress);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return added.isEmpty();
+        }
+
+        long hourTotal() {
+            return added.entrySet().stream().filter(entry -> entry.getKey().bucketSeconds() == 3600)
+                    .mapToLong(Map.Entry::getValue).sum();
+        }
+    }
+
+    /**
+     * Streams blocks one second apart, each from its own address, and fails once after a given
+     * number of rows.
+     */
+    private static class StoredBlocks extends BlockedRequestQueryRepository {
+        final Instant newest;
+        final int count;
+        int failAfter = -1;
+
+        StoredBlocks(Instant newest, int count) {
+            this.newest = newest;
+            this.count = count;
+        }
+
+        @Override
+        public void stream(Query query, List<Field> fields, RowHandler handler) {
+            int streamed = 0;
+            for (int i = 0; i < count; i++) {
+                Cursor cursor = new Cursor(newest.minusSeconds(i), count - i);
+                Cursor after = query.after();
+                if (after != null && !(cursor.timestamp().isBefore(after.timestamp())
+                        || cursor.timestamp().equals(after.timestamp()) && cursor.id() < after.id())) {
+                    continue;
+                }
+                if (streamed++ == failAfter) {
+                    failAfter = -1;
+                    throw new IllegalStateException("connection reset");
+                }
+                try {
+                    handler.row(cursor, new Object[]{cursor.timestamp(), "10.0." + (i / 256) + "." + (i % 256), "LLM:XSS"});
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    private static BlockedRequestRollupService service(RecordingRepository repository) throws Exception {
+        BlockedRequestRollupService service = new BlockedRequestRollupService();
+        Field field = BlockedRequestRollupService.class.getDeclaredField("rollupRepository");
+        field.setAccessible(true);
+        field.set(service, repository);
+        return service;
+    }
+
+    private static void set(BlockedRequestRollupService service, String name, Object value) throws Exception {
+        Field field = BlockedRequestRollupService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(service, value);
+    }
+
+    private static void backfill(BlockedRequestRollupService service, Instant before) throws Exception {
+        Method backfill = BlockedRequestRollupService.class.getDeclaredMethod("backfill", Instant.class);
+        backfill.setAccessible(true);
+        backfill.invoke(service, before);
+    }
+
+    private static void flush(BlockedRequestRollupService service) throws Exception {
+        Method flush = BlockedRequestRollupService.class.getDeclaredMethod("flush");
+        flush.setAccessible(true);
+        flush.invoke(service);
+    }
+
+    private static BlockedRequest blocked(String ip, String category, String timestamp) {
+        BlockedRequest blocked = new BlockedRequest(ip, category, "METHOD=GET PATH=/", "LLM-XSS");
+        blocked.setTimestamp(Instant.parse(timestamp));
+        return blocked;
+    }
+
+    @Test
+    public void testBlocksAreCountedPerMinuteAndHour() throws Exception {
+        RecordingRepository repository = new RecordingRepository();
+        BlockedRequestRollupService service = service(repository);
+        service.record(blocked("10.0.0.1", "LLM:XSS - script tag in query", "2025-03-01T12:30:10Z"));
+        service.record(blocked("10.0.0.1", "LLM:XSS - onerror handler", "2025-03-01T12:30:50Z"));
+        service.record(blocked("10.0.0.1", "LLM:XSS", "2025-03-01T12:59:59Z"));
+        service.record(blocked("10.0.0.2", "LLM:SQL_INJECTION - tautology", "2025-03-01T13:00:00Z"));
+        flush(service);
+
+        long hour = Instant.parse("2025-03-01T12:00:00Z").getEpochSecond();
+        long minute = Instant.parse("2025-03-01T12:30:00Z").getEpochSecond();
+        // The analyzer's reason is not part of the category
+        assertEquals(2, (long) repository.added.get(new Bucket(60, minute, "LLM:XSS", "10.0.0.1")));
+        assertEquals(3, (long) repository.added.get(new Bucket(3600, hour, "LLM:XSS", "10.0.0.1")));
+        assertEquals(1, (long) repository.added.get(new Bucket(3600, hour + 3600, "LLM:SQL_INJECTION", "10.0.0.2")));
+        assertEquals(5, repository.added.size());
+    }
+
+    @Test
+    public void testFailedFlushIsRetried() throws Exception {
+        RecordingRepository repository = new RecordingRepository();
+        BlockedRequestRollupService service = service(repository);
+        service.record(blocked("10.0.0.1", "LLM:XSS", "2025-03-01T12:30:10Z"));
+        repository.failing = true;
+        flush(service);
+        assertTrue(repository.added.isEmpty());
+
+        service.record(blocked("10.0.0.1", "LLM:XSS", "2025-03-01T12:30:20Z"));
+        repository.failing = false;
+        flush(service);
+        long minute = Instant.parse("2025-03-01T12:30:00Z").getEpochSecond();
+        assertEquals(2, (long) repository.added.get(new Bucket(60, minute, "LLM:XSS", "10.0.0.1")));
+    }
+
+    @Test
+    public void testInterruptedBackfillResumesAfterLastBatch() throws Exception {
+        RecordingRepository repository = new RecordingRepository();
+        BlockedRequestRollupService service = service(repository);
+        set(service, "minuteRetentionHours", 48);
+        set(service, "hourRetentionDays", 90);
+        Instant before = Instant.parse("2025-03-10T00:00:00Z");
+        // Each block adds a minute and an hour bucket, so the backfill writes a batch every 5,000 blocks
+        StoredBlocks stored = new StoredBlocks(before.minusSeconds(1), 12_000);
+        stored.failAfter = 7_000;
+        set(service, "queryRepository", stored);
+
+        // Blocks recorded live wait until the backfill has recorded where it starts
+        set(service, "holdingCounts", true);
+        service.record(blocked("10.1.0.1", "LLM:XSS", "2025-03-10T00:00:05Z"));
+        flush(service);
+        assertTrue(repository.added.isEmpty());
+
+        backfill(service, before);
+        flush(service);
+        assertEquals(5_001, repository.hourTotal(), "The batch written before the failure is kept");
+        assertNotEquals(BlockedRequestRollupRepository.BACKFILL_DONE, repository.progress);
+
+        // The next attempt continues after the last batch written, so no block is counted twice
+        backfill(service, before.plusSeconds(600));
+        assertEquals(BlockedRequestRollupRepository.BACKFILL_DONE, repository.progress);
+        assertEquals(12_001, repository.hourTotal());
+        for (Map.Entry<Bucket, Long> entry : repository.added.entrySet()) {
+            if (entry.getKey().bucketSeconds() == 60) {
+                assertEquals(1, (long) entry.getValue(), entry.getKey().toString());
+            }
+        }
+        long hour = Instant.parse("2025-03-10T00:00:00Z").getEpochSecond();
+        assertEquals(1, (long) repository.added.get(new Bucket(3600, hour, "LLM:XSS", "10.1.0.1")));
+
+        // A finished backfill does not run again
+        backfill(service, before.plusSeconds(1200));
+        assertEquals(12_001, repository.hourTotal());
+    }
+}
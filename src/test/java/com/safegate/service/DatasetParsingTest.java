@@ -0,0 +1,159 @@
+package com.safegate.service;
+
+import com.SafeGate.SafeGateApplication;
+import com.SafeGate.model.HttpRequestData;
+import com.SafeGate.service.DatasetParsingService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = SafeGateApplication.class)
+@ActiveProfiles("test")
+public class DatasetParsingTest {
+
+    @Autowired
+    private DatasetParsingService datasetParsingService;
+
+    @Test
+    public void testLargeCsvParsesInFileOrderAcrossChunks() throws Exception {
+        // Large enough to be split into several chunks; every 7th payload spans two lines
+        StringBuilder csv = new StringBuilder("method,payload\n");
+        int rows = 200_000;
+        for (int i = 0; i < rows; i++) {
+            if (i % 7 == 0) {
+                csv.append("POST,\"multi\nline-").append(i).append("\"\r\n");
+            } else {
+                csv.append("GET,payload-").append(i).append("\n");
+            }
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "large.csv", "text/csv",
+                csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<HttpRequestData> result = datasetParsingService.getPayloadsFromFile(file, "CSV");
+
+        assertEquals(rows, result.size());
+        for (int i = 0; i < rows; i++) {
+            HttpRequestData data = result.get(i);
+            if (i % 7 == 0) {
+                assertEquals("POST", data.getMethod());
+                assertEquals("multi\nline-" + i, data.getPayload());
+            } else {
+                assertEquals("GET", data.getMethod());
+                assertEquals("payload-" + i, data.getPayload());
+            }
+        }
+    }
+
+    @Test
+    public void testCsvQuotesFollowRfc4180() throws Exception {
+        // A quote inside an unquoted field is a plain character and must not join the rows after it
+        String csv = "method,payload,label\n"
+                + "POST,admin\"--,sqli\n"
+                + "GET,\"say \"\"hi\"\", then\nleave\",benign\r\n"
+                + "GET,\"a,b\",benign\n"
+                + "GET,id=1,\n";
+        MockMultipartFile file = new MockMultipartFile("file", "quotes.csv", "text/csv",
+                csv.getBytes(StandardCharsets.UTF_8));
+
+        List<HttpRequestData> result = datasetParsingService.getPayloadsFromFile(file, "CSV");
+
+        assertEquals(4, result.size());
+        assertEquals("POST", result.get(0).getMethod());
+        assertEquals("admin\"--", result.get(0).getPayload());
+        assertEquals("sqli", result.get(0).getLabel());
+        assertEquals("say \"hi\", then\nleave", result.get(1).getPayload());
+        assertEquals("benign", result.get(1).getLabel());
+        assertEquals("a,b", result.get(2).getPayload());
+        assertEquals("id=1", result.get(3).getPayload());
+        assertNull(result.get(3).getLabel());
+    }
+
+    @Test
+    public void testLargeCsvWithUnbalancedQuotesSplitsOnEveryRow() throws Exception {
+        // Every row has an odd number of quotes, so flipping quote state on each one would join rows
+        StringBuilder csv = new StringBuilder("method,payload\n");
+        int rows = 200_000;
+        for (int i = 0; i < rows; i++) {
+            csv.append("GET,admin\"-- ").append(i).append("\n");
+        }
+        MockMultipartFile file = new MockMultipartFile("file", "unbalanced.csv", "text/csv",
+                csv.toString().getBytes(StandardCharsets.UTF_8));
+
+        List<HttpRequestData> result = datasetParsingService.getPayloadsFromFile(file, "CSV");
+
+        assertEquals(rows, result.size());
+        for (int i = 0; i < rows; i++) {
+            assertEquals("admin\"-- " + i, result.get(i).getPayload());
+        }
+    }
+
+    @Test
+    public void testTxtSkipsBlankLines() throws Exception {
+        String txt = "' OR 1=1 --\r\n\n<script>alert(1)</script>\n   \n../../etc/passwd";
+        MockMultipartFile file = new MockMultipartFile("file", "payloads.txt", "text/plain",
+                txt.getBytes(StandardCharsets.UTF_8));
+
+        List<HttpRequestData> result = datasetParsingService.getPayloadsFromFile(file, "TXT");
+
+        assertEquals(3, result.size());
+        assertEquals("' OR 1=1 --", result.get(0).getPayload());
+        assertEquals("<script>alert(1)</script>", result.get(1).getPayload());
+        assertEquals("../../etc/passwd", result.get(2).getPayload());
+    }
+
+    @Test
+    public void testAutoDetectsSingleLineJson() throws Exception {
+        String json = "[{\"payload\":\"' OR 1=1 --\"},{\"payload\":\"<img src=x>\"}]";
+        MockMultipartFile file = new MockMultipartFile("file", "payloads.dat", "application/octet-stream",
+                json.getBytes(StandardCharsets.UTF_8));
+
+        List<HttpRequestData> result = datasetParsingService.getPayloadsFromFile(file, "AUTO");
+
+        assertEquals(2, result.size());
+        assertEquals("' OR 1=1 --", result.get(0).getPayload());
+        assertEquals("<img src=x>", result.get(1).getPayload());
+    }
+
+    @Test
+    public void testAutoDetectsCsvWithUnbalancedQuoteInFirstRow() throws Exception {
+        // The stray quote must not hide the newlines after it, or too few rows are left to detect CSV
+        String csv = "method,payload\n"
+                + "POST,admin\"--\n"
+                + "GET,\"a,b\"\n"
+                + "GET,<script>alert(1)</script>\n";
+        MockMultipartFile file = new MockMultipartFile("file", "payloads", "application/octet-stream",
+                csv.getBytes(StandardCharsets.UTF_8));
+
+        List<HttpRequestData> result = datasetParsingService.getPayloadsFromFile(file, "AUTO");
+
+        assertEquals(3, result.size());
+        assertEquals("POST", result.get(0).getMethod());
+        assertEquals("admin\"--", result.get(0).getPayload());
+        assertEquals("a,b", result.get(1).getPayload());
+        assertEquals("<script>alert(1)</script>", result.get(2).getPayload());
+    }
+
+    @Test
+    public void testAutoDetectsCsvWithByteOrderMark() throws Exception {
+        byte[] bom = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+        byte[] body = "method,payload\nPOST,\"a,b\"\nGET,c\n".getBytes(StandardCharsets.UTF_8);
+        byte[] content = new byte[bom.length + body.length];
+        System.arraycopy(bom, 0, content, 0, bom.length);
+        System.arraycopy(body, 0, content, bom.length, body.length);
+        MockMultipartFile file = new MockMultipartFile("file", "payloads.txt", "text/plain", content);
+
+        List<HttpRequestData> result = datasetParsingService.getPayloadsFromFile(file, "AUTO");
+
+        assertEquals(2, result.size());
+        assertEquals("POST", result.get(0).getMethod());
+        assertEquals("a,b", result.get(0).getPayload());
+        assertEquals("c", result.get(1).getPayload());
+    }
+}
@@ -0,0 +1,80 @@
+package com.safegate.service;
+
+import com.SafeGate.model.HttpRequestData;
+import com.SafeGate.service.DatasetSnapshot;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DatasetSnapshotTest {
+
+    @Test
+    public void testRecordsRoundTrip() throws Exception {
+        String longPayload = "\u00e9x".repeat(100_000);
+        List<HttpRequestData> requests = List.of(
+                new HttpRequestData("POST", "id=1' OR '1'='1", "sqli"),
+                new HttpRequestData("GET", "", "benign"),
+                new HttpRequestData(null, longPayload, null),
+                new HttpRequestData("PUT", "<script>", ""));
+        Path file = Files.createTempFile("snapshot", ".sgds");
+        long bytes = DatasetSnapshot.write(file, requests);
+        assertEquals(Files.size(file), bytes);
+
+        DatasetSnapshot snapshot = DatasetSnapshot.open(file);
+        assertEquals(4, snapshot.size());
+        assertEquals("id=1' OR '1'='1", snapshot.get(0).getPayload());
+        assertEquals("sqli", snapshot.get(0).getLabel());
+        assertEquals("", snapshot.get(1).getPayload());
+        // A missing method is stored as GET, a long payload keeps every character
+        assertEquals("GET", snapshot.get(2).getMethod());
+        assertEquals(longPayload, snapshot.get(2).getPayload());
+        // A missing label stays missing, which an empty one does not
+        assertNull(snapshot.get(2).getLabel());
+        assertEquals("", snapshot.get(3).getLabel());
+        assertEquals("PUT", snapshot.get(3).getMethod());
+    }
+
+    @Test
+    public void testMissingLabelIsEncodedAsFFFF() throws Exception {
+        Path file = Files.createTempFile("snapshot", ".sgds");
+        DatasetSnapshot.write(file, List.of(new HttpRequestData("GET", "a", null)));
+
+        // Header, then method "GET", payload "a" and the label length
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file));
+        assertEquals(12 + 2 + 3 + 4 + 1 + 2, bytes.limit());
+        assertEquals(0xFFFF, Short.toUnsignedInt(bytes.getShort(bytes.limit() - 2)));
+    }
+
+    @Test
+    public void testRejectsInvalidFiles() throws Exception {
+        Path file = Files.createTempFile("snapshot", ".sgds");
+        DatasetSnapshot.write(file, List.of(new HttpRequestData("GET", "payload", "benign")));
+        byte[] valid = Files.readAllBytes(file);
+
+        byte[] magic = valid.clone();
+        magic[0] = 'X';
+        assertInvalid(magic, "Not a dataset snapshot");
+
+        byte[] version = valid.clone();
+        version[7] = 2;
+        assertInvalid(version, "Unsupported dataset snapshot version 2");
+
+        assertInvalid(Arrays.copyOf(valid, valid.length - 3), "truncated or corrupt");
+        assertInvalid(Arrays.copyOf(valid, valid.length + 1), "truncated or corrupt");
+        assertInvalid(Arrays.copyOf(valid, 6), "Not a dataset snapshot");
+    }
+
+    private static void assertInvalid(byte[] content, String message) throws Exception {
+        Path file = Files.createTempFile("snapshot", ".sgds");
+        Files.write(file, content);
+        IOException e = assertThrows(IOException.class, () -> DatasetSnapshot.open(file));
+        assertTrue(e.getMessage().contains(message), e.getMessage());
+    }
+}
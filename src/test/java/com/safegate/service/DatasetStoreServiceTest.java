@@ -0,0 +1,114 @@
+package com.safegate.service;
+
+import com.SafeGate.SafeGateApplication;
+import com.SafeGate.entity.Dataset;
+import com.SafeGate.model.HttpRequestData;
+import com.SafeGate.service.DatasetParsingService;
+import com.SafeGate.service.DatasetStoreService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = SafeGateApplication.class)
+@ActiveProfiles("test")
+public class DatasetStoreServiceTest {
+
+    /**
+     * Parses like the real service and counts how often it does.
+     */
+    private static class CountingParsingService extends DatasetParsingService {
+        int parses;
+
+        @Override
+        public List<HttpRequestData> parse(SpooledUpload upload, String datasetType) throws Exception {
+            parses++;
+            return super.parse(upload, datasetType);
+        }
+    }
+
+    @Autowired
+    private DatasetStoreService datasetStoreService;
+
+    private final CountingParsingService parser = new CountingParsingService();
+    private final List<Long> stored = new ArrayList<>();
+    private Object originalParser;
+    private Object originalDir;
+    private Path dir;
+
+    @BeforeEach
+    public void useCountingParser() throws Exception {
+        dir = Files.createTempDirectory("datasets");
+        originalParser = swap("datasetParsingService", parser);
+        originalDir = swap("datasetsDir", dir.toString());
+    }
+
+    @AfterEach
+    public void restore() throws Exception {
+        for (Long id : stored) {
+            datasetStoreService.deleteDataset(id);
+        }
+        swap("datasetParsingService", originalParser);
+        swap("datasetsDir", originalDir);
+        parser.shutdown();
+    }
+
+    @Test
+    public void testSameContentAndFormatIsParsedOnce() throws Exception {
+        // Unique content, so datasets stored by other tests do not match it
+        byte[] content = ("method,payload,label\nGET,/search?q=" + System.nanoTime() + ",benign\nPOST,' OR 1=1 --,sqli\n")
+                .getBytes(StandardCharsets.UTF_8);
+
+        Dataset first = ingest("first.csv", content, "CSV");
+        assertEquals(1, parser.parses);
+        assertEquals(2, first.getRecordCount());
+
+        // The same bytes under another name are found by their SHA-256
+        Dataset second = ingest("renamed.csv", content, "CSV");
+        assertEquals(1, parser.parses, "An identical upload is not parsed again");
+        assertEquals(first.getId(), second.getId());
+        assertEquals(first.getSha256(), second.getSha256());
+
+        // The same bytes read as another format are a different dataset
+        Dataset asText = ingest("first.txt", content, "TXT");
+        assertEquals(2, parser.parses);
+        assertNotEquals(first.getId(), asText.getId());
+
+        // A stored dataset whose snapshot is gone is parsed again
+        Files.delete(dir.resolve(first.getSnapshotFile()));
+        Dataset restored = ingest("first.csv", content, "CSV");
+        assertEquals(3, parser.parses);
+        assertEquals(first.getId(), restored.getId());
+        List<HttpRequestData> records = datasetStoreService.openSnapshot(restored);
+        assertEquals("' OR 1=1 --", records.get(1).getPayload());
+        assertEquals("sqli", records.get(1).getLabel());
+    }
+
+    private Dataset ingest(String name, byte[] content, String format) throws Exception {
+        Dataset dataset = datasetStoreService.ingest(new MockMultipartFile("file", name, "text/plain", content), format);
+        if (!stored.contains(dataset.getId())) {
+            stored.add(dataset.getId());
+        }
+        return dataset;
+    }
+
+    private Object swap(String name, Object value) throws Exception {
+        Field field = DatasetStoreService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        Object previous = field.get(datasetStoreService);
+        field.set(datasetStoreService, value);
+        return previous;
+    }
+}
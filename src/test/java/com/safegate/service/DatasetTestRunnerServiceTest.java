@@ -0,0 +1,294 @@
+package com.safegate.service;
+
+import com.SafeGate.SafeGateApplication;
+import com.SafeGate.analyzer.AnalyzerWork;
+import com.SafeGate.entity.TestRun;
+import com.SafeGate.entity.TestRunBlockCount;
+import com.SafeGate.model.AnalysisVerdict;
+import com.SafeGate.repository.TestRunRepository;
+import com.SafeGate.service.DatasetStoreService;
+import com.SafeGate.service.DatasetTestRunnerService;
+import com.SafeGate.service.LLMService;
+import com.SafeGate.service.RunResultStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(classes = SafeGateApplication.class)
+@ActiveProfiles("test")
+public class DatasetTestRunnerServiceTest {
+
+    /**
+     * Classifies payloads by their text instead of calling an analyzer, and records every
+     * payload it is sent.
+     */
+    private static class StubLLMService extends LLMService {
+        final List<String> analyzed = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+            analyzed.addAll(payloads);
+            for (int i = 0; i < payloads.size(); i++) {
+                consumer.accept(verdict(i, payloads.get(i)));
+            }
+            return payloads.size();
+        }
+
+        @Override
+        public int availableEndpointCount() {
+            return 2;
+        }
+    }
+
+    /**
+     * Answers each analyzer call with the next scripted behaviour, and records the batches it is sent.
+     */
+    private static class ScriptedLLMService extends LLMService {
+        interface Call {
+            void answer(List<String> payloads, Consumer<AnalysisVerdict> consumer);
+        }
+
+        final Deque<Call> script = new ArrayDeque<>();
+        final List<List<String>> batches = new ArrayList<>();
+
+        ScriptedLLMService then(Call call) {
+            script.add(call);
+            return this;
+        }
+
+        @Override
+        public int analyzeBatchStream(List<String> payloads, Consumer<AnalysisVerdict> consumer) {
+            batches.add(List.copyOf(payloads));
+            Call call = script.poll();
+            assertNotNull(call, "Unexpected analyzer call for " + payloads);
+            call.answer(payloads, consumer);
+            return payloads.size();
+        }
+    }
+
+    /**
+     * @return A call that answers every payload except the given ones, which get an error verdict
+     * or no line at all.
+     */
+    private static ScriptedLLMService.Call answerAllBut(Set<String> errors, Set<String> dropped) {
+        return (payloads, consumer) -> {
+            for (int i = 0; i < payloads.size(); i++) {
+                String payload = payloads.get(i);
+                if (errors.contains(payload)) {
+                    AnalysisVerdict verdict = new AnalysisVerdict(i, false, null, null);
+                    verdict.setError("Analyzer timed out");
+                    consumer.accept(verdict);
+                } else if (!dropped.contains(payload)) {
+                    consumer.accept(verdict(i, payload));
+                }
+            }
+        };
+    }
+
+    private static ScriptedLLMService.Call fail(String message) {
+        return (payloads, consumer) -> {
+            throw new IllegalStateException(message);
+        };
+    }
+
+    /**
+     * @return The verdict for a payload named "&lt;category&gt;-...", where SAFE payloads are benign.
+     */
+    private static AnalysisVerdict verdict(int index, String payload) {
+        String category = payload.substring(0, payload.indexOf('-'));
+        boolean malicious = !category.equals("SAFE");
+        return new AnalysisVerdict(index, malicious, category, malicious ? "stub" : null);
+    }
+
+    @Autowired
+    private DatasetTestRunnerService datasetTestRunnerService;
+
+    @Autowired
+    private DatasetStoreService datasetStoreService;
+
+    @Autowired
+    private RunResultStore runResultStore;
+
+    @Autowired
+    private TestRunRepository testRunRepository;
+
+    private final StubLLMService llm = new StubLLMService();
+    private final List<TestRun> runs = new ArrayList<>();
+    private Object originalLlm;
+    private Object originalChunkSize;
+    private Object originalChunkRetries;
+    private Object originalRetryBackoffMs;
+
+    @BeforeEach
+    public void useStubAnalyzer() throws Exception {
+        originalLlm = swap("llmService", llm);
+        // Small chunks, so duplicates recur in chunks after the one that analyzed them
+        originalChunkSize = swap("chunkSize", 8);
+        originalChunkRetries = swap("chunkRetries", 2);
+        originalRetryBackoffMs = swap("retryBackoffMs", 1L);
+    }
+
+    @AfterEach
+    public void restore() throws Exception {
+        swap("llmService", originalLlm);
+        swap("chunkSize", originalChunkSize);
+        swap("chunkRetries", originalChunkRetries);
+        swap("retryBackoffMs", originalRetryBackoffMs);
+        for (TestRun run : runs) {
+            runResultStore.delete(run.getId());
+            testRunRepository.deleteById(run.getId());
+            datasetStoreService.deleteDataset(run.getDatasetId());
+        }
+    }
+
+    @Test
+    public void testDuplicateVerdictsCountOncePerOccurrence() throws Exception {
+        String[] distinct = {"SQLI-1' OR '1'='1", "XSS-<script>alert(1)</script>", "SAFE-/index.html",
+                "SQLI-UNION SELECT password FROM users", "SAFE-/about?lang=" + System.nanoTime()};
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            payloads.add(distinct[(i * i + i / 7) % distinct.length]);
+        }
+
+        TestRun run = run(payloads);
+
+        // Each distinct payload was analyzed once
+        assertEquals(distinct.length, llm.analyzed.size());
+        assertEquals(new HashSet<>(payloads), new HashSet<>(llm.analyzed));
+
+        // The totals and block counts are those of analyzing every payload
+        Map<String, Long> expectedBlocks = new HashMap<>();
+        long passed = 0;
+        for (String payload : payloads) {
+            AnalysisVerdict verdict = verdict(0, payload);
+            if (verdict.isMalicious()) {
+                expectedBlocks.merge("LLM:" + verdict.getCategory(), 1L, Long::sum);
+            } else {
+                passed++;
+            }
+        }
+        long blocked = payloads.size() - passed;
+        assertEquals(payloads.size(), run.getTotalMaliciousRequests());
+        assertEquals(blocked, run.getTotalMaliciousBlocked());
+        assertEquals(blocked, run.getTotalBlocked());
+        assertEquals(passed, run.getTotalPassed());
+        Map<String, Long> blocks = new HashMap<>();
+        for (TestRunBlockCount blockCount : run.getBlockCounts()) {
+            blocks.put(blockCount.getDetectionCategory(), blockCount.getCount());
+        }
+        assertEquals(expectedBlocks, blocks);
+
+        // One stored result per occurrence, in dataset order
+        assertEquals(payloads.size(), runResultStore.count(run.getId(), RunResultStore.Filter.ALL));
+        assertEquals(blocked, runResultStore.count(run.getId(), new RunResultStore.Filter(true, null)));
+        List<RunResultStore.Row> rows = runResultStore.page(run.getId(), RunResultStore.Filter.ALL, 0, payloads.size(), true);
+        assertEquals(payloads, rows.stream().map(RunResultStore.Row::payload).toList());
+    }
+
+    @Test
+    public void testChunkRetryResendsOnlyMissingPayloads() throws Exception {
+        List<String> payloads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            payloads.add((i % 2 == 0 ? "SQLI-" : "SAFE-") + i);
+        }
+        List<String> chunk = payloads.subList(2, 8);
+        List<String> unanswered = List.of("SQLI-2", "SAFE-5", "SQLI-6");
+        ScriptedLLMService scripted = new ScriptedLLMService()
+                // Two lines are missing from the response and one is an error line
+                .then(answerAllBut(Set.of("SAFE-5"), Set.of("SQLI-2", "SQLI-6")))
+                // The retry of those three fails outright once
+                .then(fail("Connection reset"))
+                .then(answerAllBut(Set.of(), Set.of()));
+        swap("llmService", scripted);
+
+        AnalysisVerdict[] verdicts = new AnalysisVerdict[payloads.size()];
+        analyzeChunk(payloads, 2, 8, verdicts);
+
+        assertEquals(List.of(chunk, unanswered, unanswered), scripted.batches);
+        assertTrue(scripted.script.isEmpty());
+        for (int i = 0; i < payloads.size(); i++) {
+            if (i < 2 || i >= 8) {
+                assertNull(verdicts[i], "Payload " + i + " is outside the chunk");
+            } else {
+                assertNotNull(verdicts[i], "Payload " + i + " has no verdict");
+                assertNull(verdicts[i].getError());
+                assertEquals(verdict(0, payloads.get(i)).getCategory(), verdicts[i].getCategory());
+                assertEquals(verdict(0, payloads.get(i)).isMalicious(), verdicts[i].isMalicious());
+            }
+        }
+    }
+
+    @Test
+    public void testChunkRetryGivesUpAfterConfiguredAttempts() throws Exception {
+        List<String> payloads = List.of("SQLI-0", "SAFE-1", "XSS-2");
+        ScriptedLLMService scripted = new ScriptedLLMService()
+                .then(answerAllBut(Set.of(), Set.of("SAFE-1")))
+                .then(fail("Connection reset"))
+                .then(fail("Connection refused"));
+        swap("llmService", scripted);
+
+        AnalysisVerdict[] verdicts = new AnalysisVerdict[payloads.size()];
+        InvocationTargetException e = assertThrows(InvocationTargetException.class,
+                () -> analyzeChunk(payloads, 0, payloads.size(), verdicts));
+        assertEquals("Connection refused", e.getCause().getMessage());
+        assertEquals(List.of(payloads, List.of("SAFE-1"), List.of("SAFE-1")), scripted.batches);
+        assertNotNull(verdicts[0]);
+        assertNull(verdicts[1]);
+        assertNotNull(verdicts[2]);
+
+        // A response that keeps leaving a payload out fails too, rather than passing without a verdict
+        ScriptedLLMService incomplete = new ScriptedLLMService();
+        for (int i = 0; i < 3; i++) {
+            incomplete.then(answerAllBut(Set.of(), Set.of("SAFE-1")));
+        }
+        swap("llmService", incomplete);
+        e = assertThrows(InvocationTargetException.class,
+                () -> analyzeChunk(payloads, 0, payloads.size(), new AnalysisVerdict[payloads.size()]));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+        assertEquals(3, incomplete.batches.size());
+    }
+
+    private void analyzeChunk(List<String> uniquePayloads, int from, int to, AnalysisVerdict[] verdicts) throws Exception {
+        Method analyze = DatasetTestRunnerService.class.getDeclaredMethod("analyzeChunkWithRetry",
+                List.class, int.class, int.class, AnalysisVerdict[].class, AnalyzerWork.class);
+        analyze.setAccessible(true);
+        analyze.invoke(datasetTestRunnerService, uniquePayloads, from, to, verdicts, AnalyzerWork.interactive("test"));
+    }
+
+    private TestRun run(List<String> payloads) {
+        byte[] content = (String.join("\n", payloads) + "\n").getBytes(StandardCharsets.UTF_8);
+        TestRun run = datasetTestRunnerService.runDatasetTest(new MockMultipartFile("file", "payloads.txt", "text/plain", content),
+                "TXT", null, "All", null);
+        runs.add(run);
+        return run;
+    }
+
+    private Object swap(String name, Object value) throws Exception {
+        Field field = DatasetTestRunnerService.class.getDeclaredField(name);
+        field.setAccessible(true);
+        Object previous = field.get(datasetTestRunnerService);
+        field.set(datasetTestRunnerService, value);
+        return previous;
+    }
+}
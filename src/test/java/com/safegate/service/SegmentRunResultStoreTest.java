@@ -0,0 +1,167 @@
+package com.safegate.service;
+
+import com.SafeGate.model.AnalysisVerdict;
+import com.SafeGate.service.RunResultStore;
+import com.SafeGate.service.SegmentRunResultStore;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentRunResultStoreTest {
+
+    private static SegmentRunResultStore store(Path dir, int segmentRows) throws Exception {
+        SegmentRunResultStore store = new SegmentRunResultStore();
+        Field resultsDir = SegmentRunResultStore.class.getDeclaredField("resultsDir");
+        resultsDir.setAccessible(true);
+        resultsDir.set(store, dir.toString());
+        Field rows = SegmentRunResultStore.class.getDeclaredField("segmentRows");
+        rows.setAccessible(true);
+        rows.set(store, segmentRows);
+        store.start();
+        return store;
+    }
+
+    private static void writeRun(SegmentRunResultStore store, long testRunId, int rows) {
+        try (RunResultStore.Writer writer = store.open(testRunId)) {
+            for (int i = 0; i < rows; i++) {
+                boolean malicious = i % 3 == 0;
+                writer.add("payload-" + i + "-\u00e9", new AnalysisVerdict(i, malicious,
+                        malicious ? (i % 2 == 0 ? "SQLI" : "XSS") : "SAFE", i % 5 == 0 ? null : "reason " + i));
+            }
+        }
+    }
+
+    @Test
+    public void testPagesAcrossSegments() throws Exception {
+        Path dir = Files.createTempDirectory("results");
+        SegmentRunResultStore store = store(dir, 1000);
+        writeRun(store, 1, 2500);
+
+        assertEquals(2500, store.count(1, RunResultStore.Filter.ALL));
+        assertEquals(834, store.count(1, new RunResultStore.Filter(true, null)));
+        assertEquals(1666, store.count(1, new RunResultStore.Filter(false, null)));
+        assertEquals(417, store.count(1, new RunResultStore.Filter(true, "sqli")));
+
+        // A page that spans the first two segments
+        List<RunResultStore.Row> page = store.page(1, RunResultStore.Filter.ALL, 990, 20, true);
+        assertEquals(20, page.size());
+        for (int i = 0; i < page.size(); i++) {
+            RunResultStore.Row row = page.get(i);
+            long index = 990 + i;
+            assertEquals(index, row.index());
+            assertEquals("payload-" + index + "-\u00e9", row.payload());
+            assertEquals(index % 3 == 0, row.malicious());
+            assertEquals(index % 5 == 0 ? null : "reason " + index, row.reason());
+        }
+
+        // A filtered page starts at the first matching row from the cursor
+        List<RunResultStore.Row> malicious = store.page(1, new RunResultStore.Filter(true, null), 998, 3, false);
+        assertEquals(List.of(999L, 1002L, 1005L), malicious.stream().map(RunResultStore.Row::index).toList());
+        assertEquals(List.of("XSS", "SQLI", "XSS"), malicious.stream().map(RunResultStore.Row::category).toList());
+        assertNull(malicious.get(0).payload());
+        List<RunResultStore.Row> sqli = store.page(1, new RunResultStore.Filter(null, "SQLI"), 1000, 2, true);
+        assertEquals(List.of(1002L, 1008L), sqli.stream().map(RunResultStore.Row::index).toList());
+        assertEquals("payload-1008-\u00e9", sqli.get(1).payload());
+
+        assertEquals("payload-2499-\u00e9", store.payload(1, 2499).orElseThrow());
+        assertTrue(store.payload(1, 2500).isEmpty());
+        assertTrue(store.page(1, new RunResultStore.Filter(false, null), 2500, 10, true).isEmpty());
+        store.stop();
+    }
+
+    @Test
+    public void testTruncateDropsRowsAfterCheckpoint() throws Exception {
+        Path dir = Files.createTempDirectory("results");
+        SegmentRunResultStore store = store(dir, 100);
+        try (RunResultStore.Writer writer = store.open(1)) {
+            for (int i = 0; i < 250; i++) {
+                writer.add("payload-" + i, new AnalysisVerdict(i, false, "SAFE", null));
+                if (i == 129) {
+                    // A checkpoint in the middle of the second segment
+                    writer.flush();
+                }
+            }
+        }
+        assertEquals(250, store.count(1, RunResultStore.Filter.ALL));
+
+        store.truncate(1, 130);
+        assertEquals(130, store.count(1, RunResultStore.Filter.ALL));
+        try (RunResultStore.Writer writer = store.open(1)) {
+            writer.add("resumed", new AnalysisVerdict(0, true, "XSS", "again"));
+        }
+        assertEquals(131, store.count(1, RunResultStore.Filter.ALL));
+        assertEquals("payload-129", store.payload(1, 129).orElseThrow());
+        assertEquals("resumed", store.payload(1, 130).orElseThrow());
+
+        // Truncating inside a segment rewrites it
+        store.truncate(1, 120);
+        assertEquals(120, store.count(1, RunResultStore.Filter.ALL));
+        assertEquals("payload-119", store.payload(1, 119).orElseThrow());
+        store.stop();
+    }
+
+    @Test
+    public void testCheckpointsDoNotLeaveSmallSegments() throws Exception {
+        Path dir = Files.createTempDirectory("results");
+        SegmentRunResultStore store = store(dir, 100);
+        try (RunResultStore.Writer writer = store.open(1)) {
+            for (int i = 0; i < 250; i++) {
+                writer.add("payload-" + i, new AnalysisVerdict(i, i % 2 == 0, "SAFE", null));
+                if (i % 10 == 9) {
+                    writer.flush();
+                    // Readers see every flushed row, including those of the segment being filled
+                    assertEquals(i + 1, store.count(1, RunResultStore.Filter.ALL));
+                    assertEquals("payload-" + i, store.payload(1, i).orElseThrow());
+                }
+            }
+        }
+        assertEquals(3, segmentFiles(dir.resolve("run-1")));
+
+        // A resumed run fills the last segment before starting another
+        try (RunResultStore.Writer writer = store.open(1)) {
+            writer.add("resumed", new AnalysisVerdict(0, true, "XSS", null));
+        }
+        assertEquals(3, segmentFiles(dir.resolve("run-1")));
+        assertEquals(251, store.count(1, RunResultStore.Filter.ALL));
+        assertEquals(126, store.count(1, new RunResultStore.Filter(true, null)));
+        assertEquals("payload-249", store.payload(1, 249).orElseThrow());
+        assertEquals("resumed", store.payload(1, 250).orElseThrow());
+        List<RunResultStore.Row> page = store.page(1, RunResultStore.Filter.ALL, 195, 10, true);
+        assertEquals(List.of(195L, 196L, 197L, 198L, 199L, 200L, 201L, 202L, 203L, 204L),
+                page.stream().map(RunResultStore.Row::index).toList());
+        assertEquals("payload-200", page.get(5).payload());
+        store.stop();
+    }
+
+    private static long segmentFiles(Path runDir) throws Exception {
+        try (Stream<Path> entries = Files.list(runDir)) {
+            return entries.filter(entry -> entry.getFileName().toString().endsWith(".sgrs")).count();
+        }
+    }
+
+    @Test
+    public void testDeleteRemovesRun() throws Exception {
+        Path dir = Files.createTempDirectory("results");
+        SegmentRunResultStore store = store(dir, 100);
+        writeRun(store, 1, 250);
+        writeRun(store, 2, 10);
+
+        store.delete(1);
+        assertEquals(0, store.count(1, RunResultStore.Filter.ALL));
+        assertTrue(store.page(1, RunResultStore.Filter.ALL, 0, 10, true).isEmpty());
+        assertEquals(10, store.count(2, RunResultStore.Filter.ALL));
+
+        // Deleted directories are removed in the background
+        for (int i = 0; i < 100 && Files.list(dir).count() > 1; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(List.of(dir.resolve("run-2")), Files.list(dir).toList());
+        store.stop();
+    }
+}
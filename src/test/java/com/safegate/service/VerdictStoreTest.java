@@ -0,0 +1,93 @@
+package com.safegate.service;
+
+import com.SafeGate.model.AnalysisVerdict;
+import com.SafeGate.service.VerdictStore;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VerdictStoreTest {
+
+    private static final long MAX_BYTES = 64L * 1024 * 1024;
+
+    @Test
+    public void testVerdictsSurviveReopen() throws Exception {
+        Path file = Files.createTempDirectory("verdicts").resolve("verdicts.sgvs");
+        long model = VerdictStore.modelKey("ollama", "tinyllama", "1");
+        try (VerdictStore store = VerdictStore.open(file, MAX_BYTES)) {
+            assertNull(store.get(model, "' OR 1=1 --"));
+            assertTrue(store.put(model, "' OR 1=1 --", new AnalysisVerdict(7, true, "SQL_INJECTION", "LLM classified as SQL_INJECTION")));
+            assertTrue(store.put(model, "q=caf\u00e9", new AnalysisVerdict(0, false, "SAFE", null)));
+        }
+
+        try (VerdictStore store = VerdictStore.open(file, MAX_BYTES)) {
+            assertEquals(2, store.size());
+            AnalysisVerdict verdict = store.get(model, "' OR 1=1 --");
+            assertTrue(verdict.isMalicious());
+            assertEquals("SQL_INJECTION", verdict.getCategory());
+            assertEquals("LLM classified as SQL_INJECTION", verdict.getReason());
+            assertEquals(0, verdict.getIndex());
+
+            AnalysisVerdict[] batch = store.lookup(model, List.of("unknown", "q=caf\u00e9"));
+            assertNull(batch[0]);
+            assertEquals(1, batch[1].getIndex());
+            assertFalse(batch[1].isMalicious());
+            assertNull(batch[1].getReason());
+        }
+    }
+
+    @Test
+    public void testModelsAndPromptVersionsAreSeparate() throws Exception {
+        Path file = Files.createTempDirectory("verdicts").resolve("verdicts.sgvs");
+        long tinyllama = VerdictStore.modelKey("ollama", "tinyllama", "1");
+        try (VerdictStore store = VerdictStore.open(file, MAX_BYTES)) {
+            store.put(tinyllama, "<script>", new AnalysisVerdict(0, true, "XSS", null));
+            assertNotNull(store.get(VerdictStore.modelKey(" Ollama ", "TinyLlama", "1"), "<script>"));
+            assertNull(store.get(VerdictStore.modelKey("ollama", "phi3:mini", "1"), "<script>"));
+            assertNull(store.get(VerdictStore.modelKey("ollama", "tinyllama", "2"), "<script>"));
+
+            // A later verdict for the same key replaces the stored one
+            store.put(tinyllama, "<script>", new AnalysisVerdict(0, false, "SAFE", "changed"));
+            assertEquals(1, store.size());
+            assertEquals("changed", store.get(tinyllama, "<script>").getReason());
+        }
+    }
+
+    @Test
+    public void testTableGrowsPastInitialSize() throws Exception {
+        Path file = Files.createTempDirectory("verdicts").resolve("verdicts.sgvs");
+        long model = VerdictStore.modelKey("ollama", "tinyllama", "1");
+        int count = 20000;
+        try (VerdictStore store = VerdictStore.open(file, MAX_BYTES)) {
+            for (int i = 0; i < count; i++) {
+                assertTrue(store.put(model, "payload-" + i, new AnalysisVerdict(0, i % 2 == 0, i % 2 == 0 ? "XSS" : "SAFE", "reason " + i)));
+            }
+            assertEquals(count, store.size());
+        }
+        try (VerdictStore store = VerdictStore.open(file, MAX_BYTES)) {
+            assertEquals(count, store.size());
+            for (int i = 0; i < count; i += 97) {
+                AnalysisVerdict verdict = store.get(model, "payload-" + i);
+                assertEquals(i % 2 == 0, verdict.isMalicious());
+                assertEquals("reason " + i, verdict.getReason());
+            }
+            assertNull(store.get(model, "payload-" + count));
+        }
+    }
+
+    @Test
+    public void testUnreadableFileIsReplaced() throws Exception {
+        Path file = Files.createTempDirectory("verdicts").resolve("verdicts.sgvs");
+        Files.writeString(file, "not a verdict store");
+        try (VerdictStore store = VerdictStore.open(file, MAX_BYTES)) {
+            assertEquals(0, store.size());
+            long model = VerdictStore.modelKey("mock", "tinyllama", "1");
+            store.put(model, "x", new AnalysisVerdict(0, false, "SAFE", null));
+            assertNotNull(store.get(model, "x"));
+        }
+    }
+}